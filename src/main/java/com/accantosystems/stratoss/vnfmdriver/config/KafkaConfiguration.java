@@ -2,21 +2,26 @@ package com.accantosystems.stratoss.vnfmdriver.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 
 import com.accantosystems.stratoss.vnfmdriver.driver.VNFLifecycleManagementDriver;
 import com.accantosystems.stratoss.vnfmdriver.service.ExternalMessagingService;
+import com.accantosystems.stratoss.vnfmdriver.service.LcmOpOccCompletionTracker;
 import com.accantosystems.stratoss.vnfmdriver.service.LcmOpOccPollingService;
 import com.accantosystems.stratoss.vnfmdriver.service.impl.KafkaExternalMessagingServiceImpl;
 import com.accantosystems.stratoss.vnfmdriver.service.impl.LoggingExternalMessagingServiceImpl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration("KafkaConfiguration")
 public class KafkaConfiguration {
 
@@ -35,8 +40,10 @@ public class KafkaConfiguration {
         }
 
         @Bean
-        public LcmOpOccPollingService lcmOpOccPollingService(VNFLifecycleManagementDriver driver, ExternalMessagingService externalMessagingService, ObjectMapper objectMapper) {
-            return new LcmOpOccPollingService(driver, externalMessagingService, objectMapper);
+        public LcmOpOccPollingService lcmOpOccPollingService(VNFLifecycleManagementDriver driver, ExternalMessagingService externalMessagingService,
+                                                             LcmOpOccCompletionTracker completionTracker, ObjectMapper objectMapper, VNFMDriverProperties properties,
+                                                             ObjectProvider<MeterRegistry> meterRegistry, ConsumerFactory<?, ?> consumerFactory) {
+            return new LcmOpOccPollingService(driver, externalMessagingService, completionTracker, objectMapper, properties, meterRegistry, consumerFactory);
         }
     }
 
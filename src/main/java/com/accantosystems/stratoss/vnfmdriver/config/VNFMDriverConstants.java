@@ -18,6 +18,15 @@ public abstract class VNFMDriverConstants {
     public static final String AUTHENTICATION_GRANT_TYPE = "grant_type";
     public static final String AUTHENTICATION_SCOPE = "scope";
     public static final String AUTHENTICATION_ACCESS_TOKEN_URI = "accessTokenUri";
+    public static final String CONNECTION_POOL_MAX_TOTAL = "connectionPoolMaxTotal";
+    public static final String CONNECTION_POOL_MAX_PER_ROUTE = "connectionPoolMaxPerRoute";
+    public static final String CONNECTION_POOL_IDLE_TIMEOUT = "connectionPoolIdleTimeout";
+    public static final String CONNECTION_POOL_TIME_TO_LIVE = "connectionPoolTimeToLive";
+    public static final String TRUSTED_CERTIFICATES = "trustedCertificates";
+    public static final String RATE_LIMIT_REQUESTS_PER_SECOND = "rateLimitRequestsPerSecond";
+    public static final String RATE_LIMIT_BURST = "rateLimitBurst";
+    public static final String RATE_LIMIT_MAX_QUEUE_SIZE = "rateLimitMaxQueueSize";
+    public static final String RATE_LIMIT_MAX_WAIT_DURATION = "rateLimitMaxWaitDuration";
 
     public static final EnumSet<LcmOperationStateType> COMPLETED_OPERATIONAL_STATES = EnumSet.of(LcmOperationStateType.COMPLETED, LcmOperationStateType.FAILED, LcmOperationStateType.ROLLED_BACK);
 
@@ -1,9 +1,11 @@
 package com.accantosystems.stratoss.vnfmdriver.config;
 
 import java.time.Duration;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.etsi.sol003.lifecyclemanagement.LcmOperationType;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
@@ -23,10 +25,35 @@ public class VNFMDriverProperties {
     private final Logging logging = new Logging();
     private final PackageManagement packageManagement = new PackageManagement();
     private final Grant grant = new Grant();
+    private final Scripting scripting = new Scripting();
+    private final ConnectionPool restConnectionPool = new ConnectionPool();
+    private final Tls tls = new Tls();
+    private final ClientCache restClientCache = new ClientCache();
+    private final CircuitBreaker vnfmCircuitBreaker = new CircuitBreaker();
+    private final Bulkhead vnfmBulkhead = new Bulkhead();
+    private final Retry vnfmRetry = new Retry();
+    private final RateLimiter vnfmRateLimiter = new RateLimiter();
     private Duration executionResponseDelay = Duration.ofSeconds(5);
     private Duration lcmOpOccPollingDelay = Duration.ofSeconds(10);
+    private Duration lcmOpOccPollingCheckpointInterval = Duration.ofMinutes(5);
+    private Duration lcmOpOccPollingTickDuration = Duration.ofMillis(100);
+    private int lcmOpOccPollingThreads = 8;
+    private int lcmOpOccPollingBatchSize = 50;
+    private int lcmOpOccCacheSize = 1000;
+    private Duration lcmOpOccPollingGracePeriod = Duration.ofSeconds(30);
+    private int lcmOpOccCompletionCacheSize = 10000;
+    private final Map<LcmOperationType, Duration> lcmOpOccPollingInitialDelays = new EnumMap<>(Map.of(LcmOperationType.INSTANTIATE, Duration.ofSeconds(30),
+                                                                                                      LcmOperationType.CHANGE_VNFPKG, Duration.ofSeconds(30),
+                                                                                                      LcmOperationType.OPERATE, Duration.ofSeconds(2),
+                                                                                                      LcmOperationType.MODIFY_INFO, Duration.ofSeconds(2),
+                                                                                                      LcmOperationType.CHANGE_EXT_CONN, Duration.ofSeconds(5)));
+    private double lcmOpOccPollingMultiplier = 1.5;
+    private Duration lcmOpOccPollingMaxDelay = Duration.ofMinutes(1);
+    private Duration lcmOpOccPollingTimeout = Duration.ofHours(4);
     private Duration restConnectTimeout = Duration.ofSeconds(10);
     private Duration restReadTimeout = Duration.ofSeconds(60);
+    private RestTransportType restTransport = RestTransportType.HTTP_1_1;
+    private Duration authenticationRefreshAhead = Duration.ofSeconds(30);
 
     public Async getAsync() {
         return async;
@@ -48,6 +75,38 @@ public class VNFMDriverProperties {
         return grant;
     }
 
+    public Scripting getScripting() {
+        return scripting;
+    }
+
+    public ConnectionPool getRestConnectionPool() {
+        return restConnectionPool;
+    }
+
+    public Tls getTls() {
+        return tls;
+    }
+
+    public ClientCache getRestClientCache() {
+        return restClientCache;
+    }
+
+    public CircuitBreaker getVnfmCircuitBreaker() {
+        return vnfmCircuitBreaker;
+    }
+
+    public Bulkhead getVnfmBulkhead() {
+        return vnfmBulkhead;
+    }
+
+    public Retry getVnfmRetry() {
+        return vnfmRetry;
+    }
+
+    public RateLimiter getVnfmRateLimiter() {
+        return vnfmRateLimiter;
+    }
+
     public Duration getExecutionResponseDelay() {
         return executionResponseDelay;
     }
@@ -64,6 +123,90 @@ public class VNFMDriverProperties {
         this.lcmOpOccPollingDelay = lcmOpOccPollingDelay;
     }
 
+    public Duration getLcmOpOccPollingCheckpointInterval() {
+        return lcmOpOccPollingCheckpointInterval;
+    }
+
+    public void setLcmOpOccPollingCheckpointInterval(Duration lcmOpOccPollingCheckpointInterval) {
+        this.lcmOpOccPollingCheckpointInterval = lcmOpOccPollingCheckpointInterval;
+    }
+
+    public Duration getLcmOpOccPollingTickDuration() {
+        return lcmOpOccPollingTickDuration;
+    }
+
+    public void setLcmOpOccPollingTickDuration(Duration lcmOpOccPollingTickDuration) {
+        this.lcmOpOccPollingTickDuration = lcmOpOccPollingTickDuration;
+    }
+
+    public int getLcmOpOccPollingThreads() {
+        return lcmOpOccPollingThreads;
+    }
+
+    public void setLcmOpOccPollingThreads(int lcmOpOccPollingThreads) {
+        this.lcmOpOccPollingThreads = lcmOpOccPollingThreads;
+    }
+
+    public int getLcmOpOccPollingBatchSize() {
+        return lcmOpOccPollingBatchSize;
+    }
+
+    public void setLcmOpOccPollingBatchSize(int lcmOpOccPollingBatchSize) {
+        this.lcmOpOccPollingBatchSize = lcmOpOccPollingBatchSize;
+    }
+
+    public int getLcmOpOccCacheSize() {
+        return lcmOpOccCacheSize;
+    }
+
+    public void setLcmOpOccCacheSize(int lcmOpOccCacheSize) {
+        this.lcmOpOccCacheSize = lcmOpOccCacheSize;
+    }
+
+    public Duration getLcmOpOccPollingGracePeriod() {
+        return lcmOpOccPollingGracePeriod;
+    }
+
+    public void setLcmOpOccPollingGracePeriod(Duration lcmOpOccPollingGracePeriod) {
+        this.lcmOpOccPollingGracePeriod = lcmOpOccPollingGracePeriod;
+    }
+
+    public int getLcmOpOccCompletionCacheSize() {
+        return lcmOpOccCompletionCacheSize;
+    }
+
+    public void setLcmOpOccCompletionCacheSize(int lcmOpOccCompletionCacheSize) {
+        this.lcmOpOccCompletionCacheSize = lcmOpOccCompletionCacheSize;
+    }
+
+    public Map<LcmOperationType, Duration> getLcmOpOccPollingInitialDelays() {
+        return lcmOpOccPollingInitialDelays;
+    }
+
+    public double getLcmOpOccPollingMultiplier() {
+        return lcmOpOccPollingMultiplier;
+    }
+
+    public void setLcmOpOccPollingMultiplier(double lcmOpOccPollingMultiplier) {
+        this.lcmOpOccPollingMultiplier = lcmOpOccPollingMultiplier;
+    }
+
+    public Duration getLcmOpOccPollingMaxDelay() {
+        return lcmOpOccPollingMaxDelay;
+    }
+
+    public void setLcmOpOccPollingMaxDelay(Duration lcmOpOccPollingMaxDelay) {
+        this.lcmOpOccPollingMaxDelay = lcmOpOccPollingMaxDelay;
+    }
+
+    public Duration getLcmOpOccPollingTimeout() {
+        return lcmOpOccPollingTimeout;
+    }
+
+    public void setLcmOpOccPollingTimeout(Duration lcmOpOccPollingTimeout) {
+        this.lcmOpOccPollingTimeout = lcmOpOccPollingTimeout;
+    }
+
     public Duration getRestConnectTimeout() {
         return restConnectTimeout;
     }
@@ -80,10 +223,37 @@ public class VNFMDriverProperties {
         this.restReadTimeout = restReadTimeout;
     }
 
+    public RestTransportType getRestTransport() {
+        return restTransport;
+    }
+
+    public void setRestTransport(RestTransportType restTransport) {
+        this.restTransport = restTransport;
+    }
+
+    /**
+     * How long before they expire that VNFM sessions (or access tokens) are replaced, so that requests aren't held up waiting for a new one
+     */
+    public Duration getAuthenticationRefreshAhead() {
+        return authenticationRefreshAhead;
+    }
+
+    public void setAuthenticationRefreshAhead(Duration authenticationRefreshAhead) {
+        this.authenticationRefreshAhead = authenticationRefreshAhead;
+    }
+
+    /**
+     * Transport used for requests to VNFMs and the grant provider. HTTP_2 falls back to HTTP/1.1 for servers which do not support HTTP/2.
+     */
+    public enum RestTransportType {
+        HTTP_1_1, HTTP_2
+    }
+
     public static class Async {
         private int corePoolSize = 4;
         private int maxPoolSize = 32;
         private int queueCapacity = 10000;
+        private boolean nonBlockingDriver = false;
 
         public int getCorePoolSize() {
             return corePoolSize;
@@ -108,6 +278,14 @@ public class VNFMDriverProperties {
         public void setQueueCapacity(int queueCapacity) {
             this.queueCapacity = queueCapacity;
         }
+
+        public boolean isNonBlockingDriver() {
+            return nonBlockingDriver;
+        }
+
+        public void setNonBlockingDriver(boolean nonBlockingDriver) {
+            this.nonBlockingDriver = nonBlockingDriver;
+        }
     }
 
     public static class Topics {
@@ -143,6 +321,474 @@ public class VNFMDriverProperties {
         }
     }
 
+    /**
+     * Default settings for the pool of HTTP connections used for each deployment location, which may be overridden by the properties of the
+     * deployment location itself
+     */
+    public static class ConnectionPool {
+        private boolean enabled = true;
+        private int maxTotal = 50;
+        private int maxPerRoute = 20;
+        private Duration idleTimeout = Duration.ofSeconds(60);
+        private Duration timeToLive = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxTotal() {
+            return maxTotal;
+        }
+
+        public void setMaxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+        }
+
+        public int getMaxPerRoute() {
+            return maxPerRoute;
+        }
+
+        public void setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+        }
+
+        public Duration getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    /**
+     * Settings for the SSL contexts shared by outbound HTTPS connections
+     */
+    public static class Tls {
+        private int sessionCacheSize = 1000;
+        private Duration sessionTimeout = Duration.ofHours(1);
+        private int contextCacheSize = 100;
+
+        public int getSessionCacheSize() {
+            return sessionCacheSize;
+        }
+
+        public void setSessionCacheSize(int sessionCacheSize) {
+            this.sessionCacheSize = sessionCacheSize;
+        }
+
+        public Duration getSessionTimeout() {
+            return sessionTimeout;
+        }
+
+        public void setSessionTimeout(Duration sessionTimeout) {
+            this.sessionTimeout = sessionTimeout;
+        }
+
+        public int getContextCacheSize() {
+            return contextCacheSize;
+        }
+
+        public void setContextCacheSize(int contextCacheSize) {
+            this.contextCacheSize = contextCacheSize;
+        }
+    }
+
+    /**
+     * Settings for the cache of REST clients (and their connection pools) created for each deployment location
+     */
+    public static class ClientCache {
+        private int maximumSize = 100;
+        private Duration expireAfterAccess = Duration.ofHours(1);
+
+        public int getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getExpireAfterAccess() {
+            return expireAfterAccess;
+        }
+
+        public void setExpireAfterAccess(Duration expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+        }
+    }
+
+    /**
+     * Settings for the circuit breaker kept for each VNFM (by vnfmServerUrl), which stops requests being sent to a VNFM while it is failing
+     */
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        private int failureRateThreshold = 50;
+        private int slidingWindowSize = 20;
+        private int minimumNumberOfCalls = 10;
+        private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+        private int permittedCallsInHalfOpenState = 3;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Percentage of the calls in the sliding window which must fail for the circuit breaker to open
+         */
+        public int getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getSlidingWindowSize() {
+            return slidingWindowSize;
+        }
+
+        public void setSlidingWindowSize(int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+        }
+
+        public int getMinimumNumberOfCalls() {
+            return minimumNumberOfCalls;
+        }
+
+        public void setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+            this.minimumNumberOfCalls = minimumNumberOfCalls;
+        }
+
+        public Duration getWaitDurationInOpenState() {
+            return waitDurationInOpenState;
+        }
+
+        public void setWaitDurationInOpenState(Duration waitDurationInOpenState) {
+            this.waitDurationInOpenState = waitDurationInOpenState;
+        }
+
+        public int getPermittedCallsInHalfOpenState() {
+            return permittedCallsInHalfOpenState;
+        }
+
+        public void setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+            this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+        }
+    }
+
+    /**
+     * Settings for the bulkhead kept for each VNFM (by vnfmServerUrl), which limits the number of concurrent requests to a single VNFM
+     */
+    public static class Bulkhead {
+        private boolean enabled = true;
+        private int maxConcurrentCalls = 20;
+        private Duration maxWaitDuration = Duration.ZERO;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public Duration getMaxWaitDuration() {
+            return maxWaitDuration;
+        }
+
+        public void setMaxWaitDuration(Duration maxWaitDuration) {
+            this.maxWaitDuration = maxWaitDuration;
+        }
+    }
+
+    /**
+     * Settings for retrying requests to a VNFM which fail with a transient error
+     */
+    public static class Retry {
+        private boolean enabled = true;
+        private int maxAttempts = 3;
+        private Duration initialInterval = Duration.ofMillis(500);
+        private double multiplier = 2.0;
+        private Duration maxInterval = Duration.ofSeconds(10);
+        private int budgetMaxTokens = 10;
+        private double budgetTokenRatio = 0.1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Maximum number of attempts at a request (including the first)
+         */
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getInitialInterval() {
+            return initialInterval;
+        }
+
+        public void setInitialInterval(Duration initialInterval) {
+            this.initialInterval = initialInterval;
+        }
+
+        public double getMultiplier() {
+            return multiplier;
+        }
+
+        public void setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        /**
+         * Longest wait before a retry. Requests are not retried if the VNFM asks (with a Retry-After header) for a longer wait than this.
+         */
+        public Duration getMaxInterval() {
+            return maxInterval;
+        }
+
+        public void setMaxInterval(Duration maxInterval) {
+            this.maxInterval = maxInterval;
+        }
+
+        /**
+         * Size of the retry budget for each VNFM. Each transient failure uses a token, and retries stop while half or fewer of the tokens remain.
+         */
+        public int getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public void setBudgetMaxTokens(int budgetMaxTokens) {
+            this.budgetMaxTokens = budgetMaxTokens;
+        }
+
+        /**
+         * Proportion of a token returned to the retry budget for each request which does not fail with a transient error
+         */
+        public double getBudgetTokenRatio() {
+            return budgetTokenRatio;
+        }
+
+        public void setBudgetTokenRatio(double budgetTokenRatio) {
+            this.budgetTokenRatio = budgetTokenRatio;
+        }
+    }
+
+    /**
+     * Default settings for the rate limiter kept for each VNFM (by vnfmServerUrl), which may be overridden by the properties of the deployment
+     * location itself
+     */
+    public static class RateLimiter {
+        private double requestsPerSecond = 0;
+        private int burst = 0;
+        private int maxQueueSize = 50;
+        private Duration maxWaitDuration = Duration.ofSeconds(5);
+
+        /**
+         * Sustained rate of requests allowed to each VNFM (0 for no limit)
+         */
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public void setRequestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        /**
+         * Number of requests which may be sent to an idle VNFM at once (0 for one second's worth of requests)
+         */
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public int getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
+        public void setMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+        }
+
+        public Duration getMaxWaitDuration() {
+            return maxWaitDuration;
+        }
+
+        public void setMaxWaitDuration(Duration maxWaitDuration) {
+            this.maxWaitDuration = maxWaitDuration;
+        }
+    }
+
+    public static class Scripting {
+        private boolean nativeConversionEnabled = true;
+        private ScriptEngineType engine = ScriptEngineType.NASHORN;
+        private long statementLimit = 1000000;
+        private Duration executionTimeout = Duration.ofSeconds(30);
+        private Duration executionCpuTime = Duration.ofSeconds(10);
+        private boolean stopRunawayScripts = false;
+        private int compiledScriptCacheSize = 500;
+        private int enginePoolSize = 8;
+        private Duration engineCheckoutTimeout = Duration.ofSeconds(30);
+        private boolean sharedLibraryScope = false;
+        private int libraryScopeCacheSize = 50;
+        private int vnfdCacheSize = 100;
+        private long driverFilesCacheMaxBytes = 64 * 1024 * 1024;
+        private boolean warmUpEnabled = true;
+
+        public boolean isNativeConversionEnabled() {
+            return nativeConversionEnabled;
+        }
+
+        public void setNativeConversionEnabled(boolean nativeConversionEnabled) {
+            this.nativeConversionEnabled = nativeConversionEnabled;
+        }
+
+        public ScriptEngineType getEngine() {
+            return engine;
+        }
+
+        public void setEngine(ScriptEngineType engine) {
+            this.engine = engine;
+        }
+
+        public long getStatementLimit() {
+            return statementLimit;
+        }
+
+        public void setStatementLimit(long statementLimit) {
+            this.statementLimit = statementLimit;
+        }
+
+        public Duration getExecutionTimeout() {
+            return executionTimeout;
+        }
+
+        public void setExecutionTimeout(Duration executionTimeout) {
+            this.executionTimeout = executionTimeout;
+        }
+
+        public Duration getExecutionCpuTime() {
+            return executionCpuTime;
+        }
+
+        public void setExecutionCpuTime(Duration executionCpuTime) {
+            this.executionCpuTime = executionCpuTime;
+        }
+
+        public boolean isStopRunawayScripts() {
+            return stopRunawayScripts;
+        }
+
+        public void setStopRunawayScripts(boolean stopRunawayScripts) {
+            this.stopRunawayScripts = stopRunawayScripts;
+        }
+
+        public int getCompiledScriptCacheSize() {
+            return compiledScriptCacheSize;
+        }
+
+        public void setCompiledScriptCacheSize(int compiledScriptCacheSize) {
+            this.compiledScriptCacheSize = compiledScriptCacheSize;
+        }
+
+        public int getEnginePoolSize() {
+            return enginePoolSize;
+        }
+
+        public void setEnginePoolSize(int enginePoolSize) {
+            this.enginePoolSize = enginePoolSize;
+        }
+
+        public Duration getEngineCheckoutTimeout() {
+            return engineCheckoutTimeout;
+        }
+
+        public void setEngineCheckoutTimeout(Duration engineCheckoutTimeout) {
+            this.engineCheckoutTimeout = engineCheckoutTimeout;
+        }
+
+        public boolean isSharedLibraryScope() {
+            return sharedLibraryScope;
+        }
+
+        public void setSharedLibraryScope(boolean sharedLibraryScope) {
+            this.sharedLibraryScope = sharedLibraryScope;
+        }
+
+        public int getLibraryScopeCacheSize() {
+            return libraryScopeCacheSize;
+        }
+
+        public void setLibraryScopeCacheSize(int libraryScopeCacheSize) {
+            this.libraryScopeCacheSize = libraryScopeCacheSize;
+        }
+
+        public int getVnfdCacheSize() {
+            return vnfdCacheSize;
+        }
+
+        public void setVnfdCacheSize(int vnfdCacheSize) {
+            this.vnfdCacheSize = vnfdCacheSize;
+        }
+
+        public long getDriverFilesCacheMaxBytes() {
+            return driverFilesCacheMaxBytes;
+        }
+
+        public void setDriverFilesCacheMaxBytes(long driverFilesCacheMaxBytes) {
+            this.driverFilesCacheMaxBytes = driverFilesCacheMaxBytes;
+        }
+
+        public boolean isWarmUpEnabled() {
+            return warmUpEnabled;
+        }
+
+        public void setWarmUpEnabled(boolean warmUpEnabled) {
+            this.warmUpEnabled = warmUpEnabled;
+        }
+
+        public enum ScriptEngineType {
+            NASHORN, GRAALJS
+        }
+    }
+
     public static class PackageManagement {
         boolean enabled;
         private String packageRepositoryUrl;
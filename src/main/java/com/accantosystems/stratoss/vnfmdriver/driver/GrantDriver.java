@@ -12,7 +12,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.*;
-import org.springframework.security.oauth2.client.OAuth2RestTemplate;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -22,8 +22,11 @@ import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
 import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties.Authentication;
 import com.accantosystems.stratoss.vnfmdriver.model.AuthenticationType;
 import com.accantosystems.stratoss.vnfmdriver.model.GrantCreationResponse;
+import com.accantosystems.stratoss.vnfmdriver.security.OAuth2TokenManager;
 import com.accantosystems.stratoss.vnfmdriver.service.GrantRejectedException;
 import com.accantosystems.stratoss.vnfmdriver.utils.DynamicSslCertificateHttpRequestFactory;
+import com.accantosystems.stratoss.vnfmdriver.utils.JdkHttpClientRequestFactory;
+import com.accantosystems.stratoss.vnfmdriver.utils.SslContextCache;
 
 /**
  * Driver implementing the ETSI SOL003 Grant interface
@@ -41,9 +44,10 @@ public class GrantDriver {
     private final VNFMDriverProperties vnfmDriverProperties;
     private final RestTemplate authenticatedRestTemplate;
 
-    public GrantDriver(VNFMDriverProperties vnfmDriverProperties, RestTemplateBuilder restTemplateBuilder, GrantResponseErrorHandler grantResponseErrorHandler) {
+    public GrantDriver(VNFMDriverProperties vnfmDriverProperties, RestTemplateBuilder restTemplateBuilder, GrantResponseErrorHandler grantResponseErrorHandler,
+                       SslContextCache sslContextCache, OAuth2TokenManager tokenManager) {
         this.vnfmDriverProperties = vnfmDriverProperties;
-        this.authenticatedRestTemplate = getAuthenticatedRestTemplate(vnfmDriverProperties, restTemplateBuilder, grantResponseErrorHandler);
+        this.authenticatedRestTemplate = getAuthenticatedRestTemplate(vnfmDriverProperties, restTemplateBuilder, grantResponseErrorHandler, sslContextCache, tokenManager);
     }
 
     /**
@@ -152,8 +156,9 @@ public class GrantDriver {
         return authenticatedRestTemplate;
     }
 
-    private RestTemplate getAuthenticatedRestTemplate(VNFMDriverProperties vnfmDriverProperties, RestTemplateBuilder restTemplateBuilder, GrantResponseErrorHandler grantResponseErrorHandler) {
-        RestTemplateBuilder customRestTemplateBuilder = configureRestTemplateBuilder(restTemplateBuilder, grantResponseErrorHandler);
+    private RestTemplate getAuthenticatedRestTemplate(VNFMDriverProperties vnfmDriverProperties, RestTemplateBuilder restTemplateBuilder, GrantResponseErrorHandler grantResponseErrorHandler,
+                                                      SslContextCache sslContextCache, OAuth2TokenManager tokenManager) {
+        RestTemplateBuilder customRestTemplateBuilder = configureRestTemplateBuilder(restTemplateBuilder, grantResponseErrorHandler, sslContextCache);
 
         Authentication authenticationProperties = vnfmDriverProperties.getGrant().getProvider().getAuthentication();
         final String authenticationTypeString = authenticationProperties.getType();
@@ -175,7 +180,7 @@ public class GrantDriver {
             String clientId = checkProperty(authenticationProperties.getClientId(), AUTHENTICATION_CLIENT_ID);
             String clientSecret = checkProperty(authenticationProperties.getClientSecret(), AUTHENTICATION_CLIENT_SECRET);
 
-            authenticatedRestTemplate = getOAuth2RestTemplate(customRestTemplateBuilder, authenticationProperties, accessTokenUri, clientId, clientSecret);
+            authenticatedRestTemplate = getOAuth2RestTemplate(customRestTemplateBuilder, tokenManager, authenticationProperties, accessTokenUri, clientId, clientSecret);
 
             break;
         case COOKIE:
@@ -197,7 +202,7 @@ public class GrantDriver {
                 .build();
     }
 
-    private RestTemplate getOAuth2RestTemplate(RestTemplateBuilder customRestTemplateBuilder, Authentication authenticationProperties, String accessTokenUri, String clientId, String clientSecret) {
+    private RestTemplate getOAuth2RestTemplate(RestTemplateBuilder customRestTemplateBuilder, OAuth2TokenManager tokenManager, Authentication authenticationProperties, String accessTokenUri, String clientId, String clientSecret) {
         final ClientCredentialsResourceDetails resourceDetails = new ClientCredentialsResourceDetails();
         resourceDetails.setAccessTokenUri(accessTokenUri);
         resourceDetails.setClientId(clientId);
@@ -208,18 +213,25 @@ public class GrantDriver {
         }
 
         logger.info("Configuring OAuth2 authenticated RestTemplate.");
-        return customRestTemplateBuilder.configure(new OAuth2RestTemplate(resourceDetails));
+        return customRestTemplateBuilder.configure(tokenManager.createRestTemplate(resourceDetails));
     }
 
-    private RestTemplateBuilder configureRestTemplateBuilder(RestTemplateBuilder restTemplateBuilder, GrantResponseErrorHandler grantResponseErrorHandler) {
+    private RestTemplateBuilder configureRestTemplateBuilder(RestTemplateBuilder restTemplateBuilder, GrantResponseErrorHandler grantResponseErrorHandler, SslContextCache sslContextCache) {
         RestTemplateBuilder customRestTemplateBuilder = restTemplateBuilder.errorHandler(grantResponseErrorHandler)
-                .requestFactory(DynamicSslCertificateHttpRequestFactory.class)
+                .requestFactory(() -> createRequestFactory(sslContextCache))
                 .setConnectTimeout(vnfmDriverProperties.getRestConnectTimeout())
                 .setReadTimeout(vnfmDriverProperties.getRestReadTimeout());
         logger.info("Initialising RestTemplate configuration");
         return customRestTemplateBuilder;
     }
 
+    private ClientHttpRequestFactory createRequestFactory(SslContextCache sslContextCache) {
+        if (vnfmDriverProperties.getRestTransport() == VNFMDriverProperties.RestTransportType.HTTP_2) {
+            return new JdkHttpClientRequestFactory(sslContextCache.getSslContext(null));
+        }
+        return new DynamicSslCertificateHttpRequestFactory(sslContextCache.getSocketFactory(null), sslContextCache.getHostnameVerifier(null));
+    }
+
     private String getGrantIdFromLocationHeader(ResponseEntity<Grant> responseEntity) throws GrantProviderException {
         URI location = responseEntity.getHeaders().getLocation();
         if (location == null) {
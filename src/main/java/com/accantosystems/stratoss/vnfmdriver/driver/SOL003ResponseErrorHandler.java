@@ -36,7 +36,7 @@ public abstract class SOL003ResponseErrorHandler extends DefaultResponseErrorHan
                     // Check mandatory fields to see if this is indeed a valid ETSI SOL003-compliant error response
                     if (problemDetails.getStatus() != null && problemDetails.getDetail() != null) {
                         throw new SOL003ResponseException(String.format("Received SOL003-compliant error when communicating with %s: %s", endpointDescription(), problemDetails.getDetail()), e,
-                                                          problemDetails);
+                                                          problemDetails, e.getResponseHeaders());
                     }
                 }
             }
@@ -46,8 +46,8 @@ public abstract class SOL003ResponseErrorHandler extends DefaultResponseErrorHan
             if (!StringUtils.isEmpty(responseBody)) {
                 detailsMessage += ": " + responseBody;
             }
-            throw new SOL003ResponseException(String.format("Caught REST client exception when communicating with %s", endpointDescription()),
-                                              new ProblemDetails(e.getRawStatusCode(), detailsMessage));
+            throw new SOL003ResponseException(String.format("Caught REST client exception when communicating with %s", endpointDescription()), null,
+                                              new ProblemDetails(e.getRawStatusCode(), detailsMessage), e.getResponseHeaders());
         } catch (Exception e) {
             throw new SOL003ResponseException(String.format("Caught general exception when communicating with %s", endpointDescription()), e);
         }
@@ -1,5 +1,6 @@
 package com.accantosystems.stratoss.vnfmdriver.driver;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.client.RestClientException;
 
 import org.etsi.sol003.common.ProblemDetails;
@@ -9,6 +10,7 @@ public class SOL003ResponseException extends RestClientException {
     public static final int DEFAULT_STATUS_VALUE = 0;
 
     private final ProblemDetails problemDetails;
+    private final HttpHeaders responseHeaders;
 
     public SOL003ResponseException(String msg) {
         this(msg, new ProblemDetails(DEFAULT_STATUS_VALUE, msg));
@@ -25,15 +27,28 @@ public class SOL003ResponseException extends RestClientException {
     public SOL003ResponseException(String msg, ProblemDetails problemDetails) {
         super(msg);
         this.problemDetails = problemDetails;
+        this.responseHeaders = null;
     }
 
     public SOL003ResponseException(String msg, Throwable ex, ProblemDetails problemDetails) {
+        this(msg, ex, problemDetails, null);
+    }
+
+    public SOL003ResponseException(String msg, Throwable ex, ProblemDetails problemDetails, HttpHeaders responseHeaders) {
         super(msg, ex);
         this.problemDetails = problemDetails;
+        this.responseHeaders = responseHeaders;
     }
 
     public ProblemDetails getProblemDetails() {
         return problemDetails;
     }
 
+    /**
+     * Headers of the error response received from the server (if any)
+     */
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
 }
@@ -1,12 +1,28 @@
 package com.accantosystems.stratoss.vnfmdriver.driver;
 
+import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.COMPLETED_OPERATIONAL_STATES;
 import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.VNFM_SERVER_URL;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.accantosystems.stratoss.common.utils.LoggingUtils;
 import com.accantosystems.stratoss.vnfmdriver.model.MessageDirection;
@@ -17,9 +33,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.security.AccessDeniedException;
 import com.accantosystems.stratoss.vnfmdriver.service.AuthenticatedRestTemplateService;
+import com.accantosystems.stratoss.vnfmdriver.utils.JdkClientHttpResponse;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * Driver implementing the ETSI SOL003 Lifecycle Management interface
@@ -74,12 +97,37 @@ public class VNFLifecycleManagementDriver {
     private final static String API_PREFIX_VNF_INSTANCES = "/vnf_instances";
     private final static String API_PREFIX_OP_OCCURRENCES = "/vnf_lcm_op_occs";
     private final static String API_PREFIX_SUBSCRIPTIONS = "/subscriptions";
+    // Operation types, as recorded in the retry metrics (operations on VNF instances use the name of the operation)
+    private final static String OPERATION_CREATE_VNF_INSTANCE = "create_vnf_instance";
+    private final static String OPERATION_DELETE_VNF_INSTANCE = "delete_vnf_instance";
+    private final static String OPERATION_CREATE_SUBSCRIPTION = "create_subscription";
+    private final static String OPERATION_DELETE_SUBSCRIPTION = "delete_subscription";
+    private final static String OPERATION_QUERY_LCM_OP_OCCS = "query_lcm_op_occs";
+    private final static String OPERATION_QUERY_LCM_OP_OCC = "query_lcm_op_occ";
+    // Guards against a VNFM which keeps returning a "next" link
+    private final static int MAX_PAGES = 1000;
+    private final static Pattern LINK_NEXT_PATTERN = Pattern.compile("<([^>]*)>\\s*;[^,]*rel=\"?next\"?", Pattern.CASE_INSENSITIVE);
 
     private final AuthenticatedRestTemplateService authenticatedRestTemplateService;
+    private final VNFMResponseErrorHandler vnfmResponseErrorHandler;
+    private final VNFMCircuitBreakerRegistry circuitBreakerRegistry;
+    private final VNFMRetryRegistry retryRegistry;
+    private final VNFMRateLimiterRegistry rateLimiterRegistry;
+    private final Duration readTimeout;
+    // The last seen version of each VnfLcmOpOcc still in progress, keyed by VNFM and VnfLcmOpOccId
+    private final Cache<String, CachedVnfLcmOpOcc> lcmOpOccCache;
 
     @Autowired
-    public VNFLifecycleManagementDriver(AuthenticatedRestTemplateService authenticatedRestTemplateService) {
+    public VNFLifecycleManagementDriver(AuthenticatedRestTemplateService authenticatedRestTemplateService, VNFMResponseErrorHandler vnfmResponseErrorHandler,
+                                        VNFMCircuitBreakerRegistry circuitBreakerRegistry, VNFMRetryRegistry retryRegistry, VNFMRateLimiterRegistry rateLimiterRegistry,
+                                        VNFMDriverProperties vnfmDriverProperties) {
         this.authenticatedRestTemplateService = authenticatedRestTemplateService;
+        this.vnfmResponseErrorHandler = vnfmResponseErrorHandler;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.retryRegistry = retryRegistry;
+        this.rateLimiterRegistry = rateLimiterRegistry;
+        this.readTimeout = vnfmDriverProperties.getRestReadTimeout();
+        this.lcmOpOccCache = CacheBuilder.newBuilder().maximumSize(vnfmDriverProperties.getLcmOpOccCacheSize()).build();
     }
 
     /**
@@ -104,7 +152,7 @@ public class VNFLifecycleManagementDriver {
         final HttpEntity<String> requestEntity = new HttpEntity<>(createVnfRequest, headers);
         UUID uuid = UUID.randomUUID();
         LoggingUtils.logEnabledMDC(createVnfRequest, MessageType.REQUEST,MessageDirection.SENT, uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getRequestProtocolMetaData(url) ,driverrequestid);
-        final ResponseEntity<String> responseEntity = authenticatedRestTemplateService.getRestTemplate(deploymentLocation).exchange(url, HttpMethod.POST, requestEntity, String.class);
+        final ResponseEntity<String> responseEntity = exchange(deploymentLocation, OPERATION_CREATE_VNF_INSTANCE, url, HttpMethod.POST, requestEntity, String.class, Collections.emptyMap());
         LoggingUtils.logEnabledMDC(responseEntity.getBody(), MessageType.RESPONSE,MessageDirection.RECEIVED,uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getProtocolMetaData(url,responseEntity),driverrequestid);
         // "Location" header also includes URI of the created instance
         checkResponseEntityMatches(responseEntity, HttpStatus.CREATED, true);
@@ -134,11 +182,81 @@ public class VNFLifecycleManagementDriver {
         uriVariables.put("vnfInstanceId", vnfInstanceId);
         UUID uuid = UUID.randomUUID();
         LoggingUtils.logEnabledMDC(null, MessageType.REQUEST,MessageDirection.SENT, uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getRequestProtocolMetaData(url) ,driverrequestid);
-        final ResponseEntity<Void> responseEntity = authenticatedRestTemplateService.getRestTemplate(deploymentLocation).exchange(url, HttpMethod.DELETE, requestEntity, Void.class, uriVariables);
+        final ResponseEntity<Void> responseEntity = exchange(deploymentLocation, OPERATION_DELETE_VNF_INSTANCE, url, HttpMethod.DELETE, requestEntity, Void.class, uriVariables);
         LoggingUtils.logEnabledMDC(null, MessageType.RESPONSE,MessageDirection.RECEIVED,uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getProtocolMetaData(url,responseEntity),driverrequestid);
         checkResponseEntityMatches(responseEntity, HttpStatus.NO_CONTENT, false);
     }
 
+    /**
+     * Creates a new VNF instance record in the VNFM, without blocking the calling thread
+     *
+     * @param deploymentLocation deployment location
+     * @param createVnfRequest   request information
+     * @return future completed with the newly created {@link VnfInstance} record, or completed exceptionally with a {@link SOL003ResponseException}
+     * if there are any errors creating the VNF instance
+     * @see #createVnfInstance(ResourceManagerDeploymentLocation, String, String)
+     */
+    public CompletableFuture<String> createVnfInstanceAsync(final ResourceManagerDeploymentLocation deploymentLocation, final String createVnfRequest, final String driverrequestid) {
+        final String url = deploymentLocation.getProperties().get(VNFM_SERVER_URL) + API_CONTEXT_ROOT + API_PREFIX_VNF_INSTANCES;
+        final UUID uuid = UUID.randomUUID();
+        LoggingUtils.logEnabledMDC(createVnfRequest, MessageType.REQUEST,MessageDirection.SENT, uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getRequestProtocolMetaData(url) ,driverrequestid);
+        return exchangeAsync(deploymentLocation, OPERATION_CREATE_VNF_INSTANCE, URI.create(url), HttpMethod.POST, createVnfRequest).thenApply(responseEntity -> {
+            LoggingUtils.logEnabledMDC(responseEntity.getBody(), MessageType.RESPONSE,MessageDirection.RECEIVED,uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getProtocolMetaData(url,responseEntity),driverrequestid);
+            checkResponseEntityMatches(responseEntity, HttpStatus.CREATED, true);
+            return responseEntity.getBody();
+        });
+    }
+
+    /**
+     * Deletes a VNF instance record from the VNFM, without blocking the calling thread
+     *
+     * @param deploymentLocation deployment location
+     * @param vnfInstanceId      Identifier of the {@link VnfInstance} record to delete
+     * @return future completed once the VNF instance has been deleted, or completed exceptionally with a {@link SOL003ResponseException} if there
+     * are any errors deleting the VNF instance
+     * @see #deleteVnfInstance(ResourceManagerDeploymentLocation, String, String)
+     */
+    public CompletableFuture<Void> deleteVnfInstanceAsync(final ResourceManagerDeploymentLocation deploymentLocation, final String vnfInstanceId, final String driverrequestid) {
+        final URI uri = UriComponentsBuilder.fromHttpUrl(deploymentLocation.getProperties().get(VNFM_SERVER_URL) + API_CONTEXT_ROOT + API_PREFIX_VNF_INSTANCES + "/{vnfInstanceId}")
+                                            .encode()
+                                            .buildAndExpand(vnfInstanceId)
+                                            .toUri();
+        final String url = uri.toString();
+        final UUID uuid = UUID.randomUUID();
+        LoggingUtils.logEnabledMDC(null, MessageType.REQUEST,MessageDirection.SENT, uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getRequestProtocolMetaData(url) ,driverrequestid);
+        return exchangeAsync(deploymentLocation, OPERATION_DELETE_VNF_INSTANCE, uri, HttpMethod.DELETE, null).thenAccept(responseEntity -> {
+            LoggingUtils.logEnabledMDC(null, MessageType.RESPONSE,MessageDirection.RECEIVED,uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getProtocolMetaData(url,responseEntity),driverrequestid);
+            checkResponseEntityMatches(responseEntity, HttpStatus.NO_CONTENT, false);
+        });
+    }
+
+    /**
+     * Submits an operation (e.g. instantiate, scale, terminate) to the VNFM for an existing VNF instance, without blocking the calling thread
+     *
+     * @param deploymentLocation deployment location
+     * @param vnfInstanceId      Identifier for the {@link VnfInstance} to perform the operation on
+     * @param operationName      name of the operation, as it appears in the path (e.g. scale_to_level)
+     * @param operationRequest   request information
+     * @return future completed with the newly created {@link VnfLcmOpOcc} record identifier, or completed exceptionally with a
+     * {@link SOL003ResponseException} if there are any errors creating the operation request
+     */
+    public CompletableFuture<String> callVnfLcmOperationAsync(final ResourceManagerDeploymentLocation deploymentLocation, final String vnfInstanceId, final String operationName,
+                                                              final String operationRequest) {
+        final URI uri = UriComponentsBuilder.fromHttpUrl(deploymentLocation.getProperties().get(VNFM_SERVER_URL) + API_CONTEXT_ROOT + API_PREFIX_VNF_INSTANCES
+                                                         + "/{vnfInstanceId}/{operationName}")
+                                            .encode()
+                                            .buildAndExpand(vnfInstanceId, operationName)
+                                            .toUri();
+        final String url = uri.toString();
+        final UUID uuid = UUID.randomUUID();
+        LoggingUtils.logEnabledMDC(operationRequest, MessageType.REQUEST,MessageDirection.SENT, uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getRequestProtocolMetaData(url) ,null);
+        return exchangeAsync(deploymentLocation, operationName, uri, HttpMethod.POST, operationRequest).thenApply(responseEntity -> {
+            final String requestId = getVnfLcmOpOccId(responseEntity);
+            LoggingUtils.logEnabledMDC(responseEntity.getBody(),MessageType.RESPONSE,MessageDirection.RECEIVED,uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getProtocolMetaData(url,responseEntity),requestId);
+            return requestId;
+        });
+    }
+
     /*
        - Precondition: <<Precondition>>
        - Send <<RequestStructure>> via HTTP POST to /vnf_instances/{vnfInstanceId}/<<Task>>
@@ -356,42 +474,90 @@ public class VNFLifecycleManagementDriver {
         final HttpEntity<String> requestEntity = new HttpEntity<>(operationRequest, headers);
         UUID uuid = UUID.randomUUID();
         LoggingUtils.logEnabledMDC(operationRequest, MessageType.REQUEST,MessageDirection.SENT, uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getRequestProtocolMetaData(url) ,null);
-        final ResponseEntity<String> responseEntity = authenticatedRestTemplateService.getRestTemplate(deploymentLocation).exchange(url, HttpMethod.POST, requestEntity, String.class);
-        checkResponseEntityMatches(responseEntity, HttpStatus.ACCEPTED, false);
-        // "Location" header contains URI of the created VnfLcmOpOcc record
-        final URI location = responseEntity.getHeaders().getLocation();
-        if (location == null) {
-            throw new SOL003ResponseException("No Location header found");
-        }
-        // Return the VnfLcmOpOccId, which is the last part of the path
-        final String requestId = location.getPath().substring(location.getPath().lastIndexOf("/") + 1);
+        final ResponseEntity<String> responseEntity = exchange(deploymentLocation, operationName, url, HttpMethod.POST, requestEntity, String.class, Collections.emptyMap());
+        final String requestId = getVnfLcmOpOccId(responseEntity);
         LoggingUtils.logEnabledMDC(responseEntity.getBody(),MessageType.RESPONSE,MessageDirection.RECEIVED,uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getProtocolMetaData(url,responseEntity),requestId);
         return requestId;
     }
 
+    /**
+     * Performs a query to retrieve all VNF lifecycle operation occurrence records
+     *
+     * @param deploymentLocation deployment location
+     * @return list of {@link VnfLcmOpOcc} records
+     * @throws SOL003ResponseException if there are any errors performing the query
+     * @see #queryAllLifecycleOperationOccurrences(ResourceManagerDeploymentLocation, String)
+     */
+    public List<VnfLcmOpOcc> queryAllLifecycleOperationOccurrences(final ResourceManagerDeploymentLocation deploymentLocation) throws SOL003ResponseException {
+        return queryAllLifecycleOperationOccurrences(deploymentLocation, null);
+    }
+
     /**
      * Performs a query to retrieve matching VNF lifecycle operation occurrence records
      *
      * <ul>
      *     <li>Sends HTTP GET request to /vnf_lcm_op_occs</li>
      *     <li>Gets 200 OK response with an array of {@link VnfLcmOpOcc} records as the response body</li>
+     *     <li>If the VNFM pages the results (as per SOL013), follows the "next" Link header until all pages have been retrieved</li>
      * </ul>
      * <p>
      * The following query parameters can be supplied to the request
      * <ul>
-     *     <li>(attribute-based filtering) - e.g. ?operationState=PROCESSING</li>
+     *     <li>(attribute-based filtering) - e.g. ?filter=(eq,operationState,PROCESSING)</li>
      *     <li>all_fields</li>
      *     <li>fields=&lt;comma-separated list&gt;</li>
      *     <li>exclude_fields=&lt;comma-separated list&gt;</li>
      *     <li>exclude_default</li>
+     *     <li>nextpage_opaque_marker</li>
      * </ul>
      *
      * @param deploymentLocation deployment location
+     * @param filter             SOL013 attribute-based filter expression (optional), e.g. (in,id,id1,id2)
      * @return list of matching {@link VnfLcmOpOcc} records
      * @throws SOL003ResponseException if there are any errors performing the query
      */
-    public List<VnfLcmOpOcc> queryAllLifecycleOperationOccurrences(final ResourceManagerDeploymentLocation deploymentLocation) throws SOL003ResponseException {
-        throw new UnsupportedOperationException("Not implemented yet");
+    public List<VnfLcmOpOcc> queryAllLifecycleOperationOccurrences(final ResourceManagerDeploymentLocation deploymentLocation, final String filter) throws SOL003ResponseException {
+        final UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(deploymentLocation.getProperties().get(VNFM_SERVER_URL) + API_CONTEXT_ROOT + API_PREFIX_OP_OCCURRENCES);
+        if (filter != null) {
+            uriBuilder.queryParam("filter", "{filter}");
+        }
+        URI uri = uriBuilder.encode().buildAndExpand(filter != null ? Collections.singletonMap("filter", filter) : Collections.emptyMap()).toUri();
+        final HttpHeaders headers = getHttpHeaders(deploymentLocation);
+        final HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
+
+        final List<VnfLcmOpOcc> vnfLcmOpOccs = new ArrayList<>();
+        int pageCount = 0;
+        while (uri != null) {
+            if (++pageCount > MAX_PAGES) {
+                throw new SOL003ResponseException(String.format("Too many pages (more than %s) of results received", MAX_PAGES));
+            }
+            final String url = uri.toString();
+            UUID uuid = UUID.randomUUID();
+            LoggingUtils.logEnabledMDC(null, MessageType.REQUEST, MessageDirection.SENT, uuid.toString(), MediaType.APPLICATION_JSON.toString(), "https", getRequestProtocolMetaData(url), uuid.toString());
+            final ResponseEntity<VnfLcmOpOcc[]> responseEntity = exchange(deploymentLocation, OPERATION_QUERY_LCM_OP_OCCS, uri, HttpMethod.GET, requestEntity, VnfLcmOpOcc[].class);
+            checkResponseEntityMatches(responseEntity, HttpStatus.OK, true);
+            LoggingUtils.logEnabledMDC(Arrays.toString(responseEntity.getBody()), MessageType.RESPONSE, MessageDirection.RECEIVED, uuid.toString(), MediaType.APPLICATION_JSON.toString(), "https",
+                                       getProtocolMetaData(url, responseEntity), uuid.toString());
+            vnfLcmOpOccs.addAll(Arrays.asList(responseEntity.getBody()));
+            uri = getNextPage(uri, responseEntity.getHeaders());
+        }
+        return vnfLcmOpOccs;
+    }
+
+    /**
+     * Retrieves the VNF lifecycle operation occurrence records with the given identifiers, using a single query (unless the results are paged)
+     *
+     * @param deploymentLocation deployment location
+     * @param vnfLcmOpOccIds     identifiers of the {@link VnfLcmOpOcc} records
+     * @return matching {@link VnfLcmOpOcc} records (any which are not found are omitted)
+     * @throws SOL003ResponseException if there are any errors performing the query
+     */
+    public List<VnfLcmOpOcc> queryLifecycleOperationOccurrences(final ResourceManagerDeploymentLocation deploymentLocation, final Collection<String> vnfLcmOpOccIds)
+            throws SOL003ResponseException {
+        if (vnfLcmOpOccIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return queryAllLifecycleOperationOccurrences(deploymentLocation, getInFilter("id", vnfLcmOpOccIds));
     }
 
     /**
@@ -400,7 +566,11 @@ public class VNFLifecycleManagementDriver {
      * <ul>
      *     <li>Sends HTTP GET request to /vnf_lcm_op_occs/{vnfLcmOpOccId}</li>
      *     <li>Gets 200 OK response with a {@link VnfLcmOpOcc} record as the response body</li>
+     *     <li>If the record has been retrieved before (and the VNFM returned an ETag), sends its ETag in an If-None-Match header, and returns the
+     *     previously retrieved record if a 304 Not Modified response is received</li>
      * </ul>
+     * <p>
+     * The returned record may be shared with other callers, so must be treated as read-only.
      *
      * @param deploymentLocation deployment location
      * @param vnfLcmOpOccId      Identifier for the {@link VnfLcmOpOcc} record
@@ -408,7 +578,40 @@ public class VNFLifecycleManagementDriver {
      * @throws SOL003ResponseException if there are any errors performing the query
      */
     public VnfLcmOpOcc queryLifecycleOperationOccurrence(final ResourceManagerDeploymentLocation deploymentLocation, final String vnfLcmOpOccId) throws SOL003ResponseException {
-        throw new UnsupportedOperationException("Not implemented yet");
+        final String url = deploymentLocation.getProperties().get(VNFM_SERVER_URL) + API_CONTEXT_ROOT + API_PREFIX_OP_OCCURRENCES + "/{vnfLcmOpOccId}";
+        final String cacheKey = deploymentLocation.getProperties().get(VNFM_SERVER_URL) + API_PREFIX_OP_OCCURRENCES + "/" + vnfLcmOpOccId;
+        final CachedVnfLcmOpOcc cached = lcmOpOccCache.getIfPresent(cacheKey);
+        final HttpHeaders headers = getHttpHeaders(deploymentLocation);
+        if (cached != null) {
+            headers.setIfNoneMatch(cached.eTag);
+        }
+        final HttpEntity<Void> requestEntity = new HttpEntity<>(headers);
+        final Map<String, String> uriVariables = new HashMap<>();
+        uriVariables.put("vnfLcmOpOccId", vnfLcmOpOccId);
+        UUID uuid = UUID.randomUUID();
+        LoggingUtils.logEnabledMDC(null, MessageType.REQUEST, MessageDirection.SENT, uuid.toString(), MediaType.APPLICATION_JSON.toString(), "https", getRequestProtocolMetaData(url), uuid.toString());
+        // The body of a 304 Not Modified response is never read, so there's nothing to deserialize
+        final ResponseEntity<VnfLcmOpOcc> responseEntity = exchange(deploymentLocation, OPERATION_QUERY_LCM_OP_OCC, url, HttpMethod.GET, requestEntity, VnfLcmOpOcc.class, uriVariables);
+        if (responseEntity.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            LoggingUtils.logEnabledMDC(null, MessageType.RESPONSE, MessageDirection.RECEIVED, uuid.toString(), MediaType.APPLICATION_JSON.toString(), "https", getProtocolMetaData(url, responseEntity),
+                                       uuid.toString());
+            if (cached == null) {
+                throw new SOL003ResponseException(String.format("Invalid status code [%s] received for an unconditional request", responseEntity.getStatusCode()));
+            }
+            return cached.vnfLcmOpOcc;
+        }
+        checkResponseEntityMatches(responseEntity, HttpStatus.OK, true);
+        final VnfLcmOpOcc vnfLcmOpOcc = responseEntity.getBody();
+        LoggingUtils.logEnabledMDC(vnfLcmOpOcc.toString(), MessageType.RESPONSE, MessageDirection.RECEIVED, uuid.toString(), MediaType.APPLICATION_JSON.toString(), "https",
+                                   getProtocolMetaData(url, responseEntity), uuid.toString());
+        // Operations which have finished won't be asked about again
+        final String eTag = responseEntity.getHeaders().getETag();
+        if (eTag != null && !COMPLETED_OPERATIONAL_STATES.contains(vnfLcmOpOcc.getOperationState())) {
+            lcmOpOccCache.put(cacheKey, new CachedVnfLcmOpOcc(eTag, vnfLcmOpOcc));
+        } else {
+            lcmOpOccCache.invalidate(cacheKey);
+        }
+        return vnfLcmOpOcc;
     }
 
     /**
@@ -432,8 +635,7 @@ public class VNFLifecycleManagementDriver {
         final HttpEntity<LccnSubscriptionRequest> requestEntity = new HttpEntity<>(lccnSubscriptionRequest, headers);
         UUID uuid = UUID.randomUUID();
         LoggingUtils.logEnabledMDC(lccnSubscriptionRequest.toString(),MessageType.REQUEST, MessageDirection.SENT, uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getRequestProtocolMetaData(url) ,uuid.toString());
-        final ResponseEntity<LccnSubscription> responseEntity = authenticatedRestTemplateService.getRestTemplate(deploymentLocation)
-                .exchange(url, HttpMethod.POST, requestEntity, LccnSubscription.class);
+        final ResponseEntity<LccnSubscription> responseEntity = exchange(deploymentLocation, OPERATION_CREATE_SUBSCRIPTION, url, HttpMethod.POST, requestEntity, LccnSubscription.class, Collections.emptyMap());
         LoggingUtils.logEnabledMDC(responseEntity.getBody().toString(),MessageType.RESPONSE, MessageDirection.RECEIVED,uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getProtocolMetaData(url,responseEntity),uuid.toString());
         // "Location" header also includes URI of the created instance
         checkResponseEntityMatches(responseEntity, HttpStatus.CREATED, true);
@@ -493,7 +695,7 @@ public class VNFLifecycleManagementDriver {
         uriVariables.put("subscriptionId", subscriptionId);
         UUID uuid = UUID.randomUUID();
         LoggingUtils.logEnabledMDC(null, MessageType.REQUEST,MessageDirection.SENT, uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getRequestProtocolMetaData(url) ,uuid.toString());
-        final ResponseEntity<Void> responseEntity = authenticatedRestTemplateService.getRestTemplate(deploymentLocation).exchange(url, HttpMethod.DELETE, requestEntity, Void.class, uriVariables);
+        final ResponseEntity<Void> responseEntity = exchange(deploymentLocation, OPERATION_DELETE_SUBSCRIPTION, url, HttpMethod.DELETE, requestEntity, Void.class, uriVariables);
         LoggingUtils.logEnabledMDC(null, MessageType.RESPONSE,MessageDirection.RECEIVED,uuid.toString(),MediaType.APPLICATION_JSON.toString(), "https",getProtocolMetaData(url,responseEntity),uuid.toString());
         checkResponseEntityMatches(responseEntity, HttpStatus.NO_CONTENT, false);
     }
@@ -504,6 +706,151 @@ public class VNFLifecycleManagementDriver {
      * @param deploymentLocation deployment location
      * @return HTTP headers containing appropriate authentication parameters
      */
+    private String getVnfLcmOpOccId(final ResponseEntity<String> responseEntity) {
+        checkResponseEntityMatches(responseEntity, HttpStatus.ACCEPTED, false);
+        // "Location" header contains URI of the created VnfLcmOpOcc record
+        final URI location = responseEntity.getHeaders().getLocation();
+        if (location == null) {
+            throw new SOL003ResponseException("No Location header found");
+        }
+        // Return the VnfLcmOpOccId, which is the last part of the path
+        return location.getPath().substring(location.getPath().lastIndexOf("/") + 1);
+    }
+
+    /**
+     * Builds a SOL013 filter expression matching any of the given values of an attribute, e.g. (in,id,id1,id2)
+     */
+    static String getInFilter(final String attribute, final Collection<String> values) {
+        final StringBuilder filter = new StringBuilder("(in,").append(attribute);
+        for (final String value : values) {
+            filter.append(',');
+            // Values containing reserved characters are enclosed in single quotes, with any single quotes doubled
+            if (value.matches(".*[,()'~].*")) {
+                filter.append('\'').append(value.replace("'", "''")).append('\'');
+            } else {
+                filter.append(value);
+            }
+        }
+        return filter.append(')').toString();
+    }
+
+    /**
+     * Returns the URI of the next page of results (from the SOL013 "next" Link header), or null if this is the last page
+     */
+    private URI getNextPage(final URI currentPage, final HttpHeaders headers) {
+        final List<String> links = headers.get(HttpHeaders.LINK);
+        if (links == null) {
+            return null;
+        }
+        for (final String link : links) {
+            final Matcher matcher = LINK_NEXT_PATTERN.matcher(link);
+            if (matcher.find()) {
+                return currentPage.resolve(matcher.group(1).trim());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends a request to the VNFM, retrying transient errors, with each attempt passing through the rate limiter, circuit breaker and bulkhead for
+     * the VNFM
+     */
+    private <T> ResponseEntity<T> exchange(final ResourceManagerDeploymentLocation deploymentLocation, final String operation, final String url, final HttpMethod method,
+                                           final HttpEntity<?> requestEntity, final Class<T> responseType, final Map<String, ?> uriVariables) {
+        return exchange(deploymentLocation, operation, method,
+                        () -> authenticatedRestTemplateService.getRestTemplate(deploymentLocation).exchange(url, method, requestEntity, responseType, uriVariables));
+    }
+
+    /**
+     * Sends a request to an (already encoded) URI on the VNFM
+     */
+    private <T> ResponseEntity<T> exchange(final ResourceManagerDeploymentLocation deploymentLocation, final String operation, final URI uri, final HttpMethod method,
+                                           final HttpEntity<?> requestEntity, final Class<T> responseType) {
+        return exchange(deploymentLocation, operation, method,
+                        () -> authenticatedRestTemplateService.getRestTemplate(deploymentLocation).exchange(uri, method, requestEntity, responseType));
+    }
+
+    private <T> ResponseEntity<T> exchange(final ResourceManagerDeploymentLocation deploymentLocation, final String operation, final HttpMethod method,
+                                           final Supplier<ResponseEntity<T>> call) {
+        final String vnfmServerUrl = String.valueOf(deploymentLocation.getProperties().get(VNFM_SERVER_URL));
+        return retryRegistry.execute(vnfmServerUrl, operation, method,
+                                     () -> rateLimiterRegistry.execute(deploymentLocation, () -> circuitBreakerRegistry.execute(vnfmServerUrl, call)));
+    }
+
+    private CompletableFuture<ResponseEntity<String>> exchangeAsync(final ResourceManagerDeploymentLocation deploymentLocation, final String operation, final URI uri,
+                                                                    final HttpMethod method, final String body) {
+        final String vnfmServerUrl = String.valueOf(deploymentLocation.getProperties().get(VNFM_SERVER_URL));
+        return retryRegistry.executeAsync(vnfmServerUrl, operation, method,
+                                          () -> rateLimiterRegistry.executeAsync(deploymentLocation,
+                                                                                 () -> circuitBreakerRegistry.executeAsync(vnfmServerUrl,
+                                                                                                                           () -> sendAsync(deploymentLocation, uri, method, body))));
+    }
+
+    private CompletableFuture<ResponseEntity<String>> sendAsync(final ResourceManagerDeploymentLocation deploymentLocation, final URI uri, final HttpMethod method,
+                                                                final String body) {
+        final HttpHeaders authenticationHeaders;
+        try {
+            authenticationHeaders = authenticatedRestTemplateService.getAuthenticationHeaders(deploymentLocation);
+        } catch (AccessDeniedException e) {
+            return CompletableFuture.failedFuture(new ResourceAccessException(String.format("I/O error on %s request for \"%s\": %s", method, uri, e.getMessage()), e));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return send(deploymentLocation, uri, method, body, authenticationHeaders).thenCompose(response -> {
+            if (response.statusCode() != HttpStatus.UNAUTHORIZED.value()) {
+                return CompletableFuture.completedFuture(response);
+            }
+            // As with the RestTemplate, the session may have been ended (or the access token revoked) by the VNFM, so authenticate again (unless a
+            // concurrent request already has) and retry once
+            final HttpHeaders renewedAuthenticationHeaders;
+            try {
+                renewedAuthenticationHeaders = authenticatedRestTemplateService.renewAuthenticationHeaders(deploymentLocation, authenticationHeaders);
+            } catch (AccessDeniedException e) {
+                throw new ResourceAccessException(e.getMessage(), e);
+            }
+            return renewedAuthenticationHeaders != null ? send(deploymentLocation, uri, method, body, renewedAuthenticationHeaders) : CompletableFuture.completedFuture(response);
+        }).thenApply(this::toResponseEntity);
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(final ResourceManagerDeploymentLocation deploymentLocation, final URI uri, final HttpMethod method,
+                                                         final String body, final HttpHeaders authenticationHeaders) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                                                       .method(method.name(), body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody());
+        if (!readTimeout.isZero()) {
+            builder.timeout(readTimeout);
+        }
+        final HttpHeaders headers = getHttpHeaders(deploymentLocation);
+        headers.addAll(authenticationHeaders);
+        headers.forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+
+        return authenticatedRestTemplateService.getHttpClient(deploymentLocation)
+                                               .sendAsync(builder.build(), HttpResponse.BodyHandlers.ofByteArray())
+                                               .handle((response, throwable) -> {
+                                                   if (throwable != null) {
+                                                       final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                                                       // Consistent with the exception thrown by a RestTemplate
+                                                       throw new ResourceAccessException(String.format("I/O error on %s request for \"%s\": %s", method, uri, cause.getMessage()),
+                                                                                         cause instanceof IOException ? (IOException) cause : new IOException(cause));
+                                                   }
+                                                   return response;
+                                               });
+    }
+
+    private ResponseEntity<String> toResponseEntity(final HttpResponse<byte[]> response) {
+        final JdkClientHttpResponse clientHttpResponse = new JdkClientHttpResponse(response, new ByteArrayInputStream(response.body()));
+        try {
+            if (vnfmResponseErrorHandler.hasError(clientHttpResponse)) {
+                vnfmResponseErrorHandler.handleError(clientHttpResponse);
+            }
+        } catch (IOException e) {
+            throw new SOL003ResponseException("Caught general exception when communicating with VNFM", e);
+        }
+        // As with a RestTemplate, an empty response body is treated as no body
+        final String body = response.body().length > 0 ? new String(response.body(), StandardCharsets.UTF_8) : null;
+        return new ResponseEntity<>(body, clientHttpResponse.getHeaders(), clientHttpResponse.getRawStatusCode());
+    }
+
     private HttpHeaders getHttpHeaders(ResourceManagerDeploymentLocation deploymentLocation) {
         final HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -552,4 +899,17 @@ public class VNFLifecycleManagementDriver {
         return protocolMetadata;
     }
 
+    /**
+     * A {@link VnfLcmOpOcc} record, along with the ETag it was returned with
+     */
+    private static class CachedVnfLcmOpOcc {
+        private final String eTag;
+        private final VnfLcmOpOcc vnfLcmOpOcc;
+
+        private CachedVnfLcmOpOcc(String eTag, VnfLcmOpOcc vnfLcmOpOcc) {
+            this.eTag = eTag;
+            this.vnfLcmOpOcc = vnfLcmOpOcc;
+        }
+    }
+
 }
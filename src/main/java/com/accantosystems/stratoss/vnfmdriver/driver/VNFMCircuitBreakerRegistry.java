@@ -0,0 +1,320 @@
+package com.accantosystems.stratoss.vnfmdriver.driver;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps a circuit breaker and bulkhead for each VNFM (by vnfmServerUrl), so that a VNFM which is failing (or slow to respond) doesn't hold up
+ * the threads handling requests for every other VNFM.
+ * <p>
+ * The circuit breaker opens once the failure rate of the most recent calls to the VNFM reaches the configured threshold, after which calls fail
+ * immediately with a {@link VNFMUnavailableException} until the wait duration has passed. A limited number of trial calls are then let through,
+ * closing the circuit breaker again if they all succeed. Only failures indicating the VNFM is unavailable (I/O errors, including timeouts, and 502,
+ * 503 or 504 responses) are counted; error responses from a VNFM which is otherwise responding are not.
+ * <p>
+ * The bulkhead limits the number of concurrent calls to the VNFM, rejecting calls which cannot start within the configured maximum wait. Calls only
+ * wait for the bulkhead once the circuit breaker has let them through.
+ */
+@Component
+public class VNFMCircuitBreakerRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(VNFMCircuitBreakerRegistry.class);
+    public static final String STATE_METRIC_NAME = "vnfmdriver.vnfm.circuitbreaker.state";
+    public static final String CALLS_METRIC_NAME = "vnfmdriver.vnfm.circuitbreaker.calls";
+    public static final String BULKHEAD_METRIC_NAME = "vnfmdriver.vnfm.bulkhead.available";
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_FAILURE = "failure";
+    static final String OUTCOME_CIRCUIT_OPEN = "circuit_open";
+    static final String OUTCOME_BULKHEAD_FULL = "bulkhead_full";
+    private static final EnumSet<HttpStatus> UNAVAILABLE_STATUSES = EnumSet.of(HttpStatus.BAD_GATEWAY, HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.GATEWAY_TIMEOUT);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final VNFMDriverProperties.CircuitBreaker circuitBreakerProperties;
+    private final VNFMDriverProperties.Bulkhead bulkheadProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, VNFMCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    public VNFMCircuitBreakerRegistry(VNFMDriverProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.circuitBreakerProperties = properties.getVnfmCircuitBreaker();
+        this.bulkheadProperties = properties.getVnfmBulkhead();
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    /**
+     * Makes a call to the VNFM, through its circuit breaker and bulkhead
+     *
+     * @param vnfmServerUrl URL of the VNFM being called
+     * @param call          the call to make
+     * @return result of the call
+     * @throws VNFMUnavailableException if the call could not be made because the circuit breaker is open or the bulkhead is full
+     */
+    public <T> T execute(final String vnfmServerUrl, final Supplier<T> call) {
+        final VNFMCircuitBreaker circuitBreaker = getCircuitBreaker(vnfmServerUrl);
+        // The circuit breaker is checked first, so calls fail straight away while it's open rather than waiting for the bulkhead
+        acquirePermits(circuitBreaker, bulkheadProperties.getMaxWaitDuration().toNanos());
+        try {
+            final T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                circuitBreaker.onResult(e);
+                throw e;
+            }
+            circuitBreaker.onResult(null);
+            return result;
+        } finally {
+            circuitBreaker.releaseBulkheadPermit();
+        }
+    }
+
+    /**
+     * Makes a non-blocking call to the VNFM, through its circuit breaker and bulkhead. The calling thread never waits for the bulkhead.
+     *
+     * @param vnfmServerUrl URL of the VNFM being called
+     * @param call          the call to make
+     * @return future completed with the result of the call, or completed exceptionally with a {@link VNFMUnavailableException} if the call could
+     * not be made because the circuit breaker is open or the bulkhead is full
+     */
+    public <T> CompletableFuture<T> executeAsync(final String vnfmServerUrl, final Supplier<CompletableFuture<T>> call) {
+        final VNFMCircuitBreaker circuitBreaker = getCircuitBreaker(vnfmServerUrl);
+        final CompletableFuture<T> future;
+        try {
+            acquirePermits(circuitBreaker, 0);
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                circuitBreaker.releaseBulkheadPermit();
+                throw e;
+            }
+        } catch (VNFMUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (RuntimeException e) {
+            circuitBreaker.onResult(e);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, throwable) -> {
+            circuitBreaker.onResult(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+            circuitBreaker.releaseBulkheadPermit();
+        });
+    }
+
+    private void acquirePermits(final VNFMCircuitBreaker circuitBreaker, final long maxBulkheadWaitNanos) {
+        final long trialCallPermit = circuitBreaker.acquirePermission();
+        try {
+            circuitBreaker.acquireBulkheadPermit(maxBulkheadWaitNanos);
+        } catch (VNFMUnavailableException e) {
+            // The call is never made, so any trial call it was permitted is handed back for another call to make
+            circuitBreaker.releasePermission(trialCallPermit);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the current state of the circuit breaker for a VNFM
+     */
+    public State getState(final String vnfmServerUrl) {
+        return getCircuitBreaker(vnfmServerUrl).state;
+    }
+
+    private VNFMCircuitBreaker getCircuitBreaker(final String vnfmServerUrl) {
+        return circuitBreakers.computeIfAbsent(vnfmServerUrl, VNFMCircuitBreaker::new);
+    }
+
+    /**
+     * Whether an exception shows that the VNFM is unavailable (rather than it having responded with an error)
+     */
+    static boolean isFailure(final Throwable throwable) {
+        if (throwable instanceof ResourceAccessException) {
+            return true;
+        }
+        if (throwable instanceof SOL003ResponseException && !(throwable instanceof VNFMUnavailableException)) {
+            final Integer status = ((SOL003ResponseException) throwable).getProblemDetails().getStatus();
+            return status != null && UNAVAILABLE_STATUSES.contains(HttpStatus.resolve(status));
+        }
+        return false;
+    }
+
+    /**
+     * The circuit breaker and bulkhead for a single VNFM
+     */
+    private class VNFMCircuitBreaker {
+        private final String vnfmServerUrl;
+        private final Semaphore bulkhead;
+        // Outcomes of the most recent calls (true if failed), only accessed while synchronized
+        private final boolean[] outcomes;
+        private int nextOutcome;
+        private int recordedCalls;
+        private int failedCalls;
+        private long openedAt;
+        private int halfOpenPermits;
+        private int halfOpenSuccesses;
+        // Incremented on every state change, so that trial call permits are only handed back to the half-open state they were taken from
+        private long stateVersion;
+        private volatile State state = State.CLOSED;
+
+        private VNFMCircuitBreaker(String vnfmServerUrl) {
+            this.vnfmServerUrl = vnfmServerUrl;
+            this.bulkhead = new Semaphore(bulkheadProperties.getMaxConcurrentCalls());
+            this.outcomes = new boolean[Math.max(1, circuitBreakerProperties.getSlidingWindowSize())];
+            if (meterRegistry != null) {
+                for (State meterState : State.values()) {
+                    Gauge.builder(STATE_METRIC_NAME, this, circuitBreaker -> circuitBreaker.state == meterState ? 1 : 0)
+                         .tag("vnfm", vnfmServerUrl)
+                         .tag("state", meterState.name().toLowerCase())
+                         .register(meterRegistry);
+                }
+                Gauge.builder(BULKHEAD_METRIC_NAME, bulkhead, Semaphore::availablePermits).tag("vnfm", vnfmServerUrl).register(meterRegistry);
+            }
+        }
+
+        private void acquireBulkheadPermit(long maxWaitNanos) {
+            if (!bulkheadProperties.isEnabled()) {
+                return;
+            }
+            boolean acquired;
+            try {
+                acquired = maxWaitNanos > 0 ? bulkhead.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS) : bulkhead.tryAcquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                recordCall(OUTCOME_BULKHEAD_FULL);
+                throw new VNFMUnavailableException(String.format("Maximum number of concurrent requests [%s] to VNFM [%s] reached", bulkheadProperties.getMaxConcurrentCalls(),
+                                                                 vnfmServerUrl));
+            }
+        }
+
+        private void releaseBulkheadPermit() {
+            if (bulkheadProperties.isEnabled()) {
+                bulkhead.release();
+            }
+        }
+
+        /**
+         * @return the state version, if a trial call was permitted in the half-open state, otherwise -1
+         */
+        private long acquirePermission() {
+            if (!circuitBreakerProperties.isEnabled()) {
+                return -1;
+            }
+            final Long trialCallPermit = tryAcquirePermission();
+            if (trialCallPermit == null) {
+                recordCall(OUTCOME_CIRCUIT_OPEN);
+                throw new VNFMUnavailableException(String.format("Circuit breaker for VNFM [%s] is open, not sending requests to it until it recovers", vnfmServerUrl));
+            }
+            return trialCallPermit;
+        }
+
+        private synchronized Long tryAcquirePermission() {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < circuitBreakerProperties.getWaitDurationInOpenState().toNanos()) {
+                    return null;
+                }
+                transitionTo(State.HALF_OPEN);
+                halfOpenPermits = circuitBreakerProperties.getPermittedCallsInHalfOpenState();
+                halfOpenSuccesses = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits <= 0) {
+                    return null;
+                }
+                halfOpenPermits--;
+                return stateVersion;
+            }
+            return -1L;
+        }
+
+        private synchronized void releasePermission(long trialCallPermit) {
+            if (trialCallPermit >= 0 && trialCallPermit == stateVersion && state == State.HALF_OPEN) {
+                halfOpenPermits++;
+            }
+        }
+
+        private void onResult(Throwable throwable) {
+            final boolean failed = isFailure(throwable);
+            recordCall(failed ? OUTCOME_FAILURE : OUTCOME_SUCCESS);
+            if (circuitBreakerProperties.isEnabled()) {
+                recordOutcome(failed);
+            }
+        }
+
+        private synchronized void recordOutcome(boolean failed) {
+            switch (state) {
+                case HALF_OPEN:
+                    if (failed) {
+                        open();
+                    } else if (++halfOpenSuccesses >= circuitBreakerProperties.getPermittedCallsInHalfOpenState()) {
+                        transitionTo(State.CLOSED);
+                    }
+                    break;
+                case CLOSED:
+                    if (recordedCalls == outcomes.length) {
+                        // Replace the oldest outcome in the window
+                        if (outcomes[nextOutcome]) {
+                            failedCalls--;
+                        }
+                    } else {
+                        recordedCalls++;
+                    }
+                    outcomes[nextOutcome] = failed;
+                    nextOutcome = (nextOutcome + 1) % outcomes.length;
+                    if (failed) {
+                        failedCalls++;
+                    }
+                    final int minimumNumberOfCalls = Math.min(Math.max(1, circuitBreakerProperties.getMinimumNumberOfCalls()), outcomes.length);
+                    if (recordedCalls >= minimumNumberOfCalls && failedCalls * 100 >= circuitBreakerProperties.getFailureRateThreshold() * recordedCalls) {
+                        open();
+                    }
+                    break;
+                default:
+                    // Calls permitted before the circuit breaker opened are ignored
+                    break;
+            }
+        }
+
+        private void open() {
+            openedAt = System.nanoTime();
+            transitionTo(State.OPEN);
+        }
+
+        private void transitionTo(State newState) {
+            logger.info("Circuit breaker for VNFM [{}] changed from {} to {}", vnfmServerUrl, state, newState);
+            state = newState;
+            stateVersion++;
+            // The window is restarted whenever the state changes
+            recordedCalls = 0;
+            failedCalls = 0;
+            nextOutcome = 0;
+        }
+
+        private void recordCall(String outcome) {
+            if (meterRegistry != null) {
+                Counter.builder(CALLS_METRIC_NAME).tag("vnfm", vnfmServerUrl).tag("outcome", outcome).register(meterRegistry).increment();
+            }
+        }
+    }
+
+}
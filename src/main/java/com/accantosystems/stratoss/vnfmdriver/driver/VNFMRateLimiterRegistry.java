@@ -0,0 +1,283 @@
+package com.accantosystems.stratoss.vnfmdriver.driver;
+
+import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Keeps a token bucket rate limiter for each VNFM (by vnfmServerUrl), so that bursts of requests (e.g. mass upgrades) don't exceed the request
+ * quota of a VNFM.
+ * <p>
+ * Requests beyond the rate are queued, waiting for as long as it takes for a token to become available, unless that would be longer than the
+ * maximum wait or the queue is already full, in which case they are rejected with a {@link VNFMUnavailableException} straight away. The rate is
+ * taken from the properties of the deployment location (if present), otherwise the driver-wide defaults.
+ */
+@Component
+public class VNFMRateLimiterRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(VNFMRateLimiterRegistry.class);
+    public static final String QUEUE_METRIC_NAME = "vnfmdriver.vnfm.ratelimiter.queue";
+    public static final String WAIT_METRIC_NAME = "vnfmdriver.vnfm.ratelimiter.wait";
+    public static final String REJECTED_METRIC_NAME = "vnfmdriver.vnfm.ratelimiter.rejected";
+
+    private final VNFMDriverProperties.RateLimiter rateLimiterProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    public VNFMRateLimiterRegistry(VNFMDriverProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.rateLimiterProperties = properties.getVnfmRateLimiter();
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    /**
+     * Makes a call to the VNFM once allowed by its rate limiter, waiting if necessary
+     *
+     * @param deploymentLocation deployment location of the VNFM being called
+     * @param call               the call to make
+     * @return result of the call
+     * @throws VNFMUnavailableException if the call was rejected by the rate limiter
+     */
+    public <T> T execute(final ResourceManagerDeploymentLocation deploymentLocation, final Supplier<T> call) {
+        final RateLimiter rateLimiter = getRateLimiter(deploymentLocation);
+        if (rateLimiter == null) {
+            return call.get();
+        }
+        final long waitNanos = rateLimiter.reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new VNFMUnavailableException(String.format("Interrupted waiting to send request to VNFM [%s]", rateLimiter.vnfmServerUrl));
+            } finally {
+                rateLimiter.dequeue(waitNanos);
+            }
+        }
+        return call.get();
+    }
+
+    /**
+     * Makes a non-blocking call to the VNFM once allowed by its rate limiter. The calling thread never waits for the rate limiter.
+     *
+     * @param deploymentLocation deployment location of the VNFM being called
+     * @param call               the call to make
+     * @return future completed with the result of the call, or completed exceptionally with a {@link VNFMUnavailableException} if the call was
+     * rejected by the rate limiter
+     */
+    public <T> CompletableFuture<T> executeAsync(final ResourceManagerDeploymentLocation deploymentLocation, final Supplier<CompletableFuture<T>> call) {
+        final RateLimiter rateLimiter;
+        final long waitNanos;
+        try {
+            rateLimiter = getRateLimiter(deploymentLocation);
+            waitNanos = rateLimiter != null ? rateLimiter.reserve() : 0;
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (waitNanos <= 0) {
+            return call.get();
+        }
+        final CompletableFuture<Void> delay = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            rateLimiter.dequeue(waitNanos);
+            delay.complete(null);
+        });
+        return delay.thenCompose(v -> call.get());
+    }
+
+    private RateLimiter getRateLimiter(final ResourceManagerDeploymentLocation deploymentLocation) {
+        final Map<String, Object> properties = deploymentLocation.getProperties();
+        final double requestsPerSecond = getDoubleProperty(properties, RATE_LIMIT_REQUESTS_PER_SECOND, rateLimiterProperties.getRequestsPerSecond());
+        if (requestsPerSecond <= 0) {
+            return null;
+        }
+        final int burst = getIntProperty(properties, RATE_LIMIT_BURST, rateLimiterProperties.getBurst());
+        final Settings settings = new Settings(requestsPerSecond, burst > 0 ? burst : Math.max(1, (int) Math.ceil(requestsPerSecond)),
+                                               getIntProperty(properties, RATE_LIMIT_MAX_QUEUE_SIZE, rateLimiterProperties.getMaxQueueSize()),
+                                               getDurationProperty(properties, RATE_LIMIT_MAX_WAIT_DURATION, rateLimiterProperties.getMaxWaitDuration()));
+        final RateLimiter rateLimiter = rateLimiters.computeIfAbsent(String.valueOf(properties.get(VNFM_SERVER_URL)), vnfmServerUrl -> new RateLimiter(vnfmServerUrl, settings));
+        // The latest settings are used if the deployment location has changed (or there are several deployment locations for the same VNFM)
+        rateLimiter.configure(settings);
+        return rateLimiter;
+    }
+
+    private static double getDoubleProperty(final Map<String, Object> properties, final String propertyName, final double defaultValue) {
+        final Object value = properties.get(propertyName);
+        if (value == null || String.valueOf(value).isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value [%s] specified for [%s], expected a number", value, propertyName));
+        }
+    }
+
+    private static int getIntProperty(final Map<String, Object> properties, final String propertyName, final int defaultValue) {
+        final Object value = properties.get(propertyName);
+        if (value == null || String.valueOf(value).isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value [%s] specified for [%s], expected an integer", value, propertyName));
+        }
+    }
+
+    private static Duration getDurationProperty(final Map<String, Object> properties, final String propertyName, final Duration defaultValue) {
+        final Object value = properties.get(propertyName);
+        if (value == null || String.valueOf(value).isBlank()) {
+            return defaultValue;
+        }
+        try {
+            // Supports the same formats as durations in the driver configuration, e.g. 30s or PT30S
+            return DurationStyle.detectAndParse(String.valueOf(value).trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Invalid value [%s] specified for [%s], expected a duration", value, propertyName));
+        }
+    }
+
+    private static final class Settings {
+        private final double requestsPerSecond;
+        private final int burst;
+        private final int maxQueueSize;
+        private final Duration maxWaitDuration;
+
+        private Settings(double requestsPerSecond, int burst, int maxQueueSize, Duration maxWaitDuration) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            this.maxQueueSize = maxQueueSize;
+            this.maxWaitDuration = maxWaitDuration;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Settings)) {
+                return false;
+            }
+            final Settings settings = (Settings) o;
+            return Double.compare(settings.requestsPerSecond, requestsPerSecond) == 0 && burst == settings.burst && maxQueueSize == settings.maxQueueSize
+                    && maxWaitDuration.equals(settings.maxWaitDuration);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(requestsPerSecond, burst, maxQueueSize, maxWaitDuration);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requestsPerSecond=%s, burst=%s, maxQueueSize=%s, maxWaitDuration=%s", requestsPerSecond, burst, maxQueueSize, maxWaitDuration);
+        }
+    }
+
+    /**
+     * The rate limiter for a single VNFM
+     */
+    private class RateLimiter {
+        private final String vnfmServerUrl;
+        private final AtomicInteger queueSize = new AtomicInteger();
+        private final Timer waitTimer;
+        private final Counter rejectedCounter;
+        // Only accessed while synchronized. Tokens go negative when requests are waiting for them.
+        private Settings settings;
+        private double tokens;
+        private long lastRefillNanos;
+
+        private RateLimiter(String vnfmServerUrl, Settings settings) {
+            this.vnfmServerUrl = vnfmServerUrl;
+            this.settings = settings;
+            this.tokens = settings.burst;
+            this.lastRefillNanos = System.nanoTime();
+            logger.info("Creating rate limiter for VNFM [{}] with {}", vnfmServerUrl, settings);
+            if (meterRegistry != null) {
+                Gauge.builder(QUEUE_METRIC_NAME, queueSize, AtomicInteger::get).tag("vnfm", vnfmServerUrl).register(meterRegistry);
+                this.waitTimer = Timer.builder(WAIT_METRIC_NAME).tag("vnfm", vnfmServerUrl).register(meterRegistry);
+                this.rejectedCounter = Counter.builder(REJECTED_METRIC_NAME).tag("vnfm", vnfmServerUrl).register(meterRegistry);
+            } else {
+                this.waitTimer = null;
+                this.rejectedCounter = null;
+            }
+        }
+
+        private synchronized void configure(Settings newSettings) {
+            if (!settings.equals(newSettings)) {
+                logger.info("Updating rate limiter for VNFM [{}] to {}", vnfmServerUrl, newSettings);
+                refill();
+                settings = newSettings;
+                tokens = Math.min(tokens, settings.burst);
+            }
+        }
+
+        /**
+         * Takes a token for a request, returning how long the request must wait before it is sent
+         *
+         * @throws VNFMUnavailableException if the request would have to wait for longer than allowed, or the queue is full
+         */
+        private long reserve() {
+            final Settings currentSettings;
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                currentSettings = settings;
+                waitNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) / settings.requestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+                if (waitNanos > 0 && (waitNanos > settings.maxWaitDuration.toNanos() || queueSize.get() >= settings.maxQueueSize)) {
+                    waitNanos = -1;
+                } else {
+                    tokens--;
+                    if (waitNanos > 0) {
+                        queueSize.incrementAndGet();
+                    }
+                }
+            }
+            if (waitNanos < 0) {
+                if (rejectedCounter != null) {
+                    rejectedCounter.increment();
+                }
+                throw new VNFMUnavailableException(String.format("Rate limit of %s requests per second to VNFM [%s] exceeded", currentSettings.requestsPerSecond, vnfmServerUrl));
+            }
+            if (waitNanos == 0 && waitTimer != null) {
+                waitTimer.record(Duration.ZERO);
+            }
+            return waitNanos;
+        }
+
+        private void dequeue(long waitNanos) {
+            queueSize.decrementAndGet();
+            if (waitTimer != null) {
+                waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void refill() {
+            final long now = System.nanoTime();
+            tokens = Math.min(settings.burst, tokens + (now - lastRefillNanos) * settings.requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+package com.accantosystems.stratoss.vnfmdriver.driver;
+
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Retries requests to a VNFM which fail with a transient error, waiting with a jittered exponential backoff (or for as long as the VNFM asks with a
+ * Retry-After header) between attempts.
+ * <p>
+ * Idempotent requests (e.g. GET and DELETE) are retried after any I/O error or a 429, 502, 503 or 504 response. Other requests (i.e. POST) are
+ * only retried when the VNFM cannot have acted on them: a connection could not be made, or the VNFM responded with 429 or 503.
+ * <p>
+ * Each VNFM has a retry budget (in the style of gRPC retry throttling), so that retries stop while most requests to the VNFM are failing rather
+ * than multiplying the load on it.
+ */
+@Component
+public class VNFMRetryRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(VNFMRetryRegistry.class);
+    public static final String RETRY_METRIC_NAME = "vnfmdriver.vnfm.retries";
+    public static final String BUDGET_METRIC_NAME = "vnfmdriver.vnfm.retry.budget";
+    static final String OUTCOME_RETRIED = "retried";
+    static final String OUTCOME_ATTEMPTS_EXHAUSTED = "attempts_exhausted";
+    static final String OUTCOME_BUDGET_EXHAUSTED = "budget_exhausted";
+    static final String OUTCOME_RETRY_AFTER_EXCEEDED = "retry_after_exceeded";
+    private static final EnumSet<HttpMethod> IDEMPOTENT_METHODS = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE,
+                                                                             HttpMethod.TRACE);
+
+    private final VNFMDriverProperties.Retry retryProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RetryBudget> retryBudgets = new ConcurrentHashMap<>();
+
+    public VNFMRetryRegistry(VNFMDriverProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.retryProperties = properties.getVnfmRetry();
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    /**
+     * Makes a call to the VNFM, retrying it if it fails with a transient error
+     *
+     * @param vnfmServerUrl URL of the VNFM being called
+     * @param operation     type of operation, as recorded in the retry metrics
+     * @param method        HTTP method of the request
+     * @param call          the call to make
+     * @return result of the call
+     */
+    public <T> T execute(final String vnfmServerUrl, final String operation, final HttpMethod method, final Supplier<T> call) {
+        final RetryBudget retryBudget = getRetryBudget(vnfmServerUrl);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final T result = call.get();
+                retryBudget.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                final Duration delay = getRetryDelay(retryBudget, operation, method, e, attempt);
+                if (delay == null) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes a non-blocking call to the VNFM, retrying it if it fails with a transient error. The calling thread never waits between attempts.
+     *
+     * @param vnfmServerUrl URL of the VNFM being called
+     * @param operation     type of operation, as recorded in the retry metrics
+     * @param method        HTTP method of the request
+     * @param call          the call to make
+     * @return future completed with the result of the call (or the error from the last attempt)
+     */
+    public <T> CompletableFuture<T> executeAsync(final String vnfmServerUrl, final String operation, final HttpMethod method, final Supplier<CompletableFuture<T>> call) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        attemptAsync(getRetryBudget(vnfmServerUrl), operation, method, call, 1, result);
+        return result;
+    }
+
+    private <T> void attemptAsync(final RetryBudget retryBudget, final String operation, final HttpMethod method, final Supplier<CompletableFuture<T>> call, final int attempt,
+                                  final CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                retryBudget.onSuccess();
+                result.complete(value);
+                return;
+            }
+            final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            final Duration delay = getRetryDelay(retryBudget, operation, method, cause, attempt);
+            if (delay == null) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS).execute(() -> attemptAsync(retryBudget, operation, method, call, attempt + 1, result));
+        });
+    }
+
+    /**
+     * Decides whether a failed attempt should be retried
+     *
+     * @return how long to wait before retrying, or null if the attempt should not be retried
+     */
+    private Duration getRetryDelay(final RetryBudget retryBudget, final String operation, final HttpMethod method, final Throwable throwable, final int attempt) {
+        if (!isTransient(throwable, method)) {
+            // The VNFM is responding, so this counts towards the retry budget in the same way as a success
+            retryBudget.onSuccess();
+            return null;
+        }
+        retryBudget.onFailure();
+        if (!retryProperties.isEnabled()) {
+            return null;
+        }
+        if (attempt >= retryProperties.getMaxAttempts()) {
+            recordRetry(retryBudget, operation, OUTCOME_ATTEMPTS_EXHAUSTED);
+            return null;
+        }
+        if (!retryBudget.canRetry()) {
+            logger.warn("Not retrying {} request to VNFM [{}] as its retry budget is exhausted", operation, retryBudget.vnfmServerUrl);
+            recordRetry(retryBudget, operation, OUTCOME_BUDGET_EXHAUSTED);
+            return null;
+        }
+        final Duration retryAfter = getRetryAfter(throwable);
+        if (retryAfter != null && retryAfter.compareTo(retryProperties.getMaxInterval()) > 0) {
+            logger.warn("Not retrying {} request to VNFM [{}] as it asked for a retry after {}", operation, retryBudget.vnfmServerUrl, retryAfter);
+            recordRetry(retryBudget, operation, OUTCOME_RETRY_AFTER_EXCEEDED);
+            return null;
+        }
+        final Duration delay = retryAfter != null ? retryAfter : getBackoff(attempt);
+        logger.info("Retrying {} request to VNFM [{}] in {}ms (attempt {} of {}) after error: {}", operation, retryBudget.vnfmServerUrl, delay.toMillis(), attempt + 1,
+                    retryProperties.getMaxAttempts(), throwable.getMessage());
+        recordRetry(retryBudget, operation, OUTCOME_RETRIED);
+        return delay;
+    }
+
+    /**
+     * Exponential backoff for the given attempt, with "equal jitter" (a random wait of between half and all of the backoff)
+     */
+    Duration getBackoff(final int attempt) {
+        final double backoff = Math.min(retryProperties.getInitialInterval().toMillis() * Math.pow(retryProperties.getMultiplier(), attempt - 1),
+                                        retryProperties.getMaxInterval().toMillis());
+        return Duration.ofMillis((long) (backoff / 2 + ThreadLocalRandom.current().nextDouble() * backoff / 2));
+    }
+
+    /**
+     * Whether the request may succeed if retried, without risk of the VNFM acting on it twice
+     */
+    static boolean isTransient(final Throwable throwable, final HttpMethod method) {
+        final boolean idempotent = IDEMPOTENT_METHODS.contains(method);
+        if (throwable instanceof VNFMUnavailableException) {
+            // Rejected by the circuit breaker or bulkhead, so retrying immediately won't help
+            return false;
+        }
+        if (throwable instanceof ResourceAccessException) {
+            return idempotent || isConnectFailure(throwable);
+        }
+        if (throwable instanceof SOL003ResponseException) {
+            final Integer status = ((SOL003ResponseException) throwable).getProblemDetails().getStatus();
+            if (status == null) {
+                return false;
+            }
+            if (status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+                return true;
+            }
+            return idempotent && (status == HttpStatus.BAD_GATEWAY.value() || status == HttpStatus.GATEWAY_TIMEOUT.value());
+        }
+        return false;
+    }
+
+    private static boolean isConnectFailure(final Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException || cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the wait requested by the VNFM in the Retry-After header (in delay-seconds or HTTP-date format) of its response, if any
+     */
+    static Duration getRetryAfter(final Throwable throwable) {
+        if (!(throwable instanceof SOL003ResponseException)) {
+            return null;
+        }
+        final HttpHeaders responseHeaders = ((SOL003ResponseException) throwable).getResponseHeaders();
+        final String retryAfter = responseHeaders != null ? responseHeaders.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                final Duration delay = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException dtpe) {
+                logger.debug("Ignoring invalid Retry-After header [{}]", retryAfter);
+                return null;
+            }
+        }
+    }
+
+    private RetryBudget getRetryBudget(final String vnfmServerUrl) {
+        return retryBudgets.computeIfAbsent(vnfmServerUrl, RetryBudget::new);
+    }
+
+    private void recordRetry(final RetryBudget retryBudget, final String operation, final String outcome) {
+        if (meterRegistry != null) {
+            Counter.builder(RETRY_METRIC_NAME).tag("vnfm", retryBudget.vnfmServerUrl).tag("operation", operation).tag("outcome", outcome).register(meterRegistry).increment();
+        }
+    }
+
+    /**
+     * The retry budget for a single VNFM
+     */
+    private class RetryBudget {
+        private final String vnfmServerUrl;
+        private final double maxTokens = retryProperties.getBudgetMaxTokens();
+        // Only accessed while synchronized
+        private double tokens = maxTokens;
+
+        private RetryBudget(String vnfmServerUrl) {
+            this.vnfmServerUrl = vnfmServerUrl;
+            if (meterRegistry != null) {
+                Gauge.builder(BUDGET_METRIC_NAME, this, RetryBudget::getTokens).tag("vnfm", vnfmServerUrl).register(meterRegistry);
+            }
+        }
+
+        private synchronized double getTokens() {
+            return tokens;
+        }
+
+        private synchronized void onSuccess() {
+            tokens = Math.min(maxTokens, tokens + retryProperties.getBudgetTokenRatio());
+        }
+
+        private synchronized void onFailure() {
+            tokens = Math.max(0, tokens - 1);
+        }
+
+        private synchronized boolean canRetry() {
+            return tokens > maxTokens / 2;
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.accantosystems.stratoss.vnfmdriver.driver;
+
+import org.etsi.sol003.common.ProblemDetails;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown, without contacting the VNFM, when a request cannot be sent to it (e.g. its circuit breaker is open)
+ */
+public class VNFMUnavailableException extends SOL003ResponseException {
+
+    public VNFMUnavailableException(String msg) {
+        super(msg, createProblemDetails(msg));
+    }
+
+    private static ProblemDetails createProblemDetails(String msg) {
+        final ProblemDetails problemDetails = new ProblemDetails(HttpStatus.SERVICE_UNAVAILABLE.value(), msg);
+        problemDetails.setTitle(HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase());
+        return problemDetails;
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.accantosystems.stratoss.vnfmdriver.model;
 
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import static com.accantosystems.stratoss.vnfmdriver.utils.Constants.KAFKA_MESSAGE_VERSION;
 
@@ -8,11 +10,40 @@ public class LcmOpOccPollingRequest {
 
     private final ResourceManagerDeploymentLocation deploymentLocation;
     private final String vnfLcmOpOccId;
+    private final boolean completed;
+    private final Long trackingStartTime;
     private final String version = KAFKA_MESSAGE_VERSION;
 
     public LcmOpOccPollingRequest(ResourceManagerDeploymentLocation deploymentLocation, String vnfLcmOpOccId) {
+        this(deploymentLocation, vnfLcmOpOccId, false);
+    }
+
+    public LcmOpOccPollingRequest(ResourceManagerDeploymentLocation deploymentLocation, String vnfLcmOpOccId, boolean completed) {
+        this(deploymentLocation, vnfLcmOpOccId, completed, null);
+    }
+
+    @JsonCreator
+    public LcmOpOccPollingRequest(@JsonProperty("deploymentLocation") ResourceManagerDeploymentLocation deploymentLocation, @JsonProperty("vnfLcmOpOccId") String vnfLcmOpOccId,
+                                  @JsonProperty("completed") boolean completed, @JsonProperty("trackingStartTime") Long trackingStartTime) {
         this.deploymentLocation = deploymentLocation;
         this.vnfLcmOpOccId = vnfLcmOpOccId;
+        this.completed = completed;
+        this.trackingStartTime = trackingStartTime;
+    }
+
+    /**
+     * Returns a copy of this request recording when polling for the LcmOpOcc started, so that the polling timeout carries on from there when it is
+     * recovered from a checkpoint
+     */
+    public LcmOpOccPollingRequest withTrackingStartTime(long trackingStartTime) {
+        return new LcmOpOccPollingRequest(deploymentLocation, vnfLcmOpOccId, completed, trackingStartTime);
+    }
+
+    /**
+     * Creates a marker recording that polling for an LcmOpOcc has finished, so it is not picked up again when the polling topic is replayed
+     */
+    public static LcmOpOccPollingRequest completed(String vnfLcmOpOccId) {
+        return new LcmOpOccPollingRequest(null, vnfLcmOpOccId, true);
     }
 
     public ResourceManagerDeploymentLocation getDeploymentLocation() {
@@ -23,6 +54,17 @@ public class LcmOpOccPollingRequest {
         return vnfLcmOpOccId;
     }
 
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns when polling for the LcmOpOcc started (in milliseconds since the epoch), or null if it has not yet started
+     */
+    public Long getTrackingStartTime() {
+        return trackingStartTime;
+    }
+
     public String getVersion() {
         return version;
     }
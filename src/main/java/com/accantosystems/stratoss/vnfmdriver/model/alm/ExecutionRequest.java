@@ -1,12 +1,16 @@
 package com.accantosystems.stratoss.vnfmdriver.model.alm;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ForwardingMap;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 
@@ -23,7 +27,7 @@ public class ExecutionRequest {
     @Schema(description = "System Properties")
     private Map<String, ExecutionRequestPropertyValue> systemProperties = new HashMap<>();
     @Schema(description = "Resource Properties")
-    private Map<String, ExecutionRequestPropertyValue> resourceProperties = new HashMap<>();
+    private final ResourcePropertiesMap resourceProperties = new ResourcePropertiesMap();
     @Schema(description = "Request Properties")
     private Map<String, ExecutionRequestPropertyValue> requestProperties = new HashMap<>();
     @Schema(description = "Deployment Location")
@@ -40,7 +44,9 @@ public class ExecutionRequest {
         this.driverFiles = driverFiles;
         this.systemProperties = systemProperties;
         this.requestProperties = requestProperties;
-        this.resourceProperties = resourceProperties;
+        if (resourceProperties != null) {
+            this.resourceProperties.putAll(resourceProperties);
+        }
         this.deploymentLocation = deploymentLocation;
         this.associatedTopology = associatedTopology;
     }
@@ -87,12 +93,14 @@ public class ExecutionRequest {
 
     /**
      * Legacy support for getProperties method which may be referenced in Javascript libraries. Will return a filtered version of the resource properties with String values instead of PropertyValue values
+     * <p>
+     * The returned view is only built once, until the resource properties are next modified, so may be called repeatedly (e.g. within loops in scripts)
      *
-     * @return map containing resourceProperties values as simple String types
+     * @return read-only map containing resourceProperties values as simple types
      */
-    public Map<String, Object> getProperties() {
-        return resourceProperties.entrySet().stream().filter(entry -> !PropertyType.KEY.getValue().equals(entry.getValue().getType()))
-                                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().getValue()));
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public ExecutionRequestProperties getProperties() {
+        return resourceProperties.getPropertiesView();
     }
 
     /**
@@ -143,4 +151,83 @@ public class ExecutionRequest {
                 ", deploymentLocation=" + deploymentLocation +
                 '}';
     }
-}
\ No newline at end of file
+
+    /**
+     * Resource properties which keep track of the (lazily built) view returned by {@link #getProperties()}, discarding it whenever they (or any of
+     * the values they hold) are modified
+     * <p>
+     * A value is only tracked by the resource properties it was most recently added to, so values shouldn't be shared between requests.
+     */
+    private static class ResourcePropertiesMap extends ForwardingMap<String, ExecutionRequestPropertyValue> {
+
+        private final Map<String, ExecutionRequestPropertyValue> delegate = new HashMap<>();
+        private final Runnable invalidator = () -> propertiesView = null;
+        private volatile ExecutionRequestProperties propertiesView;
+
+        @Override protected Map<String, ExecutionRequestPropertyValue> delegate() {
+            return delegate;
+        }
+
+        ExecutionRequestProperties getPropertiesView() {
+            ExecutionRequestProperties view = propertiesView;
+            if (view == null) {
+                view = new ExecutionRequestProperties(delegate);
+                propertiesView = view;
+            }
+            return view;
+        }
+
+        @Override public ExecutionRequestPropertyValue put(String key, ExecutionRequestPropertyValue value) {
+            propertiesView = null;
+            if (value != null) {
+                value.setChangeListener(invalidator);
+            }
+            final ExecutionRequestPropertyValue previous = delegate.put(key, value);
+            if (previous != value) {
+                detach(previous);
+            }
+            return previous;
+        }
+
+        @Override public void putAll(Map<? extends String, ? extends ExecutionRequestPropertyValue> map) {
+            map.forEach(this::put);
+        }
+
+        @Override public ExecutionRequestPropertyValue remove(Object key) {
+            propertiesView = null;
+            final ExecutionRequestPropertyValue previous = delegate.remove(key);
+            detach(previous);
+            return previous;
+        }
+
+        @Override public void clear() {
+            propertiesView = null;
+            delegate.values().forEach(value -> {
+                if (value != null && value.getChangeListener() == invalidator) {
+                    value.setChangeListener(null);
+                }
+            });
+            delegate.clear();
+        }
+
+        private void detach(final ExecutionRequestPropertyValue value) {
+            if (value != null && value.getChangeListener() == invalidator && !delegate.containsValue(value)) {
+                value.setChangeListener(null);
+            }
+        }
+
+        // Modifications must go through the methods above, so that the view is discarded
+
+        @Override public Set<String> keySet() {
+            return Collections.unmodifiableSet(delegate.keySet());
+        }
+
+        @Override public Collection<ExecutionRequestPropertyValue> values() {
+            return Collections.unmodifiableCollection(delegate.values());
+        }
+
+        @Override public Set<Entry<String, ExecutionRequestPropertyValue>> entrySet() {
+            return Collections.unmodifiableSet(delegate.entrySet());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.accantosystems.stratoss.vnfmdriver.model.alm;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable view of the resource properties of an {@link ExecutionRequest}, with simple values in place of {@link ExecutionRequestPropertyValue}s
+ * and excluding any properties of type {@link PropertyType#KEY}.
+ * <p>
+ * The view is built once and then reused until the resource properties are next modified. Properties are held both in the order of the
+ * underlying resource properties and in a sorted index, so that all properties under a dotted prefix (e.g. <code>additionalParams.</code>) can be
+ * found without scanning every property.
+ */
+public final class ExecutionRequestProperties extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> properties;
+    private final NavigableMap<String, Object> sortedProperties;
+
+    ExecutionRequestProperties(final Map<String, ExecutionRequestPropertyValue> resourceProperties) {
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        resourceProperties.forEach((name, propertyValue) -> {
+            if (!PropertyType.KEY.getValue().equals(propertyValue.getType())) {
+                properties.put(name, propertyValue.getValue());
+            }
+        });
+        this.properties = Collections.unmodifiableMap(properties);
+        this.sortedProperties = Collections.unmodifiableNavigableMap(new TreeMap<>(properties));
+    }
+
+    @Override public Set<Entry<String, Object>> entrySet() {
+        return properties.entrySet();
+    }
+
+    @Override public Object get(final Object key) {
+        return properties.get(key);
+    }
+
+    @Override public boolean containsKey(final Object key) {
+        return properties.containsKey(key);
+    }
+
+    @Override public int size() {
+        return properties.size();
+    }
+
+    /**
+     * Returns all properties whose names start with the given prefix, sorted by name
+     *
+     * @param prefix property name prefix, e.g. <code>additionalParams.</code>
+     * @return read-only map of matching properties
+     */
+    public NavigableMap<String, Object> getPropertiesWithPrefix(final String prefix) {
+        return sortedProperties.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Returns the names of all properties which start with the given prefix, sorted by name
+     *
+     * @param prefix property name prefix, e.g. <code>additionalParams.</code>
+     * @return read-only set of matching property names
+     */
+    public Set<String> getKeysWithPrefix(final String prefix) {
+        return getPropertiesWithPrefix(prefix).navigableKeySet();
+    }
+
+}
@@ -19,6 +19,9 @@ public abstract class ExecutionRequestPropertyValue {
 
     private Object value;
 
+    // Notified whenever the value changes, so that the resource properties holding it can discard any view built from it
+    private Runnable changeListener;
+
     public ExecutionRequestPropertyValue() {
         super();
         this.type = PropertyType.STRING.getValue();
@@ -42,6 +45,7 @@ public abstract class ExecutionRequestPropertyValue {
 
     public void setValue(Object value) {
         this.value = value;
+        notifyChanged();
     }
 
     public String getType() {
@@ -50,6 +54,22 @@ public abstract class ExecutionRequestPropertyValue {
 
     public void setType(String type) {
         this.type = type;
+        notifyChanged();
+    }
+
+    Runnable getChangeListener() {
+        return changeListener;
+    }
+
+    void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void notifyChanged() {
+        final Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
     }
 
     @Override
@@ -3,18 +3,45 @@ package com.accantosystems.stratoss.vnfmdriver.security;
 import java.io.IOException;
 import java.net.HttpCookie;
 import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.web.client.*;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * RestTemplate which authenticates requests using a session cookie, acquired by logging in with the supplied credentials.
+ * <p>
+ * A single login is made on behalf of all concurrent requests needing a new session, and sessions with a known expiry are refreshed ahead of
+ * it by the first request made in the refresh period (other requests continue to use the current session in the meantime).
+ */
 public class CookieAuthenticatedRestTemplate extends RestTemplate {
 
+    private static final Logger logger = LoggerFactory.getLogger(CookieAuthenticatedRestTemplate.class);
+    public static final String AUTHENTICATION_METRIC_NAME = "vnfmdriver.auth.cookie.logins";
+    static final String REASON_INITIAL = "initial";
+    static final String REASON_EXPIRED = "expired";
+    static final String REASON_REFRESH = "refresh";
+    static final String REASON_UNAUTHORIZED = "unauthorized";
+
     private final CookieCredentials credentials;
     private final CookieContext context;
     private final CookieAuthenticator authenticator;
+    private final Duration refreshAhead;
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock authenticationLock = new ReentrantLock();
 
     public CookieAuthenticatedRestTemplate(CookieCredentials credentials) {
+        this(credentials, Duration.ZERO, null);
+    }
+
+    public CookieAuthenticatedRestTemplate(CookieCredentials credentials, Duration refreshAhead, MeterRegistry meterRegistry) {
         super();
         if (credentials == null) {
             throw new IllegalArgumentException("User credentials must be supplied.");
@@ -23,6 +50,8 @@ public class CookieAuthenticatedRestTemplate extends RestTemplate {
         this.credentials = credentials;
         this.context = new CookieContext();
         this.authenticator = new CookieAuthenticator();
+        this.refreshAhead = refreshAhead;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -46,31 +75,89 @@ public class CookieAuthenticatedRestTemplate extends RestTemplate {
             rethrow = e;
         }
         if (sessionCookie != null) {
-            context.setSessionCookie(null);
+            // The session may have been ended by the VNFM, so log in again (unless a concurrent request already has) and retry
+            try {
+                acquireSessionCookie(sessionCookie, REASON_UNAUTHORIZED);
+            } catch (AccessDeniedException e) {
+                throw new ResourceAccessException(e.getMessage(), e);
+            }
             return super.doExecute(url, method, requestCallback, responseExtractor);
         }
         throw rethrow;
     }
 
-    private HttpCookie getSessionCookie() throws AccessDeniedException {
+    /**
+     * Returns the current session cookie, authenticating first if there is no session (or it has expired)
+     */
+    public HttpCookie getSessionCookie() throws AccessDeniedException {
         HttpCookie sessionCookie = context.getSessionCookie();
 
         if (sessionCookie == null || sessionCookie.hasExpired()) {
-            sessionCookie = acquireSessionCookie(context);
+            return acquireSessionCookie(sessionCookie, sessionCookie == null ? REASON_INITIAL : REASON_EXPIRED);
+        }
+
+        if (context.isRefreshDue(refreshAhead) && authenticationLock.tryLock()) {
+            try {
+                if (context.getSessionCookie() == sessionCookie) {
+                    sessionCookie = authenticate(REASON_REFRESH);
+                }
+            } catch (AccessDeniedException | RuntimeException e) {
+                // The current session cookie is still valid, so can be used until the next attempt to refresh it
+                logger.warn("Unable to refresh session cookie ahead of its expiry", e);
+            } finally {
+                authenticationLock.unlock();
+            }
         }
 
         return sessionCookie;
     }
 
-    private HttpCookie acquireSessionCookie(CookieContext cookieContext) throws AccessDeniedException {
-        HttpCookie sessionCookie = authenticator.authenticate(credentials);
+    /**
+     * Logs in again, as the given session cookie (the value of a Cookie header) has been rejected by the VNFM, unless a concurrent request already has
+     */
+    public HttpCookie renewSessionCookie(String rejectedSessionCookie) throws AccessDeniedException {
+        final HttpCookie sessionCookie = context.getSessionCookie();
+        final boolean rejected = sessionCookie != null && sessionCookie.toString().equals(rejectedSessionCookie);
+        return acquireSessionCookie(rejected ? sessionCookie : null, REASON_UNAUTHORIZED);
+    }
 
-        if (sessionCookie == null) {
-            throw new IllegalStateException("Provider returned a null session cookie, which is illegal according to the contract.");
+    private HttpCookie acquireSessionCookie(HttpCookie staleSessionCookie, String reason) throws AccessDeniedException {
+        authenticationLock.lock();
+        try {
+            // Another request may have acquired a new session cookie while this one was waiting
+            final HttpCookie sessionCookie = context.getSessionCookie();
+            if (sessionCookie != null && sessionCookie != staleSessionCookie && !sessionCookie.hasExpired()) {
+                return sessionCookie;
+            }
+            return authenticate(reason);
+        } finally {
+            authenticationLock.unlock();
         }
+    }
 
-        cookieContext.setSessionCookie(sessionCookie);
-        return sessionCookie;
+    private HttpCookie authenticate(String reason) throws AccessDeniedException {
+        logger.debug("Requesting session cookie from [{}] ({})", credentials.getAuthenticationUrl(), reason);
+        final long startTime = System.nanoTime();
+        boolean successful = false;
+        try {
+            HttpCookie sessionCookie = authenticator.authenticate(credentials);
+
+            if (sessionCookie == null) {
+                throw new IllegalStateException("Provider returned a null session cookie, which is illegal according to the contract.");
+            }
+
+            context.setSessionCookie(sessionCookie);
+            successful = true;
+            return sessionCookie;
+        } finally {
+            if (meterRegistry != null) {
+                Timer.builder(AUTHENTICATION_METRIC_NAME)
+                     .tag("reason", reason)
+                     .tag("outcome", successful ? "success" : "failure")
+                     .register(meterRegistry)
+                     .record(Duration.ofNanos(System.nanoTime() - startTime));
+            }
+        }
     }
 
 }
@@ -1,17 +1,46 @@
 package com.accantosystems.stratoss.vnfmdriver.security;
 
 import java.net.HttpCookie;
+import java.time.Duration;
 
+/**
+ * Holds the current session cookie, which may be read and replaced by concurrent requests
+ */
 public class CookieContext {
 
-    private HttpCookie sessionCookie;
+    private volatile Session session;
 
     public HttpCookie getSessionCookie() {
-        return sessionCookie;
+        final Session currentSession = session;
+        return currentSession != null ? currentSession.cookie : null;
     }
 
     public void setSessionCookie(HttpCookie sessionCookie) {
-        this.sessionCookie = sessionCookie;
+        this.session = sessionCookie != null ? new Session(sessionCookie, System.currentTimeMillis()) : null;
+    }
+
+    /**
+     * Checks whether the current session cookie should be replaced before it expires. This is due once the cookie is within the refresh ahead
+     * period of its expiry, or half way through its lifetime (if shorter). Cookies without a Max-Age (or Expires) are never refreshed ahead.
+     */
+    public boolean isRefreshDue(Duration refreshAhead) {
+        final Session currentSession = session;
+        if (currentSession == null || currentSession.cookie.getMaxAge() < 0) {
+            return false;
+        }
+        final long maxAgeMillis = currentSession.cookie.getMaxAge() * 1000;
+        final long refreshAfterMillis = Math.max(maxAgeMillis - refreshAhead.toMillis(), maxAgeMillis / 2);
+        return System.currentTimeMillis() >= currentSession.acquiredAt + refreshAfterMillis;
+    }
+
+    private static class Session {
+        private final HttpCookie cookie;
+        private final long acquiredAt;
+
+        private Session(HttpCookie cookie, long acquiredAt) {
+            this.cookie = cookie;
+            this.acquiredAt = acquiredAt;
+        }
     }
 
 }
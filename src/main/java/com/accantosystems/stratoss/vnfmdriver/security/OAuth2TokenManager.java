@@ -0,0 +1,268 @@
+package com.accantosystems.stratoss.vnfmdriver.security;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
+import org.springframework.security.oauth2.client.OAuth2RestTemplate;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
+import org.springframework.security.oauth2.client.token.AccessTokenProviderChain;
+import org.springframework.security.oauth2.client.token.AccessTokenRequest;
+import org.springframework.security.oauth2.client.token.DefaultAccessTokenRequest;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsAccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.code.AuthorizationCodeAccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.implicit.ImplicitAccessTokenProvider;
+import org.springframework.security.oauth2.client.token.grant.password.ResourceOwnerPasswordAccessTokenProvider;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.stereotype.Component;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Manages the OAuth2 access tokens used by all {@link OAuth2RestTemplate}s, so that templates for the same token URI, client ID, scope, grant type
+ * and client secret share a single token.
+ * <p>
+ * A single token request is made on behalf of all concurrent requests needing a new token. Tokens with an expiry are refreshed in the background
+ * ahead of it (if they have been used since they were last acquired), so requests are not held up waiting for a new token.
+ */
+@Component
+public class OAuth2TokenManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(OAuth2TokenManager.class);
+    public static final String TOKEN_METRIC_NAME = "vnfmdriver.auth.oauth2.tokens";
+    static final String REASON_INITIAL = "initial";
+    static final String REASON_EXPIRED = "expired";
+    static final String REASON_REFRESH = "refresh";
+    static final String REASON_INVALIDATED = "invalidated";
+
+    private final Duration refreshAhead;
+    private final MeterRegistry meterRegistry;
+    // The same token providers as used by default by OAuth2RestTemplate
+    private final AccessTokenProvider accessTokenProvider = new AccessTokenProviderChain(Arrays.asList(new AuthorizationCodeAccessTokenProvider(), new ImplicitAccessTokenProvider(),
+                                                                                                       new ResourceOwnerPasswordAccessTokenProvider(),
+                                                                                                       new ClientCredentialsAccessTokenProvider()));
+    private final Map<String, ManagedToken> managedTokens = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refreshScheduler;
+
+    public OAuth2TokenManager(VNFMDriverProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.refreshAhead = properties.getAuthenticationRefreshAhead();
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("oauth2-token-refresh-%d").setDaemon(true).build());
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.refreshScheduler = scheduler;
+    }
+
+    @PreDestroy
+    public void close() {
+        refreshScheduler.shutdownNow();
+    }
+
+    /**
+     * Creates an OAuth2RestTemplate for the given resource, which obtains its access tokens from this manager
+     */
+    public OAuth2RestTemplate createRestTemplate(OAuth2ProtectedResourceDetails resourceDetails) {
+        // Templates with the same key have the same credentials, so any of their details can be used to request new tokens
+        final ManagedToken managedToken = managedTokens.computeIfAbsent(getKey(resourceDetails), key -> new ManagedToken(key, resourceDetails));
+        final OAuth2RestTemplate restTemplate = new OAuth2RestTemplate(resourceDetails, new ManagedClientContext(managedToken));
+        restTemplate.setAccessTokenProvider(new ManagedAccessTokenProvider(managedToken));
+        return restTemplate;
+    }
+
+    /**
+     * Identifies the token for the given resource by its token URI, client ID, scope, grant type and client secret. The client secret is hashed, as
+     * the key is logged.
+     */
+    static String getKey(OAuth2ProtectedResourceDetails resourceDetails) {
+        final String scope = resourceDetails.getScope() != null ? String.join(",", new TreeSet<>(resourceDetails.getScope())) : "";
+        final String clientSecret = resourceDetails.getClientSecret() != null ? resourceDetails.getClientSecret() : "";
+        return resourceDetails.getAccessTokenUri() + "|" + resourceDetails.getClientId() + "|" + scope + "|" + resourceDetails.getGrantType() + "|"
+                + Hashing.sha256().hashString(clientSecret, StandardCharsets.UTF_8);
+    }
+
+    private OAuth2AccessToken acquireAccessToken(ManagedToken managedToken) {
+        managedToken.lock.lock();
+        try {
+            // Another request may have acquired a new token while this one was waiting
+            final OAuth2AccessToken accessToken = managedToken.accessToken;
+            if (accessToken != null && !accessToken.isExpired()) {
+                return accessToken;
+            }
+            return requestAccessToken(managedToken, accessToken != null ? REASON_EXPIRED : managedToken.invalidated ? REASON_INVALIDATED : REASON_INITIAL);
+        } finally {
+            managedToken.lock.unlock();
+        }
+    }
+
+    private void refreshAccessToken(ManagedToken managedToken) {
+        if (!managedToken.used) {
+            // Not used since it was acquired, so a new token will only be requested if it's needed again
+            logger.debug("Not refreshing unused access token for [{}]", managedToken.key);
+            return;
+        }
+        managedToken.lock.lock();
+        try {
+            requestAccessToken(managedToken, REASON_REFRESH);
+        } catch (RuntimeException e) {
+            logger.warn(String.format("Unable to refresh access token for [%s] ahead of its expiry", managedToken.key), e);
+        } finally {
+            managedToken.lock.unlock();
+        }
+    }
+
+    private OAuth2AccessToken requestAccessToken(ManagedToken managedToken, String reason) {
+        logger.debug("Requesting access token for [{}] ({})", managedToken.key, reason);
+        final long startTime = System.nanoTime();
+        boolean successful = false;
+        try {
+            final OAuth2AccessToken accessToken = accessTokenProvider.obtainAccessToken(managedToken.resourceDetails, new DefaultAccessTokenRequest());
+            managedToken.setAccessToken(accessToken);
+            successful = true;
+            scheduleRefresh(managedToken, accessToken);
+            return accessToken;
+        } finally {
+            if (meterRegistry != null) {
+                Timer.builder(TOKEN_METRIC_NAME)
+                     .tag("reason", reason)
+                     .tag("outcome", successful ? "success" : "failure")
+                     .register(meterRegistry)
+                     .record(Duration.ofNanos(System.nanoTime() - startTime));
+            }
+        }
+    }
+
+    private void scheduleRefresh(ManagedToken managedToken, OAuth2AccessToken accessToken) {
+        if (managedToken.scheduledRefresh != null) {
+            managedToken.scheduledRefresh.cancel(false);
+            managedToken.scheduledRefresh = null;
+        }
+        if (accessToken.getExpiration() == null || refreshScheduler.isShutdown()) {
+            return;
+        }
+        // Refreshed within the refresh ahead period of its expiry, or half way through its lifetime (if shorter)
+        final long lifetimeMillis = accessToken.getExpiration().getTime() - System.currentTimeMillis();
+        final long refreshAfterMillis = Math.max(lifetimeMillis - refreshAhead.toMillis(), lifetimeMillis / 2);
+        managedToken.scheduledRefresh = refreshScheduler.schedule(() -> refreshAccessToken(managedToken), refreshAfterMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The current access token for a token URI, client ID, scope, grant type and client secret
+     */
+    private static class ManagedToken {
+        private final String key;
+        private final OAuth2ProtectedResourceDetails resourceDetails;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile OAuth2AccessToken accessToken;
+        private volatile boolean used;
+        private volatile boolean invalidated;
+        // Only accessed while holding the lock
+        private ScheduledFuture<?> scheduledRefresh;
+
+        private ManagedToken(String key, OAuth2ProtectedResourceDetails resourceDetails) {
+            this.key = key;
+            this.resourceDetails = resourceDetails;
+        }
+
+        private OAuth2AccessToken getAccessToken() {
+            used = true;
+            return accessToken;
+        }
+
+        private void setAccessToken(OAuth2AccessToken accessToken) {
+            this.accessToken = accessToken;
+            this.used = false;
+            this.invalidated = false;
+        }
+
+        private void invalidate() {
+            this.accessToken = null;
+            this.invalidated = true;
+        }
+    }
+
+    /**
+     * Client context which reads the access token from the manager, rather than holding its own
+     */
+    private static class ManagedClientContext implements OAuth2ClientContext {
+        private final ManagedToken managedToken;
+
+        private ManagedClientContext(ManagedToken managedToken) {
+            this.managedToken = managedToken;
+        }
+
+        @Override
+        public OAuth2AccessToken getAccessToken() {
+            return managedToken.getAccessToken();
+        }
+
+        @Override
+        public void setAccessToken(OAuth2AccessToken accessToken) {
+            // Only ever cleared by OAuth2RestTemplate when the token has been rejected, otherwise it's set to the token acquired by the manager
+            if (accessToken == null) {
+                managedToken.invalidate();
+            }
+        }
+
+        @Override
+        public AccessTokenRequest getAccessTokenRequest() {
+            return new DefaultAccessTokenRequest();
+        }
+
+        @Override
+        public void setPreservedState(String stateKey, Object preservedState) {
+        }
+
+        @Override
+        public Object removePreservedState(String stateKey) {
+            return null;
+        }
+    }
+
+    private class ManagedAccessTokenProvider implements AccessTokenProvider {
+        private final ManagedToken managedToken;
+
+        private ManagedAccessTokenProvider(ManagedToken managedToken) {
+            this.managedToken = managedToken;
+        }
+
+        @Override
+        public OAuth2AccessToken obtainAccessToken(OAuth2ProtectedResourceDetails details, AccessTokenRequest parameters) {
+            return acquireAccessToken(managedToken);
+        }
+
+        @Override
+        public boolean supportsResource(OAuth2ProtectedResourceDetails resource) {
+            return accessTokenProvider.supportsResource(resource);
+        }
+
+        @Override
+        public OAuth2AccessToken refreshAccessToken(OAuth2ProtectedResourceDetails resource, OAuth2RefreshToken refreshToken, AccessTokenRequest request) {
+            return acquireAccessToken(managedToken);
+        }
+
+        @Override
+        public boolean supportsRefresh(OAuth2ProtectedResourceDetails resource) {
+            return false;
+        }
+    }
+
+}
@@ -2,18 +2,36 @@ package com.accantosystems.stratoss.vnfmdriver.service;
 
 import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.*;
 
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.OAuth2ClientContext;
 import org.springframework.security.oauth2.client.OAuth2RestTemplate;
 import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
@@ -22,61 +40,245 @@ import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
 import com.accantosystems.stratoss.vnfmdriver.driver.VNFMResponseErrorHandler;
 import com.accantosystems.stratoss.vnfmdriver.model.AuthenticationType;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
+import com.accantosystems.stratoss.vnfmdriver.security.AccessDeniedException;
 import com.accantosystems.stratoss.vnfmdriver.security.CookieAuthenticatedRestTemplate;
 import com.accantosystems.stratoss.vnfmdriver.security.CookieCredentials;
+import com.accantosystems.stratoss.vnfmdriver.security.OAuth2TokenManager;
 import com.accantosystems.stratoss.vnfmdriver.utils.DynamicSslCertificateHttpRequestFactory;
+import com.accantosystems.stratoss.vnfmdriver.utils.JdkHttpClientRequestFactory;
+import com.accantosystems.stratoss.vnfmdriver.utils.PooledHttpRequestFactory;
+import com.accantosystems.stratoss.vnfmdriver.utils.SslContextCache;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
 
 @Service("AuthenticatedRestTemplateService")
 public class AuthenticatedRestTemplateService {
 
     private final static Logger logger = LoggerFactory.getLogger(AuthenticatedRestTemplateService.class);
+    private static final String CONNECTION_POOL_METRICS_TAG = "httpclient";
+    static final String CACHE_NAME = "vnfmdriver.rest.clients";
 
     private final RestTemplateBuilder restTemplateBuilder;
-    private final Map<ResourceManagerDeploymentLocation, RestTemplate> cachedRestTemplatesByDLs = new ConcurrentHashMap<>();
-    private final Map<String, RestTemplate> cachedRestTemplatesByServerUrl = new ConcurrentHashMap<>();
+    private final VNFMDriverProperties.ConnectionPool connectionPoolProperties;
+    private final VNFMDriverProperties.RestTransportType restTransport;
+    private final SslContextCache sslContextCache;
+    private final OAuth2TokenManager tokenManager;
+    private final MeterRegistry meterRegistry;
+    // Keyed by a fingerprint of each deployment location (or other server, such as the package repository), see getFingerprint
+    private final Cache<String, DeploymentLocationClients> cachedClientsByDLs;
+    // The fingerprint of the most recently seen version of each deployment location (or other server), by name
+    private final Map<String, String> fingerprintsByDLName = new ConcurrentHashMap<>();
+    private final Map<String, PooledHttpRequestFactory> pooledRequestFactories = new ConcurrentHashMap<>();
+    // Connection pools which have been replaced or evicted, but may still be in use by requests already in progress
+    private final Set<PooledHttpRequestFactory> retiredRequestFactories = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService connectionPoolCloser;
+    private final Duration connectionPoolCloseDelay;
+    // Fingerprints already calculated for each deployment location instance (compared by identity), see getCachedFingerprint
+    private final Cache<ResourceManagerDeploymentLocation, CachedFingerprint> fingerprintsByDL = CacheBuilder.newBuilder().weakKeys().build();
+    private final Duration connectTimeout;
+    private final Duration authenticationRefreshAhead;
 
     @Autowired
-    public AuthenticatedRestTemplateService(RestTemplateBuilder restTemplateBuilder, VNFMResponseErrorHandler vnfmResponseErrorHandler, VNFMDriverProperties vnfmDriverProperties) {
+    public AuthenticatedRestTemplateService(RestTemplateBuilder restTemplateBuilder, VNFMResponseErrorHandler vnfmResponseErrorHandler, VNFMDriverProperties vnfmDriverProperties,
+                                            SslContextCache sslContextCache, OAuth2TokenManager tokenManager, ObjectProvider<MeterRegistry> meterRegistry) {
         logger.info("Initialising RestTemplate configuration");
         this.restTemplateBuilder = restTemplateBuilder.errorHandler(vnfmResponseErrorHandler)
-                .requestFactory(DynamicSslCertificateHttpRequestFactory.class)
                 .setConnectTimeout(vnfmDriverProperties.getRestConnectTimeout())
                 .setReadTimeout(vnfmDriverProperties.getRestReadTimeout());
+        this.connectionPoolProperties = vnfmDriverProperties.getRestConnectionPool();
+        this.restTransport = vnfmDriverProperties.getRestTransport();
+        this.connectTimeout = vnfmDriverProperties.getRestConnectTimeout();
+        this.authenticationRefreshAhead = vnfmDriverProperties.getAuthenticationRefreshAhead();
+        this.sslContextCache = sslContextCache;
+        this.tokenManager = tokenManager;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        // Long enough for any request already using a retired connection pool to complete
+        this.connectionPoolCloseDelay = vnfmDriverProperties.getRestConnectTimeout().plus(vnfmDriverProperties.getRestReadTimeout());
+        this.connectionPoolCloser = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("connection-pool-closer-%d").setDaemon(true).build());
+
+        // Evicted (or replaced) entries have their connection pools closed, so the number of deployment locations in use at any one time should
+        // not exceed the maximum size
+        final VNFMDriverProperties.ClientCache clientCacheProperties = vnfmDriverProperties.getRestClientCache();
+        this.cachedClientsByDLs = CacheBuilder.newBuilder()
+                                              .maximumSize(clientCacheProperties.getMaximumSize())
+                                              .expireAfterAccess(clientCacheProperties.getExpireAfterAccess().toMillis(), TimeUnit.MILLISECONDS)
+                                              .removalListener(this::onClientsRemoved)
+                                              .recordStats()
+                                              .build();
+        if (this.meterRegistry != null) {
+            GuavaCacheMetrics.monitor(this.meterRegistry, cachedClientsByDLs, CACHE_NAME);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        cachedClientsByDLs.invalidateAll();
+        cachedClientsByDLs.cleanUp();
+        logger.info("Closing {} HTTP connection pools", pooledRequestFactories.size());
+        pooledRequestFactories.forEach(this::closeConnectionPool);
+        // There's no need to wait for requests in progress when shutting down
+        connectionPoolCloser.shutdownNow();
+        retiredRequestFactories.forEach(this::destroyConnectionPool);
     }
 
     public RestTemplate getRestTemplate(ResourceManagerDeploymentLocation deploymentLocation) {
-        if (cachedRestTemplatesByDLs.containsKey(deploymentLocation)) {
-            return cachedRestTemplatesByDLs.get(deploymentLocation);
-        }
+        return getClients(deploymentLocation).restTemplate;
+    }
+
+    /**
+     * Returns a (non-blocking) HTTP client for the deployment location, for use where a request should not tie up the calling thread until a
+     * response is received. Requests must include the headers returned by {@link #getAuthenticationHeaders(ResourceManagerDeploymentLocation)}.
+     */
+    public HttpClient getHttpClient(ResourceManagerDeploymentLocation deploymentLocation) {
+        return getClients(deploymentLocation).getHttpClient(() -> createHttpClient(deploymentLocation));
+    }
 
-        // Double-check we haven't got a cached entry of the same "name", but different properties. If so, remove it.
-        cachedRestTemplatesByDLs.keySet()
-                                .stream()
-                                .filter(dl -> Objects.equals(dl.getName(), deploymentLocation.getName()))
-                                .findFirst()
-                                .ifPresent(cachedRestTemplatesByDLs::remove);
+    private HttpClient createHttpClient(ResourceManagerDeploymentLocation deploymentLocation) {
+        final Object trustedCertificates = deploymentLocation.getProperties().get(TRUSTED_CERTIFICATES);
+        final HttpClient.Builder builder = HttpClient.newBuilder()
+                                                     .version(restTransport == VNFMDriverProperties.RestTransportType.HTTP_2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                                                     .followRedirects(HttpClient.Redirect.NEVER)
+                                                     .sslContext(sslContextCache.getSslContext(trustedCertificates != null ? trustedCertificates.toString() : null));
+        if (!connectTimeout.isZero()) {
+            builder.connectTimeout(connectTimeout);
+        }
+        return builder.build();
+    }
 
-        // Check there's a URL defined
-        Map<String,String> authenticationProperties = deploymentLocation.getProperties().entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, e -> (String)e.getValue()));
-        checkProperty(authenticationProperties, VNFM_SERVER_URL);
+    /**
+     * Returns the headers required to authenticate a request to the deployment location, when not sent using its RestTemplate.
+     * <p>
+     * This may block if a new access token or session cookie needs to be acquired, but these are otherwise shared with the RestTemplate for the
+     * deployment location.
+     */
+    public HttpHeaders getAuthenticationHeaders(ResourceManagerDeploymentLocation deploymentLocation) throws AccessDeniedException {
+        final RestTemplate restTemplate = getRestTemplate(deploymentLocation);
+        final HttpHeaders headers = new HttpHeaders();
+        if (restTemplate instanceof OAuth2RestTemplate) {
+            headers.setBearerAuth(((OAuth2RestTemplate) restTemplate).getAccessToken().getValue());
+        } else if (restTemplate instanceof CookieAuthenticatedRestTemplate) {
+            headers.set(HttpHeaders.COOKIE, ((CookieAuthenticatedRestTemplate) restTemplate).getSessionCookie().toString());
+        } else if (AuthenticationType.BASIC == AuthenticationType.valueOfIgnoreCase(String.valueOf(deploymentLocation.getProperties().get(AUTHENTICATION_TYPE)))) {
+            headers.setBasicAuth(String.valueOf(deploymentLocation.getProperties().get(AUTHENTICATION_USERNAME)),
+                                 String.valueOf(deploymentLocation.getProperties().get(AUTHENTICATION_PASSWORD)));
+        }
+        return headers;
+    }
 
-        final RestTemplate restTemplate = getRestTemplate(authenticationProperties);
-        cachedRestTemplatesByDLs.put(deploymentLocation, restTemplate);
-        return restTemplate;
+    /**
+     * Returns new headers to authenticate a request to the deployment location, when the VNFM has rejected the given ones (as the RestTemplate for
+     * the deployment location does when a request is unauthorized). The rejected access token or session cookie is discarded and a new one acquired,
+     * unless a concurrent request already has. Returns null if there's no credential which can be renewed (e.g. for basic authentication).
+     */
+    public HttpHeaders renewAuthenticationHeaders(ResourceManagerDeploymentLocation deploymentLocation, HttpHeaders rejectedHeaders) throws AccessDeniedException {
+        final RestTemplate restTemplate = getRestTemplate(deploymentLocation);
+        if (restTemplate instanceof OAuth2RestTemplate) {
+            final OAuth2ClientContext clientContext = ((OAuth2RestTemplate) restTemplate).getOAuth2ClientContext();
+            final OAuth2AccessToken accessToken = clientContext.getAccessToken();
+            if (accessToken != null && Objects.equals(rejectedHeaders.getFirst(HttpHeaders.AUTHORIZATION), "Bearer " + accessToken.getValue())) {
+                clientContext.setAccessToken(null);
+            }
+        } else if (restTemplate instanceof CookieAuthenticatedRestTemplate) {
+            ((CookieAuthenticatedRestTemplate) restTemplate).renewSessionCookie(rejectedHeaders.getFirst(HttpHeaders.COOKIE));
+        } else {
+            return null;
+        }
+        return getAuthenticationHeaders(deploymentLocation);
     }
 
+    /**
+     * Returns a RestTemplate for a server which isn't a deployment location (such as the package repository). These are cached in the same way as
+     * the clients for deployment locations, so a new RestTemplate (and connection pool) is created if the authentication properties change.
+     */
     public RestTemplate getRestTemplate(String serverUrl, Map<String, String> authenticationProperties) {
-        if (cachedRestTemplatesByServerUrl.containsKey(serverUrl)) {
-            return cachedRestTemplatesByServerUrl.get(serverUrl);
+        return getClients(serverUrl, getFingerprint(serverUrl, authenticationProperties), () -> authenticationProperties).restTemplate;
+    }
+
+    private DeploymentLocationClients getClients(ResourceManagerDeploymentLocation deploymentLocation) {
+        return getClients(deploymentLocation.getName(), getCachedFingerprint(deploymentLocation), () -> {
+            // Check there's a URL defined (numeric properties, such as the connection pool sizes, may not have been supplied as strings)
+            final Map<String, String> authenticationProperties = getStringProperties(deploymentLocation);
+            checkProperty(authenticationProperties, VNFM_SERVER_URL);
+            return authenticationProperties;
+        });
+    }
+
+    private DeploymentLocationClients getClients(String name, String fingerprint, Supplier<Map<String, String>> authenticationProperties) {
+        try {
+            // Concurrent requests for the same deployment location wait for a single set of clients to be created
+            return cachedClientsByDLs.get(fingerprint, () -> createClients(name, fingerprint, authenticationProperties.get()));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(String.format("Unexpected exception creating REST clients for [%s]", name), e.getCause());
         }
+    }
 
-        final RestTemplate restTemplate = getRestTemplate(authenticationProperties);
-        cachedRestTemplatesByServerUrl.put(serverUrl, restTemplate);
-        return restTemplate;
+    private DeploymentLocationClients createClients(String name, String fingerprint, Map<String, String> authenticationProperties) {
+        // Remove any cached entry of the same "name", but different properties, closing its connection pool before a new one of the same name is created
+        final String previousFingerprint = fingerprintsByDLName.put(name, fingerprint);
+        if (previousFingerprint != null && !previousFingerprint.equals(fingerprint)) {
+            cachedClientsByDLs.invalidate(previousFingerprint);
+        }
+
+        final ClientHttpRequestFactory requestFactory = createRequestFactory(name, authenticationProperties);
+        return new DeploymentLocationClients(name, requestFactory, createRestTemplate(requestFactory, authenticationProperties));
+    }
+
+    private void onClientsRemoved(RemovalNotification<String, DeploymentLocationClients> notification) {
+        final DeploymentLocationClients clients = notification.getValue();
+        logger.debug("Removing REST clients for [{}] ({})", clients.name, notification.getCause());
+        fingerprintsByDLName.remove(clients.name, notification.getKey());
+        if (clients.requestFactory instanceof PooledHttpRequestFactory) {
+            closeConnectionPool(clients.name, (PooledHttpRequestFactory) clients.requestFactory);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of a deployment location, only calculating it again for the same instance if its name or properties have changed
+     * (which, as the hash codes of the property values are themselves cached, is much cheaper than hashing the values again)
+     */
+    private String getCachedFingerprint(ResourceManagerDeploymentLocation deploymentLocation) {
+        final Map<String, Object> properties = deploymentLocation.getProperties();
+        final int propertiesHashCode = properties.hashCode();
+        final CachedFingerprint cachedFingerprint = fingerprintsByDL.getIfPresent(deploymentLocation);
+        if (cachedFingerprint != null && cachedFingerprint.matches(deploymentLocation.getName(), properties, propertiesHashCode)) {
+            return cachedFingerprint.fingerprint;
+        }
+        final String fingerprint = getFingerprint(deploymentLocation);
+        fingerprintsByDL.put(deploymentLocation, new CachedFingerprint(deploymentLocation.getName(), properties, propertiesHashCode, fingerprint));
+        return fingerprint;
     }
 
-    private RestTemplate getRestTemplate(Map<String, String> authenticationProperties) {
+    /**
+     * Identifies a version of a deployment location, using its name and all of its properties (which include its URL, authentication details,
+     * trusted certificates and connection pool settings). The properties are hashed, rather than kept in the cache key, as they contain credentials.
+     */
+    static String getFingerprint(ResourceManagerDeploymentLocation deploymentLocation) {
+        return getFingerprint(deploymentLocation.getName(), getStringProperties(deploymentLocation));
+    }
+
+    private static String getFingerprint(String name, Map<String, String> properties) {
+        final String sortedProperties = new TreeMap<>(properties).toString();
+        return name + ":" + Hashing.sha256().hashString(sortedProperties, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> getStringProperties(ResourceManagerDeploymentLocation deploymentLocation) {
+        return deploymentLocation.getProperties().entrySet().stream()
+                                 .collect(Collectors.toMap(Map.Entry::getKey, e -> String.valueOf(e.getValue())));
+    }
+
+    private RestTemplate createRestTemplate(ClientHttpRequestFactory requestFactory, Map<String, String> authenticationProperties) {
+        final RestTemplateBuilder restTemplateBuilder = this.restTemplateBuilder.requestFactory(() -> requestFactory);
         final String authenticationTypeString = authenticationProperties.getOrDefault(AUTHENTICATION_TYPE, AuthenticationType.NONE.toString());
         final AuthenticationType authenticationType = AuthenticationType.valueOfIgnoreCase(authenticationTypeString);
         if (authenticationType == null) {
@@ -88,22 +290,22 @@ public class AuthenticatedRestTemplateService {
         case BASIC:
             checkProperty(authenticationProperties, AUTHENTICATION_USERNAME);
             checkProperty(authenticationProperties, AUTHENTICATION_PASSWORD);
-            restTemplate = getBasicAuthenticatedRestTemplate(authenticationProperties);
+            restTemplate = getBasicAuthenticatedRestTemplate(restTemplateBuilder, authenticationProperties);
             break;
         case OAUTH2:
             checkProperty(authenticationProperties, AUTHENTICATION_ACCESS_TOKEN_URI);
             checkProperty(authenticationProperties, AUTHENTICATION_CLIENT_ID);
             checkProperty(authenticationProperties, AUTHENTICATION_CLIENT_SECRET);
-            restTemplate = getOAuth2RestTemplate(authenticationProperties);
+            restTemplate = getOAuth2RestTemplate(restTemplateBuilder, authenticationProperties);
             break;
         case COOKIE:
             checkProperty(authenticationProperties, AUTHENTICATION_URL);
             checkProperty(authenticationProperties, AUTHENTICATION_USERNAME);
             checkProperty(authenticationProperties, AUTHENTICATION_PASSWORD);
-            restTemplate = getCookieAuthenticatedRestTemplate(authenticationProperties);
+            restTemplate = getCookieAuthenticatedRestTemplate(restTemplateBuilder, authenticationProperties);
             break;
         default:
-            restTemplate = getUnauthenticatedRestTemplate();
+            restTemplate = getUnauthenticatedRestTemplate(restTemplateBuilder);
         }
 
         return restTemplate;
@@ -115,19 +317,113 @@ public class AuthenticatedRestTemplateService {
         }
     }
 
-    private RestTemplate getUnauthenticatedRestTemplate() {
+    private ClientHttpRequestFactory createRequestFactory(final String connectionPoolName, final Map<String, String> properties) {
+        // SSL contexts are shared between all connections with the same trusted certificates, so that TLS sessions can be resumed
+        final String trustedCertificates = properties.get(TRUSTED_CERTIFICATES);
+        if (restTransport == VNFMDriverProperties.RestTransportType.HTTP_2) {
+            // Requests are multiplexed over a single connection by the HTTP client, so there's no pool to size
+            logger.info("Creating HTTP/2 client [{}]", connectionPoolName);
+            return new JdkHttpClientRequestFactory(sslContextCache.getSslContext(trustedCertificates));
+        }
+        if (!connectionPoolProperties.isEnabled()) {
+            return new DynamicSslCertificateHttpRequestFactory(sslContextCache.getSocketFactory(trustedCertificates), sslContextCache.getHostnameVerifier(trustedCertificates));
+        }
+
+        // Each pool is sized according to the properties of its deployment location, if present, otherwise the driver-wide defaults
+        final int maxTotal = getIntProperty(properties, CONNECTION_POOL_MAX_TOTAL, connectionPoolProperties.getMaxTotal());
+        final int maxPerRoute = getIntProperty(properties, CONNECTION_POOL_MAX_PER_ROUTE, connectionPoolProperties.getMaxPerRoute());
+        final Duration idleTimeout = getDurationProperty(properties, CONNECTION_POOL_IDLE_TIMEOUT, connectionPoolProperties.getIdleTimeout());
+        final Duration timeToLive = getDurationProperty(properties, CONNECTION_POOL_TIME_TO_LIVE, connectionPoolProperties.getTimeToLive());
+        logger.info("Creating HTTP connection pool [{}] with maxTotal={}, maxPerRoute={}, idleTimeout={}, timeToLive={}", connectionPoolName, maxTotal, maxPerRoute,
+                    idleTimeout, timeToLive);
+
+        final PooledHttpRequestFactory requestFactory = new PooledHttpRequestFactory(sslContextCache.getConnectionSocketFactory(trustedCertificates), maxTotal, maxPerRoute,
+                                                                                     idleTimeout, timeToLive);
+        // Any pool still registered under this name has been replaced (or evicted, but not yet removed from the cache), and must be closed first
+        // so that its meters aren't taken over by this one
+        final PooledHttpRequestFactory previousRequestFactory = pooledRequestFactories.get(connectionPoolName);
+        if (previousRequestFactory != null) {
+            closeConnectionPool(connectionPoolName, previousRequestFactory);
+        }
+        pooledRequestFactories.put(connectionPoolName, requestFactory);
+        if (meterRegistry != null) {
+            new PoolingHttpClientConnectionManagerMetricsBinder(requestFactory.getConnectionManager(), connectionPoolName).bindTo(meterRegistry);
+        }
+        return requestFactory;
+    }
+
+    /**
+     * Closes a connection pool once any requests already using it have had time to complete (its meters are removed straight away)
+     */
+    private void closeConnectionPool(final String connectionPoolName, final PooledHttpRequestFactory requestFactory) {
+        logger.info("Closing HTTP connection pool [{}] in {}", connectionPoolName, connectionPoolCloseDelay);
+        // The meters are only removed if they don't belong to a newer pool of the same name
+        if (pooledRequestFactories.remove(connectionPoolName, requestFactory) && meterRegistry != null) {
+            // Otherwise a new pool of the same name would be reported using the meters of this one
+            meterRegistry.getMeters().stream()
+                         .map(Meter::getId)
+                         .filter(id -> connectionPoolName.equals(id.getTag(CONNECTION_POOL_METRICS_TAG)))
+                         .forEach(meterRegistry::remove);
+        }
+        if (retiredRequestFactories.add(requestFactory)) {
+            try {
+                connectionPoolCloser.schedule(() -> destroyConnectionPool(requestFactory), connectionPoolCloseDelay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                destroyConnectionPool(requestFactory);
+            }
+        }
+    }
+
+    private void destroyConnectionPool(final PooledHttpRequestFactory requestFactory) {
+        if (!retiredRequestFactories.remove(requestFactory)) {
+            return;
+        }
+        try {
+            requestFactory.destroy();
+        } catch (Exception e) {
+            logger.warn("Exception caught closing HTTP connection pool", e);
+        }
+    }
+
+    private int getIntProperty(final Map<String, String> properties, final String propertyName, final int defaultValue) {
+        final String value = properties.get(propertyName);
+        if (!StringUtils.hasText(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value [%s] specified for [%s], expected an integer", value, propertyName));
+        }
+    }
+
+    private Duration getDurationProperty(final Map<String, String> properties, final String propertyName, final Duration defaultValue) {
+        final String value = properties.get(propertyName);
+        if (!StringUtils.hasText(value)) {
+            return defaultValue;
+        }
+        try {
+            // Supports the same formats as durations in the driver configuration, e.g. 30s or PT30S
+            return DurationStyle.detectAndParse(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Invalid value [%s] specified for [%s], expected a duration", value, propertyName));
+        }
+    }
+
+    private RestTemplate getUnauthenticatedRestTemplate(final RestTemplateBuilder restTemplateBuilder) {
         logger.info("Configuring unauthenticated RestTemplate.");
         return restTemplateBuilder.build();
     }
 
-    private RestTemplate getBasicAuthenticatedRestTemplate(final Map<String, String> authenticationProperties) {
+    private RestTemplate getBasicAuthenticatedRestTemplate(final RestTemplateBuilder restTemplateBuilder, final Map<String, String> authenticationProperties) {
         logger.info("Configuring Basic Authentication RestTemplate.");
         return restTemplateBuilder.basicAuthentication(authenticationProperties.get(AUTHENTICATION_USERNAME),
                                                        authenticationProperties.get(AUTHENTICATION_PASSWORD))
                 .build();
     }
 
-    private RestTemplate getOAuth2RestTemplate(final Map<String, String> authenticationProperties) {
+    private RestTemplate getOAuth2RestTemplate(final RestTemplateBuilder restTemplateBuilder, final Map<String, String> authenticationProperties) {
         final ClientCredentialsResourceDetails resourceDetails = new ClientCredentialsResourceDetails();
         resourceDetails.setAccessTokenUri(authenticationProperties.get(AUTHENTICATION_ACCESS_TOKEN_URI));
         resourceDetails.setClientId(authenticationProperties.get(AUTHENTICATION_CLIENT_ID));
@@ -138,10 +434,10 @@ public class AuthenticatedRestTemplateService {
         }
 
         logger.info("Configuring OAuth2 authenticated RestTemplate.");
-        return restTemplateBuilder.configure(new OAuth2RestTemplate(resourceDetails));
+        return restTemplateBuilder.configure(tokenManager.createRestTemplate(resourceDetails));
     }
 
-    private RestTemplate getCookieAuthenticatedRestTemplate(final Map<String, String> authenticationProperties) {
+    private RestTemplate getCookieAuthenticatedRestTemplate(final RestTemplateBuilder restTemplateBuilder, final Map<String, String> authenticationProperties) {
         CookieCredentials cookieCredentials = new CookieCredentials();
         cookieCredentials.setAuthenticationUrl(authenticationProperties.get(AUTHENTICATION_URL));
         cookieCredentials.setUsernameTokenName(authenticationProperties.getOrDefault(AUTHENTICATION_USERNAME_TOKEN_NAME, "IDToken1"));
@@ -150,7 +446,56 @@ public class AuthenticatedRestTemplateService {
         cookieCredentials.setPassword(authenticationProperties.get(AUTHENTICATION_PASSWORD));
 
         logger.info("Configuring Cookie authenticated RestTemplate.");
-        return restTemplateBuilder.configure(new CookieAuthenticatedRestTemplate(cookieCredentials));
+        return restTemplateBuilder.configure(new CookieAuthenticatedRestTemplate(cookieCredentials, authenticationRefreshAhead, meterRegistry));
+    }
+
+    /**
+     * The fingerprint calculated for a deployment location instance, along with what it was calculated from
+     */
+    private static class CachedFingerprint {
+        private final String deploymentLocationName;
+        private final Map<String, Object> properties;
+        private final int propertiesHashCode;
+        private final String fingerprint;
+
+        private CachedFingerprint(String deploymentLocationName, Map<String, Object> properties, int propertiesHashCode, String fingerprint) {
+            this.deploymentLocationName = deploymentLocationName;
+            this.properties = properties;
+            this.propertiesHashCode = propertiesHashCode;
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean matches(String deploymentLocationName, Map<String, Object> properties, int propertiesHashCode) {
+            return this.properties == properties && this.propertiesHashCode == propertiesHashCode
+                    && Objects.equals(this.deploymentLocationName, deploymentLocationName);
+        }
+    }
+
+    /**
+     * The clients created for a version of a deployment location (or other server). The HTTP client is only created if a non-blocking request is made.
+     */
+    private static class DeploymentLocationClients {
+        private final String name;
+        private final ClientHttpRequestFactory requestFactory;
+        private final RestTemplate restTemplate;
+        private volatile HttpClient httpClient;
+
+        private DeploymentLocationClients(String name, ClientHttpRequestFactory requestFactory, RestTemplate restTemplate) {
+            this.name = name;
+            this.requestFactory = requestFactory;
+            this.restTemplate = restTemplate;
+        }
+
+        private HttpClient getHttpClient(Supplier<HttpClient> httpClientFactory) {
+            if (httpClient == null) {
+                synchronized (this) {
+                    if (httpClient == null) {
+                        httpClient = httpClientFactory.get();
+                    }
+                }
+            }
+            return httpClient;
+        }
     }
 
 }
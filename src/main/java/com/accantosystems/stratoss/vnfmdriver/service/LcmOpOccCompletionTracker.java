@@ -0,0 +1,84 @@
+package com.accantosystems.stratoss.vnfmdriver.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.model.LcmOpOccPollingRequest;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionAsyncResponse;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Tracks which lifecycle operation occurrences have finished, whether a notification was received from the VNFM or polling found it had finished.
+ * <p>
+ * Only one {@link ExecutionAsyncResponse} is sent by this driver instance for each outcome of an operation, however it was found out about. A
+ * notification of the result of an operation also stops it from being polled, by whichever driver instance is polling it (through the completion
+ * marker sent on the polling topic). The most recent {@code lcmOpOccCompletionCacheSize} operations are remembered.
+ * <p>
+ * Duplicates are not suppressed across driver instances: a notification is handled by whichever instance the VNFM sends it to, while polling runs
+ * on the instance which owns the partition of the operation. If a poll finds the result before the completion marker reaches that instance (or
+ * the partition is taken over by another instance), Brent is sent the same response again, so must tolerate duplicate responses.
+ */
+@Service("LcmOpOccCompletionTracker")
+public class LcmOpOccCompletionTracker {
+
+    private final static Logger logger = LoggerFactory.getLogger(LcmOpOccCompletionTracker.class);
+
+    private final ExternalMessagingService externalMessagingService;
+    // Responses already sent, keyed by LcmOpOcc and status
+    private final Cache<String, Boolean> sentResponses;
+    // LcmOpOccs known to have finished
+    private final Cache<String, Boolean> completedOperations;
+
+    @Autowired
+    public LcmOpOccCompletionTracker(ExternalMessagingService externalMessagingService, VNFMDriverProperties properties) {
+        this.externalMessagingService = externalMessagingService;
+        this.sentResponses = CacheBuilder.newBuilder().maximumSize(properties.getLcmOpOccCompletionCacheSize()).build();
+        this.completedOperations = CacheBuilder.newBuilder().maximumSize(properties.getLcmOpOccCompletionCacheSize()).build();
+    }
+
+    /**
+     * Handles the result of an operation notified by the VNFM, sending the response and stopping any polling for the operation
+     *
+     * @param response response for the operation
+     */
+    public void notificationReceived(final ExecutionAsyncResponse response) {
+        if (sendExecutionAsyncResponse(response)) {
+            externalMessagingService.sendLcmOpOccPollingRequest(LcmOpOccPollingRequest.completed(response.getRequestId()));
+        }
+    }
+
+    /**
+     * Sends the response for an operation which has finished, unless the same response has already been sent
+     *
+     * @param response response for the operation
+     * @return true if the response was sent, false if it was a duplicate
+     */
+    public boolean sendExecutionAsyncResponse(final ExecutionAsyncResponse response) {
+        markCompleted(response.getRequestId());
+        if (sentResponses.asMap().putIfAbsent(response.getRequestId() + "|" + response.getStatus(), Boolean.TRUE) != null) {
+            logger.debug("Suppressing duplicate {} response for LcmOpOcc [{}]", response.getStatus(), response.getRequestId());
+            return false;
+        }
+        externalMessagingService.sendExecutionAsyncResponse(response);
+        return true;
+    }
+
+    /**
+     * Records that an operation has finished
+     */
+    public void markCompleted(final String vnfLcmOpOccId) {
+        completedOperations.put(vnfLcmOpOccId, Boolean.TRUE);
+    }
+
+    /**
+     * Returns true if an operation is known to have finished
+     */
+    public boolean isCompleted(final String vnfLcmOpOccId) {
+        return completedOperations.getIfPresent(vnfLcmOpOccId) != null;
+    }
+
+}
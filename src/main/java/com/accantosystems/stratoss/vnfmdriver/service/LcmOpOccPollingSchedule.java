@@ -0,0 +1,107 @@
+package com.accantosystems.stratoss.vnfmdriver.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.etsi.sol003.lifecyclemanagement.LcmOperationType;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+
+/**
+ * Decides how long to wait before polling a lifecycle operation occurrence again.
+ * <p>
+ * The delay starts at the initial delay for the type of operation (or {@code lcmOpOccPollingDelay} if there isn't one, or the operation isn't yet
+ * known), growing by {@code lcmOpOccPollingMultiplier} with each poll up to {@code lcmOpOccPollingMaxDelay}. Once enough operations of a type have
+ * completed, polling is skipped until the point at which the quickest of them (by the {@link #EARLIEST_COMPLETION_QUANTILE}) had completed, as
+ * there's little point asking about an operation which is unlikely to have finished yet. Such a delay may be longer than
+ * {@code lcmOpOccPollingMaxDelay}, as it doesn't hold up the checkpoints published by {@link LcmOpOccPollingService}.
+ */
+public class LcmOpOccPollingSchedule {
+
+    static final int MAX_SAMPLES = 100;
+    static final int MIN_SAMPLES = 10;
+    static final double EARLIEST_COMPLETION_QUANTILE = 0.1;
+
+    private final Duration defaultDelay;
+    private final Map<LcmOperationType, Duration> initialDelays;
+    private final double multiplier;
+    private final Duration maxDelay;
+    private final Map<LcmOperationType, CompletionTimes> completionTimes = new ConcurrentHashMap<>();
+
+    public LcmOpOccPollingSchedule(VNFMDriverProperties properties) {
+        this.defaultDelay = properties.getLcmOpOccPollingDelay();
+        this.initialDelays = properties.getLcmOpOccPollingInitialDelays();
+        this.multiplier = properties.getLcmOpOccPollingMultiplier();
+        this.maxDelay = properties.getLcmOpOccPollingMaxDelay();
+    }
+
+    /**
+     * Returns the delay before the next poll of an operation
+     *
+     * @param operation type of operation, or null if not yet known
+     * @param elapsed   time since the operation started
+     * @param pollCount number of times the operation has been polled since its type was known
+     * @return delay before the next poll
+     */
+    public Duration getDelay(final LcmOperationType operation, final Duration elapsed, final int pollCount) {
+        if (operation == null) {
+            return defaultDelay;
+        }
+        final Duration initialDelay = initialDelays.getOrDefault(operation, defaultDelay);
+        final double backoffMillis = initialDelay.toMillis() * Math.pow(multiplier, Math.max(0, pollCount - 1));
+        final Duration backoff = Duration.ofMillis((long) Math.min(backoffMillis, Math.max(maxDelay.toMillis(), initialDelay.toMillis())));
+
+        final Duration earliestCompletion = getCompletionTime(operation, EARLIEST_COMPLETION_QUANTILE);
+        if (earliestCompletion != null && earliestCompletion.minus(elapsed).compareTo(backoff) > 0) {
+            return earliestCompletion.minus(elapsed);
+        }
+        return backoff;
+    }
+
+    /**
+     * Records how long an operation took to complete
+     */
+    public void recordCompletion(final LcmOperationType operation, final Duration completionTime) {
+        if (operation != null && !completionTime.isNegative()) {
+            completionTimes.computeIfAbsent(operation, o -> new CompletionTimes()).add(completionTime.toMillis());
+        }
+    }
+
+    /**
+     * Returns the given quantile of the recent completion times of a type of operation, or null if too few have been seen
+     */
+    public Duration getCompletionTime(final LcmOperationType operation, final double quantile) {
+        final CompletionTimes times = completionTimes.get(operation);
+        return times != null ? times.getQuantile(quantile) : null;
+    }
+
+    /**
+     * The most recent completion times (in milliseconds) of a type of operation
+     */
+    private static class CompletionTimes {
+        private final long[] samples = new long[MAX_SAMPLES];
+        private int count;
+        private int next;
+
+        private synchronized void add(long completionTimeMillis) {
+            samples[next] = completionTimeMillis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        private Duration getQuantile(double quantile) {
+            final long[] sorted;
+            synchronized (this) {
+                if (count < MIN_SAMPLES) {
+                    return null;
+                }
+                sorted = Arrays.copyOf(samples, count);
+            }
+            Arrays.sort(sorted);
+            return Duration.ofMillis(sorted[(int) Math.min(sorted.length - 1, Math.floor(quantile * sorted.length))]);
+        }
+    }
+
+}
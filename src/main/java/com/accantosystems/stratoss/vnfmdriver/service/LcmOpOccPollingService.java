@@ -1,73 +1,457 @@
 package com.accantosystems.stratoss.vnfmdriver.service;
 
 import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.COMPLETED_OPERATIONAL_STATES;
+import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.VNFM_SERVER_URL;
 
-import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.annotation.PreDestroy;
 
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
 import org.etsi.sol003.lifecyclemanagement.LcmOperationStateType;
+import org.etsi.sol003.lifecyclemanagement.LcmOperationType;
 import org.etsi.sol003.lifecyclemanagement.VnfLcmOpOcc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
 import com.accantosystems.stratoss.vnfmdriver.driver.VNFLifecycleManagementDriver;
 import com.accantosystems.stratoss.vnfmdriver.model.LcmOpOccPollingRequest;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionAsyncResponse;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionStatus;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.FailureDetails;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
+import com.accantosystems.stratoss.vnfmdriver.utils.HashedWheelTimer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 
-public class LcmOpOccPollingService {
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Polls the VNFM for the state of lifecycle operation occurrences until they have finished, sending the outcome back to Brent.
+ * <p>
+ * Operations being polled are held in memory, with each poll scheduled on a {@link HashedWheelTimer} rather than a thread sleeping between polls.
+ * The interval between polls adapts to the type of operation and how long such operations have taken to complete (see
+ * {@link LcmOpOccPollingSchedule}), and the execution is failed if the operation hasn't completed within {@code lcmOpOccPollingTimeout}. Operations on
+ * the same VNFM which are due to be polled on the same tick are polled together, with a single (filtered) query for up to
+ * {@code lcmOpOccPollingBatchSize} operations. Polling is the fallback for VNFMs which don't notify the driver of the result of an operation, so an
+ * operation isn't polled until {@code lcmOpOccPollingGracePeriod} has passed without such a notification (see {@link LcmOpOccCompletionTracker}).
+ * The polling topic is only used as a durable checkpoint: requests are keyed by LcmOpOcc (so each is handled by the driver instance which owns its
+ * partition), and a checkpoint is published for each operation every {@code lcmOpOccPollingCheckpointInterval}. When partitions are assigned to this
+ * instance (on startup, or on taking over from another instance) the topic is replayed from twice that interval ago (or from the committed offset, if
+ * earlier), recovering the operations being polled for those partitions. Checkpoints are published on their own schedule, so an operation which isn't
+ * due to be polled for longer than that (having learned how long such operations take) is still recovered. Checkpoints record when polling started,
+ * so the timeout isn't restarted by recovery. A completion marker is published once polling has finished, so that the operation is not picked up
+ * again from an earlier checkpoint.
+ */
+public class LcmOpOccPollingService implements ConsumerSeekAware {
 
     private static final Logger logger = LoggerFactory.getLogger(LcmOpOccPollingService.class);
+    public static final String TRACKED_METRIC_NAME = "vnfmdriver.lcmopocc.polling.tracked";
+    public static final String POLLS_METRIC_NAME = "vnfmdriver.lcmopocc.polling.polls";
+    public static final String DURATION_METRIC_NAME = "vnfmdriver.lcmopocc.duration";
+    public static final String BATCH_SIZE_METRIC_NAME = "vnfmdriver.lcmopocc.polling.batch.size";
+    private static final int TICKS_PER_WHEEL = 512;
 
     private final VNFLifecycleManagementDriver driver;
     private final ExternalMessagingService externalMessagingService;
+    private final LcmOpOccCompletionTracker completionTracker;
     private final ObjectMapper objectMapper;
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final LcmOpOccPollingSchedule pollingSchedule;
+    private final Duration pollingTimeout;
+    private final Duration checkpointInterval;
+    private final Duration gracePeriod;
+    private final int batchSize;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSizeSummary;
+    private final ExecutorService pollingExecutor;
+    private final HashedWheelTimer timer;
+    private final Map<String, TrackedOperation> trackedOperations = new ConcurrentHashMap<>();
+    private final Map<String, PollingBatch> pollingBatches = new ConcurrentHashMap<>();
+    private volatile boolean closed;
 
     @Autowired
-    public LcmOpOccPollingService(VNFLifecycleManagementDriver driver, ExternalMessagingService externalMessagingService, ObjectMapper objectMapper) {
+    public LcmOpOccPollingService(VNFLifecycleManagementDriver driver, ExternalMessagingService externalMessagingService, LcmOpOccCompletionTracker completionTracker,
+                                  ObjectMapper objectMapper, VNFMDriverProperties properties, ObjectProvider<MeterRegistry> meterRegistry,
+                                  ConsumerFactory<?, ?> consumerFactory) {
         logger.info("Creating Lifecycle Management Operation Occurrence Polling Service");
         this.driver = driver;
+        this.consumerFactory = consumerFactory;
         this.externalMessagingService = externalMessagingService;
+        this.completionTracker = completionTracker;
         this.objectMapper = objectMapper;
+        this.pollingSchedule = new LcmOpOccPollingSchedule(properties);
+        this.pollingTimeout = properties.getLcmOpOccPollingTimeout();
+        this.batchSize = Math.max(1, properties.getLcmOpOccPollingBatchSize());
+        this.checkpointInterval = properties.getLcmOpOccPollingCheckpointInterval();
+        if (properties.getLcmOpOccPollingMaxDelay().compareTo(checkpointInterval.multipliedBy(2)) >= 0) {
+            throw new IllegalArgumentException(String.format("lcmOpOccPollingMaxDelay [%s] must be less than twice lcmOpOccPollingCheckpointInterval [%s]",
+                                                             properties.getLcmOpOccPollingMaxDelay(), checkpointInterval));
+        }
+        this.gracePeriod = properties.getLcmOpOccPollingGracePeriod();
+        this.pollingExecutor = Executors.newFixedThreadPool(properties.getLcmOpOccPollingThreads(), new CustomizableThreadFactory("lcmOpOccPoller"));
+        this.timer = new HashedWheelTimer("lcmOpOccPollingTimer", properties.getLcmOpOccPollingTickDuration(), TICKS_PER_WHEEL, pollingExecutor);
+
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        if (this.meterRegistry != null) {
+            Gauge.builder(TRACKED_METRIC_NAME, trackedOperations, Map::size).register(this.meterRegistry);
+            this.batchSizeSummary = DistributionSummary.builder(BATCH_SIZE_METRIC_NAME).register(this.meterRegistry);
+        } else {
+            this.batchSizeSummary = null;
+        }
     }
 
     @PreDestroy
     public void close() {
-        logger.info("Shutting down Lifecycle Management Operation Occurrence Polling Service...");
+        logger.info("Shutting down Lifecycle Management Operation Occurrence Polling Service ({} operations being polled)...", trackedOperations.size());
+        closed = true;
+        timer.close();
+        pollingExecutor.shutdown();
     }
 
     @KafkaListener(topics = "${vnfmdriver.topics.lcmOpOccPollingTopic}")
-    public void listenForLcmOpOccPollingRequestMessages(final String message) {
+    public void listenForLcmOpOccPollingRequestMessages(final String message,
+                                                        @Header(name = KafkaHeaders.RECEIVED_MESSAGE_KEY, required = false) final String key,
+                                                        @Header(KafkaHeaders.RECEIVED_PARTITION_ID) final int partition,
+                                                        @Header(KafkaHeaders.RECEIVED_TIMESTAMP) final long timestamp) {
         try {
             // Deserialize message into LcmOpOccPollingRequest
             LcmOpOccPollingRequest lcmOpOccPollingRequest = objectMapper.readValue(message, LcmOpOccPollingRequest.class);
+            final String vnfLcmOpOccId = lcmOpOccPollingRequest.getVnfLcmOpOccId();
 
-            VnfLcmOpOcc vnfLcmOpOcc = driver.queryLifecycleOperationOccurrence(lcmOpOccPollingRequest.getDeploymentLocation(), lcmOpOccPollingRequest.getVnfLcmOpOccId());
-            if (COMPLETED_OPERATIONAL_STATES.contains(vnfLcmOpOcc.getOperationState())) {
-                // Send back Async response to Brent
-                final ExecutionAsyncResponse executionResponse;
-                if (vnfLcmOpOcc.getOperationState() == LcmOperationStateType.COMPLETED) {
-                    executionResponse = new ExecutionAsyncResponse(lcmOpOccPollingRequest.getVnfLcmOpOccId(), ExecutionStatus.COMPLETE, null, Collections.emptyMap(), Collections.emptyMap());
-                } else {
-                    executionResponse = new ExecutionAsyncResponse(lcmOpOccPollingRequest.getVnfLcmOpOccId(),
-                                                                   ExecutionStatus.FAILED,
-                                                                   new FailureDetails(FailureDetails.FailureCode.INFRASTRUCTURE_ERROR, vnfLcmOpOcc.getError().getDetail()),
-                                                                   Collections.emptyMap(),Collections.emptyMap());
+            if (lcmOpOccPollingRequest.isCompleted()) {
+                // Remembered in case the request to poll the operation is seen after this (e.g. when notified of the result straight away)
+                completionTracker.markCompleted(vnfLcmOpOccId);
+                final TrackedOperation trackedOperation = trackedOperations.remove(vnfLcmOpOccId);
+                if (trackedOperation != null) {
+                    trackedOperation.cancel();
                 }
-                executionResponse.setTimestamp(System.currentTimeMillis());
-                externalMessagingService.sendExecutionAsyncResponse(executionResponse);
-            } else {
-                // Keep waiting and re-enqueue polling request
+            } else if (!Objects.equals(key, vnfLcmOpOccId)) {
+                // Requests which were not keyed by LcmOpOcc may be on a different partition to its checkpoints, so hand it over to the right one
                 externalMessagingService.sendLcmOpOccPollingRequest(lcmOpOccPollingRequest);
+            } else if (completionTracker.isCompleted(vnfLcmOpOccId)) {
+                logger.debug("Not polling for LcmOpOcc [{}], which has already finished", vnfLcmOpOccId);
+            } else {
+                trackedOperations.computeIfAbsent(vnfLcmOpOccId, id -> {
+                    logger.debug("Polling for LcmOpOcc [{}]", id);
+                    // The message is the latest checkpoint for the operation, which may have been replayed, so the timeout runs from when polling
+                    // first started (by whichever instance) rather than from now
+                    final long trackingStartTime = lcmOpOccPollingRequest.getTrackingStartTime() != null ? lcmOpOccPollingRequest.getTrackingStartTime()
+                                                                                                         : System.currentTimeMillis();
+                    final TrackedOperation trackedOperation = new TrackedOperation(lcmOpOccPollingRequest.withTrackingStartTime(trackingStartTime), partition, timestamp);
+                    // Give the VNFM a chance to notify us of the result before polling
+                    final Duration initialDelay = pollingSchedule.getDelay(null, Duration.ZERO, 0);
+                    trackedOperation.schedule(gracePeriod.compareTo(initialDelay) > 0 ? gracePeriod : initialDelay);
+                    trackedOperation.scheduleCheckpoint();
+                    return trackedOperation;
+                });
             }
         } catch (Exception e) {
             logger.error("Exception caught processing LcmOpOccPollingRequest message", e);
         }
     }
 
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        // Replay recent checkpoints, to pick up the operations being polled by the previous owner of these partitions. This only ever moves back from
+        // the committed offset, so requests which haven't been handled yet (e.g. after an outage longer than the checkpoint interval) aren't skipped
+        final long replayFrom = System.currentTimeMillis() - checkpointInterval.multipliedBy(2).toMillis();
+        final Map<TopicPartition, OffsetAndTimestamp> checkpointOffsets = findOffsetsForTimestamp(assignments.keySet(), replayFrom);
+        assignments.forEach((topicPartition, committedOffset) -> {
+            final OffsetAndTimestamp checkpointOffset = checkpointOffsets.get(topicPartition);
+            if (checkpointOffset != null && (committedOffset == null || checkpointOffset.offset() < committedOffset)) {
+                logger.debug("Replaying checkpoints on partition [{}] from offset [{}] (committed offset [{}])", topicPartition, checkpointOffset.offset(), committedOffset);
+                callback.seek(topicPartition.topic(), topicPartition.partition(), checkpointOffset.offset());
+            }
+        });
+    }
+
+    private Map<TopicPartition, OffsetAndTimestamp> findOffsetsForTimestamp(final Collection<TopicPartition> topicPartitions, final long timestamp) {
+        try (Consumer<?, ?> consumer = consumerFactory.createConsumer()) {
+            final Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(topicPartitions.stream()
+                                                                                                            .collect(Collectors.toMap(Function.identity(), topicPartition -> timestamp)));
+            return offsets != null ? offsets : Collections.emptyMap();
+        } catch (Exception e) {
+            logger.warn("Unable to find the offsets of recent checkpoints, operations being polled by the previous owner of partitions {} won't be recovered",
+                        topicPartitions, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        // The new owner of these partitions will pick up the operations from their checkpoints
+        partitions.forEach(topicPartition -> trackedOperations.values().removeIf(trackedOperation -> {
+            if (trackedOperation.partition == topicPartition.partition()) {
+                trackedOperation.cancel();
+                return true;
+            }
+            return false;
+        }));
+    }
+
+    /**
+     * Returns the number of lifecycle operation occurrences currently being polled by this instance
+     */
+    public int getTrackedOperationCount() {
+        return trackedOperations.size();
+    }
+
+    /**
+     * Adds an operation which is due to be polled to the batch for its VNFM, which is polled on the next tick of the timer
+     */
+    private void enqueue(final TrackedOperation trackedOperation) {
+        if (closed || !isTracked(trackedOperation)) {
+            return;
+        }
+        final ResourceManagerDeploymentLocation deploymentLocation = trackedOperation.request.getDeploymentLocation();
+        final String batchKey = deploymentLocation.getName() + "|" + deploymentLocation.getProperties().get(VNFM_SERVER_URL);
+        final PollingBatch pollingBatch = pollingBatches.computeIfAbsent(batchKey, key -> new PollingBatch());
+        if (pollingBatch.add(trackedOperation)) {
+            timer.schedule(() -> Lists.partition(pollingBatch.drain(), batchSize).forEach(this::poll), Duration.ZERO);
+        }
+    }
+
+    /**
+     * Polls a batch of operations on the same VNFM with a single query
+     */
+    private void poll(final List<TrackedOperation> batch) {
+        final List<TrackedOperation> trackedBatch = batch.stream().filter(this::isTracked).collect(Collectors.toList());
+        if (closed || trackedBatch.isEmpty()) {
+            return;
+        }
+        final List<String> vnfLcmOpOccIds = trackedBatch.stream().map(trackedOperation -> trackedOperation.request.getVnfLcmOpOccId()).collect(Collectors.toList());
+        final Map<String, VnfLcmOpOcc> vnfLcmOpOccs;
+        try {
+            final ResourceManagerDeploymentLocation deploymentLocation = trackedBatch.get(0).request.getDeploymentLocation();
+            // An operation polled on its own is queried directly, which allows the VNFM to respond 304 Not Modified if it hasn't changed
+            final List<VnfLcmOpOcc> results = vnfLcmOpOccIds.size() == 1
+                                              ? Collections.singletonList(driver.queryLifecycleOperationOccurrence(deploymentLocation, vnfLcmOpOccIds.get(0)))
+                                              : driver.queryLifecycleOperationOccurrences(deploymentLocation, vnfLcmOpOccIds);
+            vnfLcmOpOccs = results.stream()
+                                 .collect(Collectors.toMap(VnfLcmOpOcc::getId, Function.identity(), (first, second) -> first));
+            if (batchSizeSummary != null) {
+                batchSizeSummary.record(trackedBatch.size());
+            }
+        } catch (Exception e) {
+            if (closed) {
+                // Left for another instance to pick up from its checkpoint
+                return;
+            }
+            // Keep trying until the operations time out
+            logger.error(String.format("Exception caught polling for LcmOpOccs %s", vnfLcmOpOccIds), e);
+            trackedBatch.forEach(trackedOperation -> keepWaiting(trackedOperation, null, getElapsedTime(trackedOperation, null), "unknown"));
+            return;
+        }
+        for (final TrackedOperation trackedOperation : trackedBatch) {
+            try {
+                onPolled(trackedOperation, vnfLcmOpOccs.get(trackedOperation.request.getVnfLcmOpOccId()));
+            } catch (Exception e) {
+                logger.error(String.format("Exception caught handling LcmOpOcc [%s]", trackedOperation.request.getVnfLcmOpOccId()), e);
+                stopPolling(trackedOperation);
+            }
+        }
+    }
+
+    private void onPolled(final TrackedOperation trackedOperation, final VnfLcmOpOcc vnfLcmOpOcc) {
+        final String vnfLcmOpOccId = trackedOperation.request.getVnfLcmOpOccId();
+        if (vnfLcmOpOcc == null) {
+            logger.warn("LcmOpOcc [{}] not found", vnfLcmOpOccId);
+            keepWaiting(trackedOperation, null, getElapsedTime(trackedOperation, null), "not found");
+            return;
+        }
+        final LcmOperationType operation = vnfLcmOpOcc.getOperation();
+        final Duration elapsed = getElapsedTime(trackedOperation, vnfLcmOpOcc);
+        if (meterRegistry != null) {
+            Counter.builder(POLLS_METRIC_NAME).tag("operation", getOperationTag(operation)).register(meterRegistry).increment();
+        }
+        if (COMPLETED_OPERATIONAL_STATES.contains(vnfLcmOpOcc.getOperationState())) {
+            recordCompletion(operation, getCompletionTime(vnfLcmOpOcc, elapsed));
+            // Send back Async response to Brent
+            final ExecutionAsyncResponse executionResponse;
+            if (vnfLcmOpOcc.getOperationState() == LcmOperationStateType.COMPLETED) {
+                executionResponse = new ExecutionAsyncResponse(vnfLcmOpOccId, ExecutionStatus.COMPLETE, null, Collections.emptyMap(), Collections.emptyMap());
+            } else {
+                executionResponse = new ExecutionAsyncResponse(vnfLcmOpOccId,
+                                                               ExecutionStatus.FAILED,
+                                                               new FailureDetails(FailureDetails.FailureCode.INFRASTRUCTURE_ERROR, vnfLcmOpOcc.getError().getDetail()),
+                                                               Collections.emptyMap(),Collections.emptyMap());
+            }
+            executionResponse.setTimestamp(System.currentTimeMillis());
+            completionTracker.sendExecutionAsyncResponse(executionResponse);
+            stopPolling(trackedOperation);
+        } else {
+            keepWaiting(trackedOperation, operation, elapsed, String.valueOf(vnfLcmOpOcc.getOperationState()));
+        }
+    }
+
+    /**
+     * Schedules the next poll of an operation which hasn't completed, unless it has timed out
+     */
+    private void keepWaiting(final TrackedOperation trackedOperation, final LcmOperationType operation, final Duration elapsed, final String state) {
+        final LcmOpOccPollingRequest lcmOpOccPollingRequest = trackedOperation.request;
+        final String vnfLcmOpOccId = lcmOpOccPollingRequest.getVnfLcmOpOccId();
+        if (elapsed.compareTo(pollingTimeout) >= 0) {
+            logger.warn("Timed out after {} waiting for LcmOpOcc [{}] to complete, it is {}", elapsed, vnfLcmOpOccId, state);
+            final ExecutionAsyncResponse executionResponse = new ExecutionAsyncResponse(vnfLcmOpOccId,
+                                                                                        ExecutionStatus.FAILED,
+                                                                                        new FailureDetails(FailureDetails.FailureCode.INTERNAL_ERROR,
+                                                                                                           String.format("Timed out after %s waiting for lifecycle operation occurrence [%s] to complete", elapsed, vnfLcmOpOccId)),
+                                                                                        Collections.emptyMap(), Collections.emptyMap());
+            executionResponse.setTimestamp(System.currentTimeMillis());
+            completionTracker.sendExecutionAsyncResponse(executionResponse);
+            stopPolling(trackedOperation);
+            return;
+        }
+        if (operation != null) {
+            trackedOperation.pollCount++;
+        }
+        final Duration delay = pollingSchedule.getDelay(operation, elapsed, trackedOperation.pollCount);
+        // Poll again at the deadline rather than after it
+        final Duration remaining = pollingTimeout.minus(elapsed);
+        trackedOperation.schedule(delay.compareTo(remaining) < 0 ? delay : remaining);
+    }
+
+    /**
+     * Publishes a checkpoint for an operation which is still being polled, so that it can be recovered by another instance
+     */
+    private void checkpoint(final TrackedOperation trackedOperation) {
+        if (closed || !isTracked(trackedOperation)) {
+            return;
+        }
+        externalMessagingService.sendLcmOpOccPollingRequest(trackedOperation.request);
+        trackedOperation.lastCheckpoint = System.currentTimeMillis();
+        trackedOperation.scheduleCheckpoint();
+    }
+
+    private boolean isTracked(final TrackedOperation trackedOperation) {
+        return trackedOperations.get(trackedOperation.request.getVnfLcmOpOccId()) == trackedOperation;
+    }
+
+    /**
+     * Returns how long the operation has been running, according to the VNFM if it says when it started
+     */
+    private Duration getElapsedTime(final TrackedOperation trackedOperation, final VnfLcmOpOcc vnfLcmOpOcc) {
+        final Instant startTime = vnfLcmOpOcc != null && vnfLcmOpOcc.getStartTime() != null ? vnfLcmOpOcc.getStartTime().toInstant() : trackedOperation.trackedSince;
+        final Duration elapsed = Duration.between(startTime, Instant.now());
+        return elapsed.isNegative() ? Duration.ZERO : elapsed;
+    }
+
+    private Duration getCompletionTime(final VnfLcmOpOcc vnfLcmOpOcc, final Duration elapsed) {
+        if (vnfLcmOpOcc.getStartTime() != null && vnfLcmOpOcc.getStateEnteredTime() != null) {
+            return Duration.between(vnfLcmOpOcc.getStartTime(), vnfLcmOpOcc.getStateEnteredTime());
+        }
+        return elapsed;
+    }
+
+    private void recordCompletion(final LcmOperationType operation, final Duration completionTime) {
+        pollingSchedule.recordCompletion(operation, completionTime);
+        if (meterRegistry != null && !completionTime.isNegative()) {
+            Timer.builder(DURATION_METRIC_NAME).tag("operation", getOperationTag(operation)).register(meterRegistry).record(completionTime.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String getOperationTag(final LcmOperationType operation) {
+        return operation != null ? operation.name().toLowerCase(Locale.ROOT) : "unknown";
+    }
+
+    private void stopPolling(final TrackedOperation trackedOperation) {
+        if (trackedOperations.remove(trackedOperation.request.getVnfLcmOpOccId(), trackedOperation)) {
+            trackedOperation.cancel();
+            externalMessagingService.sendLcmOpOccPollingRequest(LcmOpOccPollingRequest.completed(trackedOperation.request.getVnfLcmOpOccId()));
+        }
+    }
+
+    /**
+     * Operations on the same VNFM which are due to be polled
+     */
+    private static class PollingBatch {
+        private final List<TrackedOperation> operations = new ArrayList<>();
+
+        /**
+         * Adds an operation to the batch, returning true if it's the first (so the batch needs to be scheduled)
+         */
+        private synchronized boolean add(TrackedOperation trackedOperation) {
+            operations.add(trackedOperation);
+            return operations.size() == 1;
+        }
+
+        private synchronized List<TrackedOperation> drain() {
+            final List<TrackedOperation> drained = new ArrayList<>(operations);
+            operations.clear();
+            return drained;
+        }
+    }
+
+    /**
+     * A lifecycle operation occurrence being polled by this instance
+     */
+    private class TrackedOperation {
+        private final LcmOpOccPollingRequest request;
+        private final int partition;
+        private final Instant trackedSince;
+        private volatile long lastCheckpoint;
+        private volatile int pollCount;
+        private volatile HashedWheelTimer.Timeout timeout;
+        private volatile HashedWheelTimer.Timeout checkpointTimeout;
+
+        private TrackedOperation(LcmOpOccPollingRequest request, int partition, long lastCheckpoint) {
+            this.request = request;
+            this.partition = partition;
+            this.trackedSince = Instant.ofEpochMilli(request.getTrackingStartTime());
+            this.lastCheckpoint = lastCheckpoint;
+        }
+
+        private void schedule(final Duration delay) {
+            timeout = timer.schedule(() -> enqueue(this), delay);
+        }
+
+        /**
+         * Schedules the next checkpoint, due a checkpoint interval after the last one (which may already have passed, for a replayed checkpoint)
+         */
+        private void scheduleCheckpoint() {
+            final long dueInMillis = lastCheckpoint + checkpointInterval.toMillis() - System.currentTimeMillis();
+            checkpointTimeout = timer.schedule(() -> checkpoint(this), Duration.ofMillis(Math.max(0, dueInMillis)));
+        }
+
+        private void cancel() {
+            final HashedWheelTimer.Timeout currentTimeout = timeout;
+            if (currentTimeout != null) {
+                currentTimeout.cancel();
+            }
+            final HashedWheelTimer.Timeout currentCheckpointTimeout = checkpointTimeout;
+            if (currentCheckpointTimeout != null) {
+                currentCheckpointTimeout.cancel();
+            }
+        }
+    }
+
 }
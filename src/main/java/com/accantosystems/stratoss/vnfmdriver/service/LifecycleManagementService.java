@@ -2,7 +2,10 @@ package com.accantosystems.stratoss.vnfmdriver.service;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import com.accantosystems.stratoss.vnfmdriver.model.alm.*;
 import org.slf4j.Logger;
@@ -17,6 +20,19 @@ import com.accantosystems.stratoss.vnfmdriver.driver.VNFLifecycleManagementDrive
 public class LifecycleManagementService {
 
     private final static Logger logger = LoggerFactory.getLogger(LifecycleManagementService.class);
+    private final static Map<String, LcmOperation> LCM_OPERATIONS = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        LCM_OPERATIONS.put("Install", new LcmOperation("InstantiateVnfRequest", "instantiate", VNFLifecycleManagementDriver::instantiateVnf));
+        LCM_OPERATIONS.put("Start", new LcmOperation("OperateVnfRequest-Start", "operate", VNFLifecycleManagementDriver::operateVnf));
+        LCM_OPERATIONS.put("Stop", new LcmOperation("OperateVnfRequest-Stop", "operate", VNFLifecycleManagementDriver::operateVnf));
+        LCM_OPERATIONS.put("Uninstall", new LcmOperation("TerminateVnfRequest", "terminate", VNFLifecycleManagementDriver::terminateVnf));
+        LCM_OPERATIONS.put("ScaleToLevel", new LcmOperation("ScaleVnfRequest", "scale", VNFLifecycleManagementDriver::scaleVnf));
+        LCM_OPERATIONS.put("ScaleOut", new LcmOperation("ScaleVnfRequest", "scale", VNFLifecycleManagementDriver::scaleVnf));
+        LCM_OPERATIONS.put("ScaleIn", new LcmOperation("ScaleVnfRequest", "scale", VNFLifecycleManagementDriver::scaleVnf));
+        LCM_OPERATIONS.put("Heal", new LcmOperation("HealVnfRequest", "heal", VNFLifecycleManagementDriver::healVnf));
+        LCM_OPERATIONS.put("Upgrade", new LcmOperation("ChangeCurrentVnfPkgRequest", "change_vnfpkg", VNFLifecycleManagementDriver::changeCurrentVnfPkg));
+    }
 
     private final VNFLifecycleManagementDriver vnfLifecycleManagementDriver;
     private final MessageConversionService messageConversionService;
@@ -50,54 +66,6 @@ public class LifecycleManagementService {
 
                 // Send response back to ALM
                 return new ExecutionAcceptedResponse(requestId);
-            } else if ("Install".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // Instantiate
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String instantiateVnfRequest = messageConversionService.generateMessageFromRequest("InstantiateVnfRequest", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.instantiateVnf(executionRequest.getDeploymentLocation(), vnfInstanceId, instantiateVnfRequest);
-                return new ExecutionAcceptedResponse(requestId);
-            } else if ("Start".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // Operate (Start)
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String operateVnfRequest = messageConversionService.generateMessageFromRequest("OperateVnfRequest-Start", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.operateVnf(executionRequest.getDeploymentLocation(), vnfInstanceId, operateVnfRequest);
-                return new ExecutionAcceptedResponse(requestId);
-            } else if ("Stop".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // Operate (Stop)
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String operateVnfRequest = messageConversionService.generateMessageFromRequest("OperateVnfRequest-Stop", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.operateVnf(executionRequest.getDeploymentLocation(), vnfInstanceId, operateVnfRequest);
-                return new ExecutionAcceptedResponse(requestId);
-            } else if ("Uninstall".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // Terminate
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String terminateVnfRequest = messageConversionService.generateMessageFromRequest("TerminateVnfRequest", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.terminateVnf(executionRequest.getDeploymentLocation(), vnfInstanceId, terminateVnfRequest);
-                return new ExecutionAcceptedResponse(requestId);
-            } else if ("ScaleToLevel".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // ScaleToLevel
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String scaleVnfRequest = messageConversionService.generateMessageFromRequest("ScaleVnfRequest", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.scaleVnf(executionRequest.getDeploymentLocation(), vnfInstanceId, scaleVnfRequest);
-                return new ExecutionAcceptedResponse(requestId);
-            } else if ("ScaleOut".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // Scale Out
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String scaleVnfRequest = messageConversionService.generateMessageFromRequest("ScaleVnfRequest", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.scaleVnf(executionRequest.getDeploymentLocation(), vnfInstanceId, scaleVnfRequest);
-                return new ExecutionAcceptedResponse(requestId);
-            } else if ("ScaleIn".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // Scale In
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String scaleVnfRequest = messageConversionService.generateMessageFromRequest("ScaleVnfRequest", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.scaleVnf(executionRequest.getDeploymentLocation(), vnfInstanceId, scaleVnfRequest);
-                return new ExecutionAcceptedResponse(requestId);
-            } else if ("Heal".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // Heal
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String healVnfRequest = messageConversionService.generateMessageFromRequest("HealVnfRequest", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.healVnf(executionRequest.getDeploymentLocation(), vnfInstanceId, healVnfRequest);
-                return new ExecutionAcceptedResponse(requestId);
             } else if ("Delete".equalsIgnoreCase(executionRequest.getLifecycleName())) {
                 // Delete
                 final String requestId = UUID.randomUUID().toString();
@@ -105,20 +73,93 @@ public class LifecycleManagementService {
                 vnfLifecycleManagementDriver.deleteVnfInstance(executionRequest.getDeploymentLocation(), vnfInstanceId, requestId);
                 externalMessagingService.sendDelayedExecutionAsyncResponse(new ExecutionAsyncResponse(requestId, ExecutionStatus.COMPLETE, null, Collections.emptyMap(), Collections.emptyMap()), properties.getExecutionResponseDelay());
                 return new ExecutionAcceptedResponse(requestId);
-            } else if ("Upgrade".equalsIgnoreCase(executionRequest.getLifecycleName())) {
-                // ChangeCurrentVNFPackage
-                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
-                final String changeCurrentVnfPkgRequest = messageConversionService.generateMessageFromRequest("ChangeCurrentVnfPkgRequest", executionRequest);
-                final String requestId = vnfLifecycleManagementDriver.changeCurrentVnfPkg(executionRequest.getDeploymentLocation(), vnfInstanceId, changeCurrentVnfPkgRequest);
-                return new ExecutionAcceptedResponse(requestId);
             }
-             else {
-                throw new IllegalArgumentException(String.format("Requested transition [%s] is not supported by this lifecycle driver", executionRequest.getLifecycleName()));
+
+            // Operations on an existing VNF instance (instantiate, operate, scale, heal, terminate or change_vnfpkg)
+            final LcmOperation lcmOperation = getLcmOperation(executionRequest);
+            final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
+            final String operationRequest = messageConversionService.generateMessageFromRequest(lcmOperation.messageType, executionRequest);
+            final String requestId = lcmOperation.call.call(vnfLifecycleManagementDriver, executionRequest.getDeploymentLocation(), vnfInstanceId, operationRequest);
+            return new ExecutionAcceptedResponse(requestId);
+        } catch (MessageConversionException e) {
+            logger.error("Error converting message", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Processes an execution request in the same way as {@link #executeLifecycle(ExecutionRequest)}, except that the calling thread is not blocked
+     * while waiting for the VNFM to respond.
+     *
+     * @param executionRequest execution request
+     * @return future completed with the response to return to ALM, or completed exceptionally if the request to the VNFM failed
+     * @throws MessageConversionException if the message to send to the VNFM could not be generated
+     */
+    public CompletableFuture<ExecutionAcceptedResponse> executeLifecycleAsync(ExecutionRequest executionRequest) throws MessageConversionException {
+        logger.info("Processing execution request (non-blocking)");
+
+        try {
+            if ("Create".equalsIgnoreCase(executionRequest.getLifecycleName())) {
+                final String requestId = UUID.randomUUID().toString();
+                final String createVnfRequest = messageConversionService.generateMessageFromRequest("CreateVnfRequest", executionRequest);
+                return vnfLifecycleManagementDriver.createVnfInstanceAsync(executionRequest.getDeploymentLocation(), createVnfRequest, requestId).thenApply(vnfInstanceResponse -> {
+                    final Map<String, Object> outputs;
+                    try {
+                        outputs = messageConversionService.extractPropertiesFromMessage("VnfInstance", executionRequest, vnfInstanceResponse);
+                    } catch (MessageConversionException e) {
+                        logger.error("Error converting message", e);
+                        throw new CompletionException(e);
+                    }
+                    externalMessagingService.sendDelayedExecutionAsyncResponse(new ExecutionAsyncResponse(requestId, ExecutionStatus.COMPLETE, null, outputs, Collections.emptyMap()), properties.getExecutionResponseDelay());
+                    return new ExecutionAcceptedResponse(requestId);
+                });
+            } else if ("Delete".equalsIgnoreCase(executionRequest.getLifecycleName())) {
+                final String requestId = UUID.randomUUID().toString();
+                final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
+                return vnfLifecycleManagementDriver.deleteVnfInstanceAsync(executionRequest.getDeploymentLocation(), vnfInstanceId, requestId).thenApply(v -> {
+                    externalMessagingService.sendDelayedExecutionAsyncResponse(new ExecutionAsyncResponse(requestId, ExecutionStatus.COMPLETE, null, Collections.emptyMap(), Collections.emptyMap()), properties.getExecutionResponseDelay());
+                    return new ExecutionAcceptedResponse(requestId);
+                });
             }
+
+            final LcmOperation lcmOperation = getLcmOperation(executionRequest);
+            final String vnfInstanceId = executionRequest.getStringResourceProperty("vnfInstanceId");
+            final String operationRequest = messageConversionService.generateMessageFromRequest(lcmOperation.messageType, executionRequest);
+            return vnfLifecycleManagementDriver.callVnfLcmOperationAsync(executionRequest.getDeploymentLocation(), vnfInstanceId, lcmOperation.operationName, operationRequest)
+                                               .thenApply(ExecutionAcceptedResponse::new);
         } catch (MessageConversionException e) {
             logger.error("Error converting message", e);
             throw e;
         }
     }
 
+    private LcmOperation getLcmOperation(ExecutionRequest executionRequest) {
+        final LcmOperation lcmOperation = LCM_OPERATIONS.get(executionRequest.getLifecycleName());
+        if (lcmOperation == null) {
+            throw new IllegalArgumentException(String.format("Requested transition [%s] is not supported by this lifecycle driver", executionRequest.getLifecycleName()));
+        }
+        return lcmOperation;
+    }
+
+    /**
+     * An operation on an existing VNF instance, identified by the message generated for it, its name in the path of the (non-blocking) request to
+     * the VNFM and the driver method used to send the (blocking) request
+     */
+    private static class LcmOperation {
+        private final String messageType;
+        private final String operationName;
+        private final LcmOperationCall call;
+
+        private LcmOperation(String messageType, String operationName, LcmOperationCall call) {
+            this.messageType = messageType;
+            this.operationName = operationName;
+            this.call = call;
+        }
+    }
+
+    @FunctionalInterface
+    private interface LcmOperationCall {
+        String call(VNFLifecycleManagementDriver driver, ResourceManagerDeploymentLocation deploymentLocation, String vnfInstanceId, String operationRequest);
+    }
+
 }
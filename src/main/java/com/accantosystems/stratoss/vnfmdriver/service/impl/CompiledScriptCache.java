@@ -0,0 +1,73 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Bounded cache of compiled message conversion scripts, keyed by the engine they were compiled against and a hash of the script contents.
+ * <p>
+ * Scripts are compiled once per engine (a compiled script can only be evaluated by the engine that compiled it) and re-used for every subsequent request carrying the same script
+ * contents, regardless of whether they came from the driver's default scripts or from the driverFiles of a resource package. The least recently
+ * used entries are evicted once the configured maximum size is reached.
+ */
+class CompiledScriptCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledScriptCache.class);
+    static final String CACHE_NAME = "vnfmdriver.scripts.compiled";
+
+    private final Cache<String, CompiledScript> cache;
+
+    CompiledScriptCache(int maximumSize, MeterRegistry meterRegistry) {
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumSize(maximumSize)
+                                 .recordStats()
+                                 .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retrieves the compiled form of the given script, compiling (and caching) it if it hasn't been seen before
+     *
+     * @param engineId   identifier of the engine the script is to be evaluated by
+     * @param compilable engine used to compile the script on a cache miss
+     * @param script     script contents
+     * @return compiled script
+     * @throws ScriptException if the script could not be compiled
+     */
+    CompiledScript getCompiledScript(final int engineId, final Compilable compilable, final String script) throws ScriptException {
+        final String scriptHash = hash(script);
+        try {
+            return cache.get(engineId + ":" + scriptHash, () -> {
+                logger.debug("Compiling script with hash [{}] for engine [{}]", scriptHash, engineId);
+                return compilable.compile(script);
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScriptException) {
+                throw (ScriptException) e.getCause();
+            }
+            throw new IllegalStateException("Unexpected exception compiling script", e.getCause());
+        }
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    static String hash(final String script) {
+        return Hashing.sha256().hashString(script, StandardCharsets.UTF_8).toString();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.util.StringUtils;
+
+import com.accantosystems.stratoss.vnfmdriver.utils.DriverFilesArchive;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Bounded cache of the archives read from the driverFiles of execution requests, keyed by a hash of the driverFiles.
+ * <p>
+ * The cache is bounded by the total size of the files held in the archives (rather than the number of archives), as resource packages can vary
+ * greatly in size. The least recently used archives are evicted once the configured maximum is reached.
+ */
+class DriverFilesArchiveCache {
+
+    static final String CACHE_NAME = "vnfmdriver.driverfiles.archives";
+
+    private final Cache<String, DriverFilesArchive> cache;
+
+    DriverFilesArchiveCache(long maximumWeight, MeterRegistry meterRegistry) {
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumWeight(maximumWeight)
+                                 .weigher((String driverFilesHash, DriverFilesArchive archive) -> (int) Math.min(Integer.MAX_VALUE, archive.getWeight()))
+                                 .recordStats()
+                                 .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retrieves the archive for the given driverFiles, reading (and caching) it if it hasn't been seen before
+     *
+     * @param driverFiles Base64 encoded Zip file, may be null or empty
+     * @return archive of the files contained in the driverFiles
+     */
+    DriverFilesArchive getArchive(final String driverFiles) {
+        if (StringUtils.isEmpty(driverFiles)) {
+            return DriverFilesArchive.forDriverFiles(driverFiles);
+        }
+
+        final String driverFilesHash = Hashing.sha256().hashString(driverFiles, StandardCharsets.UTF_8).toString();
+        try {
+            return cache.get(driverFilesHash, () -> DriverFilesArchive.forDriverFiles(driverFiles));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // e.g. the driverFiles were not valid Base64
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Unexpected exception reading driverFiles", e.getCause());
+        }
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+}
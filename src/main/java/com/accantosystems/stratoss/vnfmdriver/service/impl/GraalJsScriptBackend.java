@@ -0,0 +1,153 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import javax.script.ScriptException;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Runs scripts using GraalJS, with a lightweight context created per request on a single shared polyglot {@link Engine}.
+ * <p>
+ * The engine holds the code cache, so each distinct script (and library) is only parsed once and then shared, along with any optimised code,
+ * by every context. Sources are cached by content hash so that the same {@link Source} instance is handed to the engine each time, which is
+ * what allows the engine to find the previously parsed code. Each context is limited to a maximum number of statements, to protect the driver
+ * from scripts that never complete, and is cancelled if it exceeds its execution budget.
+ * <p>
+ * GraalJS cannot <code>load()</code> scripts from the classpath, so the libraries are evaluated into each context before the script is run
+ * (with its loading of the default library removed).
+ */
+class GraalJsScriptBackend implements ScriptBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraalJsScriptBackend.class);
+    static final String CACHE_NAME = "vnfmdriver.scripts.sources";
+
+    private final Engine engine;
+    private final ResourceLimits resourceLimits;
+    private final Cache<String, Source> sourceCache;
+    private final ScriptExecutionBudget executionBudget;
+
+    GraalJsScriptBackend(VNFMDriverProperties.Scripting properties, MeterRegistry meterRegistry) {
+        // Falling back to the interpreter is expected when not running on a GraalVM JDK
+        this.engine = Engine.newBuilder().option("engine.WarnInterpreterOnly", "false").build();
+        this.resourceLimits = ResourceLimits.newBuilder().statementLimit(properties.getStatementLimit(), null).build();
+        this.sourceCache = CacheBuilder.newBuilder()
+                                       .maximumSize(properties.getCompiledScriptCacheSize())
+                                       .recordStats()
+                                       .build();
+        GuavaCacheMetrics.monitor(meterRegistry, sourceCache, CACHE_NAME);
+        this.executionBudget = new ScriptExecutionBudget(properties.getExecutionTimeout(), properties.getExecutionCpuTime(), meterRegistry);
+    }
+
+    @Override public Object evaluate(final String script, final List<String> libraries, final Map<String, Object> bindings) throws ScriptException, MessageConversionException {
+        try (Context context = createContext()) {
+            // Closing the context from the watchdog thread cancels the script at its next safepoint
+            try (ScriptExecutionBudget.Execution execution = executionBudget.start(() -> context.close(true))) {
+                execution.attach(Thread.currentThread());
+                try {
+                    final Value contextBindings = context.getBindings("js");
+                    bindings.forEach(contextBindings::putMember);
+
+                    for (String library : libraries) {
+                        context.eval(getSource(library));
+                    }
+                    return toJavaObject(context.eval(getSource(ScriptBackend.removeLibraryLoad(script))));
+                } catch (PolyglotException e) {
+                    if (e.isCancelled() && execution.isExceeded()) {
+                        throw execution.exceededException();
+                    }
+                    throw e;
+                }
+            }
+        } catch (PolyglotException e) {
+            if (e.isResourceExhausted()) {
+                throw new MessageConversionException("Script exceeded the maximum number of statements it is allowed to execute", e);
+            }
+            final ScriptException scriptException = new ScriptException(e.getMessage());
+            scriptException.initCause(e);
+            throw scriptException;
+        }
+    }
+
+    @Override public void close() {
+        executionBudget.close();
+        engine.close();
+    }
+
+    private Context createContext() {
+        // All contexts sharing an engine must be configured with the same host access
+        return Context.newBuilder("js")
+                      .engine(engine)
+                      .allowHostAccess(HostAccess.ALL)
+                      .allowHostClassLookup(className -> true)
+                      .allowExperimentalOptions(true)
+                      .option("js.nashorn-compat", "true")
+                      .resourceLimits(resourceLimits)
+                      .build();
+    }
+
+    private Source getSource(final String script) {
+        final String scriptHash = CompiledScriptCache.hash(script);
+        try {
+            return sourceCache.get(scriptHash, () -> {
+                logger.debug("Creating script source with hash [{}]", scriptHash);
+                return Source.newBuilder("js", script, scriptHash + ".js").buildLiteral();
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unexpected exception creating script source", e.getCause());
+        }
+    }
+
+    private Object toJavaObject(final Value value) {
+        // Guest objects can't be used once the context is closed, so they are copied into plain Java values (host objects are returned as they are)
+        if (value.isNull()) {
+            return null;
+        } else if (value.isHostObject()) {
+            return value.asHostObject();
+        } else if (value.isString()) {
+            return value.asString();
+        } else if (value.isBoolean()) {
+            return value.asBoolean();
+        } else if (value.isNumber()) {
+            if (value.fitsInInt()) {
+                return value.asInt();
+            } else if (value.fitsInLong()) {
+                return value.asLong();
+            }
+            return value.asDouble();
+        } else if (value.hasArrayElements()) {
+            final List<Object> list = new ArrayList<>();
+            for (long i = 0; i < value.getArraySize(); i++) {
+                list.add(toJavaObject(value.getArrayElement(i)));
+            }
+            return list;
+        } else if (value.hasMembers() && !value.canExecute()) {
+            final Map<String, Object> map = new LinkedHashMap<>();
+            for (String key : value.getMemberKeys()) {
+                map.put(key, toJavaObject(value.getMember(key)));
+            }
+            return map;
+        }
+        return value.toString();
+    }
+
+}
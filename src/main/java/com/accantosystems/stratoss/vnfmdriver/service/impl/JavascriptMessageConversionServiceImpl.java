@@ -3,11 +3,12 @@ package com.accantosystems.stratoss.vnfmdriver.service.impl;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import javax.script.Bindings;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
 import javax.script.ScriptException;
 
 import org.apache.commons.io.IOUtils;
@@ -17,44 +18,60 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionRequest;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.GenericExecutionRequestPropertyValue;
 import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
 import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionService;
-import com.accantosystems.stratoss.vnfmdriver.utils.FileUtils;
+import com.accantosystems.stratoss.vnfmdriver.utils.DriverFilesArchive;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Service("JavascriptMessageConversionServiceImpl")
 public class JavascriptMessageConversionServiceImpl implements MessageConversionService {
 
     private static final Logger logger = LoggerFactory.getLogger(JavascriptMessageConversionServiceImpl.class);
     private static final String DEFAULT_ETSI_SOL003_VERSION = "3.5.1";
     private static final String SCRIPTS_PATH = "scripts/";
+    private static final String LIBRARY_SCRIPT_NAME = "lib.js";
 
-    private final ObjectMapper objectMapper;
+    private final ScriptBackend scriptBackend;
+    private final VnfDescriptorCache vnfDescriptorCache;
+    private final DriverFilesArchiveCache driverFilesArchiveCache;
+    private final Map<String, String> defaultScripts = new ConcurrentHashMap<>();
 
     @Autowired
-    public JavascriptMessageConversionServiceImpl(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    public JavascriptMessageConversionServiceImpl(ObjectMapper objectMapper, VNFMDriverProperties properties, MeterRegistry meterRegistry) {
+        this.scriptBackend = createScriptBackend(properties.getScripting(), meterRegistry);
+        this.vnfDescriptorCache = new VnfDescriptorCache(objectMapper, properties.getScripting().getVnfdCacheSize(), meterRegistry);
+        this.driverFilesArchiveCache = new DriverFilesArchiveCache(properties.getScripting().getDriverFilesCacheMaxBytes(), meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        scriptBackend.close();
     }
 
     @Override public String generateMessageFromRequest(final String messageType, final ExecutionRequest executionRequest) throws MessageConversionException {
-        final String script = getScriptFromExecutionRequest(executionRequest, messageType);
-        final String vnfdString = FileUtils.getFileFromLifecycleScripts(executionRequest.getDriverFiles(), "vnfd.yaml");
-        final ScriptEngine scriptEngine = getScriptEngine();
+        final DriverFilesArchive driverFiles = getDriverFiles(executionRequest);
+        final String script = getScriptFromExecutionRequest(executionRequest, driverFiles, messageType);
+        final String vnfdString = driverFiles.getFile("vnfd.yaml");
 
         try {
-            // Create a new bindings object and attach objects to be used by the scripts
-            final Bindings bindings = scriptEngine.createBindings();
+            // Parsed descriptors are shared between conversions using the same VNFD
+            final VnfDescriptor vnfd = (vnfdString != null) ? vnfDescriptorCache.getVnfDescriptor(vnfdString) : null;
+
+            // Attach objects to be used by the scripts
+            final Map<String, Object> bindings = new HashMap<>();
             bindings.put("executionRequest", executionRequest);
             bindings.put("logger", logger);
 
-            if (vnfdString != null) {
-                final VnfDescriptor vnfd = objectMapper.readValue(vnfdString, VnfDescriptor.class);
+            if (vnfd != null) {
                 bindings.put("vnfd", vnfd);
             }
 
-            final Object returnVal = scriptEngine.eval(script, bindings);
+            final Object returnVal = scriptBackend.evaluate(script, getLibraries(driverFiles), bindings);
             logger.info("Message conversion script successfully run, returnVal is\n{}", returnVal);
             if (returnVal instanceof String) {
                 return (String) returnVal;
@@ -69,18 +86,18 @@ public class JavascriptMessageConversionServiceImpl implements MessageConversion
     }
 
     @Override public Map<String, Object> extractPropertiesFromMessage(String messageType, ExecutionRequest executionRequest, String message) throws MessageConversionException {
-        final String script = getScriptFromExecutionRequest(executionRequest, messageType);
-        final ScriptEngine scriptEngine = getScriptEngine();
+        final DriverFilesArchive driverFiles = getDriverFiles(executionRequest);
+        final String script = getScriptFromExecutionRequest(executionRequest, driverFiles, messageType);
 
         try {
-            // Create a new bindings object and attach objects to be used by the scripts
-            final Bindings bindings = scriptEngine.createBindings();
+            // Attach objects to be used by the scripts
+            final Map<String, Object> bindings = new HashMap<>();
             bindings.put("message", message);
             bindings.put("logger", logger);
             final Map<String, Object> outputs = new HashMap<>();
             bindings.put("outputs", outputs);
 
-            scriptEngine.eval(script, bindings);
+            scriptBackend.evaluate(script, getLibraries(driverFiles), bindings);
             logger.info("Message conversion script successfully run, outputs are\n{}", outputs);
             return outputs;
         } catch (ScriptException e) {
@@ -88,28 +105,47 @@ public class JavascriptMessageConversionServiceImpl implements MessageConversion
         }
     }
 
-    private ScriptEngine getScriptEngine() {
-        // Retrieve a Javascript engine (should be Nashorn in JRE 8+)
-        final ScriptEngine scriptEngine = new ScriptEngineManager().getEngineByMimeType("application/javascript");
-        logger.debug("Retrieved an instance of a [{}] script engine", scriptEngine);
-        return scriptEngine;
+    /**
+     * Returns the (possibly cached) archive of the driverFiles of an execution request
+     */
+    DriverFilesArchive getDriverFiles(final ExecutionRequest executionRequest) {
+        return driverFilesArchiveCache.getArchive(executionRequest.getDriverFiles());
+    }
+
+    private ScriptBackend createScriptBackend(final VNFMDriverProperties.Scripting properties, final MeterRegistry meterRegistry) {
+        logger.info("Using the {} script engine for message conversion", properties.getEngine());
+        switch (properties.getEngine()) {
+            case GRAALJS:
+                return new GraalJsScriptBackend(properties, meterRegistry);
+            case NASHORN:
+            default:
+                return new NashornScriptBackend(properties, meterRegistry);
+        }
+    }
+
+    private List<String> getLibraries(final DriverFilesArchive driverFiles) {
+        final List<String> libraries = new ArrayList<>();
+        final String defaultLibrary = getDefaultScript("/" + SCRIPTS_PATH + LIBRARY_SCRIPT_NAME);
+        if (defaultLibrary != null) {
+            libraries.add(defaultLibrary);
+        }
+        // Allow a driver-supplied library to add to (or override) the default library functions
+        final String driverLibrary = driverFiles.getFile(SCRIPTS_PATH + LIBRARY_SCRIPT_NAME);
+        if (driverLibrary != null) {
+            libraries.add(driverLibrary);
+        }
+        return libraries;
     }
 
-    private String getScriptFromExecutionRequest(final ExecutionRequest executionRequest, final String scriptName) {
+    private String getScriptFromExecutionRequest(final ExecutionRequest executionRequest, final DriverFilesArchive driverFiles, final String scriptName) {
         final String fullScriptName = scriptName + ".js";
 
-        String scriptContents = FileUtils.getFileFromLifecycleScripts(executionRequest.getDriverFiles(), SCRIPTS_PATH + fullScriptName);
+        String scriptContents = driverFiles.getFile(SCRIPTS_PATH + fullScriptName);
 
         if (scriptContents == null) {
             // If we can't find it in the zip file, try searching in out default locations
             String interfaceVersion =  ((GenericExecutionRequestPropertyValue)executionRequest.getResourceProperties().getOrDefault("interfaceVersion", new GenericExecutionRequestPropertyValue(DEFAULT_ETSI_SOL003_VERSION))).getValue().toString();
-            try (InputStream inputStream = JavascriptMessageConversionServiceImpl.class.getResourceAsStream("/" + SCRIPTS_PATH + interfaceVersion + "/" + fullScriptName)) {
-                if (inputStream != null) {
-                    scriptContents = IOUtils.toString(inputStream, Charset.defaultCharset());
-                }
-            } catch (IOException e) {
-                logger.error("Exception raised looking up default lifecycle script", e);
-            }
+            scriptContents = getDefaultScript("/" + SCRIPTS_PATH + interfaceVersion + "/" + fullScriptName);
         }
 
         if (scriptContents != null) {
@@ -119,4 +155,23 @@ public class JavascriptMessageConversionServiceImpl implements MessageConversion
         }
     }
 
+    private String getDefaultScript(final String scriptPath) {
+        // Default scripts never change at runtime, so only read each one from the classpath once
+        final String cachedScript = defaultScripts.get(scriptPath);
+        if (cachedScript != null) {
+            return cachedScript;
+        }
+
+        try (InputStream inputStream = JavascriptMessageConversionServiceImpl.class.getResourceAsStream(scriptPath)) {
+            if (inputStream != null) {
+                final String script = IOUtils.toString(inputStream, Charset.defaultCharset());
+                defaultScripts.put(scriptPath, script);
+                return script;
+            }
+        } catch (IOException e) {
+            logger.error("Exception raised looking up default lifecycle script", e);
+        }
+        return null;
+    }
+
 }
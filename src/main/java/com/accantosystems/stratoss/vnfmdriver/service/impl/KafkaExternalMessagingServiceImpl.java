@@ -59,13 +59,9 @@ public class KafkaExternalMessagingServiceImpl implements ExternalMessagingServi
 
     @Override public void sendLcmOpOccPollingRequest(LcmOpOccPollingRequest request) {
         try {
-            try {
-                Thread.sleep(properties.getLcmOpOccPollingDelay().toMillis());
-            } catch (InterruptedException e) {
-                logger.error("Thread interrupted during sleep", e);
-            }
             final String message = objectMapper.writeValueAsString(request);
-            ListenableFuture<SendResult<String, String>> future = kafkaTemplate.send(properties.getTopics().getLcmOpOccPollingTopic(), message);
+            // Keyed by the LcmOpOcc, so that all requests for it go to the same partition (and are therefore handled by the same driver instance)
+            ListenableFuture<SendResult<String, String>> future = kafkaTemplate.send(properties.getTopics().getLcmOpOccPollingTopic(), request.getVnfLcmOpOccId(), message);
 
             future.addCallback(sendResult -> logger.debug("Submitted request to poll for LcmOpOcc [{}]", request.getVnfLcmOpOccId()),
                                exception -> logger.warn("Exception sending LcmOpOccPollingRequest", exception));
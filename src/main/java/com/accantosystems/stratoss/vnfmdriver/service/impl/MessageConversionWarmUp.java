@@ -0,0 +1,156 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionRequest;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.GenericExecutionRequestPropertyValue;
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Runs every bundled message conversion script against synthetic execution requests when the driver starts.
+ * <p>
+ * Script engines, compiled scripts, library scopes and the parsing of VNF descriptors are all otherwise initialised by the first real request,
+ * which then takes several seconds. Each script is run once per pooled script engine so that every engine has compiled it. Spring Boot only
+ * reports the application as ready to accept traffic (see <code>/management/health/readiness</code>) once all application runners have
+ * completed, so no requests are routed to the driver until the warm-up has finished. Failures are logged but never prevent the driver from
+ * starting.
+ */
+@Component("MessageConversionWarmUp")
+public class MessageConversionWarmUp implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageConversionWarmUp.class);
+    static final String METRIC_NAME = "vnfmdriver.scripts.warmup";
+    private static final String SCRIPTS_LOCATION = "classpath*:scripts/*/*.js";
+    private static final String RESPONSE_MESSAGE_TYPE = "VnfInstance";
+
+    private final JavascriptMessageConversionServiceImpl javascriptMessageConversionService;
+    private final MessageConversionService messageConversionService;
+    private final VNFMDriverProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public MessageConversionWarmUp(JavascriptMessageConversionServiceImpl javascriptMessageConversionService, MessageConversionService messageConversionService,
+                                   VNFMDriverProperties properties, MeterRegistry meterRegistry) {
+        this.javascriptMessageConversionService = javascriptMessageConversionService;
+        this.messageConversionService = messageConversionService;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override public void run(ApplicationArguments args) {
+        if (!properties.getScripting().isWarmUpEnabled()) {
+            logger.info("Message conversion warm-up is disabled");
+            return;
+        }
+
+        logger.info("Warming up message conversion scripts...");
+        final long startTime = System.nanoTime();
+        final List<String[]> scripts = findDefaultScripts();
+        final String driverFiles = createDriverFiles();
+        int failures = 0;
+        for (String[] script : scripts) {
+            if (!warmUp(script[0], script[1], driverFiles)) {
+                failures++;
+            }
+        }
+        final long duration = System.nanoTime() - startTime;
+        Timer.builder(METRIC_NAME + ".total").register(meterRegistry).record(duration, TimeUnit.NANOSECONDS);
+        logger.info("Warmed up {} message conversion scripts in {}ms ({} failed)", scripts.size(), TimeUnit.NANOSECONDS.toMillis(duration), failures);
+    }
+
+    private boolean warmUp(final String interfaceVersion, final String messageType, final String driverFiles) {
+        final long startTime = System.nanoTime();
+        boolean success = true;
+        try {
+            // Each run checks out the least recently used engine, so running once per pooled engine compiles the script in all of them
+            for (int i = 0; i < properties.getScripting().getEnginePoolSize(); i++) {
+                runScript(javascriptMessageConversionService, interfaceVersion, messageType, driverFiles);
+            }
+            runScript(messageConversionService, interfaceVersion, messageType, driverFiles);
+        } catch (Exception e) {
+            logger.warn(String.format("Unable to warm up message conversion script [%s/%s]", interfaceVersion, messageType), e);
+            success = false;
+        }
+        Timer.builder(METRIC_NAME)
+             .tag("script", interfaceVersion + "/" + messageType)
+             .tag("result", success ? "success" : "failure")
+             .register(meterRegistry)
+             .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        return success;
+    }
+
+    private void runScript(final MessageConversionService conversionService, final String interfaceVersion, final String messageType, final String driverFiles) throws Exception {
+        final ExecutionRequest executionRequest = createExecutionRequest(interfaceVersion, driverFiles);
+        if (RESPONSE_MESSAGE_TYPE.equals(messageType)) {
+            conversionService.extractPropertiesFromMessage(messageType, executionRequest, "{\"id\": \"warm-up\", \"vnfInstanceName\": \"warm-up\", \"instantiatedVnfInfo\": {\"flavourId\": \"warm-up\", \"scaleStatus\": [{\"aspectId\": \"warm-up\", \"scaleLevel\": 1}]}}");
+        } else {
+            conversionService.generateMessageFromRequest(messageType, executionRequest);
+        }
+    }
+
+    private ExecutionRequest createExecutionRequest(final String interfaceVersion, final String driverFiles) {
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setLifecycleName("Install");
+        executionRequest.setDriverFiles(driverFiles);
+        executionRequest.getResourceProperties().put("interfaceVersion", new GenericExecutionRequestPropertyValue(interfaceVersion));
+        executionRequest.getResourceProperties().put("vnfdId", new GenericExecutionRequestPropertyValue("warm-up"));
+        executionRequest.getResourceProperties().put("vnfInstanceId", new GenericExecutionRequestPropertyValue("warm-up"));
+        executionRequest.getResourceProperties().put("vnfInstanceName", new GenericExecutionRequestPropertyValue("warm-up"));
+        executionRequest.getResourceProperties().put("flavourId", new GenericExecutionRequestPropertyValue("warm-up"));
+        executionRequest.getResourceProperties().put("additionalParams.warmUp", new GenericExecutionRequestPropertyValue("true"));
+        return executionRequest;
+    }
+
+    private List<String[]> findDefaultScripts() {
+        // Scripts are held in a directory per interface version, e.g. scripts/3.5.1/InstantiateVnfRequest.js
+        final List<String[]> scripts = new ArrayList<>();
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(SCRIPTS_LOCATION)) {
+                final String[] pathParts = resource.getURL().getPath().split("/");
+                if (pathParts.length >= 2 && resource.getFilename() != null) {
+                    final String filename = resource.getFilename();
+                    scripts.add(new String[] { pathParts[pathParts.length - 2], filename.substring(0, filename.length() - ".js".length()) });
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to find message conversion scripts to warm up", e);
+        }
+        return scripts;
+    }
+
+    private String createDriverFiles() {
+        // Only contains a (minimal) VNFD, so that the default scripts are still used but the parsing of descriptors is also warmed up
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(outputStream)) {
+            zos.putNextEntry(new ZipEntry("vnfd.yaml"));
+            zos.write("{\"vnfdId\": \"warm-up\"}".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        } catch (IOException e) {
+            logger.warn("Unable to create driverFiles for warm-up", e);
+            return null;
+        }
+        return Base64.getEncoder().encodeToString(outputStream.toByteArray());
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs scripts using a pool of JSR-223 (Nashorn) script engines, compiling each script once per engine.
+ * <p>
+ * When an execution budget is configured, scripts are run on a bounded pool of reusable worker threads, so that the caller can be released as
+ * soon as a script exceeds its budget. The script is then interrupted and the engine it was running on is discarded from the pool. Nashorn only
+ * notices the interruption when the script calls into Java, so a script stuck in a loop keeps its worker thread until it finishes. The pool has
+ * twice as many workers as there are engines to allow for this, and a script fails straight away (rather than waiting for a worker) if every
+ * worker is busy. The number of workers still running a cancelled script is recorded in the {@code vnfmdriver.scripts.workers.runaway} metric. Runaway
+ * worker threads are only stopped (with the unsafe {@link Thread#stop()}) if {@code vnfmdriver.scripting.stopRunawayScripts} is enabled.
+ */
+class NashornScriptBackend implements ScriptBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(NashornScriptBackend.class);
+    private static final Duration STOP_GRACE_PERIOD = Duration.ofSeconds(1);
+    static final String RUNAWAY_WORKERS_METRIC_NAME = "vnfmdriver.scripts.workers.runaway";
+
+    private final ScriptEnginePool scriptEnginePool;
+    private final CompiledScriptCache compiledScriptCache;
+    private final boolean sharedLibraryScope;
+    private final ScriptLibraryCache scriptLibraryCache;
+    private final ScriptExecutionBudget executionBudget;
+    private final boolean stopRunawayScripts;
+    private final int workerCount;
+    private final ThreadPoolExecutor workers;
+    // Workers which aren't running (or waiting to run) a script, and those still running a script after it was cancelled
+    private final Semaphore availableWorkers;
+    private final AtomicInteger runawayWorkers = new AtomicInteger();
+
+    NashornScriptBackend(VNFMDriverProperties.Scripting properties, MeterRegistry meterRegistry) {
+        this.scriptEnginePool = new ScriptEnginePool(createScriptEngineFactory(), properties.getEnginePoolSize(), properties.getEngineCheckoutTimeout(), meterRegistry);
+        this.compiledScriptCache = new CompiledScriptCache(properties.getCompiledScriptCacheSize(), meterRegistry);
+        this.sharedLibraryScope = properties.isSharedLibraryScope();
+        this.scriptLibraryCache = new ScriptLibraryCache(properties.getLibraryScopeCacheSize(), meterRegistry);
+        this.executionBudget = new ScriptExecutionBudget(properties.getExecutionTimeout(), properties.getExecutionCpuTime(), meterRegistry);
+        this.stopRunawayScripts = properties.isStopRunawayScripts();
+        this.workerCount = Math.max(1, properties.getEnginePoolSize() * 2);
+        // Scripts are only handed to the pool when a worker is available, so the queue only holds those waiting for a worker to finish up
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(workerCount),
+                                              new ThreadFactoryBuilder().setNameFormat("script-worker-%d").setDaemon(true).build());
+        this.workers.allowCoreThreadTimeOut(true);
+        this.availableWorkers = new Semaphore(workerCount);
+        Gauge.builder(RUNAWAY_WORKERS_METRIC_NAME, runawayWorkers, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @Override public Object evaluate(final String script, final List<String> libraries, final Map<String, Object> bindingValues) throws ScriptException, MessageConversionException {
+        try (ScriptEnginePool.PooledScriptEngine pooledScriptEngine = scriptEnginePool.checkout()) {
+            if (!executionBudget.isEnabled()) {
+                return evaluate(pooledScriptEngine, script, libraries, bindingValues);
+            }
+
+            if (!availableWorkers.tryAcquire()) {
+                throw new MessageConversionException(String.format("Unable to run script, all %d script workers are busy (%d are still running scripts which exceeded their budget)",
+                                                                   workerCount, runawayWorkers.get()));
+            }
+            final FutureTask<Object> evaluation = new FutureTask<>(() -> evaluate(pooledScriptEngine, script, libraries, bindingValues));
+            final ScriptWorker worker = new ScriptWorker();
+            try (ScriptExecutionBudget.Execution execution = executionBudget.start(() -> cancel(evaluation, worker))) {
+                try {
+                    workers.execute(() -> {
+                        try {
+                            if (evaluation.isDone()) {
+                                // Cancelled whilst waiting for a worker
+                                return;
+                            }
+                            worker.started(Thread.currentThread());
+                            execution.attach(Thread.currentThread());
+                            try {
+                                evaluation.run();
+                            } finally {
+                                worker.finished();
+                            }
+                        } finally {
+                            worker.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    worker.release();
+                    throw new MessageConversionException("Unable to run script, the script backend has been closed", e);
+                }
+
+                try {
+                    final Object result = evaluation.get();
+                    // The worker may not have quite finished, but it's only a moment from being free to run another script
+                    worker.release();
+                    return result;
+                } catch (CancellationException e) {
+                    // The engine may still be running the script, or have been left in an unknown state by it
+                    pooledScriptEngine.discard();
+                    throw execution.exceededException();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    evaluation.cancel(true);
+                    pooledScriptEngine.discard();
+                    throw new MessageConversionException("Interrupted waiting for a script to complete", e);
+                } catch (ExecutionException e) {
+                    worker.release();
+                    Throwables.propagateIfPossible(e.getCause(), ScriptException.class, MessageConversionException.class);
+                    throw new MessageConversionException("Exception caught executing a script", e.getCause());
+                }
+            }
+        }
+    }
+
+    @Override public void close() {
+        executionBudget.close();
+        workers.shutdownNow();
+    }
+
+    private Object evaluate(final ScriptEnginePool.PooledScriptEngine pooledScriptEngine, final String script, final List<String> libraries,
+                            final Map<String, Object> bindingValues) throws ScriptException, MessageConversionException {
+        // Create a new bindings object and attach objects to be used by the scripts
+        final Bindings bindings = pooledScriptEngine.getScriptEngine().createBindings();
+        bindings.putAll(bindingValues);
+
+        if (!sharedLibraryScope) {
+            return getCompiledScript(pooledScriptEngine, script).eval(bindings);
+        }
+
+        // The library functions are already available from the shared scope, so there's no need for the script to load them again
+        final CompiledScript compiledScript = getCompiledScript(pooledScriptEngine, ScriptBackend.removeLibraryLoad(script));
+        final ScriptContext scriptContext = new SimpleScriptContext();
+        scriptContext.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        scriptContext.setBindings(scriptLibraryCache.getLibraryScope(pooledScriptEngine.getId(), pooledScriptEngine.getScriptEngine(), libraries), ScriptContext.GLOBAL_SCOPE);
+        return compiledScript.eval(scriptContext);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void cancel(final FutureTask<Object> evaluation, final ScriptWorker worker) {
+        // Interrupting the worker only stops scripts which are blocked in a call to Java
+        evaluation.cancel(true);
+        executionBudget.schedule(() -> {
+            final Thread workerThread = worker.markRunaway();
+            if (workerThread == null) {
+                return;
+            }
+            if (!stopRunawayScripts) {
+                logger.warn("Script is still running on thread [{}] after being cancelled", workerThread.getName());
+                return;
+            }
+            // Unsafe: the thread is stopped wherever it is, which may leave shared state (such as the caches it was using) inconsistent
+            logger.warn("Script is still running on thread [{}] after being cancelled, stopping the thread", workerThread.getName());
+            workerThread.stop();
+        }, STOP_GRACE_PERIOD);
+    }
+
+    /**
+     * The worker thread running a script, which is counted as a runaway from when it's found to be still running the script after it was cancelled.
+     * The worker is made available to other scripts once the script has completed, or (if it was cancelled) once the worker has stopped running it.
+     */
+    private class ScriptWorker {
+        private Thread thread;
+        private boolean runaway;
+        private boolean released;
+
+        private synchronized void started(Thread thread) {
+            this.thread = thread;
+        }
+
+        private synchronized void finished() {
+            this.thread = null;
+            if (runaway) {
+                runaway = false;
+                runawayWorkers.decrementAndGet();
+            }
+        }
+
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                availableWorkers.release();
+            }
+        }
+
+        private synchronized Thread markRunaway() {
+            if (thread != null && !runaway) {
+                runaway = true;
+                runawayWorkers.incrementAndGet();
+            }
+            return thread;
+        }
+    }
+
+    private Supplier<ScriptEngine> createScriptEngineFactory() {
+        // Only scan for script engine factories once, then create each pooled Javascript engine (should be Nashorn in JRE 8+) from it
+        final ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
+        return () -> {
+            final ScriptEngine scriptEngine = scriptEngineManager.getEngineByMimeType("application/javascript");
+            logger.debug("Retrieved an instance of a [{}] script engine", scriptEngine);
+            return scriptEngine;
+        };
+    }
+
+    private CompiledScript getCompiledScript(final ScriptEnginePool.PooledScriptEngine pooledScriptEngine, final String script) throws ScriptException, MessageConversionException {
+        final ScriptEngine scriptEngine = pooledScriptEngine.getScriptEngine();
+        if (!(scriptEngine instanceof Compilable)) {
+            throw new MessageConversionException("No Javascript engine supporting script compilation is available");
+        }
+        return compiledScriptCache.getCompiledScript(pooledScriptEngine.getId(), (Compilable) scriptEngine, script);
+    }
+
+}
@@ -0,0 +1,363 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionRequest;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionRequestPropertyValue;
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Message conversion implemented directly in Java for the standard ETSI SOL003 messages.
+ * <p>
+ * Produces the same messages as the default scripts under <code>scripts/2.4.1</code> and <code>scripts/3.5.1</code> (including the dot
+ * notation handling of <code>addProperty</code> in <code>lib.js</code>), without invoking a script engine. Any request that supplies its own
+ * script in the driverFiles, or that targets an interface version or message type not covered here, is passed to the
+ * {@link JavascriptMessageConversionServiceImpl} instead.
+ */
+@Service("NativeMessageConversionServiceImpl")
+@Primary
+public class NativeMessageConversionServiceImpl implements MessageConversionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NativeMessageConversionServiceImpl.class);
+    private static final String DEFAULT_ETSI_SOL003_VERSION = "3.5.1";
+    private static final String SCRIPTS_PATH = "scripts/";
+    private static final String VNF_INSTANCE_MESSAGE_TYPE = "VnfInstance";
+    private static final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+    // Strings that Javascript would treat as numbers (i.e. isNaN returns false)
+    private static final Pattern NUMERIC_PATTERN = Pattern.compile("|[+-]?(Infinity|\\d+\\.?\\d*([eE][+-]?\\d+)?|\\.\\d+([eE][+-]?\\d+)?)|0[xX][0-9a-fA-F]+");
+    private static final Pattern ARRAY_INDEX_PATTERN = Pattern.compile("0|[1-9]\\d{0,8}");
+    private static final Map<String, Map<String, MessageTemplate>> MESSAGE_TEMPLATES = new HashMap<>();
+
+    static {
+        final Map<String, MessageTemplate> v241 = new HashMap<>();
+        v241.put("ChangeExtVnfConnectivityRequest", new MessageTemplate().object("extVirtualLinks").object("vimConnectionInfo").object("additionalParams"));
+        v241.put("ChangeVnfFlavourRequest", new MessageTemplate().object("extVirtualLinks").object("extManagedVirtualLinks").object("vimConnectionInfo").object("additionalParams")
+                                                                 .copy("newFlavourId", "flavourId").setIfNotNull("instantiationLevelId").setIfNotNull("localizationLanguage"));
+        v241.put("CreateVnfRequest", new MessageTemplate().object("additionalParams")
+                                                          .setIfNotNull("vnfdId").setIfNotNull("vnfInstanceName").setIfNotNull("vnfInstanceDescription"));
+        v241.put("HealVnfRequest", new MessageTemplate().object("additionalParams").setIfNotNull("cause"));
+        v241.put("InstantiateVnfRequest", new MessageTemplate().array("extVirtualLinks").array("extManagedVirtualLinks").array("vimConnectionInfo").object("additionalParams")
+                                                               .setIfNotNull("flavourId").setIfNotNull("instantiationLevelId").setIfNotNull("localizationLanguage"));
+        v241.put("OperateVnfRequest-Start", new MessageTemplate().object("additionalParams").constant("changeStateTo", "STARTED"));
+        v241.put("OperateVnfRequest-Stop", new MessageTemplate().object("additionalParams").constant("changeStateTo", "STOPPED").constant("stopType", "FORCEFUL"));
+        v241.put("ScaleVnfRequest", new MessageTemplate().object("additionalParams").copy("type", "scaleType").copy("aspectId", "scaleAspectId").setIfNotNull("numberOfSteps"));
+        v241.put("ScaleVnfToLevelRequest", new MessageTemplate().array("scaleInfo").object("additionalParams").setIfNotNull("instantiationLevelId"));
+        v241.put("TerminateVnfRequest", new MessageTemplate().object("additionalParams").constant("terminationType", "FORCEFUL"));
+        MESSAGE_TEMPLATES.put("2.4.1", v241);
+
+        final Map<String, MessageTemplate> v351 = new HashMap<>(v241);
+        v351.put("ChangeCurrentVnfPkgRequest", new MessageTemplate().array("extVirtualLinks").object("vimConnectionInfo").array("extManagedVirtualLinks").object("additionalParams")
+                                                                    .object("vnfConfigurableProperties").object("extensions").setIfNotNull("vnfdId"));
+        v351.put("ChangeVnfFlavourRequest", new MessageTemplate().object("extVirtualLinks").object("extManagedVirtualLinks").object("vimConnectionInfo").object("additionalParams")
+                                                                 .object("extensions").object("vnfConfigurableProperties")
+                                                                 .copy("newFlavourId", "flavourId").setIfNotNull("instantiationLevelId").setIfNotNull("localizationLanguage"));
+        v351.put("CreateVnfRequest", new MessageTemplate().object("additionalParams").object("metadata")
+                                                          .setIfNotNull("vnfdId").setIfNotNull("vnfInstanceName").setIfNotNull("vnfInstanceDescription"));
+        v351.put("InstantiateVnfRequest", new MessageTemplate().array("extVirtualLinks").array("extManagedVirtualLinks").object("vimConnectionInfo").object("additionalParams")
+                                                               .object("extensions").setIfNotNull("flavourId").setIfNotNull("instantiationLevelId").setIfNotNull("localizationLanguage"));
+        MESSAGE_TEMPLATES.put("3.5.1", v351);
+    }
+
+    private final ObjectMapper objectMapper;
+    private final JavascriptMessageConversionServiceImpl javascriptMessageConversionService;
+    private final boolean enabled;
+
+    @Autowired
+    public NativeMessageConversionServiceImpl(ObjectMapper objectMapper, VNFMDriverProperties properties, JavascriptMessageConversionServiceImpl javascriptMessageConversionService) {
+        this.objectMapper = objectMapper;
+        this.javascriptMessageConversionService = javascriptMessageConversionService;
+        this.enabled = properties.getScripting().isNativeConversionEnabled();
+    }
+
+    @Override public String generateMessageFromRequest(final String messageType, final ExecutionRequest executionRequest) throws MessageConversionException {
+        final MessageTemplate messageTemplate = getMessageTemplate(messageType, executionRequest);
+        if (messageTemplate == null) {
+            return javascriptMessageConversionService.generateMessageFromRequest(messageType, executionRequest);
+        }
+
+        final Map<String, Object> properties = executionRequest.getProperties();
+        final ObjectNode message = nodeFactory.objectNode();
+        messageTemplate.apply(message, properties);
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            if (messageTemplate.isContainerProperty(property.getKey())) {
+                addProperty(message, property.getKey(), property.getValue());
+            }
+        }
+
+        try {
+            final String returnVal = objectMapper.writeValueAsString(message);
+            logger.info("Message conversion successfully run, returnVal is\n{}", returnVal);
+            return returnVal;
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Exception caught generating message", e);
+        }
+    }
+
+    @Override public Map<String, Object> extractPropertiesFromMessage(String messageType, ExecutionRequest executionRequest, String message) throws MessageConversionException {
+        if (!VNF_INSTANCE_MESSAGE_TYPE.equals(messageType) || getMessageTemplates(messageType, executionRequest) == null) {
+            return javascriptMessageConversionService.extractPropertiesFromMessage(messageType, executionRequest, message);
+        }
+
+        try {
+            final JsonNode parsedMessage = objectMapper.readTree(message);
+            final Map<String, Object> outputs = new HashMap<>();
+            outputs.put("vnfInstanceId", toJavaValue(parsedMessage.get("id")));
+
+            final Map<String, Object> flattenedProperties = new HashMap<>();
+            flattenProperties(flattenedProperties, parsedMessage, "");
+            flattenedProperties.forEach((propertyName, propertyValue) -> {
+                // Ignore certain property names
+                if (!propertyName.equals("id") && !propertyName.equals("name") && !propertyName.equals("index") && !propertyName.startsWith("_links.")) {
+                    outputs.put(propertyName, propertyValue);
+                }
+            });
+            logger.info("Message conversion successfully run, outputs are\n{}", outputs);
+            return outputs;
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Exception caught parsing message", e);
+        }
+    }
+
+    private MessageTemplate getMessageTemplate(final String messageType, final ExecutionRequest executionRequest) {
+        final Map<String, MessageTemplate> messageTemplates = getMessageTemplates(messageType, executionRequest);
+        return (messageTemplates != null) ? messageTemplates.get(messageType) : null;
+    }
+
+    private Map<String, MessageTemplate> getMessageTemplates(final String messageType, final ExecutionRequest executionRequest) {
+        if (!enabled) {
+            return null;
+        }
+        // A script supplied with the resource package always takes precedence
+        if (javascriptMessageConversionService.getDriverFiles(executionRequest).getFile(SCRIPTS_PATH + messageType + ".js") != null) {
+            logger.debug("Using script from driverFiles for message type [{}]", messageType);
+            return null;
+        }
+        final ExecutionRequestPropertyValue interfaceVersion = executionRequest.getResourceProperties().get("interfaceVersion");
+        return MESSAGE_TEMPLATES.get((interfaceVersion != null) ? String.valueOf(interfaceVersion.getValue()) : DEFAULT_ETSI_SOL003_VERSION);
+    }
+
+    /**
+     * Equivalent of <code>addProperty</code> in <code>lib.js</code>, converting a property name in dot notation into a nested structure
+     */
+    private static void addProperty(final ObjectNode message, final String propertyName, final Object propertyValue) throws MessageConversionException {
+        final String[] propertyNameParts = propertyName.split("\\.", -1);
+        JsonNode messageObject = message;
+        for (int i = 0; i < propertyNameParts.length; i++) {
+            final boolean lastPart = i == propertyNameParts.length - 1;
+            if (!messageObject.isContainerNode()) {
+                // Setting a property on a simple value is silently ignored, but navigating through one is an error
+                if (lastPart && !messageObject.isNull()) {
+                    return;
+                }
+                throw new MessageConversionException(String.format("Unable to set property [%s], found a simple value at [%s]", propertyName, propertyNameParts[i - 1]));
+            }
+
+            if (lastPart) {
+                setChild(messageObject, propertyNameParts[i], toJsonValue(propertyValue));
+            } else {
+                JsonNode child = getChild(messageObject, propertyNameParts[i]);
+                if (child == null) {
+                    child = isNumeric(propertyNameParts[i + 1]) ? nodeFactory.arrayNode() : nodeFactory.objectNode();
+                    setChild(messageObject, propertyNameParts[i], child);
+                }
+                messageObject = child;
+            }
+        }
+    }
+
+    private static JsonNode getChild(final JsonNode parent, final String name) {
+        final JsonNode child;
+        if (parent.isArray()) {
+            child = ARRAY_INDEX_PATTERN.matcher(name).matches() ? parent.get(Integer.parseInt(name)) : null;
+        } else {
+            child = parent.get(name);
+        }
+        // Nulls only appear in arrays as the gaps between elements, which Javascript doesn't consider to be set
+        return (child == null || child.isNull()) ? null : child;
+    }
+
+    private static void setChild(final JsonNode parent, final String name, final JsonNode value) {
+        if (parent.isObject()) {
+            ((ObjectNode) parent).set(name, value);
+        } else if (ARRAY_INDEX_PATTERN.matcher(name).matches()) {
+            final ArrayNode array = (ArrayNode) parent;
+            final int index = Integer.parseInt(name);
+            while (array.size() <= index) {
+                array.addNull();
+            }
+            array.set(index, value);
+        }
+        // Non-index properties of Javascript arrays are never serialized, so there's nothing to set
+    }
+
+    private static boolean isNumeric(final String value) {
+        return NUMERIC_PATTERN.matcher(value.trim()).matches();
+    }
+
+    /**
+     * Equivalent of <code>handleJavaPropertyTypes</code> in <code>lib.js</code> followed by <code>JSON.stringify</code>
+     */
+    private static JsonNode toJsonValue(final Object value) {
+        if (value instanceof Map) {
+            final ObjectNode objectNode = nodeFactory.objectNode();
+            ((Map<?, ?>) value).forEach((key, entryValue) -> {
+                if (entryValue != null) {
+                    objectNode.set(String.valueOf(key), toJsonValue(entryValue));
+                }
+            });
+            return objectNode;
+        } else if (value instanceof Collection) {
+            final ArrayNode arrayNode = nodeFactory.arrayNode();
+            ((Collection<?>) value).forEach(element -> arrayNode.add(toJsonValue(element)));
+            return arrayNode;
+        } else if (value == null) {
+            return nodeFactory.nullNode();
+        } else if (value instanceof String || value instanceof Character || value instanceof OffsetDateTime) {
+            return nodeFactory.textNode(value.toString());
+        } else if (value instanceof Boolean) {
+            return nodeFactory.booleanNode((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return nodeFactory.numberNode(((Number) value).longValue());
+        } else if (value instanceof BigDecimal) {
+            return nodeFactory.numberNode((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            return nodeFactory.numberNode((BigInteger) value);
+        } else if (value instanceof Number) {
+            final double doubleValue = ((Number) value).doubleValue();
+            return (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) ? nodeFactory.nullNode() : nodeFactory.numberNode(doubleValue);
+        } else {
+            return nodeFactory.textNode(value.toString());
+        }
+    }
+
+    /**
+     * Equivalent of <code>flattenPropertyMap</code> in <code>lib.js</code>, which also drops any "falsy" values (false, 0 and empty strings)
+     */
+    private static void flattenProperties(final Map<String, Object> flattenedProperties, final JsonNode node, final String prefix) {
+        final Consumer<Map.Entry<String, JsonNode>> flattenProperty = entry -> {
+            final JsonNode propertyValue = entry.getValue();
+            if (propertyValue.isContainerNode()) {
+                flattenProperties(flattenedProperties, propertyValue, prefix + entry.getKey() + ".");
+            } else if (isTruthy(propertyValue)) {
+                flattenedProperties.put(prefix + entry.getKey(), toJavaValue(propertyValue));
+            }
+        };
+
+        if (node.isObject()) {
+            node.fields().forEachRemaining(flattenProperty);
+        } else if (node.isArray()) {
+            for (int i = 0; i < node.size(); i++) {
+                flattenProperty.accept(new AbstractMap.SimpleImmutableEntry<>(Integer.toString(i), node.get(i)));
+            }
+        }
+    }
+
+    private static boolean isTruthy(final JsonNode node) {
+        if (node.isTextual()) {
+            return !node.textValue().isEmpty();
+        } else if (node.isNumber()) {
+            return node.doubleValue() != 0;
+        } else if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        return false;
+    }
+
+    private static Object toJavaValue(final JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        } else if (node.isTextual()) {
+            return node.textValue();
+        } else if (node.isBoolean()) {
+            return node.booleanValue();
+        } else if (node.isInt()) {
+            return node.intValue();
+        } else if (node.isNumber()) {
+            // Javascript numbers outside the range of an int are doubles
+            return node.doubleValue();
+        } else if (node.isArray()) {
+            final List<Object> list = new ArrayList<>();
+            node.elements().forEachRemaining(element -> list.add(toJavaValue(element)));
+            return list;
+        }
+        final Map<String, Object> map = new LinkedHashMap<>();
+        node.fields().forEachRemaining(field -> map.put(field.getKey(), toJavaValue(field.getValue())));
+        return map;
+    }
+
+    /**
+     * Describes how one of the default scripts builds its message, in the order the script does it
+     */
+    private static class MessageTemplate {
+
+        private final List<String> containerPrefixes = new ArrayList<>();
+        private final List<BiConsumer<ObjectNode, Map<String, Object>>> steps = new ArrayList<>();
+
+        MessageTemplate object(final String name) {
+            containerPrefixes.add(name + ".");
+            steps.add((message, properties) -> message.putObject(name));
+            return this;
+        }
+
+        MessageTemplate array(final String name) {
+            containerPrefixes.add(name + ".");
+            steps.add((message, properties) -> message.putArray(name));
+            return this;
+        }
+
+        MessageTemplate constant(final String name, final String value) {
+            steps.add((message, properties) -> message.put(name, value));
+            return this;
+        }
+
+        MessageTemplate copy(final String name, final String propertyName) {
+            // A missing property is undefined in Javascript, so is left out of the message
+            steps.add((message, properties) -> {
+                final Object propertyValue = properties.get(propertyName);
+                if (propertyValue != null) {
+                    message.set(name, toJsonValue(propertyValue));
+                }
+            });
+            return this;
+        }
+
+        MessageTemplate setIfNotNull(final String name) {
+            return copy(name, name);
+        }
+
+        void apply(final ObjectNode message, final Map<String, Object> properties) {
+            steps.forEach(step -> step.accept(message, properties));
+        }
+
+        boolean isContainerProperty(final String propertyName) {
+            for (String containerPrefix : containerPrefixes) {
+                if (propertyName.startsWith(containerPrefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+}
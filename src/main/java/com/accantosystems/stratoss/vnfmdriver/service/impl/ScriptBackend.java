@@ -0,0 +1,41 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.script.ScriptException;
+
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
+
+/**
+ * A Javascript implementation used by {@link JavascriptMessageConversionServiceImpl} to run message conversion scripts.
+ */
+interface ScriptBackend {
+
+    Pattern LOAD_LIBRARY_PATTERN = Pattern.compile("load\\(\\s*['\"]" + Pattern.quote("classpath:scripts/lib.js") + "['\"]\\s*\\);?");
+
+    /**
+     * Runs a script, with each of the given bindings available to it as a global variable
+     *
+     * @param script    script contents
+     * @param libraries library scripts the script may depend on (the default <code>lib.js</code> followed by any supplied in the driverFiles)
+     * @param bindings  objects to make available to the script
+     * @return the value returned by the script
+     * @throws ScriptException            if the script could not be compiled or raised an error
+     * @throws MessageConversionException if the script could not be run
+     */
+    Object evaluate(String script, List<String> libraries, Map<String, Object> bindings) throws ScriptException, MessageConversionException;
+
+    /**
+     * Releases any resources held by the backend
+     */
+    default void close() {}
+
+    /**
+     * Removes the (no longer needed) loading of the default library from a script, for use when the libraries are provided by the backend
+     */
+    static String removeLibraryLoad(final String script) {
+        return LOAD_LIBRARY_PATTERN.matcher(script).replaceAll("");
+    }
+
+}
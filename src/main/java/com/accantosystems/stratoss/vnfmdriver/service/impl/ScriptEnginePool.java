@@ -0,0 +1,161 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bounded pool of pre-initialised script engines.
+ * <p>
+ * All engines are created (and warmed up) when the pool is constructed, so no engine creation happens on the request path. Callers check an
+ * engine out for the duration of a single conversion and must create their own bindings on it, so no state is shared between requests. An
+ * engine which can no longer be safely reused (e.g. one still running a cancelled script) can be discarded, in which case a new engine takes its
+ * place in the pool.
+ */
+class ScriptEnginePool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScriptEnginePool.class);
+    static final String METRIC_PREFIX = "vnfmdriver.scripts.engines";
+
+    private final Supplier<ScriptEngine> engineFactory;
+    private final AtomicInteger nextEngineId = new AtomicInteger();
+    private final BlockingQueue<PooledScriptEngine> availableEngines;
+    private final int size;
+    private final Duration checkoutTimeout;
+    private final Timer checkoutTimer;
+
+    ScriptEnginePool(Supplier<ScriptEngine> engineFactory, int size, Duration checkoutTimeout, MeterRegistry meterRegistry) {
+        this.engineFactory = engineFactory;
+        this.availableEngines = new ArrayBlockingQueue<>(Math.max(size, 1));
+        this.checkoutTimeout = checkoutTimeout;
+
+        for (int i = 0; i < size; i++) {
+            final ScriptEngine scriptEngine = engineFactory.get();
+            if (scriptEngine == null) {
+                logger.error("Unable to create a Javascript script engine, message conversion will not be available");
+                break;
+            }
+            warmUp(scriptEngine);
+            availableEngines.add(new PooledScriptEngine(nextEngineId.getAndIncrement(), scriptEngine));
+        }
+        this.size = availableEngines.size();
+        logger.info("Created pool of {} script engines", this.size);
+
+        Gauge.builder(METRIC_PREFIX + ".size", this, pool -> pool.size).register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".idle", availableEngines, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".active", this, pool -> pool.size - pool.availableEngines.size()).register(meterRegistry);
+        this.checkoutTimer = Timer.builder(METRIC_PREFIX + ".checkout").register(meterRegistry);
+    }
+
+    /**
+     * Checks out an engine from the pool, waiting up to the configured timeout for one to become available. The engine must be returned by
+     * closing it once the caller has finished with it.
+     *
+     * @return pooled script engine
+     * @throws MessageConversionException if no engine became available in time
+     */
+    PooledScriptEngine checkout() throws MessageConversionException {
+        if (size == 0) {
+            throw new MessageConversionException("No Javascript script engine is available");
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final PooledScriptEngine pooledScriptEngine = availableEngines.poll(checkoutTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (pooledScriptEngine == null) {
+                throw new MessageConversionException(String.format("Timed out after %s waiting for a script engine", checkoutTimeout));
+            }
+            return pooledScriptEngine;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageConversionException("Interrupted waiting for a script engine", e);
+        } finally {
+            checkoutTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int available() {
+        return availableEngines.size();
+    }
+
+    private void replace(final PooledScriptEngine discardedEngine) {
+        // Engine ids are never reused, so nothing cached against the discarded engine is used with its replacement
+        final ScriptEngine scriptEngine = engineFactory.get();
+        if (scriptEngine == null) {
+            logger.error("Unable to create a Javascript script engine to replace discarded engine [{}]", discardedEngine.getId());
+            return;
+        }
+        warmUp(scriptEngine);
+        final PooledScriptEngine replacementEngine = new PooledScriptEngine(nextEngineId.getAndIncrement(), scriptEngine);
+        logger.info("Replaced discarded script engine [{}] with engine [{}]", discardedEngine.getId(), replacementEngine.getId());
+        availableEngines.offer(replacementEngine);
+    }
+
+    private void warmUp(final ScriptEngine scriptEngine) {
+        try {
+            // Force the engine to initialise its global scope and compiler up front
+            scriptEngine.eval("JSON.stringify({});", scriptEngine.createBindings());
+        } catch (ScriptException e) {
+            logger.warn("Exception caught warming up script engine", e);
+        }
+    }
+
+    /**
+     * A script engine checked out of the pool. Closing it returns it to the pool, unless it has been discarded.
+     */
+    class PooledScriptEngine implements AutoCloseable {
+
+        private final int id;
+        private final ScriptEngine scriptEngine;
+        private boolean discarded;
+
+        private PooledScriptEngine(int id, ScriptEngine scriptEngine) {
+            this.id = id;
+            this.scriptEngine = scriptEngine;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        ScriptEngine getScriptEngine() {
+            return scriptEngine;
+        }
+
+        /**
+         * Marks the engine as not to be reused, so that a new engine is added to the pool in its place when it is closed
+         */
+        void discard() {
+            discarded = true;
+        }
+
+        @Override
+        public void close() {
+            if (discarded) {
+                replace(this);
+            } else {
+                availableEngines.offer(this);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Limits the wall-clock and CPU time that a single script execution may use.
+ * <p>
+ * Each execution is checked periodically by a shared watchdog thread. When an execution overruns either limit, the watchdog invokes the
+ * cancellation action supplied by the script backend (which is responsible for actually stopping the script) and the execution is marked as
+ * exceeded, so that the caller can report the failure. A limit of zero (or null) disables that limit.
+ */
+class ScriptExecutionBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScriptExecutionBudget.class);
+    static final String METRIC_NAME = "vnfmdriver.scripts.budget.exceeded";
+    static final String WALL_CLOCK_LIMIT = "wall-clock";
+    static final String CPU_TIME_LIMIT = "cpu";
+    private static final long MINIMUM_CHECK_INTERVAL_MILLIS = 10;
+    private static final long MAXIMUM_CHECK_INTERVAL_MILLIS = 1000;
+
+    private final long wallClockLimitNanos;
+    private final long cpuTimeLimitNanos;
+    private final long checkIntervalMillis;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService watchdog;
+    private final Counter wallClockExceededCounter;
+    private final Counter cpuTimeExceededCounter;
+
+    ScriptExecutionBudget(Duration wallClockLimit, Duration cpuTimeLimit, MeterRegistry meterRegistry) {
+        this.wallClockLimitNanos = (wallClockLimit != null) ? wallClockLimit.toNanos() : 0;
+        this.cpuTimeLimitNanos = (cpuTimeLimit != null && isCpuTimeSupported()) ? cpuTimeLimit.toNanos() : 0;
+        // Check often enough to stop an execution reasonably soon after it exceeds the smallest limit
+        final long smallestLimitNanos = Math.min(wallClockLimitNanos > 0 ? wallClockLimitNanos : Long.MAX_VALUE, cpuTimeLimitNanos > 0 ? cpuTimeLimitNanos : Long.MAX_VALUE);
+        this.checkIntervalMillis = Math.max(MINIMUM_CHECK_INTERVAL_MILLIS, Math.min(MAXIMUM_CHECK_INTERVAL_MILLIS, TimeUnit.NANOSECONDS.toMillis(smallestLimitNanos) / 10));
+        this.watchdog = isEnabled() ? Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("script-budget-watchdog-%d").setDaemon(true).build()) : null;
+        this.wallClockExceededCounter = Counter.builder(METRIC_NAME).tag("limit", WALL_CLOCK_LIMIT).register(meterRegistry);
+        this.cpuTimeExceededCounter = Counter.builder(METRIC_NAME).tag("limit", CPU_TIME_LIMIT).register(meterRegistry);
+    }
+
+    boolean isEnabled() {
+        return wallClockLimitNanos > 0 || cpuTimeLimitNanos > 0;
+    }
+
+    /**
+     * Starts monitoring a script execution. The thread running the script must be attached to the execution for its CPU time to be monitored.
+     *
+     * @param onExceeded action used to cancel the script if it exceeds the budget, called from the watchdog thread
+     * @return the monitored execution, which must be closed once the script has finished
+     */
+    Execution start(final Runnable onExceeded) {
+        final Execution execution = new Execution(onExceeded);
+        if (isEnabled()) {
+            execution.check = watchdog.scheduleWithFixedDelay(execution::check, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return execution;
+    }
+
+    /**
+     * Runs an action on the watchdog thread after the given delay
+     */
+    void schedule(final Runnable action, final Duration delay) {
+        if (watchdog != null) {
+            watchdog.schedule(action, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void close() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    private boolean isCpuTimeSupported() {
+        if (!threadMXBean.isThreadCpuTimeSupported()) {
+            logger.warn("Thread CPU time measurement is not supported by this JVM, script CPU time will not be limited");
+            return false;
+        }
+        if (!threadMXBean.isThreadCpuTimeEnabled()) {
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        }
+        return true;
+    }
+
+    /**
+     * A single script execution being monitored against the budget
+     */
+    class Execution implements AutoCloseable {
+
+        private final long startTime = System.nanoTime();
+        private final Runnable onExceeded;
+        private volatile Thread thread;
+        private volatile long threadStartCpuTime;
+        private volatile String exceededLimit;
+        private volatile ScheduledFuture<?> check;
+
+        private Execution(Runnable onExceeded) {
+            this.onExceeded = onExceeded;
+        }
+
+        /**
+         * Attaches the thread that is running the script, from which point its CPU time counts towards the budget
+         */
+        void attach(final Thread thread) {
+            this.threadStartCpuTime = (cpuTimeLimitNanos > 0) ? threadMXBean.getThreadCpuTime(thread.getId()) : 0;
+            this.thread = thread;
+        }
+
+        boolean isExceeded() {
+            return exceededLimit != null;
+        }
+
+        MessageConversionException exceededException() {
+            final Duration limit = Duration.ofNanos(CPU_TIME_LIMIT.equals(exceededLimit) ? cpuTimeLimitNanos : wallClockLimitNanos);
+            return new MessageConversionException(String.format("Script exceeded its %s time limit of %s and was cancelled", exceededLimit, limit));
+        }
+
+        private void check() {
+            if (exceededLimit != null) {
+                return;
+            }
+            if (wallClockLimitNanos > 0 && System.nanoTime() - startTime > wallClockLimitNanos) {
+                exceeded(WALL_CLOCK_LIMIT, wallClockExceededCounter);
+            } else if (cpuTimeLimitNanos > 0 && thread != null) {
+                final long cpuTime = threadMXBean.getThreadCpuTime(thread.getId());
+                if (cpuTime >= 0 && cpuTime - threadStartCpuTime > cpuTimeLimitNanos) {
+                    exceeded(CPU_TIME_LIMIT, cpuTimeExceededCounter);
+                }
+            }
+        }
+
+        private void exceeded(final String limit, final Counter counter) {
+            exceededLimit = limit;
+            counter.increment();
+            close();
+            logger.warn("Script execution exceeded its {} time limit, cancelling it", limit);
+            try {
+                onExceeded.run();
+            } catch (RuntimeException e) {
+                logger.warn("Exception caught cancelling script execution", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (check != null) {
+                check.cancel(false);
+            }
+        }
+
+    }
+
+}
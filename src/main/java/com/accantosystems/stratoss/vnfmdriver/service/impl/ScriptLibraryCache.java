@@ -0,0 +1,70 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Bounded cache of pre-evaluated script libraries, keyed by the engine they were evaluated in and a hash of the library contents.
+ * <p>
+ * Each entry holds the global scope produced by evaluating the libraries (e.g. <code>lib.js</code>) once. The scope is handed out as a
+ * read-only {@link Bindings} view, suitable for use as the {@link javax.script.ScriptContext#GLOBAL_SCOPE} of a per-request script context so
+ * that request scripts can call the library functions without re-loading them, but cannot redefine them for other requests.
+ */
+class ScriptLibraryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScriptLibraryCache.class);
+    static final String CACHE_NAME = "vnfmdriver.scripts.libraries";
+
+    private final Cache<String, Bindings> cache;
+
+    ScriptLibraryCache(int maximumSize, MeterRegistry meterRegistry) {
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumSize(maximumSize)
+                                 .recordStats()
+                                 .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retrieves the library scope for the given libraries, evaluating them (in order) if they haven't been seen before on this engine
+     *
+     * @param engineId     identifier of the engine the library scope is to be used with
+     * @param scriptEngine engine used to evaluate the libraries on a cache miss
+     * @param libraries    library script contents, later libraries may override functions defined by earlier ones
+     * @return read-only view of the library scope
+     * @throws ScriptException if any of the libraries could not be evaluated
+     */
+    Bindings getLibraryScope(final int engineId, final ScriptEngine scriptEngine, final List<String> libraries) throws ScriptException {
+        final String librariesHash = CompiledScriptCache.hash(String.join("\n", libraries));
+        try {
+            return cache.get(engineId + ":" + librariesHash, () -> {
+                logger.debug("Evaluating {} script libraries with hash [{}] for engine [{}]", libraries.size(), librariesHash, engineId);
+                final Bindings libraryScope = scriptEngine.createBindings();
+                for (String library : libraries) {
+                    scriptEngine.eval(library, libraryScope);
+                }
+                return new SimpleBindings(Collections.unmodifiableMap(libraryScope));
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScriptException) {
+                throw (ScriptException) e.getCause();
+            }
+            throw new IllegalStateException("Unexpected exception evaluating script libraries", e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import org.etsi.ifa011.VnfDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Bounded cache of parsed VNF descriptors, keyed by a hash of the descriptor contents.
+ * <p>
+ * The same {@link VnfDescriptor} instance is shared by every conversion using an identical descriptor, so it must be treated as read-only by
+ * the scripts it is passed to.
+ */
+class VnfDescriptorCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(VnfDescriptorCache.class);
+    static final String CACHE_NAME = "vnfmdriver.vnfd.parsed";
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, VnfDescriptor> cache;
+
+    VnfDescriptorCache(ObjectMapper objectMapper, int maximumSize, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumSize(maximumSize)
+                                 .recordStats()
+                                 .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retrieves the parsed form of the given descriptor, parsing (and caching) it if it hasn't been seen before
+     *
+     * @param vnfdString descriptor contents
+     * @return parsed descriptor
+     * @throws IOException if the descriptor could not be parsed
+     */
+    VnfDescriptor getVnfDescriptor(final String vnfdString) throws IOException {
+        final String vnfdHash = CompiledScriptCache.hash(vnfdString);
+        try {
+            return cache.get(vnfdHash, () -> {
+                logger.debug("Parsing VNFD with hash [{}]", vnfdHash);
+                return objectMapper.readValue(vnfdString, VnfDescriptor.class);
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Unexpected exception parsing VNFD", e.getCause());
+        }
+    }
+
+}
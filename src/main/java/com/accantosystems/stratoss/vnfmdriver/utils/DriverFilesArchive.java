@@ -0,0 +1,109 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+/**
+ * An index of the files contained within the driverFiles of an execution request.
+ * <p>
+ * The driverFiles are a Base64 encoded Zip file. The contents of each file are held as raw bytes, and only decoded into text when the file is
+ * looked up, as most of the files in a resource package are never looked up by the driver. Archives are cached by
+ * {@code DriverFilesArchiveCache}, so that further lookups against the same resource package do not need to decode or scan it again.
+ */
+public class DriverFilesArchive {
+
+    private final static Logger logger = LoggerFactory.getLogger(DriverFilesArchive.class);
+    private static final DriverFilesArchive EMPTY_ARCHIVE = new DriverFilesArchive(Collections.emptyMap(), 0);
+
+    // Keyed on the lower case file name, as file names are matched ignoring case
+    private final Map<String, byte[]> files;
+    private final long weight;
+
+    private DriverFilesArchive(final Map<String, byte[]> files, final long weight) {
+        this.files = files;
+        this.weight = weight;
+    }
+
+    /**
+     * Reads the archive for the given driverFiles
+     *
+     * @param driverFiles Base64 encoded Zip file, may be null or empty
+     * @return archive of the files contained in the driverFiles (empty if it could not be read)
+     */
+    public static DriverFilesArchive forDriverFiles(final String driverFiles) {
+        if (StringUtils.isEmpty(driverFiles)) {
+            return EMPTY_ARCHIVE;
+        }
+
+        try {
+            return readArchive(driverFiles);
+        } catch (IOException e) {
+            logger.error("Exception raised reading lifecycle scripts", e);
+            return EMPTY_ARCHIVE;
+        }
+    }
+
+    /**
+     * Looks up the contents of a file in the archive
+     *
+     * @param filename full path of the file within the archive (case-insensitive)
+     * @return file contents, or null if no such file exists
+     */
+    public String getFile(final String filename) {
+        final byte[] contents = files.get(filename.toLowerCase(Locale.ROOT));
+        return contents != null ? new String(contents, Charset.defaultCharset()) : null;
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * Returns the approximate number of bytes held by this archive
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    private static DriverFilesArchive readArchive(final String driverFiles) throws IOException {
+        // driverFiles should contain a Base64 encoded Zip file of all scripts concerning the VNFM driver
+        final byte[] decodedByteArray = Base64.getDecoder().decode(driverFiles);
+        final Map<String, byte[]> files = new HashMap<>();
+        long weight = 0;
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(decodedByteArray))) {
+            ZipEntry entry = zis.getNextEntry();
+            while (entry != null) {
+                logger.trace("Found zip entry: {}", entry);
+                if (!entry.isDirectory()) {
+                    // Keep the first occurrence of any file name, matching a sequential scan of the archive
+                    final String name = entry.getName().toLowerCase(Locale.ROOT);
+                    if (!files.containsKey(name)) {
+                        final byte[] contents = IOUtils.toByteArray(zis);
+                        files.put(name, contents);
+                        weight += name.length() + contents.length;
+                    }
+                }
+                // Get the next entry for the loop
+                entry = zis.getNextEntry();
+            }
+        }
+
+        logger.debug("Indexed {} files from lifecycle scripts", files.size());
+        return new DriverFilesArchive(Collections.unmodifiableMap(files), weight);
+    }
+
+}
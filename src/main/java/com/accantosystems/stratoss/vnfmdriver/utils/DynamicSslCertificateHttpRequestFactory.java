@@ -2,7 +2,7 @@ package com.accantosystems.stratoss.vnfmdriver.utils;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.security.SecureRandom;
+import java.net.Socket;
 import java.security.cert.X509Certificate;
 import javax.net.ssl.*;
 
@@ -10,6 +10,24 @@ import org.springframework.http.client.SimpleClientHttpRequestFactory;
 
 public class DynamicSslCertificateHttpRequestFactory extends SimpleClientHttpRequestFactory {
 
+    private final SSLSocketFactory sslSocketFactory;
+    private final HostnameVerifier hostnameVerifier;
+
+    /**
+     * Creates a request factory which trusts all certificates, sharing a single SSL context with all other factories created this way
+     */
+    public DynamicSslCertificateHttpRequestFactory() {
+        this(TrustAllSslSocketFactoryHolder.SSL_SOCKET_FACTORY, new SkipHostnameVerifier());
+    }
+
+    /**
+     * Creates a request factory using the given socket factory (typically from {@link SslContextCache}) for HTTPS connections
+     */
+    public DynamicSslCertificateHttpRequestFactory(SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier) {
+        this.sslSocketFactory = sslSocketFactory;
+        this.hostnameVerifier = hostnameVerifier;
+    }
+
     protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
         if (connection instanceof HttpsURLConnection) {
             this.prepareHttpsConnection((HttpsURLConnection) connection);
@@ -19,22 +37,29 @@ public class DynamicSslCertificateHttpRequestFactory extends SimpleClientHttpReq
     }
 
     private void prepareHttpsConnection(HttpsURLConnection connection) {
-        connection.setHostnameVerifier(new DynamicSslCertificateHttpRequestFactory.SkipHostnameVerifier());
+        connection.setHostnameVerifier(hostnameVerifier);
+        if (sslSocketFactory != null) {
+            connection.setSSLSocketFactory(sslSocketFactory);
+        }
+    }
 
+    private static SSLSocketFactory createSslSocketFactory() {
         try {
-            connection.setSSLSocketFactory(this.createSslSocketFactory());
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[] { new DynamicSslCertificateHttpRequestFactory.SkipX509TrustManager() }, null);
+            return context.getSocketFactory();
         } catch (Exception e) {
+            return null;
         }
     }
 
-    private SSLSocketFactory createSslSocketFactory() throws Exception {
-        SSLContext context = SSLContext.getInstance("TLS");
-        context.init(null, new TrustManager[] { new DynamicSslCertificateHttpRequestFactory.SkipX509TrustManager() }, new SecureRandom());
-        return context.getSocketFactory();
+    private static class TrustAllSslSocketFactoryHolder {
+        private static final SSLSocketFactory SSL_SOCKET_FACTORY = createSslSocketFactory();
     }
 
-    private static class SkipX509TrustManager implements X509TrustManager {
-        private SkipX509TrustManager() {}
+    // Extends X509ExtendedTrustManager, otherwise the host name is still verified by clients which enable endpoint identification (such as the JDK HttpClient)
+    static class SkipX509TrustManager extends X509ExtendedTrustManager {
+        SkipX509TrustManager() {}
 
         public X509Certificate[] getAcceptedIssuers() {
             return new X509Certificate[0];
@@ -43,6 +68,14 @@ public class DynamicSslCertificateHttpRequestFactory extends SimpleClientHttpReq
         public void checkClientTrusted(X509Certificate[] chain, String authType) {}
 
         public void checkServerTrusted(X509Certificate[] chain, String authType) {}
+
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {}
+
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {}
+
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {}
+
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {}
     }
 
     private static class SkipHostnameVerifier implements HostnameVerifier {
@@ -53,4 +86,4 @@ public class DynamicSslCertificateHttpRequestFactory extends SimpleClientHttpReq
         }
     }
 
-}
\ No newline at end of file
+}
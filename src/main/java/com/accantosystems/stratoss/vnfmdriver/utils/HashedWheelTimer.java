@@ -0,0 +1,212 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed timer wheel (as described by Varghese and Lauck), for scheduling large numbers of tasks where the exact time they run is not critical.
+ * <p>
+ * Scheduling and cancelling a task are constant time operations, and a single worker thread advances the wheel once every tick, handing tasks which
+ * have expired to an {@link Executor} to be run. Tasks therefore run up to one tick later than requested.
+ */
+public class HashedWheelTimer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickNanos;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final Executor executor;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingTimeouts = new AtomicInteger();
+    private final Thread workerThread;
+    private final long startTime;
+    private volatile boolean stopped;
+    // Only accessed by the worker thread
+    private long tick;
+
+    /**
+     * Creates and starts a timer
+     *
+     * @param name          name of the worker thread
+     * @param tickDuration  interval between ticks of the wheel
+     * @param ticksPerWheel number of buckets in the wheel (rounded up to a power of 2)
+     * @param executor      executor used to run expired tasks
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(final String name, final Duration tickDuration, final int ticksPerWheel, final Executor executor) {
+        if (tickDuration.isZero() || tickDuration.isNegative()) {
+            throw new IllegalArgumentException(String.format("Tick duration must be greater than 0: %s", tickDuration));
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException(String.format("Ticks per wheel must be between 1 and 2^30: %s", ticksPerWheel));
+        }
+        this.tickNanos = tickDuration.toNanos();
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.wheel = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = wheelSize - 1;
+        this.executor = executor;
+        this.startTime = System.nanoTime();
+        this.workerThread = new Thread(this::run, name);
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+    }
+
+    /**
+     * Schedules a task to be run once after the given delay
+     *
+     * @param task  task to run
+     * @param delay delay before running the task
+     * @return handle which can be used to cancel the task
+     */
+    public Timeout schedule(final Runnable task, final Duration delay) {
+        if (stopped) {
+            throw new IllegalStateException("Cannot schedule a task once the timer has been stopped");
+        }
+        final Timeout timeout = new Timeout(task, System.nanoTime() - startTime + Math.max(0, delay.toNanos()));
+        pendingTimeouts.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of tasks waiting to be run
+     */
+    public int getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Stops the timer. Tasks which have not yet expired are never run.
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        workerThread.interrupt();
+        try {
+            workerThread.join(TimeUnit.NANOSECONDS.toMillis(tickNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            final long tickDeadline = tickNanos * (tick + 1);
+            final long sleepNanos = tickDeadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (stopped) {
+                        break;
+                    }
+                }
+                continue;
+            }
+            transferNewTimeouts();
+            expireTimeouts(wheel[(int) (tick & mask)], tickDeadline);
+            tick++;
+        }
+    }
+
+    private void transferNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            // Tasks already due are placed in the current bucket, so that they are expired on this tick
+            final long expiryTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(final List<Timeout> bucket, final long tickDeadline) {
+        int retained = 0;
+        for (final Timeout timeout : bucket) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            if (timeout.remainingRounds <= 0 && timeout.deadline <= tickDeadline) {
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+                bucket.set(retained++, timeout);
+            }
+        }
+        bucket.subList(retained, bucket.size()).clear();
+    }
+
+    /**
+     * A task scheduled on the timer
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile boolean cancelled;
+        // Only accessed by the worker thread
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task, if it has not already been run
+         *
+         * @return true if the task was cancelled
+         */
+        public boolean cancel() {
+            if (done.compareAndSet(false, true)) {
+                cancelled = true;
+                pendingTimeouts.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void expire() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            pendingTimeouts.decrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        logger.warn("Exception running timer task", e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.warn("Timer task rejected by executor", e);
+            }
+        }
+    }
+
+}
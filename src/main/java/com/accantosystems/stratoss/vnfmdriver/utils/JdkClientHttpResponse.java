@@ -0,0 +1,62 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpResponse;
+
+/**
+ * Adapts a response received using the JDK {@link java.net.http.HttpClient}, so that it can be handled in the same way as responses received
+ * by a RestTemplate (e.g. by a {@link org.springframework.web.client.ResponseErrorHandler}).
+ */
+public class JdkClientHttpResponse extends AbstractClientHttpResponse {
+
+    private final HttpResponse<?> response;
+    private final InputStream body;
+    private final HttpHeaders headers = new HttpHeaders();
+
+    public JdkClientHttpResponse(HttpResponse<?> response, InputStream body) {
+        this.response = response;
+        this.body = body;
+        // Pseudo-headers (such as :status) are only present in HTTP/2 responses
+        response.headers().map().forEach((name, values) -> {
+            if (!name.startsWith(":")) {
+                headers.addAll(name, values);
+            }
+        });
+    }
+
+    @Override
+    public int getRawStatusCode() {
+        return response.statusCode();
+    }
+
+    @Override
+    public String getStatusText() {
+        final HttpStatus status = HttpStatus.resolve(response.statusCode());
+        return status != null ? status.getReasonPhrase() : "";
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public InputStream getBody() {
+        return body;
+    }
+
+    @Override
+    public void close() {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.net.ssl.SSLContext;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Request factory backed by the JDK {@link HttpClient}, which negotiates HTTP/2 (using ALPN for HTTPS) so that concurrent requests to the same
+ * server are multiplexed over a single connection. Servers which do not support HTTP/2 are called using HTTP/1.1 instead.
+ * <p>
+ * The HTTP client (and therefore its connections) is created on first use and shared by all requests created by this factory. As with the
+ * other request factories, the connect and read timeouts may be set by {@link org.springframework.boot.web.client.RestTemplateBuilder}.
+ */
+public class JdkHttpClientRequestFactory implements ClientHttpRequestFactory {
+
+    // Headers which are managed by the HTTP client itself, and may not be set on requests
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.add(HttpHeaders.CONNECTION);
+        RESTRICTED_HEADERS.add(HttpHeaders.CONTENT_LENGTH);
+        RESTRICTED_HEADERS.add(HttpHeaders.EXPECT);
+        RESTRICTED_HEADERS.add(HttpHeaders.HOST);
+        RESTRICTED_HEADERS.add(HttpHeaders.UPGRADE);
+    }
+
+    private final SSLContext sslContext;
+    private final HttpClient.Version version;
+    private Duration connectTimeout;
+    private Duration readTimeout;
+    private volatile HttpClient httpClient;
+
+    public JdkHttpClientRequestFactory(SSLContext sslContext) {
+        this(sslContext, HttpClient.Version.HTTP_2);
+    }
+
+    public JdkHttpClientRequestFactory(SSLContext sslContext, HttpClient.Version version) {
+        this.sslContext = sslContext;
+        this.version = version;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout > 0 ? Duration.ofMillis(connectTimeout) : null;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout > 0 ? Duration.ofMillis(readTimeout) : null;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new JdkClientHttpRequest(getHttpClient(), uri, httpMethod, readTimeout);
+    }
+
+    public HttpClient getHttpClient() {
+        if (httpClient == null) {
+            synchronized (this) {
+                if (httpClient == null) {
+                    final HttpClient.Builder builder = HttpClient.newBuilder()
+                                                                 .version(version)
+                                                                 .followRedirects(HttpClient.Redirect.NEVER);
+                    if (sslContext != null) {
+                        builder.sslContext(sslContext);
+                    }
+                    if (connectTimeout != null) {
+                        builder.connectTimeout(connectTimeout);
+                    }
+                    httpClient = builder.build();
+                }
+            }
+        }
+        return httpClient;
+    }
+
+    private static class JdkClientHttpRequest extends AbstractClientHttpRequest {
+
+        private final ByteArrayOutputStream bufferedOutput = new ByteArrayOutputStream(1024);
+        private final HttpClient httpClient;
+        private final URI uri;
+        private final HttpMethod method;
+        private final Duration timeout;
+
+        private JdkClientHttpRequest(HttpClient httpClient, URI uri, HttpMethod method, Duration timeout) {
+            this.httpClient = httpClient;
+            this.uri = uri;
+            this.method = method;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public String getMethodValue() {
+            return method.name();
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return bufferedOutput;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            final HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+            if (timeout != null) {
+                builder.timeout(timeout);
+            }
+            headers.forEach((name, values) -> {
+                if (!RESTRICTED_HEADERS.contains(name)) {
+                    values.forEach(value -> builder.header(name, value));
+                }
+            });
+            builder.method(method.name(), bufferedOutput.size() > 0 ? HttpRequest.BodyPublishers.ofByteArray(bufferedOutput.toByteArray()) : HttpRequest.BodyPublishers.noBody());
+
+            try {
+                final HttpResponse<InputStream> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+                return new JdkClientHttpResponse(response, response.body());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(String.format("Interrupted waiting for response from [%s]", uri));
+            }
+        }
+    }
+
+}
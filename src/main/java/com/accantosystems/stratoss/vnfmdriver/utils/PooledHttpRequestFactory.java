@@ -0,0 +1,56 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Request factory backed by a pool of keep-alive connections (using Apache HttpClient).
+ * <p>
+ * HTTPS connections are created using the given socket factory (typically from {@link SslContextCache}). Connections are limited in
+ * total and per route, are closed once they have been idle for longer than the idle timeout, and are never reused once older than their time to
+ * live. The pool is shut down when the factory is destroyed.
+ */
+public class PooledHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    public PooledHttpRequestFactory(SSLConnectionSocketFactory sslSocketFactory, int maxTotal, int maxPerRoute, Duration idleTimeout, Duration timeToLive) {
+        this(createConnectionManager(sslSocketFactory, maxTotal, maxPerRoute, timeToLive), idleTimeout);
+    }
+
+    private PooledHttpRequestFactory(PoolingHttpClientConnectionManager connectionManager, Duration idleTimeout) {
+        super(HttpClients.custom()
+                         .setConnectionManager(connectionManager)
+                         .evictExpiredConnections()
+                         .evictIdleConnections(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                         .build());
+        this.connectionManager = connectionManager;
+    }
+
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager(final SSLConnectionSocketFactory sslSocketFactory, final int maxTotal, final int maxPerRoute,
+                                                                              final Duration timeToLive) {
+        final Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                                                                                      .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                                                                                      .register("https", sslSocketFactory)
+                                                                                      .build();
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry, null, null, null,
+                                                                                                            timeToLive.toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        return connectionManager;
+    }
+
+}
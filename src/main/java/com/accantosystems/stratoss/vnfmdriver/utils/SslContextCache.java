@@ -0,0 +1,237 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.*;
+
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Builds the SSL contexts used for outbound HTTPS connections once for each trust configuration, so that TLS sessions can be resumed rather than
+ * every connection performing a full handshake.
+ * <p>
+ * A trust configuration is either trust-all (the default, where neither server certificates nor host names are verified), or a set of trusted
+ * certificates in PEM format (where both are verified). The time taken to complete each handshake is recorded in the
+ * {@value #HANDSHAKE_METRIC_NAME} metric, tagged with the trust configuration and whether the session was resumed. At most
+ * {@code vnfmdriver.tls.contextCacheSize} trust configurations are kept, the least recently used being discarded first.
+ */
+@Component
+public class SslContextCache {
+
+    public static final String HANDSHAKE_METRIC_NAME = "vnfmdriver.tls.handshakes";
+    public static final String TRUST_ALL = "trust-all";
+    public static final String TRUSTED_CERTIFICATES = "trusted-certificates";
+
+    private final static Logger logger = LoggerFactory.getLogger(SslContextCache.class);
+
+    private final VNFMDriverProperties.Tls properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, SSLContext> sslContexts;
+    private final Map<String, SSLSocketFactory> socketFactories;
+
+    public SslContextCache(VNFMDriverProperties vnfmDriverProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.properties = vnfmDriverProperties.getTls();
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        // Bounded, as each distinct set of trusted certificates gets its own context
+        this.sslContexts = CacheBuilder.newBuilder().maximumSize(properties.getContextCacheSize()).<String, SSLContext>build().asMap();
+        this.socketFactories = CacheBuilder.newBuilder().maximumSize(properties.getContextCacheSize()).<String, SSLSocketFactory>build().asMap();
+    }
+
+    /**
+     * Returns the (shared) SSL context for the given trust configuration
+     *
+     * @param trustedCertificates one or more PEM encoded certificates to trust, or null (or empty) to trust all certificates
+     * @return SSL context
+     * @throws IllegalArgumentException if the trusted certificates cannot be parsed
+     */
+    public SSLContext getSslContext(final String trustedCertificates) {
+        final String key = getKey(trustedCertificates);
+        final SSLContext sslContext = sslContexts.get(key);
+        if (sslContext != null) {
+            return sslContext;
+        }
+        return sslContexts.computeIfAbsent(key, k -> createSslContext(trustedCertificates));
+    }
+
+    /**
+     * Returns a socket factory (for use with {@link HttpsURLConnection}) which uses the shared SSL context for the given trust configuration
+     * <p>
+     * The same instance is returned for the same trust configuration, as keep-alive connections are only reused by {@link HttpsURLConnection}
+     * for the socket factory that created them.
+     */
+    public SSLSocketFactory getSocketFactory(final String trustedCertificates) {
+        return socketFactories.computeIfAbsent(getKey(trustedCertificates),
+                                               k -> new InstrumentedSSLSocketFactory(getSslContext(trustedCertificates).getSocketFactory(), getTrustTag(trustedCertificates)));
+    }
+
+    /**
+     * Returns a socket factory (for use with Apache HttpClient) which uses the shared SSL context for the given trust configuration
+     */
+    public SSLConnectionSocketFactory getConnectionSocketFactory(final String trustedCertificates) {
+        return new InstrumentedSSLConnectionSocketFactory(getSslContext(trustedCertificates), getHostnameVerifier(trustedCertificates),
+                                                          getTrustTag(trustedCertificates));
+    }
+
+    public HostnameVerifier getHostnameVerifier(final String trustedCertificates) {
+        return StringUtils.hasText(trustedCertificates) ? new DefaultHostnameVerifier() : NoopHostnameVerifier.INSTANCE;
+    }
+
+    private String getKey(final String trustedCertificates) {
+        if (!StringUtils.hasText(trustedCertificates)) {
+            return TRUST_ALL;
+        }
+        return Hashing.sha256().hashString(trustedCertificates.trim(), StandardCharsets.UTF_8).toString();
+    }
+
+    private String getTrustTag(final String trustedCertificates) {
+        return StringUtils.hasText(trustedCertificates) ? TRUSTED_CERTIFICATES : TRUST_ALL;
+    }
+
+    private SSLContext createSslContext(final String trustedCertificates) {
+        try {
+            final TrustManager[] trustManagers;
+            if (StringUtils.hasText(trustedCertificates)) {
+                final KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+                trustStore.load(null, null);
+                final Collection<? extends Certificate> certificates = CertificateFactory.getInstance("X.509")
+                                                                                         .generateCertificates(new ByteArrayInputStream(trustedCertificates.trim().getBytes(StandardCharsets.UTF_8)));
+                if (certificates.isEmpty()) {
+                    throw new IllegalArgumentException("No certificates found in trusted certificates");
+                }
+                int i = 0;
+                for (Certificate certificate : certificates) {
+                    trustStore.setCertificateEntry("trusted-certificate-" + i++, certificate);
+                }
+                final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                trustManagerFactory.init(trustStore);
+                trustManagers = trustManagerFactory.getTrustManagers();
+                logger.info("Creating SSL context trusting {} certificate(s)", certificates.size());
+            } else {
+                trustManagers = new TrustManager[] { new DynamicSslCertificateHttpRequestFactory.SkipX509TrustManager() };
+                logger.info("Creating SSL context trusting all certificates");
+            }
+
+            final SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, trustManagers, null);
+            sslContext.getClientSessionContext().setSessionCacheSize(properties.getSessionCacheSize());
+            sslContext.getClientSessionContext().setSessionTimeout((int) properties.getSessionTimeout().getSeconds());
+            return sslContext;
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalArgumentException(String.format("Unable to create SSL context: %s", e.getMessage()), e);
+        }
+    }
+
+    private SSLSocket instrument(final SSLSocket socket, final String trust) {
+        if (meterRegistry == null) {
+            return socket;
+        }
+        // Sessions created before this socket must have been resumed, rather than negotiated by a full handshake
+        final long startTime = System.nanoTime();
+        final long startTimeMillis = System.currentTimeMillis();
+        socket.addHandshakeCompletedListener(event -> Timer.builder(HANDSHAKE_METRIC_NAME)
+                                                           .description("Time taken to establish outbound TLS connections")
+                                                           .tag("trust", trust)
+                                                           .tag("resumed", String.valueOf(event.getSession().getCreationTime() < startTimeMillis))
+                                                           .register(meterRegistry)
+                                                           .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS));
+        return socket;
+    }
+
+    private Socket instrument(final Socket socket, final String trust) {
+        if (socket instanceof SSLSocket) {
+            instrument((SSLSocket) socket, trust);
+        }
+        return socket;
+    }
+
+    private class InstrumentedSSLSocketFactory extends SSLSocketFactory {
+
+        private final SSLSocketFactory delegate;
+        private final String trust;
+
+        private InstrumentedSSLSocketFactory(SSLSocketFactory delegate, String trust) {
+            this.delegate = delegate;
+            this.trust = trust;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return instrument(delegate.createSocket(), trust);
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return instrument(delegate.createSocket(socket, host, port, autoClose), trust);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return instrument(delegate.createSocket(host, port), trust);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return instrument(delegate.createSocket(host, port, localHost, localPort), trust);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return instrument(delegate.createSocket(host, port), trust);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return instrument(delegate.createSocket(address, port, localAddress, localPort), trust);
+        }
+    }
+
+    private class InstrumentedSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
+
+        private final String trust;
+
+        private InstrumentedSSLConnectionSocketFactory(SSLContext sslContext, HostnameVerifier hostnameVerifier, String trust) {
+            super(sslContext, hostnameVerifier);
+            this.trust = trust;
+        }
+
+        @Override
+        protected void prepareSocket(SSLSocket socket) {
+            instrument(socket, trust);
+        }
+    }
+
+}
@@ -19,6 +19,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import com.accantosystems.stratoss.vnfmdriver.driver.SOL003ResponseException;
+import com.accantosystems.stratoss.vnfmdriver.driver.VNFMUnavailableException;
 import com.accantosystems.stratoss.vnfmdriver.model.web.ErrorInfo;
 
 /**
@@ -82,6 +83,24 @@ public class ALMExceptionHandlingControllerAdvice {
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ResponseBody
     protected ErrorInfo handleSOL003ResponseException(HttpServletRequest req, SOL003ResponseException cause) {
+        return sol003Handle(req, cause);
+    }
+
+    @ExceptionHandler(VNFMUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ResponseBody
+    protected ErrorInfo handleVNFMUnavailableException(HttpServletRequest req, VNFMUnavailableException cause) {
+        return sol003Handle(req, cause);
+    }
+
+    @ExceptionHandler(Exception.class)
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    @ResponseBody
+    protected ErrorInfo handleAllExceptions(HttpServletRequest req, Exception cause) {
+        return defaultHandle(cause.getLocalizedMessage(), req, cause);
+    }
+
+    private ErrorInfo sol003Handle(HttpServletRequest req, SOL003ResponseException cause) {
         ErrorInfo errorInfo = defaultHandle(cause.getLocalizedMessage(), req, cause);
         if (cause.getProblemDetails().getDetail() != null) {
             errorInfo.getDetails().put("vnfmDetail", cause.getProblemDetails().getDetail());
@@ -101,13 +120,6 @@ public class ALMExceptionHandlingControllerAdvice {
         return errorInfo;
     }
 
-    @ExceptionHandler(Exception.class)
-    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
-    @ResponseBody
-    protected ErrorInfo handleAllExceptions(HttpServletRequest req, Exception cause) {
-        return defaultHandle(cause.getLocalizedMessage(), req, cause);
-    }
-
     private ErrorInfo defaultHandle(String message, HttpServletRequest req, Exception cause) {
         logError(message, cause);
         return buildBasicErrorInfoObject(req, cause);
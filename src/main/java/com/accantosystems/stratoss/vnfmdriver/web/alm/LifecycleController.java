@@ -2,6 +2,7 @@ package com.accantosystems.stratoss.vnfmdriver.web.alm;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionAcceptedResponse;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionRequest;
 import com.accantosystems.stratoss.vnfmdriver.service.LifecycleManagementService;
@@ -32,15 +34,17 @@ public class LifecycleController {
     private final static Logger logger = LoggerFactory.getLogger(LifecycleController.class);
 
     private final LifecycleManagementService lifecycleManagementService;
+    private final VNFMDriverProperties properties;
 
     @Autowired
-    public LifecycleController(final LifecycleManagementService lifecycleManagementService) {
+    public LifecycleController(final LifecycleManagementService lifecycleManagementService, final VNFMDriverProperties properties) {
         this.lifecycleManagementService = lifecycleManagementService;
+        this.properties = properties;
     }
 
     @PostMapping("/lifecycle/execute")
     @Operation( summary = "Execute a lifecycle against a VNFM", description = "Initiates a lifecycle against a VNF, managed by a VNFM")
-    public ResponseEntity<ExecutionAcceptedResponse> executeLifecycle(@RequestBody ExecutionRequest executionRequest, HttpServletRequest servletRequest) throws MessageConversionException {
+    public CompletableFuture<ResponseEntity<ExecutionAcceptedResponse>> executeLifecycle(@RequestBody ExecutionRequest executionRequest, HttpServletRequest servletRequest) throws MessageConversionException {
         try (BufferedReader messageReader = servletRequest.getReader()) {
             String rawMessage = messageReader.lines().collect(Collectors.joining("\n"));
             logger.info("Received ExecutionRequest:\n{}", rawMessage);
@@ -48,8 +52,12 @@ public class LifecycleController {
             logger.warn(String.format("Exception caught logging ExecutionRequest message: %s", e.getMessage()), e);
         }
         logger.info("Received request to execute a lifecycle [{}] at deployment location [{}]", executionRequest.getLifecycleName(), executionRequest.getDeploymentLocation().getName());
+        if (properties.getAsync().isNonBlockingDriver()) {
+            // The request thread is released while waiting for the VNFM to respond
+            return lifecycleManagementService.executeLifecycleAsync(executionRequest).thenApply(executionAcceptedResponse -> ResponseEntity.accepted().body(executionAcceptedResponse));
+        }
         final ExecutionAcceptedResponse executionAcceptedResponse = lifecycleManagementService.executeLifecycle(executionRequest);
-        return ResponseEntity.accepted().body(executionAcceptedResponse);
+        return CompletableFuture.completedFuture(ResponseEntity.accepted().body(executionAcceptedResponse));
     }
 
     @PostMapping("/references/find")
@@ -18,7 +18,7 @@ import com.accantosystems.stratoss.vnfmdriver.model.alm.FailureDetails;
 import org.etsi.sol003.lifecyclemanagement.LcmOperationStateType;
 import org.etsi.sol003.lifecyclemanagement.LifecycleManagementNotification;
 import org.etsi.sol003.lifecyclemanagement.VnfLcmOperationOccurenceNotification;
-import com.accantosystems.stratoss.vnfmdriver.service.ExternalMessagingService;
+import com.accantosystems.stratoss.vnfmdriver.service.LcmOpOccCompletionTracker;
 
 import io.swagger.v3.oas.annotations.Operation;
 
@@ -30,11 +30,11 @@ public class LifecycleNotificationController {
 
     private final static Logger logger = LoggerFactory.getLogger(LifecycleNotificationController.class);
 
-    private final ExternalMessagingService externalMessagingService;
+    private final LcmOpOccCompletionTracker completionTracker;
 
     @Autowired
-    public LifecycleNotificationController(ExternalMessagingService externalMessagingService) {
-        this.externalMessagingService = externalMessagingService;
+    public LifecycleNotificationController(LcmOpOccCompletionTracker completionTracker) {
+        this.completionTracker = completionTracker;
     }
 
     @PostMapping
@@ -56,7 +56,8 @@ public class LifecycleNotificationController {
                         asyncResponse.setFailureDetails(new FailureDetails(FailureDetails.FailureCode.INTERNAL_ERROR, vnfLcmOpOccNotification.getError().getDetail()));
                     }
                 }
-                externalMessagingService.sendExecutionAsyncResponse(asyncResponse);
+                // Also stops any polling for the operation
+                completionTracker.notificationReceived(asyncResponse);
             }
         }
 
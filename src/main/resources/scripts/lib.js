@@ -56,8 +56,21 @@ function _flattenPropertyArray(returnMap, array, prefix) {
     }
 }
 
+// Nashorn script objects as seen from another scope, only looked up once (and not available at all when running on GraalJS)
+var NashornJSObject = (function() {
+    try {
+        return Java.type('jdk.nashorn.api.scripting.JSObject')
+    } catch (e) {
+        return null
+    }
+})();
+
 // ensure Java types are supported (e.g. in JSON.stringify calls) by converting to JSON types
 function handleJavaPropertyTypes(propertyValue) {
+    // objects created by a script evaluated in another scope (i.e. when this library is shared) are Java Maps but must be used as they are
+    if(NashornJSObject !== null && propertyValue instanceof NashornJSObject) {
+        return propertyValue;
+    }
     if(propertyValue instanceof java.util.Map) {
         var JSONObject = Java.type('org.json.JSONObject')
         return JSON.parse(new JSONObject(propertyValue).toString())
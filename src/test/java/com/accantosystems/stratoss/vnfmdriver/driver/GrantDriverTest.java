@@ -22,8 +22,10 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.client.MockRestServiceServer;
 
 import com.accantosystems.stratoss.vnfmdriver.model.GrantCreationResponse;
+import com.accantosystems.stratoss.vnfmdriver.security.OAuth2TokenManager;
+import com.accantosystems.stratoss.vnfmdriver.utils.SslContextCache;
 
-@RestClientTest({ GrantDriver.class, GrantResponseErrorHandler.class })
+@RestClientTest({ GrantDriver.class, GrantResponseErrorHandler.class, SslContextCache.class, OAuth2TokenManager.class })
 @AutoConfigureWireMock(port = 0)
 @ActiveProfiles("test")
 public class GrantDriverTest {
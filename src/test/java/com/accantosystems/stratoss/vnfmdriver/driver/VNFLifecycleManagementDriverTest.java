@@ -1,7 +1,6 @@
 package com.accantosystems.stratoss.vnfmdriver.driver;
 
-import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.AUTHENTICATION_ACCESS_TOKEN_URI;
-import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.AUTHENTICATION_URL;
+import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.*;
 import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.*;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.assertj.core.api.Assertions.*;
@@ -9,9 +8,15 @@ import static org.springframework.test.web.client.match.MockRestRequestMatchers.
 import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
 
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.etsi.sol003.lifecyclemanagement.LccnSubscription;
 import org.etsi.sol003.lifecyclemanagement.LccnSubscriptionRequest;
+import org.etsi.sol003.lifecyclemanagement.LcmOperationStateType;
+import org.etsi.sol003.lifecyclemanagement.LcmOperationType;
+import org.etsi.sol003.lifecyclemanagement.VnfLcmOpOcc;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -24,9 +29,17 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.client.MockRestServiceServer;
 
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+import com.accantosystems.stratoss.vnfmdriver.model.AuthenticationType;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
+
 import com.accantosystems.stratoss.vnfmdriver.service.AuthenticatedRestTemplateService;
+import com.accantosystems.stratoss.vnfmdriver.security.OAuth2TokenManager;
+import com.accantosystems.stratoss.vnfmdriver.utils.SslContextCache;
 
-@RestClientTest({ VNFLifecycleManagementDriver.class, SOL003ResponseErrorHandler.class, AuthenticatedRestTemplateService.class })
+@RestClientTest({ VNFLifecycleManagementDriver.class, SOL003ResponseErrorHandler.class, AuthenticatedRestTemplateService.class, SslContextCache.class, OAuth2TokenManager.class,
+                  VNFMCircuitBreakerRegistry.class, VNFMRetryRegistry.class, VNFMRateLimiterRegistry.class })
 @AutoConfigureWireMock(port = 0)
 public class VNFLifecycleManagementDriverTest {
 
@@ -243,6 +256,24 @@ public class VNFLifecycleManagementDriverTest {
         driver.deleteVnfInstance(TEST_DL_NO_AUTH, TEST_VNF_INSTANCE_ID, TEST_VNF_DRIVER_INSTANCE_ID);
     }
 
+    @Test
+    public void testDeleteVnfInstanceRetriedWhenServiceUnavailable() {
+        final MockRestServiceServer server = MockRestServiceServer.bindTo(authenticatedRestTemplateService.getRestTemplate(TEST_DL_NO_AUTH)).build();
+        final HttpHeaders retryAfterHeaders = new HttpHeaders();
+        retryAfterHeaders.set(HttpHeaders.RETRY_AFTER, "0");
+
+        server.expect(requestTo(TEST_SERVER_BASE_URL + VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID))
+              .andExpect(method(HttpMethod.DELETE))
+              .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).headers(retryAfterHeaders));
+        server.expect(requestTo(TEST_SERVER_BASE_URL + VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID))
+              .andExpect(method(HttpMethod.DELETE))
+              .andRespond(withNoContent());
+
+        driver.deleteVnfInstance(TEST_DL_NO_AUTH, TEST_VNF_INSTANCE_ID, TEST_VNF_DRIVER_INSTANCE_ID);
+
+        server.verify();
+    }
+
     @Test
     public void testDeleteVnfInstanceNotFound() {
         final MockRestServiceServer server = MockRestServiceServer.bindTo(authenticatedRestTemplateService.getRestTemplate(TEST_DL_NO_AUTH)).build();
@@ -457,11 +488,80 @@ public class VNFLifecycleManagementDriverTest {
     }
 
     @Test
-    public void testQueryAllLifecycleOperationOccurrences() {
+    public void testQueryAllLifecycleOperationOccurrences() throws Exception {
+        final MockRestServiceServer server = MockRestServiceServer.bindTo(authenticatedRestTemplateService.getRestTemplate(TEST_DL_NO_AUTH)).build();
+        final HttpHeaders nextPageHeaders = new HttpHeaders();
+        nextPageHeaders.add(HttpHeaders.LINK, "<" + TEST_SERVER_BASE_URL + LCM_OP_OCC_ENDPOINT + "?nextpage_opaque_marker=a%2Fb>; rel=\"next\"");
+
+        server.expect(requestTo(TEST_SERVER_BASE_URL + LCM_OP_OCC_ENDPOINT))
+              .andExpect(method(HttpMethod.GET))
+              .andRespond(withSuccess(loadFileIntoString("examples/VnfLcmOpOccs-page1.json"), MediaType.APPLICATION_JSON).headers(nextPageHeaders));
+        // The next page link is followed as given, without being encoded again
+        server.expect(requestTo(TEST_SERVER_BASE_URL + LCM_OP_OCC_ENDPOINT + "?nextpage_opaque_marker=a%2Fb"))
+              .andExpect(method(HttpMethod.GET))
+              .andRespond(withSuccess(loadFileIntoString("examples/VnfLcmOpOccs-page2.json"), MediaType.APPLICATION_JSON));
+
+        final List<VnfLcmOpOcc> vnfLcmOpOccs = driver.queryAllLifecycleOperationOccurrences(TEST_DL_NO_AUTH);
+
+        server.verify();
+        assertThat(vnfLcmOpOccs).extracting(VnfLcmOpOcc::getId).containsExactly(TEST_VNF_LCM_OP_OCC_ID, "5ad5de07-7c38-4d5d-a8d7-bb8d1c9d8ca7");
+        assertThat(vnfLcmOpOccs.get(0).getOperationState()).isEqualTo(LcmOperationStateType.PROCESSING);
+        assertThat(vnfLcmOpOccs.get(1).getOperation()).isEqualTo(LcmOperationType.OPERATE);
     }
 
     @Test
-    public void testQueryLifecycleOperationOccurrence() {
+    public void testQueryLifecycleOperationOccurrencesById() throws Exception {
+        final MockRestServiceServer server = MockRestServiceServer.bindTo(authenticatedRestTemplateService.getRestTemplate(TEST_DL_NO_AUTH)).build();
+
+        server.expect(requestTo(TEST_SERVER_BASE_URL + LCM_OP_OCC_ENDPOINT + "?filter=%28in%2Cid%2C" + TEST_VNF_LCM_OP_OCC_ID + "%2C5ad5de07-7c38-4d5d-a8d7-bb8d1c9d8ca7%29"))
+              .andExpect(method(HttpMethod.GET))
+              .andRespond(withSuccess(loadFileIntoString("examples/VnfLcmOpOccs-page1.json"), MediaType.APPLICATION_JSON));
+
+        final List<VnfLcmOpOcc> vnfLcmOpOccs = driver.queryLifecycleOperationOccurrences(TEST_DL_NO_AUTH, List.of(TEST_VNF_LCM_OP_OCC_ID, "5ad5de07-7c38-4d5d-a8d7-bb8d1c9d8ca7"));
+
+        server.verify();
+        assertThat(vnfLcmOpOccs).extracting(VnfLcmOpOcc::getId).containsExactly(TEST_VNF_LCM_OP_OCC_ID);
+    }
+
+    @Test
+    public void testInFilterQuotesReservedCharacters() {
+        assertThat(VNFLifecycleManagementDriver.getInFilter("id", List.of("abc", "a,b", "it's"))).isEqualTo("(in,id,abc,'a,b','it''s')");
+    }
+
+    @Test
+    public void testQueryLifecycleOperationOccurrence() throws Exception {
+        final MockRestServiceServer server = MockRestServiceServer.bindTo(authenticatedRestTemplateService.getRestTemplate(TEST_DL_NO_AUTH)).build();
+        final String vnfLcmOpOcc = loadFileIntoString("examples/VnfLcmOpOcc.json");
+        final HttpHeaders eTagHeaders = new HttpHeaders();
+        eTagHeaders.setETag("\"1\"");
+        final HttpHeaders newETagHeaders = new HttpHeaders();
+        newETagHeaders.setETag("\"2\"");
+
+        server.expect(requestTo(TEST_SERVER_BASE_URL + LCM_OP_OCC_ENDPOINT + "/" + TEST_VNF_LCM_OP_OCC_ID))
+              .andExpect(method(HttpMethod.GET))
+              .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+              .andRespond(withSuccess(vnfLcmOpOcc, MediaType.APPLICATION_JSON).headers(eTagHeaders));
+        server.expect(requestTo(TEST_SERVER_BASE_URL + LCM_OP_OCC_ENDPOINT + "/" + TEST_VNF_LCM_OP_OCC_ID))
+              .andExpect(method(HttpMethod.GET))
+              .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+              .andRespond(withStatus(HttpStatus.NOT_MODIFIED).headers(eTagHeaders));
+        server.expect(requestTo(TEST_SERVER_BASE_URL + LCM_OP_OCC_ENDPOINT + "/" + TEST_VNF_LCM_OP_OCC_ID))
+              .andExpect(method(HttpMethod.GET))
+              .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+              .andRespond(withSuccess(vnfLcmOpOcc.replace("PROCESSING", "COMPLETED"), MediaType.APPLICATION_JSON).headers(newETagHeaders));
+        // No longer cached once the operation has completed
+        server.expect(requestTo(TEST_SERVER_BASE_URL + LCM_OP_OCC_ENDPOINT + "/" + TEST_VNF_LCM_OP_OCC_ID))
+              .andExpect(method(HttpMethod.GET))
+              .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+              .andRespond(withSuccess(vnfLcmOpOcc.replace("PROCESSING", "COMPLETED"), MediaType.APPLICATION_JSON).headers(newETagHeaders));
+
+        final VnfLcmOpOcc processing = driver.queryLifecycleOperationOccurrence(TEST_DL_NO_AUTH, TEST_VNF_LCM_OP_OCC_ID);
+        assertThat(processing.getOperationState()).isEqualTo(LcmOperationStateType.PROCESSING);
+        assertThat(driver.queryLifecycleOperationOccurrence(TEST_DL_NO_AUTH, TEST_VNF_LCM_OP_OCC_ID)).isSameAs(processing);
+        assertThat(driver.queryLifecycleOperationOccurrence(TEST_DL_NO_AUTH, TEST_VNF_LCM_OP_OCC_ID).getOperationState()).isEqualTo(LcmOperationStateType.COMPLETED);
+        assertThat(driver.queryLifecycleOperationOccurrence(TEST_DL_NO_AUTH, TEST_VNF_LCM_OP_OCC_ID).getOperationState()).isEqualTo(LcmOperationStateType.COMPLETED);
+
+        server.verify();
     }
 
     @Test
@@ -520,4 +620,145 @@ public class VNFLifecycleManagementDriverTest {
         assertThat(vnfLcmOpOccId).isEqualTo(TEST_VNF_LCM_OP_OCC_ID);
     }
 
+    @Test
+    public void testCreateVnfInstanceAsync() throws Exception {
+        stubFor(post(urlEqualTo(VNF_INSTANCE_ENDPOINT))
+                        .willReturn(aResponse().withStatus(HttpStatus.CREATED.value())
+                                               .withHeader(HttpHeaders.LOCATION, VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID)
+                                               .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                               .withBody(loadFileIntoString("examples/VnfInstance.json"))));
+
+        final String createVnfRequest = loadFileIntoString("examples/CreateVnfRequest.json");
+
+        final String vnfInstanceResponse = driver.createVnfInstanceAsync(createAsyncDeploymentLocation(), createVnfRequest, TEST_VNF_DRIVER_INSTANCE_ID).get(10, TimeUnit.SECONDS);
+
+        assertThat(vnfInstanceResponse).isEqualTo(loadFileIntoString("examples/VnfInstance.json"));
+        verify(postRequestedFor(urlEqualTo(VNF_INSTANCE_ENDPOINT)).withHeader(HttpHeaders.AUTHORIZATION, equalTo(BASIC_AUTHORIZATION_HEADER))
+                                                                 .withHeader(HttpHeaders.CONTENT_TYPE, equalTo(MediaType.APPLICATION_JSON_VALUE))
+                                                                 .withRequestBody(equalToJson(createVnfRequest)));
+    }
+
+    @Test
+    public void testCreateVnfInstanceAsyncWithProblemDetails() throws Exception {
+        stubFor(post(urlEqualTo(VNF_INSTANCE_ENDPOINT))
+                        .willReturn(aResponse().withStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                                               .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                               .withBody(loadFileIntoString("examples/ProblemDetails.json"))));
+
+        final String createVnfRequest = loadFileIntoString("examples/CreateVnfRequest.json");
+
+        assertThatThrownBy(() -> driver.createVnfInstanceAsync(createAsyncDeploymentLocation(), createVnfRequest, TEST_VNF_DRIVER_INSTANCE_ID).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(SOL003ResponseException.class)
+                .satisfies(exception -> assertThat(((SOL003ResponseException) exception.getCause()).getProblemDetails().getDetail()).isEqualTo("An error has occurred"));
+    }
+
+    @Test
+    public void testCallVnfLcmOperationAsync() throws Exception {
+        stubFor(post(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate"))
+                        .willReturn(aResponse().withStatus(HttpStatus.ACCEPTED.value())
+                                               .withHeader(HttpHeaders.LOCATION, LCM_OP_OCC_ENDPOINT + "/" + TEST_VNF_LCM_OP_OCC_ID)));
+
+        final String instantiateVnfRequest = loadFileIntoString("examples/InstantiateVnfRequest.json");
+
+        final String vnfLcmOpOccId = driver.callVnfLcmOperationAsync(createAsyncDeploymentLocation(), TEST_VNF_INSTANCE_ID, "instantiate", instantiateVnfRequest).get(10, TimeUnit.SECONDS);
+
+        assertThat(vnfLcmOpOccId).isEqualTo(TEST_VNF_LCM_OP_OCC_ID);
+    }
+
+    @Test
+    public void testDeleteVnfInstanceAsync() throws Exception {
+        stubFor(delete(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID)).willReturn(aResponse().withStatus(HttpStatus.NO_CONTENT.value())));
+
+        driver.deleteVnfInstanceAsync(createAsyncDeploymentLocation(), TEST_VNF_INSTANCE_ID, TEST_VNF_DRIVER_INSTANCE_ID).get(10, TimeUnit.SECONDS);
+
+        verify(deleteRequestedFor(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID)));
+    }
+
+    @Test
+    public void testDeleteVnfInstanceAsyncEncodesVnfInstanceId() throws Exception {
+        stubFor(delete(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/vnf%20instance%3F1")).willReturn(aResponse().withStatus(HttpStatus.NO_CONTENT.value())));
+
+        driver.deleteVnfInstanceAsync(createAsyncDeploymentLocation(), "vnf instance?1", TEST_VNF_DRIVER_INSTANCE_ID).get(10, TimeUnit.SECONDS);
+
+        verify(deleteRequestedFor(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/vnf%20instance%3F1")));
+    }
+
+    @Test
+    public void testCallVnfLcmOperationAsyncLogsInAgainWhenUnauthorized() throws Exception {
+        stubFor(post(urlEqualTo("/async/login")).inScenario("login").whenScenarioStateIs(Scenario.STARTED)
+                                          .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withHeader(HttpHeaders.SET_COOKIE, "JSESSIONID=session1; Path=/"))
+                                          .willSetStateTo("logged-in"));
+        stubFor(post(urlEqualTo("/async/login")).inScenario("login").whenScenarioStateIs("logged-in")
+                                          .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withHeader(HttpHeaders.SET_COOKIE, "JSESSIONID=session2; Path=/")));
+        // The first session has been ended by the VNFM
+        stubFor(post(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withCookie("JSESSIONID", equalTo("session1"))
+                                                                                                      .willReturn(aResponse().withStatus(HttpStatus.UNAUTHORIZED.value())));
+        stubFor(post(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withCookie("JSESSIONID", equalTo("session2"))
+                                                                                                      .willReturn(aResponse().withStatus(HttpStatus.ACCEPTED.value())
+                                                                                                                             .withHeader(HttpHeaders.LOCATION, LCM_OP_OCC_ENDPOINT + "/" + TEST_VNF_LCM_OP_OCC_ID)));
+        final ResourceManagerDeploymentLocation deploymentLocation = createAsyncDeploymentLocation();
+        deploymentLocation.getProperties().put(AUTHENTICATION_TYPE, AuthenticationType.COOKIE.toString());
+        deploymentLocation.getProperties().put(AUTHENTICATION_URL, String.format("http://localhost:%s/async/login", wiremockServerPort));
+
+        final String instantiateVnfRequest = loadFileIntoString("examples/InstantiateVnfRequest.json");
+
+        final String vnfLcmOpOccId = driver.callVnfLcmOperationAsync(deploymentLocation, TEST_VNF_INSTANCE_ID, "instantiate", instantiateVnfRequest).get(10, TimeUnit.SECONDS);
+
+        assertThat(vnfLcmOpOccId).isEqualTo(TEST_VNF_LCM_OP_OCC_ID);
+        verify(2, postRequestedFor(urlEqualTo("/async/login")));
+        verify(1, postRequestedFor(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withCookie("JSESSIONID", equalTo("session1")));
+        verify(1, postRequestedFor(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withCookie("JSESSIONID", equalTo("session2")));
+    }
+
+    @Test
+    public void testCallVnfLcmOperationAsyncRequestsNewAccessTokenWhenUnauthorized() throws Exception {
+        stubFor(post(urlEqualTo("/async/oauth/token")).inScenario("token").whenScenarioStateIs(Scenario.STARTED)
+                                                .willReturn(okJson("{\"access_token\": \"token1\", \"token_type\": \"bearer\", \"expires_in\": 3600}"))
+                                                .willSetStateTo("issued"));
+        stubFor(post(urlEqualTo("/async/oauth/token")).inScenario("token").whenScenarioStateIs("issued")
+                                                .willReturn(okJson("{\"access_token\": \"token2\", \"token_type\": \"bearer\", \"expires_in\": 3600}")));
+        // The first access token has been revoked by the VNFM
+        stubFor(post(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withHeader(HttpHeaders.AUTHORIZATION, equalTo("Bearer token1"))
+                                                                                                      .willReturn(aResponse().withStatus(HttpStatus.UNAUTHORIZED.value())));
+        stubFor(post(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withHeader(HttpHeaders.AUTHORIZATION, equalTo("Bearer token2"))
+                                                                                                      .willReturn(aResponse().withStatus(HttpStatus.ACCEPTED.value())
+                                                                                                                             .withHeader(HttpHeaders.LOCATION, LCM_OP_OCC_ENDPOINT + "/" + TEST_VNF_LCM_OP_OCC_ID)));
+        final ResourceManagerDeploymentLocation deploymentLocation = createAsyncDeploymentLocation();
+        deploymentLocation.getProperties().put(AUTHENTICATION_TYPE, AuthenticationType.OAUTH2.toString());
+        deploymentLocation.getProperties().put(AUTHENTICATION_ACCESS_TOKEN_URI, String.format("http://localhost:%s/async/oauth/token", wiremockServerPort));
+        deploymentLocation.getProperties().put(AUTHENTICATION_CLIENT_ID, "AsyncClient");
+        deploymentLocation.getProperties().put(AUTHENTICATION_CLIENT_SECRET, "pass123");
+
+        final String instantiateVnfRequest = loadFileIntoString("examples/InstantiateVnfRequest.json");
+
+        final String vnfLcmOpOccId = driver.callVnfLcmOperationAsync(deploymentLocation, TEST_VNF_INSTANCE_ID, "instantiate", instantiateVnfRequest).get(10, TimeUnit.SECONDS);
+
+        assertThat(vnfLcmOpOccId).isEqualTo(TEST_VNF_LCM_OP_OCC_ID);
+        verify(2, postRequestedFor(urlEqualTo("/async/oauth/token")));
+        verify(1, postRequestedFor(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withHeader(HttpHeaders.AUTHORIZATION, equalTo("Bearer token1")));
+        verify(1, postRequestedFor(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withHeader(HttpHeaders.AUTHORIZATION, equalTo("Bearer token2")));
+    }
+
+    @Test
+    public void testCallVnfLcmOperationAsyncNotRetriedWhenUnauthorizedWithBasicAuthentication() throws Exception {
+        stubFor(post(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).willReturn(aResponse().withStatus(HttpStatus.UNAUTHORIZED.value())));
+
+        final String instantiateVnfRequest = loadFileIntoString("examples/InstantiateVnfRequest.json");
+
+        assertThatThrownBy(() -> driver.callVnfLcmOperationAsync(createAsyncDeploymentLocation(), TEST_VNF_INSTANCE_ID, "instantiate", instantiateVnfRequest).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(SOL003ResponseException.class);
+        verify(1, postRequestedFor(urlEqualTo(VNF_INSTANCE_ENDPOINT + "/" + TEST_VNF_INSTANCE_ID + "/instantiate")).withHeader(HttpHeaders.AUTHORIZATION, equalTo(BASIC_AUTHORIZATION_HEADER)));
+    }
+
+    private ResourceManagerDeploymentLocation createAsyncDeploymentLocation() {
+        final ResourceManagerDeploymentLocation deploymentLocation = new ResourceManagerDeploymentLocation("test-async-location", "etsi-sol003");
+        deploymentLocation.getProperties().put(VNFM_SERVER_URL, String.format("http://localhost:%s", wiremockServerPort));
+        deploymentLocation.getProperties().put(AUTHENTICATION_TYPE, AuthenticationType.BASIC.toString());
+        deploymentLocation.getProperties().put(AUTHENTICATION_USERNAME, "basic_user");
+        deploymentLocation.getProperties().put(AUTHENTICATION_PASSWORD, "basic_password");
+        return deploymentLocation;
+    }
+
 }
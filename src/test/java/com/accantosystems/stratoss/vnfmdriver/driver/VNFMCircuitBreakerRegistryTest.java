@@ -0,0 +1,222 @@
+package com.accantosystems.stratoss.vnfmdriver.driver;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.etsi.sol003.common.ProblemDetails;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class VNFMCircuitBreakerRegistryTest {
+
+    private static final String VNFM_SERVER_URL = "http://vnfm:8080";
+    private static final String OTHER_VNFM_SERVER_URL = "http://other-vnfm:8080";
+
+    private VNFMDriverProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new VNFMDriverProperties();
+        properties.getVnfmCircuitBreaker().setSlidingWindowSize(4);
+        properties.getVnfmCircuitBreaker().setMinimumNumberOfCalls(4);
+        properties.getVnfmCircuitBreaker().setWaitDurationInOpenState(Duration.ofMillis(200));
+        properties.getVnfmCircuitBreaker().setPermittedCallsInHalfOpenState(2);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testCircuitBreakerOpensAndRecovers() throws Exception {
+        final VNFMCircuitBreakerRegistry registry = createRegistry();
+
+        registry.execute(VNFM_SERVER_URL, () -> "OK");
+        registry.execute(VNFM_SERVER_URL, () -> "OK");
+        failWith(registry, new ResourceAccessException("Read timed out", new IOException("Read timed out")));
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.CLOSED);
+        failWith(registry, new SOL003ResponseException("Service Unavailable", new ProblemDetails(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service Unavailable")));
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.OPEN);
+        assertThat(getStateGauge(VNFM_SERVER_URL, "open")).isEqualTo(1);
+
+        // Calls now fail without reaching the VNFM
+        final VNFMUnavailableException exception = catchThrowableOfType(() -> registry.execute(VNFM_SERVER_URL, () -> {
+            throw new IllegalStateException("Should not be called");
+        }), VNFMUnavailableException.class);
+        assertThat(exception.getProblemDetails().getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(exception.getProblemDetails().getDetail()).contains(VNFM_SERVER_URL);
+        assertThat(meterRegistry.get(VNFMCircuitBreakerRegistry.CALLS_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL).tag("outcome", VNFMCircuitBreakerRegistry.OUTCOME_CIRCUIT_OPEN)
+                                .counter().count()).isEqualTo(1);
+        // Other VNFMs are unaffected
+        assertThat(registry.execute(OTHER_VNFM_SERVER_URL, () -> "OK")).isEqualTo("OK");
+
+        Thread.sleep(300);
+
+        assertThat(registry.execute(VNFM_SERVER_URL, () -> "OK")).isEqualTo("OK");
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.HALF_OPEN);
+        assertThat(registry.execute(VNFM_SERVER_URL, () -> "OK")).isEqualTo("OK");
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.CLOSED);
+        assertThat(getStateGauge(VNFM_SERVER_URL, "closed")).isEqualTo(1);
+    }
+
+    @Test
+    public void testCircuitBreakerReopensOnFailedTrialCall() throws Exception {
+        final VNFMCircuitBreakerRegistry registry = createRegistry();
+        for (int i = 0; i < 4; i++) {
+            failWith(registry, new ResourceAccessException("Connection refused"));
+        }
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.OPEN);
+
+        Thread.sleep(300);
+
+        failWith(registry, new ResourceAccessException("Connection refused"));
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.OPEN);
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, () -> "OK")).isInstanceOf(VNFMUnavailableException.class);
+    }
+
+    @Test
+    public void testErrorResponsesDoNotOpenCircuitBreaker() {
+        final VNFMCircuitBreakerRegistry registry = createRegistry();
+        for (int i = 0; i < 8; i++) {
+            failWith(registry, new SOL003ResponseException("Internal Server Error", new ProblemDetails(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal Server Error")));
+            failWith(registry, new SOL003ResponseException("Not Found", new ProblemDetails(HttpStatus.NOT_FOUND.value(), "Not Found")));
+        }
+
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.CLOSED);
+    }
+
+    @Test
+    public void testBulkheadRejectsExcessConcurrentCalls() throws Exception {
+        properties.getVnfmBulkhead().setMaxConcurrentCalls(2);
+        final VNFMCircuitBreakerRegistry registry = createRegistry();
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            final CountDownLatch startedLatch = new CountDownLatch(2);
+            final CountDownLatch releaseLatch = new CountDownLatch(1);
+            final Future<?> first = executorService.submit(() -> registry.execute(VNFM_SERVER_URL, () -> awaitQuietly(startedLatch, releaseLatch)));
+            final Future<?> second = executorService.submit(() -> registry.execute(VNFM_SERVER_URL, () -> awaitQuietly(startedLatch, releaseLatch)));
+            startedLatch.await();
+
+            assertThat(meterRegistry.get(VNFMCircuitBreakerRegistry.BULKHEAD_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL).gauge().value()).isEqualTo(0);
+            final VNFMUnavailableException exception = catchThrowableOfType(() -> registry.execute(VNFM_SERVER_URL, () -> "OK"), VNFMUnavailableException.class);
+            assertThat(exception.getProblemDetails().getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+            assertThatThrownBy(() -> registry.executeAsync(VNFM_SERVER_URL, () -> CompletableFuture.completedFuture("OK")).join())
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(VNFMUnavailableException.class);
+            // Other VNFMs have their own bulkhead
+            assertThat(registry.execute(OTHER_VNFM_SERVER_URL, () -> "OK")).isEqualTo("OK");
+
+            releaseLatch.countDown();
+            first.get();
+            second.get();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(registry.execute(VNFM_SERVER_URL, () -> "OK")).isEqualTo("OK");
+        assertThat(meterRegistry.get(VNFMCircuitBreakerRegistry.BULKHEAD_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL).gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    public void testOpenCircuitBreakerDoesNotWaitForBulkhead() {
+        properties.getVnfmBulkhead().setMaxConcurrentCalls(1);
+        properties.getVnfmBulkhead().setMaxWaitDuration(Duration.ofSeconds(5));
+        properties.getVnfmCircuitBreaker().setWaitDurationInOpenState(Duration.ofSeconds(30));
+        final VNFMCircuitBreakerRegistry registry = createRegistry();
+        // Holds the only bulkhead permit until completed
+        final CompletableFuture<String> pendingCall = new CompletableFuture<>();
+        registry.executeAsync(VNFM_SERVER_URL, () -> pendingCall);
+        // The circuit breaker is opened by calls which don't need a bulkhead permit
+        properties.getVnfmBulkhead().setEnabled(false);
+        for (int i = 0; i < 4; i++) {
+            failWith(registry, new ResourceAccessException("Connection refused"));
+        }
+        properties.getVnfmBulkhead().setEnabled(true);
+
+        final long startTime = System.nanoTime();
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, () -> "OK")).isInstanceOf(VNFMUnavailableException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isLessThan(Duration.ofSeconds(1));
+        assertThat(meterRegistry.get(VNFMCircuitBreakerRegistry.CALLS_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL).tag("outcome", VNFMCircuitBreakerRegistry.OUTCOME_CIRCUIT_OPEN)
+                                .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.find(VNFMCircuitBreakerRegistry.CALLS_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL).tag("outcome", VNFMCircuitBreakerRegistry.OUTCOME_BULKHEAD_FULL)
+                                .counter()).isNull();
+        pendingCall.complete("OK");
+    }
+
+    @Test
+    public void testTrialCallPermitReturnedWhenBulkheadFull() throws Exception {
+        properties.getVnfmBulkhead().setMaxConcurrentCalls(1);
+        properties.getVnfmBulkhead().setMaxWaitDuration(Duration.ofMillis(10));
+        final VNFMCircuitBreakerRegistry registry = createRegistry();
+        for (int i = 0; i < 4; i++) {
+            failWith(registry, new ResourceAccessException("Connection refused"));
+        }
+        Thread.sleep(300);
+
+        // The first trial call holds the only bulkhead permit, so the second is rejected by the bulkhead
+        final CompletableFuture<String> firstTrialCall = new CompletableFuture<>();
+        registry.executeAsync(VNFM_SERVER_URL, () -> firstTrialCall);
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, () -> "OK")).isInstanceOf(VNFMUnavailableException.class);
+        firstTrialCall.complete("OK");
+
+        // The rejected call's trial permit has been handed back, so the circuit breaker can still close
+        assertThat(registry.execute(VNFM_SERVER_URL, () -> "OK")).isEqualTo("OK");
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.CLOSED);
+    }
+
+    @Test
+    public void testAsyncCallsRecordedByCircuitBreaker() {
+        final VNFMCircuitBreakerRegistry registry = createRegistry();
+        for (int i = 0; i < 4; i++) {
+            final CompletableFuture<String> future = registry.executeAsync(VNFM_SERVER_URL, () -> CompletableFuture.failedFuture(new ResourceAccessException("Connection refused")));
+            assertThatThrownBy(future::join).hasCauseInstanceOf(ResourceAccessException.class);
+        }
+        assertThat(registry.getState(VNFM_SERVER_URL)).isEqualTo(VNFMCircuitBreakerRegistry.State.OPEN);
+
+        assertThatThrownBy(() -> registry.executeAsync(VNFM_SERVER_URL, () -> CompletableFuture.completedFuture("OK")).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(VNFMUnavailableException.class);
+    }
+
+    private VNFMCircuitBreakerRegistry createRegistry() {
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        return new VNFMCircuitBreakerRegistry(properties, beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    private void failWith(final VNFMCircuitBreakerRegistry registry, final RuntimeException exception) {
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, () -> {
+            throw exception;
+        })).isSameAs(exception);
+    }
+
+    private double getStateGauge(final String vnfmServerUrl, final String state) {
+        return meterRegistry.get(VNFMCircuitBreakerRegistry.STATE_METRIC_NAME).tag("vnfm", vnfmServerUrl).tag("state", state).gauge().value();
+    }
+
+    private String awaitQuietly(final CountDownLatch startedLatch, final CountDownLatch releaseLatch) {
+        startedLatch.countDown();
+        try {
+            releaseLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "OK";
+    }
+
+}
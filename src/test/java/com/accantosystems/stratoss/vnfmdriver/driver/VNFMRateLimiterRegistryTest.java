@@ -0,0 +1,147 @@
+package com.accantosystems.stratoss.vnfmdriver.driver;
+
+import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpStatus;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class VNFMRateLimiterRegistryTest {
+
+    private static final String VNFM_SERVER_URL_VALUE = "http://vnfm:8080";
+
+    private VNFMDriverProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new VNFMDriverProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testNotLimitedByDefault() {
+        final VNFMRateLimiterRegistry registry = createRegistry();
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(registry.execute(deploymentLocation, () -> "OK")).isEqualTo("OK");
+        }
+        assertThat(meterRegistry.find(VNFMRateLimiterRegistry.WAIT_METRIC_NAME).timer()).isNull();
+    }
+
+    @Test
+    public void testRequestsBeyondBurstAreQueued() {
+        properties.getVnfmRateLimiter().setRequestsPerSecond(10);
+        properties.getVnfmRateLimiter().setBurst(2);
+        final VNFMRateLimiterRegistry registry = createRegistry();
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation();
+
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertThat(registry.execute(deploymentLocation, () -> "OK")).isEqualTo("OK");
+        }
+
+        // The first 2 are sent straight away, the other 3 at 100ms intervals
+        assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isGreaterThanOrEqualTo(Duration.ofMillis(250));
+        final Timer waitTimer = meterRegistry.get(VNFMRateLimiterRegistry.WAIT_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL_VALUE).timer();
+        assertThat(waitTimer.count()).isEqualTo(5);
+        assertThat(waitTimer.max(TimeUnit.MILLISECONDS)).isGreaterThan(50);
+        assertThat(meterRegistry.get(VNFMRateLimiterRegistry.QUEUE_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL_VALUE).gauge().value()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRequestsRejectedWhenWaitTooLong() {
+        properties.getVnfmRateLimiter().setRequestsPerSecond(1);
+        properties.getVnfmRateLimiter().setMaxWaitDuration(Duration.ofMillis(500));
+        final VNFMRateLimiterRegistry registry = createRegistry();
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation();
+
+        assertThat(registry.execute(deploymentLocation, () -> "OK")).isEqualTo("OK");
+        final VNFMUnavailableException exception = catchThrowableOfType(() -> registry.execute(deploymentLocation, () -> {
+            throw new IllegalStateException("Should not be called");
+        }), VNFMUnavailableException.class);
+
+        assertThat(exception.getProblemDetails().getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(exception.getProblemDetails().getDetail()).contains(VNFM_SERVER_URL_VALUE);
+        assertThat(meterRegistry.get(VNFMRateLimiterRegistry.REJECTED_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL_VALUE).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRequestsRejectedWhenQueueFull() throws Exception {
+        final VNFMRateLimiterRegistry registry = createRegistry();
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation();
+        // Overrides for the deployment location take precedence over the (unlimited) defaults
+        deploymentLocation.getProperties().put(RATE_LIMIT_REQUESTS_PER_SECOND, "5");
+        deploymentLocation.getProperties().put(RATE_LIMIT_BURST, 1);
+        deploymentLocation.getProperties().put(RATE_LIMIT_MAX_QUEUE_SIZE, 1);
+        deploymentLocation.getProperties().put(RATE_LIMIT_MAX_WAIT_DURATION, "10s");
+
+        assertThat(registry.execute(deploymentLocation, () -> "OK")).isEqualTo("OK");
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> queued = executorService.submit(() -> registry.execute(deploymentLocation, () -> "OK"));
+            while (meterRegistry.get(VNFMRateLimiterRegistry.QUEUE_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL_VALUE).gauge().value() < 1 && !queued.isDone()) {
+                Thread.sleep(5);
+            }
+
+            assertThatThrownBy(() -> registry.execute(deploymentLocation, () -> "OK")).isInstanceOf(VNFMUnavailableException.class);
+            assertThat(queued.get()).isEqualTo("OK");
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncRequestsQueuedWithoutBlocking() {
+        properties.getVnfmRateLimiter().setRequestsPerSecond(5);
+        properties.getVnfmRateLimiter().setMaxWaitDuration(Duration.ofMillis(300));
+        final VNFMRateLimiterRegistry registry = createRegistry();
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(registry.executeAsync(deploymentLocation, () -> CompletableFuture.completedFuture("OK")).join()).isEqualTo("OK");
+        }
+        final long startTime = System.nanoTime();
+        final CompletableFuture<String> queued = registry.executeAsync(deploymentLocation, () -> CompletableFuture.completedFuture("OK"));
+        assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isLessThan(Duration.ofMillis(100));
+        assertThat(queued.join()).isEqualTo("OK");
+
+        // Exhaust the queue capacity for the maximum wait
+        CompletableFuture<String> rejected = CompletableFuture.completedFuture("OK");
+        for (int i = 0; i < 5 && !rejected.isCompletedExceptionally(); i++) {
+            rejected = registry.executeAsync(deploymentLocation, () -> CompletableFuture.completedFuture("OK"));
+        }
+        assertThatThrownBy(rejected::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(VNFMUnavailableException.class);
+    }
+
+    private VNFMRateLimiterRegistry createRegistry() {
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        return new VNFMRateLimiterRegistry(properties, beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    private ResourceManagerDeploymentLocation createDeploymentLocation() {
+        final ResourceManagerDeploymentLocation deploymentLocation = new ResourceManagerDeploymentLocation("dummy-deployment-location", "sol003");
+        deploymentLocation.getProperties().put(VNFM_SERVER_URL, VNFM_SERVER_URL_VALUE);
+        return deploymentLocation;
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.accantosystems.stratoss.vnfmdriver.driver;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.etsi.sol003.common.ProblemDetails;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class VNFMRetryRegistryTest {
+
+    private static final String VNFM_SERVER_URL = "http://vnfm:8080";
+
+    private VNFMDriverProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new VNFMDriverProperties();
+        properties.getVnfmRetry().setInitialInterval(Duration.ofMillis(10));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testIdempotentRequestRetriedAfterTransientErrors() {
+        final VNFMRetryRegistry registry = createRegistry();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String result = registry.execute(VNFM_SERVER_URL, "delete_vnf_instance", HttpMethod.DELETE, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new ResourceAccessException("Connection reset", new IOException("Connection reset"));
+            } else if (attempts.get() == 2) {
+                throw serviceUnavailable(null);
+            }
+            return "OK";
+        });
+
+        assertThat(result).isEqualTo("OK");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(getRetryCount("delete_vnf_instance", VNFMRetryRegistry.OUTCOME_RETRIED)).isEqualTo(2);
+    }
+
+    @Test
+    public void testPostRetriedOnlyIfNotProcessed() {
+        final VNFMRetryRegistry registry = createRegistry();
+
+        // The VNFM may have acted on the request before the connection was lost
+        final AtomicInteger attempts = new AtomicInteger();
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, "instantiate", HttpMethod.POST, () -> {
+            attempts.incrementAndGet();
+            throw new ResourceAccessException("Read timed out", new IOException("Read timed out"));
+        })).isInstanceOf(ResourceAccessException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+
+        // ...but not if a connection was never made
+        attempts.set(0);
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, "instantiate", HttpMethod.POST, () -> {
+            attempts.incrementAndGet();
+            throw new ResourceAccessException("Connection refused", new ConnectException("Connection refused"));
+        })).isInstanceOf(ResourceAccessException.class);
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(getRetryCount("instantiate", VNFMRetryRegistry.OUTCOME_ATTEMPTS_EXHAUSTED)).isEqualTo(1);
+
+        // Nor are error responses (other than 429 and 503) retried
+        attempts.set(0);
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, "instantiate", HttpMethod.POST, () -> {
+            attempts.incrementAndGet();
+            throw new SOL003ResponseException("Bad Gateway", new ProblemDetails(HttpStatus.BAD_GATEWAY.value(), "Bad Gateway"));
+        })).isInstanceOf(SOL003ResponseException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRetryAfterHonoured() {
+        final VNFMRetryRegistry registry = createRegistry();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final long startTime = System.nanoTime();
+        final String result = registry.execute(VNFM_SERVER_URL, "scale", HttpMethod.POST, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw serviceUnavailable("1");
+            }
+            return "OK";
+        });
+
+        assertThat(result).isEqualTo("OK");
+        assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+
+        // Not retried if the VNFM asks for a longer wait than allowed
+        properties.getVnfmRetry().setMaxInterval(Duration.ofSeconds(5));
+        attempts.set(0);
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, "scale", HttpMethod.POST, () -> {
+            attempts.incrementAndGet();
+            throw serviceUnavailable("120");
+        })).isInstanceOf(SOL003ResponseException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(getRetryCount("scale", VNFMRetryRegistry.OUTCOME_RETRY_AFTER_EXCEEDED)).isEqualTo(1);
+    }
+
+    @Test
+    public void testRetryBudgetLimitsRetries() {
+        properties.getVnfmRetry().setBudgetMaxTokens(4);
+        final VNFMRetryRegistry registry = createRegistry();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        // Retries stop once half the budget has been used
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, "heal", HttpMethod.POST, () -> {
+            attempts.incrementAndGet();
+            throw serviceUnavailable(null);
+        })).isInstanceOf(SOL003ResponseException.class);
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(getRetryCount("heal", VNFMRetryRegistry.OUTCOME_BUDGET_EXHAUSTED)).isEqualTo(1);
+        assertThat(meterRegistry.get(VNFMRetryRegistry.BUDGET_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL).gauge().value()).isEqualTo(2);
+
+        // Successful requests replenish it
+        for (int i = 0; i < 20; i++) {
+            registry.execute(VNFM_SERVER_URL, "heal", HttpMethod.POST, () -> "OK");
+        }
+        attempts.set(0);
+        assertThatThrownBy(() -> registry.execute(VNFM_SERVER_URL, "heal", HttpMethod.POST, () -> {
+            attempts.incrementAndGet();
+            throw serviceUnavailable(null);
+        })).isInstanceOf(SOL003ResponseException.class);
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAsyncRequestRetried() {
+        final VNFMRetryRegistry registry = createRegistry();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final CompletableFuture<String> future = registry.executeAsync(VNFM_SERVER_URL, "terminate", HttpMethod.POST, () -> attempts.incrementAndGet() == 1
+                                                                                                                            ? CompletableFuture.failedFuture(serviceUnavailable(null))
+                                                                                                                            : CompletableFuture.completedFuture("OK"));
+
+        assertThat(future.join()).isEqualTo("OK");
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(getRetryCount("terminate", VNFMRetryRegistry.OUTCOME_RETRIED)).isEqualTo(1);
+    }
+
+    @Test
+    public void testBackoffIsJitteredAndBounded() {
+        properties.getVnfmRetry().setInitialInterval(Duration.ofMillis(1000));
+        properties.getVnfmRetry().setMaxInterval(Duration.ofMillis(3000));
+        final VNFMRetryRegistry registry = createRegistry();
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(registry.getBackoff(1).toMillis()).isBetween(500L, 1000L);
+            assertThat(registry.getBackoff(2).toMillis()).isBetween(1000L, 2000L);
+            assertThat(registry.getBackoff(5).toMillis()).isBetween(1500L, 3000L);
+        }
+    }
+
+    @Test
+    public void testRetryAfterParsed() {
+        assertThat(VNFMRetryRegistry.getRetryAfter(serviceUnavailable("30"))).isEqualTo(Duration.ofSeconds(30));
+        assertThat(VNFMRetryRegistry.getRetryAfter(serviceUnavailable("Wed, 21 Oct 2015 07:28:00 GMT"))).isEqualTo(Duration.ZERO);
+        assertThat(VNFMRetryRegistry.getRetryAfter(serviceUnavailable("soon"))).isNull();
+        assertThat(VNFMRetryRegistry.getRetryAfter(serviceUnavailable(null))).isNull();
+    }
+
+    private VNFMRetryRegistry createRegistry() {
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        return new VNFMRetryRegistry(properties, beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    private SOL003ResponseException serviceUnavailable(final String retryAfter) {
+        final HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return new SOL003ResponseException("Service Unavailable", null, new ProblemDetails(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service Unavailable"), headers);
+    }
+
+    private double getRetryCount(final String operation, final String outcome) {
+        return meterRegistry.get(VNFMRetryRegistry.RETRY_METRIC_NAME).tag("vnfm", VNFM_SERVER_URL).tag("operation", operation).tag("outcome", outcome).counter().count();
+    }
+
+}
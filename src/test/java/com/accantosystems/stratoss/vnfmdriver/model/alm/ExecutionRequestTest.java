@@ -2,6 +2,7 @@ package com.accantosystems.stratoss.vnfmdriver.model.alm;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
 import org.junit.jupiter.api.Test;
 
@@ -20,6 +21,58 @@ public class ExecutionRequestTest {
         assertThat(executionRequest.getProperties().get("key2")).isEqualTo("value2");
     }
 
+    @Test
+    public void testGetPropertiesIsOnlyBuiltOnceUntilModified() {
+        ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.getResourceProperties().put("key1", new GenericExecutionRequestPropertyValue("value1"));
+
+        ExecutionRequestProperties properties = executionRequest.getProperties();
+        assertThat(executionRequest.getProperties()).isSameAs(properties);
+        assertThatThrownBy(() -> properties.put("key2", "value2")).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> executionRequest.getResourceProperties().keySet().remove("key1")).isInstanceOf(UnsupportedOperationException.class);
+
+        executionRequest.getResourceProperties().put("key2", new GenericExecutionRequestPropertyValue(null));
+        assertThat(executionRequest.getProperties()).isNotSameAs(properties).containsOnlyKeys("key1", "key2");
+        assertThat(executionRequest.getProperties().get("key2")).isNull();
+
+        executionRequest.getResourceProperties().remove("key1");
+        assertThat(executionRequest.getProperties()).containsOnlyKeys("key2");
+    }
+
+    @Test
+    public void testGetPropertiesRebuiltWhenValueModified() {
+        ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.getResourceProperties().put("key1", new GenericExecutionRequestPropertyValue("value1"));
+        executionRequest.getResourceProperties().put("key2", new GenericExecutionRequestPropertyValue("value2"));
+        assertThat(executionRequest.getProperties().get("key1")).isEqualTo("value1");
+
+        executionRequest.getResourceProperties().get("key1").setValue("changed");
+        assertThat(executionRequest.getProperties().get("key1")).isEqualTo("changed");
+
+        executionRequest.getResourceProperties().get("key2").setType(PropertyType.KEY.getValue());
+        assertThat(executionRequest.getProperties()).containsOnlyKeys("key1");
+
+        // Values which have been removed no longer affect the view
+        final ExecutionRequestPropertyValue removed = executionRequest.getResourceProperties().remove("key1");
+        final ExecutionRequestProperties properties = executionRequest.getProperties();
+        removed.setValue("removed");
+        assertThat(executionRequest.getProperties()).isSameAs(properties);
+    }
+
+    @Test
+    public void testGetPropertiesWithPrefix() {
+        ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.getResourceProperties().put("additionalParams.b", new GenericExecutionRequestPropertyValue("b"));
+        executionRequest.getResourceProperties().put("additionalParams.a.c", new GenericExecutionRequestPropertyValue("c"));
+        executionRequest.getResourceProperties().put("additionalParams.key", new KeyExecutionRequestPropertyValue("keyName", "privateKey"));
+        executionRequest.getResourceProperties().put("additionalParamsOther", new GenericExecutionRequestPropertyValue("other"));
+        executionRequest.getResourceProperties().put("extVirtualLinks.0.id", new GenericExecutionRequestPropertyValue("vl1"));
+
+        assertThat(executionRequest.getProperties().getKeysWithPrefix("additionalParams.")).containsExactly("additionalParams.a.c", "additionalParams.b");
+        assertThat(executionRequest.getProperties().getPropertiesWithPrefix("extVirtualLinks.")).containsOnly(entry("extVirtualLinks.0.id", "vl1"));
+        assertThat(executionRequest.getProperties().getKeysWithPrefix("metadata.")).isEmpty();
+    }
+
     @Test
     public void testGetStringRequestProperty() throws MessageConversionException {
         ExecutionRequest executionRequest = new ExecutionRequest();
@@ -0,0 +1,131 @@
+package com.accantosystems.stratoss.vnfmdriver.security;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CookieAuthenticatedRestTemplateTest {
+
+    private static WireMockServer wireMockServer;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    public static void setUpClass() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        wireMockServer.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        wireMockServer.resetAll();
+        meterRegistry = new SimpleMeterRegistry();
+        wireMockServer.stubFor(get(urlEqualTo("/resource")).withCookie("JSESSIONID", matching(".+")).willReturn(aResponse().withStatus(200).withBody("OK")));
+    }
+
+    @Test
+    public void testConcurrentRequestsShareSingleLogin() throws Exception {
+        stubLogin("JSESSIONID=session1; Path=/", 250);
+        final CookieAuthenticatedRestTemplate restTemplate = createRestTemplate();
+
+        final int threads = 8;
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final Callable<String> task = () -> {
+                startLatch.await();
+                return restTemplate.getForObject(wireMockServer.baseUrl() + "/resource", String.class);
+            };
+            final List<Future<String>> futures = IntStream.range(0, threads).mapToObj(i -> executorService.submit(task)).collect(Collectors.toList());
+            startLatch.countDown();
+
+            for (Future<String> future : futures) {
+                assertThat(future.get()).isEqualTo("OK");
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/login")));
+        assertThat(getLoginCount(CookieAuthenticatedRestTemplate.REASON_INITIAL)).isEqualTo(1);
+    }
+
+    @Test
+    public void testSessionRefreshedAheadOfExpiry() throws Exception {
+        // With a 30s refresh ahead period, a session lasting 2s is refreshed half way through its lifetime
+        stubLogin("JSESSIONID=session1; Max-Age=2; Path=/", 0);
+        final CookieAuthenticatedRestTemplate restTemplate = createRestTemplate();
+
+        final String sessionCookie = restTemplate.getSessionCookie().getValue();
+        assertThat(restTemplate.getSessionCookie().getValue()).isEqualTo(sessionCookie);
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/login")));
+
+        Thread.sleep(1100);
+        stubLogin("JSESSIONID=session2; Max-Age=2; Path=/", 0);
+
+        assertThat(restTemplate.getSessionCookie().getValue()).isEqualTo("session2");
+        wireMockServer.verify(2, postRequestedFor(urlEqualTo("/login")));
+        assertThat(getLoginCount(CookieAuthenticatedRestTemplate.REASON_REFRESH)).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnauthorizedResponseReauthenticates() throws Exception {
+        stubLogin("JSESSIONID=session1; Path=/", 0);
+        final CookieAuthenticatedRestTemplate restTemplate = createRestTemplate();
+        restTemplate.getSessionCookie();
+
+        wireMockServer.stubFor(get(urlEqualTo("/resource")).inScenario("session-ended").whenScenarioStateIs(Scenario.STARTED)
+                                                           .willReturn(aResponse().withStatus(401))
+                                                           .willSetStateTo("logged-in-again"));
+
+        assertThat(restTemplate.getForObject(wireMockServer.baseUrl() + "/resource", String.class)).isEqualTo("OK");
+        wireMockServer.verify(2, postRequestedFor(urlEqualTo("/login")));
+        assertThat(getLoginCount(CookieAuthenticatedRestTemplate.REASON_UNAUTHORIZED)).isEqualTo(1);
+    }
+
+    private void stubLogin(final String setCookieHeader, final int delay) {
+        wireMockServer.stubFor(post(urlEqualTo("/login")).willReturn(aResponse().withStatus(200).withHeader(HttpHeaders.SET_COOKIE, setCookieHeader).withFixedDelay(delay)));
+    }
+
+    private CookieAuthenticatedRestTemplate createRestTemplate() {
+        final CookieCredentials cookieCredentials = new CookieCredentials();
+        cookieCredentials.setAuthenticationUrl(wireMockServer.baseUrl() + "/login");
+        cookieCredentials.setUsernameTokenName("IDToken1");
+        cookieCredentials.setPasswordTokenName("IDToken2");
+        cookieCredentials.setUsername("Administrator");
+        cookieCredentials.setPassword("TestPassw0rd");
+        return new CookieAuthenticatedRestTemplate(cookieCredentials, Duration.ofSeconds(30), meterRegistry);
+    }
+
+    private long getLoginCount(final String reason) {
+        return meterRegistry.get(CookieAuthenticatedRestTemplate.AUTHENTICATION_METRIC_NAME).tag("reason", reason).tag("outcome", "success").timer().count();
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.accantosystems.stratoss.vnfmdriver.security;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.client.OAuth2RestTemplate;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class OAuth2TokenManagerTest {
+
+    private static WireMockServer wireMockServer;
+
+    private MeterRegistry meterRegistry;
+    private OAuth2TokenManager tokenManager;
+
+    @BeforeAll
+    public static void setUpClass() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        wireMockServer.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        wireMockServer.resetAll();
+        meterRegistry = new SimpleMeterRegistry();
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        tokenManager = new OAuth2TokenManager(new VNFMDriverProperties(), beanFactory.getBeanProvider(MeterRegistry.class));
+        wireMockServer.stubFor(get(urlEqualTo("/resource")).withHeader(HttpHeaders.AUTHORIZATION, matching("Bearer .+")).willReturn(aResponse().withStatus(200).withBody("OK")));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tokenManager.close();
+    }
+
+    @Test
+    public void testTokenSharedBetweenRestTemplates() {
+        stubTokenEndpoint("token1", 3600, 0);
+
+        final OAuth2RestTemplate restTemplate = tokenManager.createRestTemplate(createResourceDetails());
+        final OAuth2RestTemplate otherRestTemplate = tokenManager.createRestTemplate(createResourceDetails());
+
+        assertThat(restTemplate.getForObject(wireMockServer.baseUrl() + "/resource", String.class)).isEqualTo("OK");
+        assertThat(otherRestTemplate.getForObject(wireMockServer.baseUrl() + "/resource", String.class)).isEqualTo("OK");
+        assertThat(otherRestTemplate.getAccessToken().getValue()).isEqualTo("token1");
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/oauth/token")));
+        wireMockServer.verify(2, getRequestedFor(urlEqualTo("/resource")).withHeader(HttpHeaders.AUTHORIZATION, equalTo("Bearer token1")));
+    }
+
+    @Test
+    public void testTokenNotSharedBetweenDifferentClientSecrets() {
+        wireMockServer.stubFor(post(urlEqualTo("/oauth/token")).withBasicAuth("LmClient", "pass123")
+                                       .willReturn(tokenResponse("token1")));
+        wireMockServer.stubFor(post(urlEqualTo("/oauth/token")).withBasicAuth("LmClient", "other")
+                                       .willReturn(tokenResponse("token2")));
+        final ClientCredentialsResourceDetails otherResourceDetails = createResourceDetails();
+        otherResourceDetails.setClientSecret("other");
+
+        final OAuth2RestTemplate restTemplate = tokenManager.createRestTemplate(createResourceDetails());
+        final OAuth2RestTemplate otherRestTemplate = tokenManager.createRestTemplate(otherResourceDetails);
+
+        assertThat(OAuth2TokenManager.getKey(otherResourceDetails)).isNotEqualTo(OAuth2TokenManager.getKey(createResourceDetails())).doesNotContain("other");
+        assertThat(restTemplate.getAccessToken().getValue()).isEqualTo("token1");
+        assertThat(otherRestTemplate.getAccessToken().getValue()).isEqualTo("token2");
+        // Creating another template must not change the credentials used by existing ones
+        tokenManager.createRestTemplate(otherResourceDetails);
+        restTemplate.getOAuth2ClientContext().setAccessToken(null);
+        assertThat(restTemplate.getAccessToken().getValue()).isEqualTo("token1");
+    }
+
+    @Test
+    public void testConcurrentRequestsShareSingleTokenRequest() throws Exception {
+        stubTokenEndpoint("token1", 3600, 250);
+
+        final int threads = 8;
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final Callable<String> task = () -> {
+                final OAuth2RestTemplate restTemplate = tokenManager.createRestTemplate(createResourceDetails());
+                startLatch.await();
+                return restTemplate.getForObject(wireMockServer.baseUrl() + "/resource", String.class);
+            };
+            final List<Future<String>> futures = IntStream.range(0, threads).mapToObj(i -> executorService.submit(task)).collect(Collectors.toList());
+            startLatch.countDown();
+
+            for (Future<String> future : futures) {
+                assertThat(future.get()).isEqualTo("OK");
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/oauth/token")));
+        assertThat(getTokenRequestCount(OAuth2TokenManager.REASON_INITIAL)).isEqualTo(1);
+    }
+
+    @Test
+    public void testTokenRefreshedAheadOfExpiry() throws Exception {
+        // With a 30s refresh ahead period, a token lasting 2s is refreshed half way through its lifetime
+        stubTokenEndpoint("token1", 2, 0);
+        final OAuth2RestTemplate restTemplate = tokenManager.createRestTemplate(createResourceDetails());
+        assertThat(restTemplate.getAccessToken().getValue()).isEqualTo("token1");
+        // Tokens are only refreshed if they've been used since they were acquired
+        assertThat(restTemplate.getForObject(wireMockServer.baseUrl() + "/resource", String.class)).isEqualTo("OK");
+
+        stubTokenEndpoint("token2", 2, 0);
+        Thread.sleep(1500);
+
+        wireMockServer.verify(2, postRequestedFor(urlEqualTo("/oauth/token")));
+        assertThat(getTokenRequestCount(OAuth2TokenManager.REASON_REFRESH)).isEqualTo(1);
+        assertThat(restTemplate.getForObject(wireMockServer.baseUrl() + "/resource", String.class)).isEqualTo("OK");
+        wireMockServer.verify(getRequestedFor(urlEqualTo("/resource")).withHeader(HttpHeaders.AUTHORIZATION, equalTo("Bearer token2")));
+    }
+
+    @Test
+    public void testUnusedTokenNotRefreshed() throws Exception {
+        stubTokenEndpoint("token1", 2, 0);
+        final OAuth2RestTemplate restTemplate = tokenManager.createRestTemplate(createResourceDetails());
+        assertThat(restTemplate.getAccessToken().getValue()).isEqualTo("token1");
+
+        Thread.sleep(1500);
+
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/oauth/token")));
+    }
+
+    private ResponseDefinitionBuilder tokenResponse(final String accessToken) {
+        return aResponse().withStatus(200)
+                          .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                          .withBody(String.format("{\"access_token\":\"%s\",\"token_type\":\"bearer\",\"expires_in\":3600}", accessToken));
+    }
+
+    private void stubTokenEndpoint(final String accessToken, final int expiresIn, final int delay) {
+        wireMockServer.stubFor(post(urlEqualTo("/oauth/token"))
+                                       .willReturn(aResponse().withStatus(200)
+                                                              .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                                              .withBody(String.format("{\"access_token\":\"%s\",\"token_type\":\"bearer\",\"expires_in\":%d}", accessToken, expiresIn))
+                                                              .withFixedDelay(delay)));
+    }
+
+    private ClientCredentialsResourceDetails createResourceDetails() {
+        final ClientCredentialsResourceDetails resourceDetails = new ClientCredentialsResourceDetails();
+        resourceDetails.setAccessTokenUri(wireMockServer.baseUrl() + "/oauth/token");
+        resourceDetails.setClientId("LmClient");
+        resourceDetails.setClientSecret("pass123");
+        resourceDetails.setGrantType("client_credentials");
+        return resourceDetails;
+    }
+
+    private long getTokenRequestCount(final String reason) {
+        return meterRegistry.get(OAuth2TokenManager.TOKEN_METRIC_NAME).tag("reason", reason).tag("outcome", "success").timer().count();
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.accantosystems.stratoss.vnfmdriver.service;
+
+import static com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverConstants.*;
+import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.TEST_SERVER_BASE_URL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.RestTemplate;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.driver.VNFMResponseErrorHandler;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ResourceManagerDeploymentLocation;
+import com.accantosystems.stratoss.vnfmdriver.security.OAuth2TokenManager;
+import com.accantosystems.stratoss.vnfmdriver.utils.JdkHttpClientRequestFactory;
+import com.accantosystems.stratoss.vnfmdriver.utils.PooledHttpRequestFactory;
+import com.accantosystems.stratoss.vnfmdriver.utils.SslContextCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AuthenticatedRestTemplateServiceTest {
+
+    private VNFMDriverProperties properties;
+    private MeterRegistry meterRegistry;
+    private AuthenticatedRestTemplateService authenticatedRestTemplateService;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new VNFMDriverProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        authenticatedRestTemplateService = createService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        authenticatedRestTemplateService.close();
+    }
+
+    @Test
+    public void testConnectionPoolUsesDefaults() {
+        final RestTemplate restTemplate = authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("pool-defaults"));
+
+        assertThat(restTemplate.getRequestFactory()).isInstanceOf(PooledHttpRequestFactory.class);
+        assertThat(getPoolGauge("httpcomponents.httpclient.pool.total.max", "pool-defaults")).isEqualTo(50);
+        assertThat(((PooledHttpRequestFactory) restTemplate.getRequestFactory()).getConnectionManager().getDefaultMaxPerRoute()).isEqualTo(20);
+    }
+
+    @Test
+    public void testConnectionPoolOverriddenByDeploymentLocation() {
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation("pool-overrides");
+        deploymentLocation.getProperties().put(CONNECTION_POOL_MAX_TOTAL, "8");
+        deploymentLocation.getProperties().put(CONNECTION_POOL_MAX_PER_ROUTE, 4);
+        deploymentLocation.getProperties().put(CONNECTION_POOL_IDLE_TIMEOUT, "10s");
+        deploymentLocation.getProperties().put(CONNECTION_POOL_TIME_TO_LIVE, "PT1M");
+
+        final RestTemplate restTemplate = authenticatedRestTemplateService.getRestTemplate(deploymentLocation);
+
+        assertThat(getPoolGauge("httpcomponents.httpclient.pool.total.max", "pool-overrides")).isEqualTo(8);
+        assertThat(((PooledHttpRequestFactory) restTemplate.getRequestFactory()).getConnectionManager().getDefaultMaxPerRoute()).isEqualTo(4);
+    }
+
+    @Test
+    public void testConnectionPoolClosedWhenDeploymentLocationChanges() {
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation("pool-changes");
+        final RestTemplate restTemplate = authenticatedRestTemplateService.getRestTemplate(deploymentLocation);
+        assertThat(authenticatedRestTemplateService.getRestTemplate(deploymentLocation)).isSameAs(restTemplate);
+
+        final ResourceManagerDeploymentLocation updatedDeploymentLocation = createDeploymentLocation("pool-changes");
+        updatedDeploymentLocation.getProperties().put(CONNECTION_POOL_MAX_TOTAL, "10");
+        final RestTemplate updatedRestTemplate = authenticatedRestTemplateService.getRestTemplate(updatedDeploymentLocation);
+
+        assertThat(updatedRestTemplate).isNotSameAs(restTemplate);
+        assertThat(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("httpclient", "pool-changes").gauges()).hasSize(1);
+        assertThat(getPoolGauge("httpcomponents.httpclient.pool.total.max", "pool-changes")).isEqualTo(10);
+    }
+
+    @Test
+    public void testReplacedConnectionPoolClosedAfterRequestsComplete() throws Exception {
+        properties.setRestConnectTimeout(Duration.ofMillis(100));
+        properties.setRestReadTimeout(Duration.ofMillis(400));
+        authenticatedRestTemplateService = createService();
+
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation("pool-retired");
+        final PooledHttpRequestFactory requestFactory = (PooledHttpRequestFactory) authenticatedRestTemplateService.getRestTemplate(deploymentLocation).getRequestFactory();
+        deploymentLocation.getProperties().put(CONNECTION_POOL_MAX_TOTAL, "10");
+        assertThat(authenticatedRestTemplateService.getRestTemplate(deploymentLocation).getRequestFactory()).isNotSameAs(requestFactory);
+
+        // Requests already in progress can still use the replaced pool until they would have timed out
+        assertThat(isConnectionPoolOpen(requestFactory)).isTrue();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (isConnectionPoolOpen(requestFactory) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(isConnectionPoolOpen(requestFactory)).isFalse();
+    }
+
+    @Test
+    public void testInvalidConnectionPoolProperty() {
+        final ResourceManagerDeploymentLocation deploymentLocation = createDeploymentLocation("pool-invalid");
+        deploymentLocation.getProperties().put(CONNECTION_POOL_IDLE_TIMEOUT, "sometimes");
+
+        assertThatThrownBy(() -> authenticatedRestTemplateService.getRestTemplate(deploymentLocation))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(CONNECTION_POOL_IDLE_TIMEOUT);
+    }
+
+    @Test
+    public void testConnectionPoolDisabled() {
+        properties.getRestConnectionPool().setEnabled(false);
+        authenticatedRestTemplateService = createService();
+
+        final RestTemplate restTemplate = authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("pool-disabled"));
+
+        assertThat(restTemplate.getRequestFactory()).isNotInstanceOf(PooledHttpRequestFactory.class);
+        assertThat(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("httpclient", "pool-disabled").gauge()).isNull();
+    }
+
+    @Test
+    public void testHttp2Transport() {
+        properties.setRestTransport(VNFMDriverProperties.RestTransportType.HTTP_2);
+        authenticatedRestTemplateService = createService();
+
+        final RestTemplate restTemplate = authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("http2"));
+
+        assertThat(restTemplate.getRequestFactory()).isInstanceOf(JdkHttpClientRequestFactory.class);
+        assertThat(((JdkHttpClientRequestFactory) restTemplate.getRequestFactory()).getHttpClient().version()).isEqualTo(HttpClient.Version.HTTP_2);
+    }
+
+    @Test
+    public void testRestTemplateCachedByFingerprint() {
+        final RestTemplate restTemplate = authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("fingerprint"));
+
+        // A different instance of the same deployment location
+        assertThat(authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("fingerprint"))).isSameAs(restTemplate);
+        assertThat(AuthenticatedRestTemplateService.getFingerprint(createDeploymentLocation("fingerprint"))).startsWith("fingerprint:")
+                                                                                                          .doesNotContain(TEST_SERVER_BASE_URL);
+    }
+
+    @Test
+    public void testConnectionPoolClosedWhenEvicted() {
+        properties.getRestClientCache().setMaximumSize(1);
+        // The cache meters of the service created by setUp would otherwise be re-used
+        meterRegistry = new SimpleMeterRegistry();
+        authenticatedRestTemplateService = createService();
+
+        final RestTemplate restTemplate = authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("evicted"));
+        authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("retained"));
+
+        assertThat(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("httpclient", "evicted").gauge()).isNull();
+        assertThat(getPoolGauge("httpcomponents.httpclient.pool.total.max", "retained")).isEqualTo(50);
+        assertThat(authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("evicted"))).isNotSameAs(restTemplate);
+        assertThat(meterRegistry.get("cache.evictions").tag("cache", AuthenticatedRestTemplateService.CACHE_NAME).functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testServerRestTemplateReplacedWhenCredentialsChange() throws Exception {
+        properties.setRestConnectTimeout(Duration.ofMillis(100));
+        properties.setRestReadTimeout(Duration.ofMillis(400));
+        authenticatedRestTemplateService = createService();
+
+        final Map<String, String> authenticationProperties = new HashMap<>();
+        authenticationProperties.put(AUTHENTICATION_TYPE, "BASIC");
+        authenticationProperties.put(AUTHENTICATION_USERNAME, "user");
+        authenticationProperties.put(AUTHENTICATION_PASSWORD, "password");
+        final RestTemplate restTemplate = authenticatedRestTemplateService.getRestTemplate(TEST_SERVER_BASE_URL, authenticationProperties);
+        assertThat(authenticatedRestTemplateService.getRestTemplate(TEST_SERVER_BASE_URL, new HashMap<>(authenticationProperties))).isSameAs(restTemplate);
+
+        authenticationProperties.put(AUTHENTICATION_PASSWORD, "changed");
+        final RestTemplate updatedRestTemplate = authenticatedRestTemplateService.getRestTemplate(TEST_SERVER_BASE_URL, authenticationProperties);
+
+        assertThat(updatedRestTemplate).isNotSameAs(restTemplate);
+        assertThat(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("httpclient", TEST_SERVER_BASE_URL).gauges()).hasSize(1);
+        final PooledHttpRequestFactory requestFactory = (PooledHttpRequestFactory) restTemplate.getRequestFactory();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (isConnectionPoolOpen(requestFactory) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(isConnectionPoolOpen(requestFactory)).isFalse();
+    }
+
+    @Test
+    public void testConcurrentRequestsCreateSingleRestTemplate() throws Exception {
+        final int threads = 8;
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final Callable<RestTemplate> task = () -> {
+                startLatch.await();
+                return authenticatedRestTemplateService.getRestTemplate(createDeploymentLocation("concurrent"));
+            };
+            final List<Future<RestTemplate>> futures = IntStream.range(0, threads).mapToObj(i -> executorService.submit(task)).collect(Collectors.toList());
+            startLatch.countDown();
+
+            final RestTemplate restTemplate = futures.get(0).get();
+            for (Future<RestTemplate> future : futures) {
+                assertThat(future.get()).isSameAs(restTemplate);
+            }
+            assertThat(meterRegistry.find("httpcomponents.httpclient.pool.total.max").tag("httpclient", "concurrent").gauges()).hasSize(1);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private AuthenticatedRestTemplateService createService() {
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        return new AuthenticatedRestTemplateService(new RestTemplateBuilder(), new VNFMResponseErrorHandler(new ObjectMapper()), properties,
+                                                    new SslContextCache(properties, beanFactory.getBeanProvider(MeterRegistry.class)),
+                                                    new OAuth2TokenManager(properties, beanFactory.getBeanProvider(MeterRegistry.class)),
+                                                    beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    private ResourceManagerDeploymentLocation createDeploymentLocation(final String name) {
+        final ResourceManagerDeploymentLocation deploymentLocation = new ResourceManagerDeploymentLocation(name, "etsi-sol003");
+        deploymentLocation.getProperties().put(VNFM_SERVER_URL, TEST_SERVER_BASE_URL);
+        return deploymentLocation;
+    }
+
+    private boolean isConnectionPoolOpen(final PooledHttpRequestFactory requestFactory) throws Exception {
+        final PoolingHttpClientConnectionManager connectionManager = requestFactory.getConnectionManager();
+        try {
+            // Leasing a connection doesn't open it
+            final HttpClientConnection connection = connectionManager.requestConnection(new HttpRoute(new HttpHost("localhost", 1)), null).get(1, TimeUnit.SECONDS);
+            connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private double getPoolGauge(final String name, final String connectionPoolName) {
+        return meterRegistry.get(name).tag("httpclient", connectionPoolName).gauge().value();
+    }
+
+}
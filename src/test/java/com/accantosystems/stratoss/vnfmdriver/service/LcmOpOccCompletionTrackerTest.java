@@ -0,0 +1,73 @@
+package com.accantosystems.stratoss.vnfmdriver.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionAsyncResponse;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionStatus;
+
+public class LcmOpOccCompletionTrackerTest {
+
+    private static final String VNF_LCM_OP_OCC_ID = "b9c6e8bc-9c95-4d2e-a1e8-55b9f0b2bc39";
+
+    private ExternalMessagingService mockExternalMessagingService;
+    private LcmOpOccCompletionTracker completionTracker;
+
+    @BeforeEach
+    public void setUp() {
+        mockExternalMessagingService = mock(ExternalMessagingService.class);
+        completionTracker = new LcmOpOccCompletionTracker(mockExternalMessagingService, new VNFMDriverProperties());
+    }
+
+    @Test
+    public void testNotificationStopsPolling() {
+        completionTracker.notificationReceived(response(ExecutionStatus.COMPLETE));
+
+        verify(mockExternalMessagingService).sendExecutionAsyncResponse(argThat(response -> VNF_LCM_OP_OCC_ID.equals(response.getRequestId())));
+        verify(mockExternalMessagingService).sendLcmOpOccPollingRequest(argThat(request -> request.isCompleted() && VNF_LCM_OP_OCC_ID.equals(request.getVnfLcmOpOccId())));
+        assertThat(completionTracker.isCompleted(VNF_LCM_OP_OCC_ID)).isTrue();
+    }
+
+    @Test
+    public void testDuplicateResponsesSuppressed() {
+        // e.g. notified of the result while a poll was finding the same
+        assertThat(completionTracker.sendExecutionAsyncResponse(response(ExecutionStatus.COMPLETE))).isTrue();
+        completionTracker.notificationReceived(response(ExecutionStatus.COMPLETE));
+
+        verify(mockExternalMessagingService, times(1)).sendExecutionAsyncResponse(any());
+        verify(mockExternalMessagingService, never()).sendLcmOpOccPollingRequest(any());
+    }
+
+    @Test
+    public void testDuplicateResponsesNotSuppressedAcrossInstances() {
+        // The notification is received by one instance, while the instance which owns the operation finds the same result by polling it before the
+        // completion marker arrives, so Brent is sent both responses
+        final LcmOpOccCompletionTracker otherCompletionTracker = new LcmOpOccCompletionTracker(mockExternalMessagingService, new VNFMDriverProperties());
+        completionTracker.notificationReceived(response(ExecutionStatus.COMPLETE));
+        assertThat(otherCompletionTracker.sendExecutionAsyncResponse(response(ExecutionStatus.COMPLETE))).isTrue();
+
+        verify(mockExternalMessagingService, times(2)).sendExecutionAsyncResponse(argThat(response -> VNF_LCM_OP_OCC_ID.equals(response.getRequestId())
+                && response.getStatus() == ExecutionStatus.COMPLETE));
+    }
+
+    @Test
+    public void testDifferentOutcomeNotSuppressed() {
+        assertThat(completionTracker.sendExecutionAsyncResponse(response(ExecutionStatus.FAILED))).isTrue();
+        assertThat(completionTracker.sendExecutionAsyncResponse(response(ExecutionStatus.COMPLETE))).isTrue();
+
+        verify(mockExternalMessagingService, times(2)).sendExecutionAsyncResponse(any());
+    }
+
+    private ExecutionAsyncResponse response(final ExecutionStatus status) {
+        return new ExecutionAsyncResponse(VNF_LCM_OP_OCC_ID, status, null, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+}
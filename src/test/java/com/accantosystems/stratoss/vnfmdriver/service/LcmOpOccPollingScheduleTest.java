@@ -0,0 +1,85 @@
+package com.accantosystems.stratoss.vnfmdriver.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.etsi.sol003.lifecyclemanagement.LcmOperationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+
+public class LcmOpOccPollingScheduleTest {
+
+    private VNFMDriverProperties properties;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new VNFMDriverProperties();
+        properties.setLcmOpOccPollingDelay(Duration.ofSeconds(10));
+        properties.setLcmOpOccPollingMultiplier(2.0);
+        properties.setLcmOpOccPollingMaxDelay(Duration.ofSeconds(60));
+    }
+
+    @Test
+    public void testDelayGrowsFromInitialDelayForOperation() {
+        final LcmOpOccPollingSchedule schedule = new LcmOpOccPollingSchedule(properties);
+
+        // Operation not yet known
+        assertThat(schedule.getDelay(null, Duration.ZERO, 0)).isEqualTo(Duration.ofSeconds(10));
+
+        assertThat(schedule.getDelay(LcmOperationType.OPERATE, Duration.ofSeconds(10), 1)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(schedule.getDelay(LcmOperationType.OPERATE, Duration.ofSeconds(12), 2)).isEqualTo(Duration.ofSeconds(4));
+        assertThat(schedule.getDelay(LcmOperationType.OPERATE, Duration.ofSeconds(16), 3)).isEqualTo(Duration.ofSeconds(8));
+
+        assertThat(schedule.getDelay(LcmOperationType.INSTANTIATE, Duration.ofSeconds(10), 1)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(schedule.getDelay(LcmOperationType.INSTANTIATE, Duration.ofSeconds(40), 2)).isEqualTo(Duration.ofSeconds(60));
+        assertThat(schedule.getDelay(LcmOperationType.INSTANTIATE, Duration.ofSeconds(100), 3)).isEqualTo(Duration.ofSeconds(60));
+
+        // Operations without an initial delay use lcmOpOccPollingDelay
+        assertThat(schedule.getDelay(LcmOperationType.HEAL, Duration.ofSeconds(10), 1)).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testInitialDelayOverridden() {
+        properties.getLcmOpOccPollingInitialDelays().put(LcmOperationType.HEAL, Duration.ofSeconds(90));
+        final LcmOpOccPollingSchedule schedule = new LcmOpOccPollingSchedule(properties);
+
+        // Not capped below the initial delay
+        assertThat(schedule.getDelay(LcmOperationType.HEAL, Duration.ofSeconds(10), 1)).isEqualTo(Duration.ofSeconds(90));
+        assertThat(schedule.getDelay(LcmOperationType.HEAL, Duration.ofSeconds(100), 2)).isEqualTo(Duration.ofSeconds(90));
+    }
+
+    @Test
+    public void testPollingSkippedUntilOperationLikelyToHaveCompleted() {
+        final LcmOpOccPollingSchedule schedule = new LcmOpOccPollingSchedule(properties);
+        for (int i = 0; i < LcmOpOccPollingSchedule.MIN_SAMPLES - 1; i++) {
+            schedule.recordCompletion(LcmOperationType.INSTANTIATE, Duration.ofMinutes(40));
+        }
+        assertThat(schedule.getCompletionTime(LcmOperationType.INSTANTIATE, 0.5)).isNull();
+        assertThat(schedule.getDelay(LcmOperationType.INSTANTIATE, Duration.ofSeconds(10), 1)).isEqualTo(Duration.ofSeconds(30));
+
+        schedule.recordCompletion(LcmOperationType.INSTANTIATE, Duration.ofMinutes(40));
+        assertThat(schedule.getCompletionTime(LcmOperationType.INSTANTIATE, 0.5)).isEqualTo(Duration.ofMinutes(40));
+        assertThat(schedule.getDelay(LcmOperationType.INSTANTIATE, Duration.ofSeconds(10), 1)).isEqualTo(Duration.ofMinutes(40).minusSeconds(10));
+        // Beyond the quickest completion time, back to the usual backoff
+        assertThat(schedule.getDelay(LcmOperationType.INSTANTIATE, Duration.ofMinutes(40), 2)).isEqualTo(Duration.ofSeconds(60));
+        // Other operations unaffected
+        assertThat(schedule.getDelay(LcmOperationType.OPERATE, Duration.ofSeconds(10), 1)).isEqualTo(Duration.ofSeconds(2));
+    }
+
+    @Test
+    public void testOnlyRecentCompletionTimesUsed() {
+        final LcmOpOccPollingSchedule schedule = new LcmOpOccPollingSchedule(properties);
+        for (int i = 0; i < LcmOpOccPollingSchedule.MAX_SAMPLES; i++) {
+            schedule.recordCompletion(LcmOperationType.SCALE, Duration.ofMinutes(10));
+        }
+        for (int i = 0; i < LcmOpOccPollingSchedule.MAX_SAMPLES; i++) {
+            schedule.recordCompletion(LcmOperationType.SCALE, Duration.ofMinutes(1));
+        }
+
+        assertThat(schedule.getCompletionTime(LcmOperationType.SCALE, 0.9)).isEqualTo(Duration.ofMinutes(1));
+    }
+
+}
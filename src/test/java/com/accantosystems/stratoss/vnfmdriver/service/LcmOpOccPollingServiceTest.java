@@ -0,0 +1,406 @@
+package com.accantosystems.stratoss.vnfmdriver.service;
+
+import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.etsi.sol003.lifecyclemanagement.LcmOperationStateType;
+import org.etsi.sol003.lifecyclemanagement.LcmOperationType;
+import org.etsi.sol003.lifecyclemanagement.VnfLcmOpOcc;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.driver.VNFLifecycleManagementDriver;
+import com.accantosystems.stratoss.vnfmdriver.model.LcmOpOccPollingRequest;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionStatus;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.FailureDetails;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LcmOpOccPollingServiceTest {
+
+    private static final String VNF_LCM_OP_OCC_ID = "b9c6e8bc-9c95-4d2e-a1e8-55b9f0b2bc39";
+    private static final String OTHER_VNF_LCM_OP_OCC_ID = "0f3a2c6e-2d1b-4f6f-9a8e-3c7d5b1e4a92";
+    private static final int PARTITION = 3;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private VNFLifecycleManagementDriver mockDriver;
+    private ExternalMessagingService mockExternalMessagingService;
+    private LcmOpOccCompletionTracker completionTracker;
+    private MeterRegistry meterRegistry;
+    private Consumer<String, String> mockConsumer;
+    private ConsumerFactory<String, String> mockConsumerFactory;
+    private VNFMDriverProperties properties;
+    private LcmOpOccPollingService lcmOpOccPollingService;
+
+    @BeforeEach
+    public void setUp() {
+        mockDriver = mock(VNFLifecycleManagementDriver.class);
+        mockExternalMessagingService = mock(ExternalMessagingService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        mockConsumer = mock(Consumer.class);
+        mockConsumerFactory = mock(ConsumerFactory.class);
+        when(mockConsumerFactory.createConsumer()).thenReturn(mockConsumer);
+        properties = new VNFMDriverProperties();
+        properties.setLcmOpOccPollingDelay(Duration.ofMillis(50));
+        properties.setLcmOpOccPollingTickDuration(Duration.ofMillis(10));
+        properties.setLcmOpOccPollingCheckpointInterval(Duration.ofMillis(100));
+        properties.setLcmOpOccPollingMaxDelay(Duration.ofMillis(150));
+        properties.setLcmOpOccPollingGracePeriod(Duration.ZERO);
+        completionTracker = new LcmOpOccCompletionTracker(mockExternalMessagingService, properties);
+        lcmOpOccPollingService = new LcmOpOccPollingService(mockDriver, mockExternalMessagingService, completionTracker, objectMapper, properties, beanFactoryWith(meterRegistry).getBeanProvider(MeterRegistry.class), mockConsumerFactory);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        lcmOpOccPollingService.close();
+    }
+
+    @Test
+    public void testPollsUntilOperationCompleted() throws Exception {
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenReturn(vnfLcmOpOcc(LcmOperationStateType.PROCESSING))
+                                                                                     .thenReturn(vnfLcmOpOcc(LcmOperationStateType.PROCESSING))
+                                                                                     .thenReturn(vnfLcmOpOcc(LcmOperationStateType.PROCESSING))
+                                                                                     .thenReturn(vnfLcmOpOcc(LcmOperationStateType.COMPLETED));
+
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(1);
+        assertThat(meterRegistry.get(LcmOpOccPollingService.TRACKED_METRIC_NAME).gauge().value()).isEqualTo(1);
+
+        verify(mockExternalMessagingService, timeout(5000)).sendExecutionAsyncResponse(argThat(response -> response.getStatus() == ExecutionStatus.COMPLETE
+                && VNF_LCM_OP_OCC_ID.equals(response.getRequestId())));
+        verify(mockDriver, times(4)).queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID));
+        // Checkpointed while polling (every 100ms), then marked as completed
+        verify(mockExternalMessagingService, timeout(5000)).sendLcmOpOccPollingRequest(argThat(request -> request.isCompleted() && VNF_LCM_OP_OCC_ID.equals(request.getVnfLcmOpOccId())));
+        verify(mockExternalMessagingService, atLeastOnce()).sendLcmOpOccPollingRequest(argThat(request -> !request.isCompleted()));
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(0);
+        assertThat(meterRegistry.get(LcmOpOccPollingService.POLLS_METRIC_NAME).tag("operation", "unknown").counter().count()).isEqualTo(4);
+        assertThat(meterRegistry.get(LcmOpOccPollingService.DURATION_METRIC_NAME).tag("operation", "unknown").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExecutionFailedWhenOperationTimesOut() throws Exception {
+        lcmOpOccPollingService.close();
+        properties.setLcmOpOccPollingTimeout(Duration.ofMillis(300));
+        lcmOpOccPollingService = new LcmOpOccPollingService(mockDriver, mockExternalMessagingService, completionTracker, objectMapper, properties, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), mockConsumerFactory);
+        final VnfLcmOpOcc processing = vnfLcmOpOcc(LcmOperationStateType.PROCESSING);
+        processing.setOperation(LcmOperationType.INSTANTIATE);
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenReturn(processing);
+
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+
+        // Polled again at the deadline, despite the initial delay for INSTANTIATE being much longer
+        verify(mockExternalMessagingService, timeout(5000)).sendExecutionAsyncResponse(argThat(response -> response.getStatus() == ExecutionStatus.FAILED
+                && response.getFailureDetails().getFailureCode() == FailureDetails.FailureCode.INTERNAL_ERROR));
+        verify(mockDriver, times(2)).queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID));
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testTimeoutCarriedOverFromCheckpoint() throws Exception {
+        lcmOpOccPollingService.close();
+        properties.setLcmOpOccPollingTimeout(Duration.ofMinutes(10));
+        lcmOpOccPollingService = new LcmOpOccPollingService(mockDriver, mockExternalMessagingService, completionTracker, objectMapper, properties, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), mockConsumerFactory);
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenReturn(vnfLcmOpOcc(LcmOperationStateType.PROCESSING));
+
+        // A checkpoint recovered from the previous owner of the partition, which started polling longer ago than the timeout
+        final long trackingStartTime = System.currentTimeMillis() - Duration.ofMinutes(11).toMillis();
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID).withTrackingStartTime(trackingStartTime), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+
+        verify(mockExternalMessagingService, timeout(5000)).sendExecutionAsyncResponse(argThat(response -> response.getStatus() == ExecutionStatus.FAILED
+                && response.getFailureDetails().getFailureCode() == FailureDetails.FailureCode.INTERNAL_ERROR));
+        verify(mockDriver, times(1)).queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID));
+    }
+
+    @Test
+    public void testCheckpointsRecordTrackingStartTime() throws Exception {
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenReturn(vnfLcmOpOcc(LcmOperationStateType.PROCESSING));
+        final long startTime = System.currentTimeMillis();
+
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, startTime);
+
+        verify(mockExternalMessagingService, timeout(5000)).sendLcmOpOccPollingRequest(argThat(request -> !request.isCompleted()
+                && request.getTrackingStartTime() != null && request.getTrackingStartTime() >= startTime));
+        final long trackingStartTime = mockingDetails(mockExternalMessagingService).getInvocations().stream()
+                                                                                   .map(invocation -> (LcmOpOccPollingRequest) invocation.getArgument(0))
+                                                                                   .filter(request -> !request.isCompleted())
+                                                                                   .findFirst().orElseThrow().getTrackingStartTime();
+        // Every checkpoint records the same start time
+        Thread.sleep(300);
+        verify(mockExternalMessagingService, atLeast(2)).sendLcmOpOccPollingRequest(argThat(request -> !request.isCompleted()));
+        verify(mockExternalMessagingService, never()).sendLcmOpOccPollingRequest(argThat(request -> !request.isCompleted() && request.getTrackingStartTime() != trackingStartTime));
+    }
+
+    @Test
+    public void testMaxDelayMustBeLessThanTwiceCheckpointInterval() {
+        properties.setLcmOpOccPollingMaxDelay(Duration.ofMillis(200));
+
+        assertThatThrownBy(() -> new LcmOpOccPollingService(mockDriver, mockExternalMessagingService, completionTracker, objectMapper, properties,
+                                                            new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), mockConsumerFactory))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("lcmOpOccPollingMaxDelay");
+    }
+
+    @Test
+    public void testOperationWithLearnedDelayRecoveredAfterPartitionHandoff() throws Exception {
+        // Learn that INSTANTIATE operations take an hour
+        final Instant now = Instant.now();
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), any())).thenAnswer(invocation -> instantiate(invocation.getArgument(1), now.minus(Duration.ofHours(1)), now));
+        when(mockDriver.queryLifecycleOperationOccurrences(any(), any())).thenAnswer(invocation -> {
+            final Collection<String> ids = invocation.getArgument(1);
+            return ids.stream().map(id -> instantiate(id, now.minus(Duration.ofHours(1)), now)).collect(Collectors.toList());
+        });
+        for (int i = 0; i < LcmOpOccPollingSchedule.MIN_SAMPLES; i++) {
+            receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, "learned-" + i), "learned-" + i, System.currentTimeMillis());
+        }
+        verify(mockExternalMessagingService, timeout(5000).times(LcmOpOccPollingSchedule.MIN_SAMPLES)).sendExecutionAsyncResponse(any());
+
+        // So another one isn't polled again for nearly an hour after it's found to be processing
+        final List<Long> checkpointTimes = new CopyOnWriteArrayList<>();
+        final List<LcmOpOccPollingRequest> checkpoints = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> checkpoints.add(invocation.getArgument(0)) && checkpointTimes.add(System.currentTimeMillis())).when(mockExternalMessagingService)
+                .sendLcmOpOccPollingRequest(argThat(request -> !request.isCompleted() && VNF_LCM_OP_OCC_ID.equals(request.getVnfLcmOpOccId())));
+        final VnfLcmOpOcc processing = instantiate(VNF_LCM_OP_OCC_ID, Instant.now(), null);
+        processing.setOperationState(LcmOperationStateType.PROCESSING);
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenReturn(processing);
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+        verify(mockDriver, timeout(5000)).queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID));
+
+        // Checkpoints are still published while waiting for the next poll
+        Thread.sleep(350);
+        verify(mockDriver, times(1)).queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID));
+        assertThat(checkpointTimes).hasSizeGreaterThanOrEqualTo(2);
+
+        // The partition is handed over to another instance, which replays checkpoints from twice the checkpoint interval ago
+        lcmOpOccPollingService.onPartitionsRevoked(Collections.singletonList(new TopicPartition("lcm_op_occ_polling_requests", PARTITION)));
+        final long handoffTime = System.currentTimeMillis();
+        assertThat(handoffTime - checkpointTimes.get(checkpointTimes.size() - 1)).isLessThan(properties.getLcmOpOccPollingCheckpointInterval().multipliedBy(2).toMillis());
+        final LcmOpOccPollingService otherLcmOpOccPollingService = new LcmOpOccPollingService(mockDriver, mockExternalMessagingService,
+                                                                                              new LcmOpOccCompletionTracker(mockExternalMessagingService, properties),
+                                                                                              objectMapper, properties, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), mockConsumerFactory);
+        try {
+            processing.setOperationState(LcmOperationStateType.COMPLETED);
+            // The latest checkpoint, replayed by the new owner
+            otherLcmOpOccPollingService.listenForLcmOpOccPollingRequestMessages(objectMapper.writeValueAsString(checkpoints.get(checkpoints.size() - 1)),
+                                                                                VNF_LCM_OP_OCC_ID, PARTITION, checkpointTimes.get(checkpointTimes.size() - 1));
+
+            verify(mockExternalMessagingService, timeout(5000)).sendExecutionAsyncResponse(argThat(response -> response.getStatus() == ExecutionStatus.COMPLETE
+                    && VNF_LCM_OP_OCC_ID.equals(response.getRequestId())));
+        } finally {
+            otherLcmOpOccPollingService.close();
+        }
+    }
+
+    @Test
+    public void testOperationsOnSameVnfmPolledTogether() throws Exception {
+        lcmOpOccPollingService.close();
+        // Long enough ticks that both operations are due on the same one
+        properties.setLcmOpOccPollingTickDuration(Duration.ofMillis(200));
+        lcmOpOccPollingService = new LcmOpOccPollingService(mockDriver, mockExternalMessagingService, completionTracker, objectMapper, properties, beanFactoryWith(meterRegistry).getBeanProvider(MeterRegistry.class), mockConsumerFactory);
+        when(mockDriver.queryLifecycleOperationOccurrences(any(), any())).thenAnswer(invocation -> {
+            final Collection<String> ids = invocation.getArgument(1);
+            return ids.stream().map(id -> vnfLcmOpOcc(id, LcmOperationStateType.COMPLETED)).collect(Collectors.toList());
+        });
+
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, OTHER_VNF_LCM_OP_OCC_ID), OTHER_VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+
+        verify(mockExternalMessagingService, timeout(5000).times(2)).sendExecutionAsyncResponse(argThat(response -> response.getStatus() == ExecutionStatus.COMPLETE));
+        verify(mockDriver, times(1)).queryLifecycleOperationOccurrences(any(), argThat(ids -> ids.containsAll(Arrays.asList(VNF_LCM_OP_OCC_ID, OTHER_VNF_LCM_OP_OCC_ID))));
+        assertThat(meterRegistry.get(LcmOpOccPollingService.BATCH_SIZE_METRIC_NAME).summary().max()).isEqualTo(2);
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testKeepsPollingAfterError() throws Exception {
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenThrow(new RuntimeException("Connection refused"))
+                                                                                     .thenReturn(vnfLcmOpOcc(LcmOperationStateType.COMPLETED));
+
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+
+        // An error doesn't stop polling before the timeout
+        verify(mockExternalMessagingService, timeout(5000)).sendExecutionAsyncResponse(argThat(response -> response.getStatus() == ExecutionStatus.COMPLETE));
+        verify(mockDriver, times(2)).queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID));
+    }
+
+    @Test
+    public void testDuplicateRequestsIgnored() throws Exception {
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenReturn(vnfLcmOpOcc(LcmOperationStateType.COMPLETED));
+
+        // e.g. a replayed checkpoint for an operation already being polled
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+
+        verify(mockExternalMessagingService, timeout(5000)).sendExecutionAsyncResponse(any());
+        Thread.sleep(200);
+        verify(mockDriver, times(1)).queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID));
+    }
+
+    @Test
+    public void testCompletionMarkerStopsPolling() throws Exception {
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenReturn(vnfLcmOpOcc(LcmOperationStateType.PROCESSING));
+
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+        receive(LcmOpOccPollingRequest.completed(VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(0);
+
+        Thread.sleep(200);
+        verifyNoInteractions(mockDriver);
+        verify(mockExternalMessagingService, never()).sendExecutionAsyncResponse(any());
+    }
+
+    @Test
+    public void testNotPolledWhenNotifiedDuringGracePeriod() throws Exception {
+        lcmOpOccPollingService.close();
+        properties.setLcmOpOccPollingGracePeriod(Duration.ofMillis(500));
+        lcmOpOccPollingService = new LcmOpOccPollingService(mockDriver, mockExternalMessagingService, completionTracker, objectMapper, properties,
+                                                            new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), mockConsumerFactory);
+
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+        Thread.sleep(100);
+        // The marker sent on receiving a notification of the result
+        receive(LcmOpOccPollingRequest.completed(VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(0);
+        Thread.sleep(600);
+        verifyNoInteractions(mockDriver);
+    }
+
+    @Test
+    public void testNotPolledWhenAlreadyCompleted() throws Exception {
+        // e.g. notified of the result before the request to poll the operation was consumed
+        receive(LcmOpOccPollingRequest.completed(VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(0);
+        Thread.sleep(200);
+        verifyNoInteractions(mockDriver);
+    }
+
+    @Test
+    public void testUnkeyedRequestHandedOverToItsPartition() throws Exception {
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), null, System.currentTimeMillis());
+
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(0);
+        verify(mockExternalMessagingService).sendLcmOpOccPollingRequest(argThat(request -> !request.isCompleted() && VNF_LCM_OP_OCC_ID.equals(request.getVnfLcmOpOccId())));
+    }
+
+    @Test
+    public void testOperationsDroppedWhenPartitionRevoked() throws Exception {
+        when(mockDriver.queryLifecycleOperationOccurrence(any(), eq(VNF_LCM_OP_OCC_ID))).thenReturn(vnfLcmOpOcc(LcmOperationStateType.PROCESSING));
+        receive(new LcmOpOccPollingRequest(TEST_DL_NO_AUTH, VNF_LCM_OP_OCC_ID), VNF_LCM_OP_OCC_ID, System.currentTimeMillis());
+
+        lcmOpOccPollingService.onPartitionsRevoked(Collections.singletonList(new TopicPartition("lcm_op_occ_polling_requests", PARTITION)));
+
+        assertThat(lcmOpOccPollingService.getTrackedOperationCount()).isEqualTo(0);
+        Thread.sleep(200);
+        verifyNoInteractions(mockDriver);
+        // Not marked as completed, so the new owner of the partition picks it up
+        verify(mockExternalMessagingService, never()).sendLcmOpOccPollingRequest(any());
+    }
+
+    @Test
+    public void testRecentCheckpointsReplayedWhenPartitionAssigned() {
+        final TopicPartition topicPartition = new TopicPartition("lcm_op_occ_polling_requests", PARTITION);
+        when(mockConsumer.offsetsForTimes(any())).thenReturn(Collections.singletonMap(topicPartition, new OffsetAndTimestamp(40, System.currentTimeMillis())));
+        final ConsumerSeekAware.ConsumerSeekCallback mockCallback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+
+        lcmOpOccPollingService.onPartitionsAssigned(Collections.singletonMap(topicPartition, 100L), mockCallback);
+
+        verify(mockConsumer).offsetsForTimes(argThat(timestamps -> timestamps.get(topicPartition) <= System.currentTimeMillis() - 200));
+        verify(mockCallback).seek("lcm_op_occ_polling_requests", PARTITION, 40);
+        verify(mockConsumer).close();
+    }
+
+    @Test
+    public void testCommittedOffsetKeptAfterOutageLongerThanTwiceCheckpointInterval() {
+        // No instance has consumed this partition for longer than twice the checkpoint interval, so the earliest checkpoint in that window comes after
+        // polling requests which have never been handled
+        final TopicPartition topicPartition = new TopicPartition("lcm_op_occ_polling_requests", PARTITION);
+        final TopicPartition otherTopicPartition = new TopicPartition("lcm_op_occ_polling_requests", PARTITION + 1);
+        final Map<TopicPartition, OffsetAndTimestamp> checkpointOffsets = new HashMap<>();
+        checkpointOffsets.put(topicPartition, new OffsetAndTimestamp(40, System.currentTimeMillis()));
+        // Nothing at all published to this partition since then
+        checkpointOffsets.put(otherTopicPartition, null);
+        when(mockConsumer.offsetsForTimes(any())).thenReturn(checkpointOffsets);
+        final ConsumerSeekAware.ConsumerSeekCallback mockCallback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+        final Map<TopicPartition, Long> committedOffsets = new HashMap<>();
+        committedOffsets.put(topicPartition, 5L);
+        committedOffsets.put(otherTopicPartition, 12L);
+
+        lcmOpOccPollingService.onPartitionsAssigned(committedOffsets, mockCallback);
+
+        // Resumes from the committed offsets, never skipping forwards
+        verifyNoInteractions(mockCallback);
+    }
+
+    @Test
+    public void testCommittedOffsetKeptWhenCheckpointOffsetsUnavailable() {
+        when(mockConsumer.offsetsForTimes(any())).thenThrow(new TimeoutException("Timed out"));
+        final ConsumerSeekAware.ConsumerSeekCallback mockCallback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+
+        lcmOpOccPollingService.onPartitionsAssigned(Collections.singletonMap(new TopicPartition("lcm_op_occ_polling_requests", PARTITION), 100L), mockCallback);
+
+        verifyNoInteractions(mockCallback);
+    }
+
+    private void receive(final LcmOpOccPollingRequest request, final String key, final long timestamp) throws Exception {
+        lcmOpOccPollingService.listenForLcmOpOccPollingRequestMessages(objectMapper.writeValueAsString(request), key, PARTITION, timestamp);
+    }
+
+    private StaticListableBeanFactory beanFactoryWith(final MeterRegistry meterRegistry) {
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        return beanFactory;
+    }
+
+    private VnfLcmOpOcc instantiate(final String id, final Instant startTime, final Instant stateEnteredTime) {
+        final VnfLcmOpOcc vnfLcmOpOcc = vnfLcmOpOcc(id, LcmOperationStateType.COMPLETED);
+        vnfLcmOpOcc.setOperation(LcmOperationType.INSTANTIATE);
+        vnfLcmOpOcc.setStartTime(OffsetDateTime.ofInstant(startTime, ZoneOffset.UTC));
+        if (stateEnteredTime != null) {
+            vnfLcmOpOcc.setStateEnteredTime(OffsetDateTime.ofInstant(stateEnteredTime, ZoneOffset.UTC));
+        }
+        return vnfLcmOpOcc;
+    }
+
+    private VnfLcmOpOcc vnfLcmOpOcc(final LcmOperationStateType operationState) {
+        return vnfLcmOpOcc(VNF_LCM_OP_OCC_ID, operationState);
+    }
+
+    private VnfLcmOpOcc vnfLcmOpOcc(final String id, final LcmOperationStateType operationState) {
+        final VnfLcmOpOcc vnfLcmOpOcc = new VnfLcmOpOcc();
+        vnfLcmOpOcc.setId(id);
+        vnfLcmOpOcc.setOperationState(operationState);
+        return vnfLcmOpOcc;
+    }
+
+}
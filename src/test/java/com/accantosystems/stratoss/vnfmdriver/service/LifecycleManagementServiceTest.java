@@ -1,12 +1,15 @@
 package com.accantosystems.stratoss.vnfmdriver.service;
 
-import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.TEST_DL_NO_AUTH;
-import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.loadFileIntoString;
+import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
 import com.accantosystems.stratoss.vnfmdriver.driver.VNFLifecycleManagementDriver;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionAcceptedResponse;
@@ -16,6 +19,8 @@ import com.accantosystems.stratoss.vnfmdriver.service.impl.JavascriptMessageConv
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class LifecycleManagementServiceTest {
 
     @Test
@@ -24,7 +29,7 @@ public class LifecycleManagementServiceTest {
         final ExternalMessagingService mockExternalMessagingService = mock(ExternalMessagingService.class);
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.findAndRegisterModules();
-        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper);
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, new VNFMDriverProperties(), new SimpleMeterRegistry());
         final LifecycleManagementService lifecycleManagementService = new LifecycleManagementService(mockDriver, messageConversionService, mockExternalMessagingService, new VNFMDriverProperties());
 
         when(mockDriver.createVnfInstance(any(), any(), any())).thenReturn(loadFileIntoString("examples/VnfInstance.json"));
@@ -48,6 +53,51 @@ public class LifecycleManagementServiceTest {
         verify(mockExternalMessagingService).sendDelayedExecutionAsyncResponse(any(), any());
     }
 
+    @Test
+    public void testExecuteLifecycleAsync() throws Exception {
+        final VNFLifecycleManagementDriver mockDriver = mock(VNFLifecycleManagementDriver.class);
+        final ExternalMessagingService mockExternalMessagingService = mock(ExternalMessagingService.class);
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, new VNFMDriverProperties(), new SimpleMeterRegistry());
+        final LifecycleManagementService lifecycleManagementService = new LifecycleManagementService(mockDriver, messageConversionService, mockExternalMessagingService, new VNFMDriverProperties());
+
+        when(mockDriver.callVnfLcmOperationAsync(any(), eq(TEST_VNF_INSTANCE_ID), eq("operate"), any())).thenReturn(CompletableFuture.completedFuture(TEST_VNF_LCM_OP_OCC_ID));
+
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setLifecycleName("Start");
+        executionRequest.setDeploymentLocation(TEST_DL_NO_AUTH);
+        executionRequest.getResourceProperties().put("vnfInstanceId", new GenericExecutionRequestPropertyValue(TEST_VNF_INSTANCE_ID));
+
+        final ExecutionAcceptedResponse executionAcceptedResponse = lifecycleManagementService.executeLifecycleAsync(executionRequest).get(10, TimeUnit.SECONDS);
+
+        assertThat(executionAcceptedResponse.getRequestId()).isEqualTo(TEST_VNF_LCM_OP_OCC_ID);
+        verify(mockDriver, never()).operateVnf(any(), any(), any());
+    }
+
+    @Test
+    public void testExecuteLifecycleOperation() throws Exception {
+        final VNFLifecycleManagementDriver mockDriver = mock(VNFLifecycleManagementDriver.class);
+        final ExternalMessagingService mockExternalMessagingService = mock(ExternalMessagingService.class);
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, new VNFMDriverProperties(), new SimpleMeterRegistry());
+        final LifecycleManagementService lifecycleManagementService = new LifecycleManagementService(mockDriver, messageConversionService, mockExternalMessagingService, new VNFMDriverProperties());
+
+        when(mockDriver.operateVnf(any(), eq(TEST_VNF_INSTANCE_ID), any())).thenReturn(TEST_VNF_LCM_OP_OCC_ID);
+
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setLifecycleName("stop");
+        executionRequest.setDeploymentLocation(TEST_DL_NO_AUTH);
+        executionRequest.getResourceProperties().put("vnfInstanceId", new GenericExecutionRequestPropertyValue(TEST_VNF_INSTANCE_ID));
+
+        final ExecutionAcceptedResponse executionAcceptedResponse = lifecycleManagementService.executeLifecycle(executionRequest);
+
+        assertThat(executionAcceptedResponse.getRequestId()).isEqualTo(TEST_VNF_LCM_OP_OCC_ID);
+        verify(mockDriver).operateVnf(eq(TEST_DL_NO_AUTH), eq(TEST_VNF_INSTANCE_ID), any());
+        verify(mockDriver, never()).callVnfLcmOperationAsync(any(), any(), any(), any());
+    }
+
     @Test
     public void testExecuteLifecycleInvalidLifecycleName() {
         final LifecycleManagementService lifecycleManagementService = new LifecycleManagementService(null, null, null, null);
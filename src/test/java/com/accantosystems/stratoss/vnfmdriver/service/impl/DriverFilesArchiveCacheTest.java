@@ -0,0 +1,48 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.loadZipIntoBase64String;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.accantosystems.stratoss.vnfmdriver.utils.DriverFilesArchive;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class DriverFilesArchiveCacheTest {
+
+    @Test
+    public void testArchiveIsReadOnce() throws Exception {
+        final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final DriverFilesArchiveCache cache = new DriverFilesArchiveCache(1024 * 1024, meterRegistry);
+        final String driverFiles = loadZipIntoBase64String("examples/lifecyclescripts.zip");
+
+        final DriverFilesArchive archive = cache.getArchive(driverFiles);
+
+        assertThat(archive.getFile("scripts/InstantiateVnfRequest.js")).isNotEmpty();
+        assertThat(cache.getArchive(new String(driverFiles))).isSameAs(archive);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", DriverFilesArchiveCache.CACHE_NAME).tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testBoundedByTotalSizeOfArchives() throws Exception {
+        final String driverFiles = loadZipIntoBase64String("examples/lifecyclescripts.zip");
+        final long weight = DriverFilesArchive.forDriverFiles(driverFiles).getWeight();
+        final DriverFilesArchiveCache cache = new DriverFilesArchiveCache(weight - 1, new SimpleMeterRegistry());
+
+        cache.getArchive(driverFiles);
+
+        // Too large to be held
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testEmptyDriverFiles() {
+        final DriverFilesArchiveCache cache = new DriverFilesArchiveCache(1024, new SimpleMeterRegistry());
+
+        assertThat(cache.getArchive(null).size()).isEqualTo(0);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+}
@@ -4,20 +4,29 @@ import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.*;
+import javax.script.ScriptEngineManager;
+import org.etsi.ifa011.VnfDescriptor;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.boot.test.json.JsonContent;
 
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionRequest;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.GenericExecutionRequestPropertyValue;
 import com.accantosystems.stratoss.vnfmdriver.model.alm.PropertyType;
+import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionException;
 import com.accantosystems.stratoss.vnfmdriver.service.MessageConversionService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class JavascriptMessageConversionServiceImplTest {
 
     private final static ObjectMapper objectMapper = new ObjectMapper();
@@ -37,7 +46,7 @@ public class JavascriptMessageConversionServiceImplTest {
         executionRequest.getResourceProperties().put("description", new GenericExecutionRequestPropertyValue("testing testing 123"));
         executionRequest.setDriverFiles(loadZipIntoBase64String("examples/lifecyclescripts.zip"));
 
-        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper);
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, new VNFMDriverProperties(), new SimpleMeterRegistry());
         final String message = messageConversionService.generateMessageFromRequest("InstantiateVnfRequest", executionRequest);
 
         assertThat(message).isEqualTo("{\"vnfdId\":\"123-123-123-123\",\"vnfInstanceName\":\"Configure\",\"vnfInstanceDescription\":\"testing testing 123\"}");
@@ -51,7 +60,7 @@ public class JavascriptMessageConversionServiceImplTest {
         executionRequest.getResourceProperties().put("description", new GenericExecutionRequestPropertyValue("testing testing 123"));
         executionRequest.getResourceProperties().put("interfaceVersion", new GenericExecutionRequestPropertyValue("2.5.1"));
 
-        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper);
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, new VNFMDriverProperties(), new SimpleMeterRegistry());
         final String message = messageConversionService.generateMessageFromRequest("InstantiateVnfRequest", executionRequest);
 
         assertThat(message).isEqualTo("{\"vnfdId\":\"xxx-xxx-xxx-xxx\",\"vnfInstanceName\":\"Configure\",\"vnfInstanceDescription\":\"testing testing 123\"}");
@@ -66,7 +75,7 @@ public class JavascriptMessageConversionServiceImplTest {
         executionRequest.getResourceProperties().put("vnfInstanceName", new GenericExecutionRequestPropertyValue("Install"));
         executionRequest.getResourceProperties().put("vnfInstanceDescription", new GenericExecutionRequestPropertyValue("testing testing 123"));
 
-        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper);
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, new VNFMDriverProperties(), new SimpleMeterRegistry());
         final String message = messageConversionService.generateMessageFromRequest("CreateVnfRequest", executionRequest);
 
         assertThat(message).isEqualTo("{\"additionalParams\":{},\"metadata\":{},\"vnfdId\":\"xyz-xyz-xyz-xyz\",\"vnfInstanceName\":\"Install\",\"vnfInstanceDescription\":\"testing testing 123\"}");
@@ -75,12 +84,224 @@ public class JavascriptMessageConversionServiceImplTest {
     @Test
     public void testNoScriptFound() {
         final ExecutionRequest executionRequest = new ExecutionRequest();
-        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper);
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, new VNFMDriverProperties(), new SimpleMeterRegistry());
         assertThatThrownBy(() -> messageConversionService.generateMessageFromRequest("UnknownMessageType", executionRequest))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessage("Unable to find a script called [UnknownMessageType.js]");
     }
 
+    @Test
+    public void testCompiledScriptsAreCached() throws Exception {
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setLifecycleName("Install");
+        executionRequest.setDeploymentLocation(TEST_DL_NO_AUTH);
+        executionRequest.getResourceProperties().put("vnfdId", new GenericExecutionRequestPropertyValue("xyz-xyz-xyz-xyz"));
+
+        // Compiled scripts are tied to the engine that compiled them, so use a single engine to guarantee the second request hits the cache
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEnginePoolSize(1);
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, properties, meterRegistry);
+        final String firstMessage = messageConversionService.generateMessageFromRequest("CreateVnfRequest", executionRequest);
+        final String secondMessage = messageConversionService.generateMessageFromRequest("CreateVnfRequest", executionRequest);
+
+        assertThat(secondMessage).isEqualTo(firstMessage);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CompiledScriptCache.CACHE_NAME).tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CompiledScriptCache.CACHE_NAME).tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testScriptEnginesAreReturnedToPool() throws Exception {
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setLifecycleName("Install");
+        executionRequest.setDeploymentLocation(TEST_DL_NO_AUTH);
+        executionRequest.getResourceProperties().put("vnfdId", new GenericExecutionRequestPropertyValue("xyz-xyz-xyz-xyz"));
+
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEnginePoolSize(2);
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, properties, meterRegistry);
+        for (int i = 0; i < 3; i++) {
+            messageConversionService.generateMessageFromRequest("CreateVnfRequest", executionRequest);
+        }
+
+        assertThat(meterRegistry.get(ScriptEnginePool.METRIC_PREFIX + ".size").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get(ScriptEnginePool.METRIC_PREFIX + ".idle").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get(ScriptEnginePool.METRIC_PREFIX + ".active").gauge().value()).isEqualTo(0);
+        assertThat(meterRegistry.get(ScriptEnginePool.METRIC_PREFIX + ".checkout").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void testScriptEngineCheckoutTimesOut() throws Exception {
+        final ScriptEnginePool scriptEnginePool = new ScriptEnginePool(() -> new ScriptEngineManager().getEngineByMimeType("application/javascript"), 1,
+                                                                       Duration.ofMillis(10), new SimpleMeterRegistry());
+
+        try (ScriptEnginePool.PooledScriptEngine ignored = scriptEnginePool.checkout()) {
+            assertThatThrownBy(scriptEnginePool::checkout)
+                    .isInstanceOf(MessageConversionException.class)
+                    .hasMessageStartingWith("Timed out");
+        }
+        assertThat(scriptEnginePool.available()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGraalJsScriptsStopAtStatementLimit() throws Exception {
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEngine(VNFMDriverProperties.Scripting.ScriptEngineType.GRAALJS);
+        properties.getScripting().setStatementLimit(10000);
+        final GraalJsScriptBackend scriptBackend = new GraalJsScriptBackend(properties.getScripting(), new SimpleMeterRegistry());
+
+        try {
+            assertThat(scriptBackend.evaluate("var total = 0; for (var i = 0; i < 10; i++) { total += i; } total.toString();", Collections.emptyList(), Collections.emptyMap()))
+                    .isEqualTo("45");
+            assertThatThrownBy(() -> scriptBackend.evaluate("while (true) {}", Collections.emptyList(), Collections.emptyMap()))
+                    .isInstanceOf(MessageConversionException.class)
+                    .hasMessageContaining("maximum number of statements");
+        } finally {
+            scriptBackend.close();
+        }
+    }
+
+    @Test
+    public void testGraalJsObjectsAreCopiedOutOfTheContext() throws Exception {
+        final GraalJsScriptBackend scriptBackend = new GraalJsScriptBackend(new VNFMDriverProperties().getScripting(), new SimpleMeterRegistry());
+
+        try {
+            final Object result = scriptBackend.evaluate("({ name: 'a', count: 2, ratio: 0.5, enabled: true, items: [1, 'b', null], nested: { c: 'd' } })",
+                                                         Collections.emptyList(), Collections.emptyMap());
+
+            // Still usable after the context has been closed
+            assertThat(result).isInstanceOf(Map.class);
+            final Map<?, ?> map = (Map<?, ?>) result;
+            assertThat(map.get("name")).isEqualTo("a");
+            assertThat(map.get("count")).isEqualTo(2);
+            assertThat(map.get("ratio")).isEqualTo(0.5);
+            assertThat(map.get("enabled")).isEqualTo(true);
+            assertThat(map.get("items")).isEqualTo(Arrays.asList(1, "b", null));
+            assertThat(((Map<?, ?>) map.get("nested")).get("c")).isEqualTo("d");
+            assertThat(map.toString()).contains("name=a");
+        } finally {
+            scriptBackend.close();
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "NASHORN", "GRAALJS" })
+    public void testScriptsCanLookUpPropertiesByPrefix(VNFMDriverProperties.Scripting.ScriptEngineType engine) throws Exception {
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.getResourceProperties().put("additionalParams.b", new GenericExecutionRequestPropertyValue("valueB"));
+        executionRequest.getResourceProperties().put("additionalParams.a", new GenericExecutionRequestPropertyValue("valueA"));
+        executionRequest.getResourceProperties().put("metadata.owner", new GenericExecutionRequestPropertyValue("me"));
+
+        final ScriptBackend scriptBackend = createScriptBackend(engine, new VNFMDriverProperties(), new SimpleMeterRegistry());
+
+        try {
+            final Object result = scriptBackend.evaluate("var keys = executionRequest.properties.getKeysWithPrefix('additionalParams.');"
+                                                                 + "keys.size() + ':' + keys.iterator().next() + ':' + executionRequest.properties['additionalParams.b'];",
+                                                         Collections.emptyList(), Collections.singletonMap("executionRequest", executionRequest));
+            assertThat(result).isEqualTo("2:additionalParams.a:valueB");
+        } finally {
+            scriptBackend.close();
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "NASHORN, wall-clock", "NASHORN, cpu", "GRAALJS, wall-clock", "GRAALJS, cpu" })
+    public void testScriptsExceedingTheirBudgetAreCancelled(VNFMDriverProperties.Scripting.ScriptEngineType engine, String limit) throws Exception {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEnginePoolSize(1);
+        properties.getScripting().setStatementLimit(Long.MAX_VALUE);
+        properties.getScripting().setExecutionTimeout(ScriptExecutionBudget.WALL_CLOCK_LIMIT.equals(limit) ? Duration.ofMillis(500) : Duration.ofSeconds(30));
+        properties.getScripting().setExecutionCpuTime(ScriptExecutionBudget.CPU_TIME_LIMIT.equals(limit) ? Duration.ofMillis(500) : null);
+        // Nashorn can't interrupt a busy loop, so the runaway worker thread has to be stopped
+        properties.getScripting().setStopRunawayScripts(true);
+        final ScriptBackend scriptBackend = createScriptBackend(engine, properties, meterRegistry);
+
+        try {
+            assertThatThrownBy(() -> scriptBackend.evaluate("while (true) {}", Collections.emptyList(), Collections.emptyMap()))
+                    .isInstanceOf(MessageConversionException.class)
+                    .hasMessageStartingWith(String.format("Script exceeded its %s time limit", limit));
+            assertThat(meterRegistry.get(ScriptExecutionBudget.METRIC_NAME).tag("limit", limit).counter().count()).isEqualTo(1);
+
+            // Scripts can still be run once the runaway script has been cancelled (using a replacement engine, for Nashorn)
+            assertThat(scriptBackend.evaluate("'ok'", Collections.emptyList(), Collections.emptyMap())).isEqualTo("ok");
+
+            // The runaway script must not be left running in the background
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (isScriptWorkerRunning() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(isScriptWorkerRunning()).isFalse();
+        } finally {
+            scriptBackend.close();
+        }
+    }
+
+    @Test
+    public void testNashornWorkerThreadsAreReused() throws Exception {
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEnginePoolSize(1);
+        final ScriptBackend scriptBackend = createScriptBackend(VNFMDriverProperties.Scripting.ScriptEngineType.NASHORN, properties, new SimpleMeterRegistry());
+
+        try {
+            final Set<Thread> workerThreads = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                final Object result = scriptBackend.evaluate("java.lang.Thread.currentThread()", Collections.emptyList(), Collections.emptyMap());
+                workerThreads.add((Thread) result);
+            }
+            assertThat(workerThreads).hasSizeLessThanOrEqualTo(2);
+            assertThat(workerThreads).allSatisfy(thread -> assertThat(thread.getName()).startsWith("script-worker-"));
+        } finally {
+            scriptBackend.close();
+        }
+    }
+
+    @Test
+    public void testNashornFailsFastWhenAllWorkersAreBusy() throws Exception {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEnginePoolSize(1);
+        properties.getScripting().setExecutionTimeout(Duration.ofMillis(200));
+        final ScriptBackend scriptBackend = createScriptBackend(VNFMDriverProperties.Scripting.ScriptEngineType.NASHORN, properties, meterRegistry);
+
+        try {
+            // Busy loops which can't be interrupted, so each keeps one of the two workers after being cancelled
+            final String runawayScript = "var end = Date.now() + 2500; while (Date.now() < end) {}";
+            for (int i = 0; i < 2; i++) {
+                assertThatThrownBy(() -> scriptBackend.evaluate(runawayScript, Collections.emptyList(), Collections.emptyMap()))
+                        .isInstanceOf(MessageConversionException.class)
+                        .hasMessageStartingWith("Script exceeded its wall-clock time limit");
+            }
+
+            final long startTime = System.currentTimeMillis();
+            assertThatThrownBy(() -> scriptBackend.evaluate("'ok'", Collections.emptyList(), Collections.emptyMap()))
+                    .isInstanceOf(MessageConversionException.class)
+                    .hasMessageStartingWith("Unable to run script, all 2 script workers are busy");
+            assertThat(System.currentTimeMillis() - startTime).isLessThan(200);
+            awaitGauge(meterRegistry, NashornScriptBackend.RUNAWAY_WORKERS_METRIC_NAME, 2);
+
+            // The workers are available again once the runaway scripts finish
+            awaitGauge(meterRegistry, NashornScriptBackend.RUNAWAY_WORKERS_METRIC_NAME, 0);
+            assertThat(scriptBackend.evaluate("'ok'", Collections.emptyList(), Collections.emptyMap())).isEqualTo("ok");
+        } finally {
+            scriptBackend.close();
+        }
+    }
+
+    @Test
+    public void testParsedVnfDescriptorsAreShared() throws Exception {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final VnfDescriptorCache vnfDescriptorCache = new VnfDescriptorCache(objectMapper, 10, meterRegistry);
+
+        final VnfDescriptor firstVnfd = vnfDescriptorCache.getVnfDescriptor("{\"vnfdId\": \"fa2343af-2a81-4e84-a667-e40662e5ed93\"}");
+        final VnfDescriptor secondVnfd = vnfDescriptorCache.getVnfDescriptor("{\"vnfdId\": \"fa2343af-2a81-4e84-a667-e40662e5ed93\"}");
+
+        assertThat(secondVnfd).isSameAs(firstVnfd);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", VnfDescriptorCache.CACHE_NAME).tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", VnfDescriptorCache.CACHE_NAME).tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
     @Test
     public void testGenerateInstantiateMessage() throws Exception {
         final ExecutionRequest executionRequest = new ExecutionRequest();
@@ -128,7 +349,7 @@ public class JavascriptMessageConversionServiceImplTest {
         executionRequest.getResourceProperties().put("vimConnectionInfo.0.accessInfo.credentials.username", new GenericExecutionRequestPropertyValue("dummy"));
         executionRequest.getResourceProperties().put("vimConnectionInfo.0.accessInfo.credentials.password", new GenericExecutionRequestPropertyValue("RXJpY3Nzb24uLjYyNA=="));
 
-        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper);
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, new VNFMDriverProperties(), new SimpleMeterRegistry());
         final String message = messageConversionService.generateMessageFromRequest("InstantiateVnfRequest", executionRequest);
 
         assertThat(new JsonContent<>(JavascriptMessageConversionServiceImplTest.class, null, message)).isEqualToJson("{\n"
@@ -205,8 +426,9 @@ public class JavascriptMessageConversionServiceImplTest {
                                                                                                                              + "}");
     }
 
-    @Test
-    public void testGenerateInstantiateMessageWithComplexProperties() throws Exception {
+    @ParameterizedTest
+    @CsvSource({ "NASHORN, false", "NASHORN, true", "GRAALJS, false" })
+    public void testGenerateInstantiateMessageWithComplexProperties(VNFMDriverProperties.Scripting.ScriptEngineType engine, boolean sharedLibraryScope) throws Exception {
         final ExecutionRequest executionRequest = new ExecutionRequest();
         executionRequest.setLifecycleName("Configure");
         executionRequest.setDeploymentLocation(TEST_DL_NO_AUTH);
@@ -235,7 +457,10 @@ public class JavascriptMessageConversionServiceImplTest {
         propertyMap.put("key3", Arrays.asList("listVal", 12345, 0.12345, true));
         executionRequest.getResourceProperties().put("vimConnectionInfo.0.mapProperty", new GenericExecutionRequestPropertyValue(propertyMap, PropertyType.MAP.getValue()));
 
-        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper);
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEngine(engine);
+        properties.getScripting().setSharedLibraryScope(sharedLibraryScope);
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, properties, new SimpleMeterRegistry());
         final String message = messageConversionService.generateMessageFromRequest("InstantiateVnfRequest", executionRequest);
 
         assertThat(new JsonContent<>(JavascriptMessageConversionServiceImplTest.class, null, message)).isEqualToJson("{\n"
@@ -255,10 +480,14 @@ public class JavascriptMessageConversionServiceImplTest {
                                                                                                                              + "}");
     }
 
-    @Test
-    public void testGenerateInstantiateResponseMessageWithComplexProperties() throws Exception {
+    @ParameterizedTest
+    @CsvSource({ "NASHORN, false", "NASHORN, true", "GRAALJS, false" })
+    public void testGenerateInstantiateResponseMessageWithComplexProperties(VNFMDriverProperties.Scripting.ScriptEngineType engine, boolean sharedLibraryScope) throws Exception {
         final ExecutionRequest executionRequest = new ExecutionRequest();
-        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper);
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEngine(engine);
+        properties.getScripting().setSharedLibraryScope(sharedLibraryScope);
+        final MessageConversionService messageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, properties, new SimpleMeterRegistry());
 
         String vnfInstance = loadFileIntoString("examples/VnfInstance.json");
         Map<String, Object> vnfInstanceAsMap = objectMapper.readValue(vnfInstance, new TypeReference<Map<String, Object>>() {
@@ -296,4 +525,23 @@ public class JavascriptMessageConversionServiceImplTest {
         assertThat(extractedProperties.get("mapProperty.key4")).isEqualTo(true);
     }
 
+    private ScriptBackend createScriptBackend(final VNFMDriverProperties.Scripting.ScriptEngineType engine, final VNFMDriverProperties properties, final SimpleMeterRegistry meterRegistry) {
+        return (engine == VNFMDriverProperties.Scripting.ScriptEngineType.GRAALJS)
+                ? new GraalJsScriptBackend(properties.getScripting(), meterRegistry)
+                : new NashornScriptBackend(properties.getScripting(), meterRegistry);
+    }
+
+    private void awaitGauge(final SimpleMeterRegistry meterRegistry, final String name, final double value) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get(name).gauge().value() != value && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(meterRegistry.get(name).gauge().value()).isEqualTo(value);
+    }
+
+    private boolean isScriptWorkerRunning() {
+        return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().startsWith("script-worker-")
+                && thread.getState() == Thread.State.RUNNABLE);
+    }
+
 }
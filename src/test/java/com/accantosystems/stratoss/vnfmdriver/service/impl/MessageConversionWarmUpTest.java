@@ -0,0 +1,48 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MessageConversionWarmUpTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testAllDefaultScriptsAreWarmedUp() throws Exception {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setEnginePoolSize(2);
+        final JavascriptMessageConversionServiceImpl javascriptMessageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, properties, meterRegistry);
+        final NativeMessageConversionServiceImpl nativeMessageConversionService = new NativeMessageConversionServiceImpl(objectMapper, properties, javascriptMessageConversionService);
+
+        new MessageConversionWarmUp(javascriptMessageConversionService, nativeMessageConversionService, properties, meterRegistry).run(new DefaultApplicationArguments());
+
+        assertThat(meterRegistry.get(MessageConversionWarmUp.METRIC_NAME + ".total").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.find(MessageConversionWarmUp.METRIC_NAME).tag("result", "failure").timers()).isEmpty();
+        final int warmedUpScripts = meterRegistry.find(MessageConversionWarmUp.METRIC_NAME).tag("result", "success").timers().size();
+        assertThat(warmedUpScripts).isEqualTo(24);
+        assertThat(meterRegistry.find(MessageConversionWarmUp.METRIC_NAME).tag("script", "3.5.1/InstantiateVnfRequest").timer()).isNotNull();
+        // Every script has been compiled by both pooled engines
+        assertThat(meterRegistry.get("cache.size").tag("cache", CompiledScriptCache.CACHE_NAME).gauge().value()).isEqualTo(warmedUpScripts * 2);
+    }
+
+    @Test
+    public void testWarmUpCanBeDisabled() throws Exception {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getScripting().setWarmUpEnabled(false);
+        final JavascriptMessageConversionServiceImpl javascriptMessageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, properties, meterRegistry);
+
+        new MessageConversionWarmUp(javascriptMessageConversionService, javascriptMessageConversionService, properties, meterRegistry).run(new DefaultApplicationArguments());
+
+        assertThat(meterRegistry.find(MessageConversionWarmUp.METRIC_NAME + ".total").timer()).isNull();
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.accantosystems.stratoss.vnfmdriver.service.impl;
+
+import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.ExecutionRequest;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.GenericExecutionRequestPropertyValue;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.KeyExecutionRequestPropertyValue;
+import com.accantosystems.stratoss.vnfmdriver.model.alm.PropertyType;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class NativeMessageConversionServiceImplTest {
+
+    private final static ObjectMapper objectMapper = new ObjectMapper();
+    private static JavascriptMessageConversionServiceImpl javascriptMessageConversionService;
+    private static NativeMessageConversionServiceImpl nativeMessageConversionService;
+
+    @BeforeAll
+    public static void setUpClass() {
+        objectMapper.findAndRegisterModules();
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        javascriptMessageConversionService = new JavascriptMessageConversionServiceImpl(objectMapper, properties, new SimpleMeterRegistry());
+        nativeMessageConversionService = new NativeMessageConversionServiceImpl(objectMapper, properties, javascriptMessageConversionService);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "2.4.1, ChangeExtVnfConnectivityRequest", "2.4.1, ChangeVnfFlavourRequest", "2.4.1, CreateVnfRequest", "2.4.1, HealVnfRequest",
+            "2.4.1, InstantiateVnfRequest", "2.4.1, OperateVnfRequest-Start", "2.4.1, OperateVnfRequest-Stop", "2.4.1, ScaleVnfRequest",
+            "2.4.1, ScaleVnfToLevelRequest", "2.4.1, TerminateVnfRequest",
+            "3.5.1, ChangeCurrentVnfPkgRequest", "3.5.1, ChangeExtVnfConnectivityRequest", "3.5.1, ChangeVnfFlavourRequest", "3.5.1, CreateVnfRequest",
+            "3.5.1, HealVnfRequest", "3.5.1, InstantiateVnfRequest", "3.5.1, OperateVnfRequest-Start", "3.5.1, OperateVnfRequest-Stop",
+            "3.5.1, ScaleVnfRequest", "3.5.1, ScaleVnfToLevelRequest", "3.5.1, TerminateVnfRequest"
+    })
+    public void testGeneratedMessageMatchesDefaultScript(String interfaceVersion, String messageType) throws Exception {
+        final ExecutionRequest executionRequest = createExecutionRequest();
+        executionRequest.getResourceProperties().put("interfaceVersion", new GenericExecutionRequestPropertyValue(interfaceVersion));
+
+        final String expectedMessage = javascriptMessageConversionService.generateMessageFromRequest(messageType, executionRequest);
+        final String message = nativeMessageConversionService.generateMessageFromRequest(messageType, executionRequest);
+
+        JSONAssert.assertEquals(expectedMessage, message, JSONCompareMode.STRICT);
+    }
+
+    @Test
+    public void testGeneratedMessageMatchesDefaultScriptWithMissingProperties() throws Exception {
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.getResourceProperties().put("vnfInstanceId", new GenericExecutionRequestPropertyValue("0000-0002-0000-0001"));
+
+        for (String messageType : Arrays.asList("ChangeVnfFlavourRequest", "ScaleVnfRequest", "InstantiateVnfRequest")) {
+            final String expectedMessage = javascriptMessageConversionService.generateMessageFromRequest(messageType, executionRequest);
+            final String message = nativeMessageConversionService.generateMessageFromRequest(messageType, executionRequest);
+
+            JSONAssert.assertEquals(expectedMessage, message, JSONCompareMode.STRICT);
+        }
+    }
+
+    @Test
+    public void testExtractedPropertiesMatchDefaultScript() throws Exception {
+        Map<String, Object> vnfInstanceAsMap = objectMapper.readValue(loadFileIntoString("examples/VnfInstance.json"), new TypeReference<Map<String, Object>>() {});
+        vnfInstanceAsMap.put("intProperty", 12345);
+        vnfInstanceAsMap.put("floatProperty", 0.12345);
+        vnfInstanceAsMap.put("falseProperty", false);
+        vnfInstanceAsMap.put("zeroProperty", 0);
+        vnfInstanceAsMap.put("emptyProperty", "");
+        vnfInstanceAsMap.put("nullProperty", null);
+        vnfInstanceAsMap.put("listProperty", Arrays.asList("listVal", 12345, 0.12345, true, Collections.singletonMap("key1", "val1")));
+        final String vnfInstance = objectMapper.writeValueAsString(vnfInstanceAsMap);
+
+        final Map<String, Object> expectedProperties = javascriptMessageConversionService.extractPropertiesFromMessage("VnfInstance", new ExecutionRequest(), vnfInstance);
+        final Map<String, Object> extractedProperties = nativeMessageConversionService.extractPropertiesFromMessage("VnfInstance", new ExecutionRequest(), vnfInstance);
+
+        assertThat(extractedProperties).isEqualTo(expectedProperties);
+    }
+
+    @Test
+    public void testScriptInDriverFilesTakesPrecedence() throws Exception {
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setLifecycleName("Configure");
+        executionRequest.getResourceProperties().put("description", new GenericExecutionRequestPropertyValue("testing testing 123"));
+        executionRequest.setDriverFiles(loadZipIntoBase64String("examples/lifecyclescripts.zip"));
+
+        final String message = nativeMessageConversionService.generateMessageFromRequest("InstantiateVnfRequest", executionRequest);
+
+        assertThat(message).isEqualTo("{\"vnfdId\":\"123-123-123-123\",\"vnfInstanceName\":\"Configure\",\"vnfInstanceDescription\":\"testing testing 123\"}");
+    }
+
+    @Test
+    public void testUnsupportedInterfaceVersionUsesScript() throws Exception {
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setLifecycleName("Configure");
+        executionRequest.getResourceProperties().put("description", new GenericExecutionRequestPropertyValue("testing testing 123"));
+        executionRequest.getResourceProperties().put("interfaceVersion", new GenericExecutionRequestPropertyValue("2.5.1"));
+
+        final String message = nativeMessageConversionService.generateMessageFromRequest("InstantiateVnfRequest", executionRequest);
+
+        assertThat(message).isEqualTo("{\"vnfdId\":\"xxx-xxx-xxx-xxx\",\"vnfInstanceName\":\"Configure\",\"vnfInstanceDescription\":\"testing testing 123\"}");
+    }
+
+    private ExecutionRequest createExecutionRequest() {
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setLifecycleName("Install");
+        executionRequest.setDeploymentLocation(TEST_DL_NO_AUTH);
+        final Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("key1", "val1");
+        propertyMap.put("key2", 12345);
+        propertyMap.put("key3", Arrays.asList("listVal", 12345, 0.12345, true));
+        propertyMap.put("key4", OffsetDateTime.parse("2020-12-03T18:37:13.367Z"));
+
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("vnfdId", "fa2343af-2a81-4e84-a667-e40662e5ed93");
+        properties.put("vnfInstanceId", "0000-0002-0000-0001");
+        properties.put("vnfInstanceName", "HelloWorld1");
+        properties.put("flavourId", "Chocolate");
+        properties.put("instantiationLevelId", "1");
+        properties.put("scaleType", "SCALE_OUT");
+        properties.put("scaleAspectId", "aspect1");
+        properties.put("numberOfSteps", 2);
+        properties.put("cause", "Healing");
+        properties.put("additionalParams.stringProperty", "stringvalue");
+        properties.put("additionalParams.nested.intProperty", 12345);
+        properties.put("additionalParams.nested.floatProperty", 0.12345);
+        properties.put("additionalParams.nested.booleanProperty", true);
+        properties.put("additionalParams.timestampProperty", OffsetDateTime.parse("2020-12-03T18:37:13.367Z"));
+        properties.put("additionalParams.sparseList.2", "thirdValue");
+        properties.put("additionalParams.listOfObjects.0.name", "first");
+        properties.put("additionalParams.mapProperty", propertyMap);
+        properties.put("additionalParams.listProperty", Arrays.asList("listVal", 12345, 0.12345, true, OffsetDateTime.parse("2020-12-03T18:37:13.367Z")));
+        properties.put("extVirtualLinks.0.id", "vl1");
+        properties.put("extVirtualLinks.0.extCps.0.cpdId", "cp1");
+        properties.put("extManagedVirtualLinks.0.id", "mvl1");
+        properties.put("vimConnectionInfo.0.vimId", "vim1");
+        properties.put("vimConnectionInfo.0.accessInfo.password", "secret");
+        properties.put("metadata.owner", "me");
+        properties.put("extensions.ext1", "value1");
+        properties.put("vnfConfigurableProperties.isAutoscaleEnabled", true);
+        properties.put("scaleInfo.0.aspectId", "aspect1");
+        properties.put("scaleInfo.0.scaleLevel", 3);
+        properties.put("unrelated.property", "ignored");
+        properties.forEach((name, value) -> executionRequest.getResourceProperties().put(name, new GenericExecutionRequestPropertyValue(value, propertyType(value))));
+        executionRequest.getResourceProperties().put("additionalParams.keyProperty", new KeyExecutionRequestPropertyValue("keyName", "privateKey"));
+        return executionRequest;
+    }
+
+    private String propertyType(final Object value) {
+        if (value instanceof Integer) {
+            return PropertyType.INTEGER.getValue();
+        } else if (value instanceof Double) {
+            return PropertyType.FLOAT.getValue();
+        } else if (value instanceof Boolean) {
+            return PropertyType.BOOLEAN.getValue();
+        } else if (value instanceof OffsetDateTime) {
+            return PropertyType.TIMESTAMP.getValue();
+        } else if (value instanceof Map) {
+            return PropertyType.MAP.getValue();
+        } else if (value instanceof List) {
+            return PropertyType.LIST.getValue();
+        }
+        return PropertyType.STRING.getValue();
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.loadZipIntoBase64String;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class DriverFilesArchiveTest {
+
+    @Test
+    public void testFilesAreIndexed() throws Exception {
+        final String driverFiles = loadZipIntoBase64String("examples/lifecyclescripts.zip");
+
+        final DriverFilesArchive archive = DriverFilesArchive.forDriverFiles(driverFiles);
+
+        assertThat(archive.size()).isEqualTo(2);
+        assertThat(archive.getFile("scripts/InstantiateVnfRequest.js")).isNotEmpty();
+        assertThat(archive.getFile("SCRIPTS/instantiatevnfrequest.js")).isEqualTo(archive.getFile("scripts/InstantiateVnfRequest.js"));
+        assertThat(archive.getFile("scripts/")).isNull();
+        assertThat(archive.getFile("vnfd.yaml")).isNull();
+        assertThat(archive.getWeight()).isGreaterThan(0);
+    }
+
+    @Test
+    public void testEmptyDriverFiles() {
+        assertThat(DriverFilesArchive.forDriverFiles(null).getFile("scripts/InstantiateVnfRequest.js")).isNull();
+        assertThat(DriverFilesArchive.forDriverFiles("").size()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class HashedWheelTimerTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testTasksRunAfterDelay() throws Exception {
+        try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", Duration.ofMillis(10), 8, executorService)) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final long startTime = System.nanoTime();
+            timer.schedule(latch::countDown, Duration.ofMillis(200));
+            assertThat(timer.getPendingTimeouts()).isEqualTo(1);
+
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+            assertThat(timer.getPendingTimeouts()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testManyTasksAcrossSeveralRoundsOfTheWheel() throws Exception {
+        try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", Duration.ofMillis(5), 4, executorService)) {
+            final int taskCount = 10000;
+            final CountDownLatch latch = new CountDownLatch(taskCount);
+            final AtomicInteger early = new AtomicInteger();
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < taskCount; i++) {
+                // Delays span several rounds of the (4 bucket) wheel
+                final long delayMillis = i % 100;
+                timer.schedule(() -> {
+                    if (System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(delayMillis)) {
+                        early.incrementAndGet();
+                    }
+                    latch.countDown();
+                }, Duration.ofMillis(delayMillis));
+            }
+
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(early.get()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testCancelledTasksNotRun() throws Exception {
+        try (HashedWheelTimer timer = new HashedWheelTimer("test-timer", Duration.ofMillis(10), 8, executorService)) {
+            final AtomicInteger runCount = new AtomicInteger();
+            final HashedWheelTimer.Timeout timeout = timer.schedule(runCount::incrementAndGet, Duration.ofMillis(100));
+            final CountDownLatch latch = new CountDownLatch(1);
+            timer.schedule(latch::countDown, Duration.ofMillis(200));
+
+            assertThat(timeout.cancel()).isTrue();
+            assertThat(timeout.isCancelled()).isTrue();
+            assertThat(timer.getPendingTimeouts()).isEqualTo(1);
+
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(runCount.get()).isEqualTo(0);
+            assertThat(timeout.cancel()).isFalse();
+        }
+    }
+
+    @Test
+    public void testCannotScheduleOnceClosed() {
+        final HashedWheelTimer timer = new HashedWheelTimer("test-timer", Duration.ofMillis(10), 8, executorService);
+        timer.close();
+
+        assertThatThrownBy(() -> timer.schedule(() -> {}, Duration.ZERO)).isInstanceOf(IllegalStateException.class);
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.github.tomakehurst.wiremock.WireMockServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class JdkHttpClientRequestFactoryTest {
+
+    private static WireMockServer wireMockServer;
+    private static SslContextCache sslContextCache;
+
+    @BeforeAll
+    public static void setUpClass() {
+        wireMockServer = new WireMockServer(options().dynamicPort().dynamicHttpsPort());
+        wireMockServer.start();
+        sslContextCache = new SslContextCache(new VNFMDriverProperties(), new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        wireMockServer.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        wireMockServer.resetAll();
+    }
+
+    @Test
+    public void testPostWithBasicAuthentication() {
+        wireMockServer.stubFor(post(urlEqualTo("/vnflcm/v2/vnf_instances"))
+                                       .willReturn(aResponse().withStatus(201)
+                                                              .withHeader(HttpHeaders.LOCATION, "/vnflcm/v2/vnf_instances/123")
+                                                              .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                                              .withBody("{\"id\":\"123\"}")));
+        final RestTemplate restTemplate = createRestTemplateBuilder().basicAuthentication("user", "password").build();
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        final ResponseEntity<String> responseEntity = restTemplate.exchange(wireMockServer.baseUrl() + "/vnflcm/v2/vnf_instances", HttpMethod.POST,
+                                                                            new HttpEntity<>("{\"vnfdId\":\"abc\"}", headers), String.class);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(responseEntity.getHeaders().getLocation()).hasPath("/vnflcm/v2/vnf_instances/123");
+        assertThat(responseEntity.getBody()).isEqualTo("{\"id\":\"123\"}");
+        wireMockServer.verify(postRequestedFor(urlEqualTo("/vnflcm/v2/vnf_instances"))
+                                      .withHeader(HttpHeaders.AUTHORIZATION, equalTo("Basic dXNlcjpwYXNzd29yZA=="))
+                                      .withHeader(HttpHeaders.CONTENT_TYPE, equalTo(MediaType.APPLICATION_JSON_VALUE))
+                                      .withRequestBody(equalToJson("{\"vnfdId\":\"abc\"}")));
+    }
+
+    @Test
+    public void testHttpsWithUntrustedCertificate() {
+        wireMockServer.stubFor(delete(urlEqualTo("/vnflcm/v2/vnf_instances/123")).willReturn(aResponse().withStatus(204)));
+        final RestTemplate restTemplate = createRestTemplateBuilder().build();
+
+        final ResponseEntity<Void> responseEntity = restTemplate.exchange("https://localhost:" + wireMockServer.httpsPort() + "/vnflcm/v2/vnf_instances/123",
+                                                                          HttpMethod.DELETE, null, Void.class);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    }
+
+    @Test
+    public void testErrorResponse() {
+        wireMockServer.stubFor(get(urlEqualTo("/vnflcm/v2/vnf_instances/456")).willReturn(aResponse().withStatus(404).withBody("not found")));
+        final RestTemplate restTemplate = createRestTemplateBuilder().build();
+
+        assertThatThrownBy(() -> restTemplate.getForEntity(wireMockServer.baseUrl() + "/vnflcm/v2/vnf_instances/456", String.class))
+                .isInstanceOf(HttpClientErrorException.NotFound.class)
+                .hasMessageContaining("not found");
+    }
+
+    @Test
+    public void testReadTimeout() {
+        wireMockServer.stubFor(get(urlEqualTo("/slow")).willReturn(aResponse().withStatus(200).withFixedDelay(2000)));
+        final RestTemplate restTemplate = createRestTemplateBuilder().setReadTimeout(Duration.ofMillis(250)).build();
+
+        assertThatThrownBy(() -> restTemplate.getForEntity(wireMockServer.baseUrl() + "/slow", String.class))
+                .isInstanceOf(ResourceAccessException.class);
+    }
+
+    private RestTemplateBuilder createRestTemplateBuilder() {
+        return new RestTemplateBuilder().requestFactory(() -> new JdkHttpClientRequestFactory(sslContextCache.getSslContext(null)))
+                                        .setConnectTimeout(Duration.ofSeconds(5))
+                                        .setReadTimeout(Duration.ofSeconds(5));
+    }
+
+}
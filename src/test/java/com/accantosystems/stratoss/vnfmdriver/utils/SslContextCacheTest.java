@@ -0,0 +1,124 @@
+package com.accantosystems.stratoss.vnfmdriver.utils;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.Certificate;
+import java.util.Base64;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import com.accantosystems.stratoss.vnfmdriver.config.VNFMDriverProperties;
+import com.github.tomakehurst.wiremock.WireMockServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SslContextCacheTest {
+
+    private static WireMockServer wireMockServer;
+
+    private MeterRegistry meterRegistry;
+    private SslContextCache sslContextCache;
+
+    @BeforeAll
+    public static void setUpClass() {
+        wireMockServer = new WireMockServer(options().dynamicPort().dynamicHttpsPort());
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        wireMockServer.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        sslContextCache = new SslContextCache(new VNFMDriverProperties(), beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    @Test
+    public void testSslContextIsReused() throws Exception {
+        assertThat(sslContextCache.getSslContext(null)).isSameAs(sslContextCache.getSslContext(""));
+        assertThat(sslContextCache.getSocketFactory(null)).isSameAs(sslContextCache.getSocketFactory(null));
+
+        final String trustedCertificates = getServerCertificate();
+        assertThat(sslContextCache.getSslContext(trustedCertificates)).isNotSameAs(sslContextCache.getSslContext(null));
+        assertThat(sslContextCache.getSslContext(trustedCertificates + "\n")).isSameAs(sslContextCache.getSslContext(trustedCertificates));
+    }
+
+    @Test
+    public void testSslContextsAreBounded() throws Exception {
+        final VNFMDriverProperties properties = new VNFMDriverProperties();
+        properties.getTls().setContextCacheSize(1);
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        final SslContextCache boundedCache = new SslContextCache(properties, beanFactory.getBeanProvider(MeterRegistry.class));
+
+        final SSLContext trustAll = boundedCache.getSslContext(null);
+        assertThat(boundedCache.getSslContext(null)).isSameAs(trustAll);
+        boundedCache.getSslContext(getServerCertificate());
+        assertThat(boundedCache.getSslContext(null)).isNotSameAs(trustAll);
+    }
+
+    @Test
+    public void testSessionIsResumed() throws Exception {
+        final SSLSocketFactory socketFactory = sslContextCache.getSocketFactory(null);
+        sendRequest(socketFactory);
+        sendRequest(socketFactory);
+
+        assertThat(meterRegistry.get(SslContextCache.HANDSHAKE_METRIC_NAME).tag("trust", SslContextCache.TRUST_ALL).tag("resumed", "false").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(SslContextCache.HANDSHAKE_METRIC_NAME).tag("trust", SslContextCache.TRUST_ALL).tag("resumed", "true").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testTrustedCertificates() throws Exception {
+        sendRequest(sslContextCache.getSocketFactory(getServerCertificate()));
+
+        assertThat(meterRegistry.get(SslContextCache.HANDSHAKE_METRIC_NAME).tag("trust", SslContextCache.TRUSTED_CERTIFICATES).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvalidTrustedCertificates() {
+        assertThatThrownBy(() -> sslContextCache.getSslContext("-----BEGIN CERTIFICATE-----\nnot a certificate\n-----END CERTIFICATE-----"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Unable to create SSL context");
+    }
+
+    private String getServerCertificate() throws Exception {
+        try (SSLSocket socket = (SSLSocket) sslContextCache.getSslContext(null).getSocketFactory().createSocket("localhost", wireMockServer.httpsPort())) {
+            socket.startHandshake();
+            final Certificate certificate = socket.getSession().getPeerCertificates()[0];
+            return "-----BEGIN CERTIFICATE-----\n" + Base64.getMimeEncoder().encodeToString(certificate.getEncoded()) + "\n-----END CERTIFICATE-----";
+        }
+    }
+
+    private void sendRequest(final SSLSocketFactory socketFactory) throws Exception {
+        try (SSLSocket socket = (SSLSocket) socketFactory.createSocket("localhost", wireMockServer.httpsPort())) {
+            // The WireMock server does not issue TLSv1.3 session tickets, so sessions can only be resumed using TLSv1.2
+            socket.setEnabledProtocols(new String[] { "TLSv1.2" });
+            socket.startHandshake();
+            final OutputStream outputStream = socket.getOutputStream();
+            outputStream.write("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            outputStream.flush();
+            // Read the whole response, so that any session tickets sent by the server are received
+            final InputStream inputStream = socket.getInputStream();
+            while (inputStream.read() != -1) {
+            }
+        }
+    }
+
+}
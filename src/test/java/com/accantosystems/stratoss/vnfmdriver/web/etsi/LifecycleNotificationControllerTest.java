@@ -2,6 +2,7 @@ package com.accantosystems.stratoss.vnfmdriver.web.etsi;
 
 import static com.accantosystems.stratoss.vnfmdriver.test.TestConstants.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import org.junit.jupiter.api.Test;
@@ -61,6 +62,9 @@ public class LifecycleNotificationControllerTest {
         assertThat(asyncResponse.getStatus()).isEqualTo(ExecutionStatus.COMPLETE);
         assertThat(asyncResponse.getFailureDetails()).isNull();
         assertThat(asyncResponse.getOutputs()).isEmpty();
+
+        // Any polling for the operation is stopped
+        verify(externalMessagingService).sendLcmOpOccPollingRequest(argThat(request -> request.isCompleted() && "8dbe6621-f6b9-49ba-878b-26803f107f27".equals(request.getVnfLcmOpOccId())));
     }
 
     @Test